@@ -0,0 +1,17 @@
+package android.app;
+
+import android.content.ContextWrapper;
+
+/**
+ * JVM stand-in for the Android application.  Call {@link #onCreate()} to start it.
+ */
+public class Application extends ContextWrapper {
+
+    public void onCreate() {
+
+    }
+
+    public void onTerminate() {
+
+    }
+}
@@ -0,0 +1,21 @@
+package android.app;
+
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.os.IBinder;
+
+/**
+ * JVM stand-in for the Android service.
+ */
+public abstract class Service extends ContextWrapper {
+
+    public void onCreate() {
+
+    }
+
+    public void onDestroy() {
+
+    }
+
+    public abstract IBinder onBind( Intent intent );
+}
@@ -0,0 +1,24 @@
+package android.content;
+
+/**
+ * JVM stand-in for the Android component name.
+ */
+public final class ComponentName {
+
+    private final String className;
+
+    public ComponentName(Context context, Class<?> type) {
+
+        this.className = type.getName();
+    }
+
+    public ComponentName(String packageName, String className) {
+
+        this.className = className;
+    }
+
+    public String getClassName() {
+
+        return className;
+    }
+}
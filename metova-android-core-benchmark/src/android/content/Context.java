@@ -0,0 +1,22 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * JVM stand-in for the Android context, limited to what the persistence layer needs.
+ */
+public abstract class Context {
+
+    public static final int BIND_AUTO_CREATE = 0x0001;
+    public static final String POWER_SERVICE = "power";
+
+    public abstract Context getApplicationContext();
+
+    public abstract File getDatabasePath( String name );
+
+    public abstract Object getSystemService( String name );
+
+    public abstract boolean bindService( Intent service, ServiceConnection connection, int flags );
+
+    public abstract void unbindService( ServiceConnection connection );
+}
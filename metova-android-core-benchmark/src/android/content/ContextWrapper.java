@@ -0,0 +1,106 @@
+package android.content;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.app.Service;
+
+/**
+ * JVM stand-in for the Android context wrapper.
+ * <p/>
+ * Databases are created under the directory named by the {@code android.databaseDir} system 
+ * property, or a {@code databases} directory in the JVM's temporary directory by default.  Binding 
+ * to a service instantiates it in-process, calls {@link Service#onCreate()} and delivers its binder 
+ * to the connection synchronously, which is what a local service binding amounts to on a device.
+ */
+public class ContextWrapper extends Context {
+
+    private static final String DATABASE_DIRECTORY_PROPERTY = "android.databaseDir";
+
+    private final Map<ServiceConnection, Service> boundServices = new HashMap<ServiceConnection, Service>();
+    private Context base;
+
+    public ContextWrapper() {
+
+    }
+
+    public ContextWrapper(Context base) {
+
+        this.base = base;
+    }
+
+    protected void attachBaseContext( Context base ) {
+
+        this.base = base;
+    }
+
+    public Context getBaseContext() {
+
+        return base;
+    }
+
+    @Override
+    public Context getApplicationContext() {
+
+        return base == null ? this : base.getApplicationContext();
+    }
+
+    @Override
+    public File getDatabasePath( String name ) {
+
+        String directory = System.getProperty( DATABASE_DIRECTORY_PROPERTY, new File( System.getProperty( "java.io.tmpdir" ), "databases" ).getPath() );
+        return new File( directory, name );
+    }
+
+    /**
+     * No system services exist on the JVM.
+     */
+    @Override
+    public Object getSystemService( String name ) {
+
+        return null;
+    }
+
+    @Override
+    public boolean bindService( Intent intent, ServiceConnection connection, int flags ) {
+
+        ComponentName component = intent.getComponent();
+        if ( component == null ) {
+            return false;
+        }
+
+        Service service;
+        try {
+            service = (Service) Class.forName( component.getClassName() ).newInstance();
+        }
+        catch (Exception e) {
+            throw new IllegalStateException( "Unable to instantiate service " + component.getClassName(), e );
+        }
+
+        service.attachBaseContext( getApplicationContext() );
+        service.onCreate();
+
+        synchronized (boundServices) {
+            boundServices.put( connection, service );
+        }
+
+        connection.onServiceConnected( component, service.onBind( intent ) );
+        return true;
+    }
+
+    @Override
+    public void unbindService( ServiceConnection connection ) {
+
+        Service service;
+        synchronized (boundServices) {
+            service = boundServices.remove( connection );
+        }
+
+        if ( service == null ) {
+            throw new IllegalArgumentException( "Service not registered: " + connection );
+        }
+
+        service.onDestroy();
+    }
+}
@@ -0,0 +1,29 @@
+package android.content;
+
+/**
+ * JVM stand-in for the Android intent, which only carries an explicit component.
+ */
+public class Intent {
+
+    private ComponentName component;
+
+    public Intent() {
+
+    }
+
+    public Intent(Context context, Class<?> type) {
+
+        this.component = new ComponentName( context, type );
+    }
+
+    public ComponentName getComponent() {
+
+        return component;
+    }
+
+    public Intent setComponent( ComponentName component ) {
+
+        this.component = component;
+        return this;
+    }
+}
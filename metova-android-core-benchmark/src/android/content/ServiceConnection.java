@@ -0,0 +1,13 @@
+package android.content;
+
+import android.os.IBinder;
+
+/**
+ * JVM stand-in for the Android service connection.
+ */
+public interface ServiceConnection {
+
+    public void onServiceConnected( ComponentName name, IBinder service );
+
+    public void onServiceDisconnected( ComponentName name );
+}
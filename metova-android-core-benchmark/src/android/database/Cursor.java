@@ -0,0 +1,60 @@
+package android.database;
+
+import java.io.Closeable;
+
+/**
+ * JVM stand-in for the Android cursor interface, limited to the operations used by the persistence 
+ * layer.  Column indexes are zero-based, as on Android.
+ */
+public interface Cursor extends Closeable {
+
+    public static final int FIELD_TYPE_NULL = 0;
+    public static final int FIELD_TYPE_INTEGER = 1;
+    public static final int FIELD_TYPE_FLOAT = 2;
+    public static final int FIELD_TYPE_STRING = 3;
+    public static final int FIELD_TYPE_BLOB = 4;
+
+    public int getCount();
+
+    public int getPosition();
+
+    public boolean move( int offset );
+
+    public boolean moveToPosition( int position );
+
+    public boolean moveToFirst();
+
+    public boolean moveToLast();
+
+    public boolean moveToNext();
+
+    public boolean moveToPrevious();
+
+    public int getColumnCount();
+
+    public int getColumnIndex( String columnName );
+
+    public String getColumnName( int columnIndex );
+
+    public byte[] getBlob( int columnIndex );
+
+    public String getString( int columnIndex );
+
+    public short getShort( int columnIndex );
+
+    public int getInt( int columnIndex );
+
+    public long getLong( int columnIndex );
+
+    public float getFloat( int columnIndex );
+
+    public double getDouble( int columnIndex );
+
+    public int getType( int columnIndex );
+
+    public boolean isNull( int columnIndex );
+
+    public void close();
+
+    public boolean isClosed();
+}
@@ -0,0 +1,22 @@
+package android.database;
+
+/**
+ * JVM stand-in for the Android SQL exception, which is unchecked.
+ */
+@SuppressWarnings( "serial" )
+public class SQLException extends RuntimeException {
+
+    public SQLException() {
+
+    }
+
+    public SQLException(String error) {
+
+        super( error );
+    }
+
+    public SQLException(String error, Throwable cause) {
+
+        super( error, cause );
+    }
+}
@@ -0,0 +1,233 @@
+package android.database.sqlite;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.database.Cursor;
+
+/**
+ * JVM stand-in for the Android SQLite cursor.  Like Android's cursor window, every row of the result 
+ * is copied out of SQLite when the cursor is created, which keeps allocation behaviour comparable 
+ * and allows random access.
+ */
+final class SQLiteCursor implements Cursor {
+
+    private final String[] columnNames;
+    private final List<Object[]> rows = new ArrayList<Object[]>();
+    private int position = -1;
+    private boolean closed;
+
+    SQLiteCursor(ResultSet resultSet) throws SQLException {
+
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        columnNames = new String[metaData.getColumnCount()];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNames[i] = metaData.getColumnLabel( i + 1 );
+        }
+
+        while (resultSet.next()) {
+
+            Object[] row = new Object[columnNames.length];
+            for (int i = 0; i < row.length; i++) {
+
+                Object value = resultSet.getObject( i + 1 );
+                if ( value instanceof Integer ) {
+                    value = Long.valueOf( ( (Integer) value ).longValue() );
+                }
+
+                row[i] = value;
+            }
+
+            rows.add( row );
+        }
+    }
+
+    public int getCount() {
+
+        return rows.size();
+    }
+
+    public int getPosition() {
+
+        return position;
+    }
+
+    public boolean move( int offset ) {
+
+        return moveToPosition( position + offset );
+    }
+
+    public boolean moveToPosition( int position ) {
+
+        if ( position < 0 ) {
+
+            this.position = -1;
+            return false;
+        }
+
+        if ( position >= rows.size() ) {
+
+            this.position = rows.size();
+            return false;
+        }
+
+        this.position = position;
+        return true;
+    }
+
+    public boolean moveToFirst() {
+
+        return moveToPosition( 0 );
+    }
+
+    public boolean moveToLast() {
+
+        return moveToPosition( rows.size() - 1 );
+    }
+
+    public boolean moveToNext() {
+
+        return moveToPosition( position + 1 );
+    }
+
+    public boolean moveToPrevious() {
+
+        return moveToPosition( position - 1 );
+    }
+
+    public int getColumnCount() {
+
+        return columnNames.length;
+    }
+
+    public int getColumnIndex( String columnName ) {
+
+        for (int i = 0; i < columnNames.length; i++) {
+            if ( columnNames[i].equalsIgnoreCase( columnName ) ) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    public String getColumnName( int columnIndex ) {
+
+        return columnNames[columnIndex];
+    }
+
+    public byte[] getBlob( int columnIndex ) {
+
+        Object value = getValue( columnIndex );
+        if ( value == null || value instanceof byte[] ) {
+            return (byte[]) value;
+        }
+
+        return value.toString().getBytes();
+    }
+
+    public String getString( int columnIndex ) {
+
+        Object value = getValue( columnIndex );
+        return value == null ? null : value.toString();
+    }
+
+    public short getShort( int columnIndex ) {
+
+        return (short) getLong( columnIndex );
+    }
+
+    public int getInt( int columnIndex ) {
+
+        return (int) getLong( columnIndex );
+    }
+
+    public long getLong( int columnIndex ) {
+
+        Object value = getValue( columnIndex );
+        if ( value instanceof Number ) {
+            return ( (Number) value ).longValue();
+        }
+
+        return value == null ? 0 : parseNumber( value.toString() ).longValue();
+    }
+
+    public float getFloat( int columnIndex ) {
+
+        return (float) getDouble( columnIndex );
+    }
+
+    public double getDouble( int columnIndex ) {
+
+        Object value = getValue( columnIndex );
+        if ( value instanceof Number ) {
+            return ( (Number) value ).doubleValue();
+        }
+
+        return value == null ? 0 : parseNumber( value.toString() ).doubleValue();
+    }
+
+    public int getType( int columnIndex ) {
+
+        Object value = getValue( columnIndex );
+        if ( value == null ) {
+            return FIELD_TYPE_NULL;
+        }
+        else if ( value instanceof Long ) {
+            return FIELD_TYPE_INTEGER;
+        }
+        else if ( value instanceof Number ) {
+            return FIELD_TYPE_FLOAT;
+        }
+        else if ( value instanceof byte[] ) {
+            return FIELD_TYPE_BLOB;
+        }
+
+        return FIELD_TYPE_STRING;
+    }
+
+    public boolean isNull( int columnIndex ) {
+
+        return getValue( columnIndex ) == null;
+    }
+
+    public void close() {
+
+        closed = true;
+        rows.clear();
+    }
+
+    public boolean isClosed() {
+
+        return closed;
+    }
+
+    private Object getValue( int columnIndex ) {
+
+        if ( closed ) {
+            throw new IllegalStateException( "Cursor is closed." );
+        }
+
+        if ( position < 0 || position >= rows.size() ) {
+            throw new IllegalStateException( "Cursor is not positioned on a row: " + position );
+        }
+
+        return rows.get( position )[columnIndex];
+    }
+
+    /**
+     * Mirrors SQLite's lenient conversion of text to numbers, where unparseable text becomes 0.
+     */
+    private static Double parseNumber( String text ) {
+
+        try {
+            return Double.valueOf( text.trim() );
+        }
+        catch (NumberFormatException e) {
+            return Double.valueOf( 0 );
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package android.database.sqlite;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import android.database.Cursor;
+
+/**
+ * JVM stand-in for the Android SQLite database, backed by a single sqlite-jdbc connection.  Nested 
+ * transactions follow Android's semantics: the outermost transaction commits only if every nested 
+ * transaction was marked successful.
+ */
+public final class SQLiteDatabase implements Closeable {
+
+    /**
+     * Unused by the stand-in; present so that callers compiled against Android link.
+     */
+    public interface CursorFactory {
+    }
+
+    private final String path;
+    private final Connection connection;
+    private PreparedStatement lastInsertRowIdStatement;
+
+    private int transactionDepth;
+    private boolean transactionSuccessful;
+    private boolean transactionFailed;
+
+    private SQLiteDatabase(String path, Connection connection) {
+
+        this.path = path;
+        this.connection = connection;
+    }
+
+    public static SQLiteDatabase openOrCreateDatabase( String path, CursorFactory factory ) {
+
+        try {
+            return new SQLiteDatabase( path, DriverManager.getConnection( "jdbc:sqlite:" + path ) );
+        }
+        catch (SQLException e) {
+            throw wrap( e );
+        }
+    }
+
+    public String getPath() {
+
+        return path;
+    }
+
+    public boolean isOpen() {
+
+        try {
+            return !connection.isClosed();
+        }
+        catch (SQLException e) {
+            throw wrap( e );
+        }
+    }
+
+    public int getVersion() {
+
+        Cursor cursor = rawQuery( "PRAGMA user_version", null );
+        try {
+            return cursor.moveToFirst() ? cursor.getInt( 0 ) : 0;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    public void setVersion( int version ) {
+
+        execSQL( "PRAGMA user_version = " + version );
+    }
+
+    public void beginTransaction() {
+
+        try {
+
+            if ( transactionDepth == 0 ) {
+
+                connection.setAutoCommit( false );
+                transactionFailed = false;
+            }
+
+            transactionDepth++;
+            transactionSuccessful = false;
+        }
+        catch (SQLException e) {
+            throw wrap( e );
+        }
+    }
+
+    public void beginTransactionNonExclusive() {
+
+        beginTransaction();
+    }
+
+    public void setTransactionSuccessful() {
+
+        if ( transactionDepth == 0 ) {
+            throw new IllegalStateException( "no transaction pending" );
+        }
+
+        transactionSuccessful = true;
+    }
+
+    public void endTransaction() {
+
+        if ( transactionDepth == 0 ) {
+            throw new IllegalStateException( "no transaction pending" );
+        }
+
+        if ( !transactionSuccessful ) {
+            transactionFailed = true;
+        }
+
+        transactionSuccessful = false;
+        transactionDepth--;
+
+        if ( transactionDepth == 0 ) {
+
+            try {
+
+                if ( transactionFailed ) {
+                    connection.rollback();
+                }
+                else {
+                    connection.commit();
+                }
+
+                connection.setAutoCommit( true );
+            }
+            catch (SQLException e) {
+                throw wrap( e );
+            }
+        }
+    }
+
+    public boolean inTransaction() {
+
+        return transactionDepth > 0;
+    }
+
+    public void execSQL( String sql ) {
+
+        execSQL( sql, null );
+    }
+
+    public void execSQL( String sql, Object[] bindArgs ) {
+
+        PreparedStatement statement = null;
+        try {
+
+            statement = connection.prepareStatement( sql );
+            bind( statement, bindArgs );
+            statement.execute();
+        }
+        catch (SQLException e) {
+            throw wrap( e );
+        }
+        finally {
+
+            close( statement );
+        }
+    }
+
+    public SQLiteStatement compileStatement( String sql ) {
+
+        try {
+            return new SQLiteStatement( this, connection.prepareStatement( sql ) );
+        }
+        catch (SQLException e) {
+            throw wrap( e );
+        }
+    }
+
+    public Cursor rawQuery( String sql, String[] selectionArgs ) {
+
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+
+            statement = connection.prepareStatement( sql );
+            bind( statement, selectionArgs );
+            resultSet = statement.executeQuery();
+            return new SQLiteCursor( resultSet );
+        }
+        catch (SQLException e) {
+            throw wrap( e );
+        }
+        finally {
+
+            close( resultSet );
+            close( statement );
+        }
+    }
+
+    public Cursor query( String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy ) {
+
+        return query( false, table, columns, selection, selectionArgs, groupBy, having, orderBy, null );
+    }
+
+    public Cursor query( String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy, String limit ) {
+
+        return query( false, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit );
+    }
+
+    public Cursor query( boolean distinct, String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy, String limit ) {
+
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        if ( distinct ) {
+            sql.append( "DISTINCT " );
+        }
+
+        if ( columns == null || columns.length == 0 ) {
+            sql.append( "*" );
+        }
+        else {
+
+            for (int i = 0; i < columns.length; i++) {
+
+                if ( i > 0 ) {
+                    sql.append( ", " );
+                }
+
+                sql.append( columns[i] );
+            }
+        }
+
+        sql.append( " FROM " ).append( table );
+        appendClause( sql, " WHERE ", selection );
+        appendClause( sql, " GROUP BY ", groupBy );
+        appendClause( sql, " HAVING ", having );
+        appendClause( sql, " ORDER BY ", orderBy );
+        appendClause( sql, " LIMIT ", limit );
+
+        return rawQuery( sql.toString(), selectionArgs );
+    }
+
+    public int delete( String table, String whereClause, String[] whereArgs ) {
+
+        StringBuilder sql = new StringBuilder( "DELETE FROM " ).append( table );
+        appendClause( sql, " WHERE ", whereClause );
+
+        PreparedStatement statement = null;
+        try {
+
+            statement = connection.prepareStatement( sql.toString() );
+            bind( statement, whereArgs );
+            return statement.executeUpdate();
+        }
+        catch (SQLException e) {
+            throw wrap( e );
+        }
+        finally {
+
+            close( statement );
+        }
+    }
+
+    public void close() {
+
+        try {
+
+            close( lastInsertRowIdStatement );
+            connection.close();
+        }
+        catch (SQLException e) {
+            throw wrap( e );
+        }
+    }
+
+    long lastInsertRowId() throws SQLException {
+
+        if ( lastInsertRowIdStatement == null ) {
+            lastInsertRowIdStatement = connection.prepareStatement( "SELECT last_insert_rowid()" );
+        }
+
+        ResultSet resultSet = lastInsertRowIdStatement.executeQuery();
+        try {
+            return resultSet.next() ? resultSet.getLong( 1 ) : -1;
+        }
+        finally {
+            close( resultSet );
+        }
+    }
+
+    private static void appendClause( StringBuilder sql, String keyword, String clause ) {
+
+        if ( clause != null && clause.length() > 0 ) {
+            sql.append( keyword ).append( clause );
+        }
+    }
+
+    private static void bind( PreparedStatement statement, Object[] bindArgs ) throws SQLException {
+
+        if ( bindArgs != null ) {
+            for (int i = 0; i < bindArgs.length; i++) {
+                statement.setObject( i + 1, bindArgs[i] );
+            }
+        }
+    }
+
+    static void close( Statement statement ) {
+
+        if ( statement != null ) {
+
+            try {
+                statement.close();
+            }
+            catch (SQLException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    static void close( ResultSet resultSet ) {
+
+        if ( resultSet != null ) {
+
+            try {
+                resultSet.close();
+            }
+            catch (SQLException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    static android.database.SQLException wrap( SQLException e ) {
+
+        return new android.database.SQLException( e.getMessage(), e );
+    }
+}
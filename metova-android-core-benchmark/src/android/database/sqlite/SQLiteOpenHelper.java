@@ -0,0 +1,99 @@
+package android.database.sqlite;
+
+import java.io.File;
+
+import android.content.Context;
+
+/**
+ * JVM stand-in for the Android open helper.  Creates or upgrades the database the first time it is 
+ * opened, using SQLite's {@code user_version} to track the schema version as Android does.
+ */
+public abstract class SQLiteOpenHelper {
+
+    private final Context context;
+    private final String name;
+    private final int version;
+    private SQLiteDatabase database;
+
+    public SQLiteOpenHelper(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
+
+        if ( version < 1 ) {
+            throw new IllegalArgumentException( "Version must be >= 1, was " + version );
+        }
+
+        this.context = context;
+        this.name = name;
+        this.version = version;
+    }
+
+    public String getDatabaseName() {
+
+        return name;
+    }
+
+    public synchronized SQLiteDatabase getReadableDatabase() {
+
+        return getWritableDatabase();
+    }
+
+    public synchronized SQLiteDatabase getWritableDatabase() {
+
+        if ( database != null && database.isOpen() ) {
+            return database;
+        }
+
+        File file = context.getDatabasePath( name );
+        file.getParentFile().mkdirs();
+
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase( file.getPath(), null );
+        onConfigure( db );
+
+        int currentVersion = db.getVersion();
+        if ( currentVersion != version ) {
+
+            db.beginTransaction();
+            try {
+
+                if ( currentVersion == 0 ) {
+                    onCreate( db );
+                }
+                else {
+                    onUpgrade( db, currentVersion, version );
+                }
+
+                db.setVersion( version );
+                db.setTransactionSuccessful();
+            }
+            finally {
+
+                db.endTransaction();
+            }
+        }
+
+        onOpen( db );
+        database = db;
+
+        return db;
+    }
+
+    public synchronized void close() {
+
+        if ( database != null && database.isOpen() ) {
+            database.close();
+        }
+
+        database = null;
+    }
+
+    public void onConfigure( SQLiteDatabase db ) {
+
+    }
+
+    public abstract void onCreate( SQLiteDatabase db );
+
+    public abstract void onUpgrade( SQLiteDatabase db, int oldVersion, int newVersion );
+
+    public void onOpen( SQLiteDatabase db ) {
+
+    }
+}
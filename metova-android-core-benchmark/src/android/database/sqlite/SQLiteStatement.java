@@ -0,0 +1,165 @@
+package android.database.sqlite;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import android.database.Cursor;
+
+/**
+ * JVM stand-in for the Android compiled statement, backed by a JDBC prepared statement.  Bind 
+ * indexes are one-based, as on Android.
+ */
+public final class SQLiteStatement {
+
+    private final SQLiteDatabase database;
+    private final PreparedStatement statement;
+
+    SQLiteStatement(SQLiteDatabase database, PreparedStatement statement) {
+
+        this.database = database;
+        this.statement = statement;
+    }
+
+    public void bindNull( int index ) {
+
+        try {
+            statement.setNull( index, Types.NULL );
+        }
+        catch (SQLException e) {
+            throw SQLiteDatabase.wrap( e );
+        }
+    }
+
+    public void bindLong( int index, long value ) {
+
+        try {
+            statement.setLong( index, value );
+        }
+        catch (SQLException e) {
+            throw SQLiteDatabase.wrap( e );
+        }
+    }
+
+    public void bindDouble( int index, double value ) {
+
+        try {
+            statement.setDouble( index, value );
+        }
+        catch (SQLException e) {
+            throw SQLiteDatabase.wrap( e );
+        }
+    }
+
+    public void bindString( int index, String value ) {
+
+        if ( value == null ) {
+            throw new IllegalArgumentException( "the bind value at index " + index + " is null" );
+        }
+
+        try {
+            statement.setString( index, value );
+        }
+        catch (SQLException e) {
+            throw SQLiteDatabase.wrap( e );
+        }
+    }
+
+    public void bindBlob( int index, byte[] value ) {
+
+        if ( value == null ) {
+            throw new IllegalArgumentException( "the bind value at index " + index + " is null" );
+        }
+
+        try {
+            statement.setBytes( index, value );
+        }
+        catch (SQLException e) {
+            throw SQLiteDatabase.wrap( e );
+        }
+    }
+
+    public void clearBindings() {
+
+        try {
+            statement.clearParameters();
+        }
+        catch (SQLException e) {
+            throw SQLiteDatabase.wrap( e );
+        }
+    }
+
+    public void execute() {
+
+        try {
+            statement.execute();
+        }
+        catch (SQLException e) {
+            throw SQLiteDatabase.wrap( e );
+        }
+    }
+
+    public int executeUpdateDelete() {
+
+        try {
+            return statement.executeUpdate();
+        }
+        catch (SQLException e) {
+            throw SQLiteDatabase.wrap( e );
+        }
+    }
+
+    public long executeInsert() {
+
+        try {
+            return statement.executeUpdate() > 0 ? database.lastInsertRowId() : -1;
+        }
+        catch (SQLException e) {
+            throw SQLiteDatabase.wrap( e );
+        }
+    }
+
+    public long simpleQueryForLong() {
+
+        Cursor cursor = simpleQuery();
+        return cursor.isNull( 0 ) ? 0 : cursor.getLong( 0 );
+    }
+
+    public String simpleQueryForString() {
+
+        return simpleQuery().getString( 0 );
+    }
+
+    private Cursor simpleQuery() {
+
+        ResultSet resultSet = null;
+        try {
+
+            resultSet = statement.executeQuery();
+            SQLiteCursor cursor = new SQLiteCursor( resultSet );
+            if ( !cursor.moveToFirst() ) {
+                throw new android.database.SQLException( "unknown error (code 0): Unable to step statement; no rows returned" );
+            }
+
+            return cursor;
+        }
+        catch (SQLException e) {
+            throw SQLiteDatabase.wrap( e );
+        }
+        finally {
+
+            SQLiteDatabase.close( resultSet );
+        }
+    }
+
+    public void close() {
+
+        try {
+            statement.close();
+        }
+        catch (SQLException e) {
+            throw SQLiteDatabase.wrap( e );
+        }
+    }
+}
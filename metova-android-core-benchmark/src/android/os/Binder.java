@@ -0,0 +1,7 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android binder.  Local bindings simply hand the binder object to the client.
+ */
+public class Binder implements IBinder {
+}
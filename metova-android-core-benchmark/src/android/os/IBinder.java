@@ -0,0 +1,7 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android binder interface.
+ */
+public interface IBinder {
+}
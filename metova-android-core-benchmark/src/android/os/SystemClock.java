@@ -0,0 +1,32 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android clock, used by the HTTP layer to time requests.  Both clocks are 
+ * backed by {@link System#nanoTime()}, so they are monotonic but start at an arbitrary origin.
+ */
+public final class SystemClock {
+
+    private SystemClock() {
+
+    }
+
+    public static long elapsedRealtime() {
+
+        return System.nanoTime() / 1000000L;
+    }
+
+    public static long uptimeMillis() {
+
+        return System.nanoTime() / 1000000L;
+    }
+
+    public static void sleep( long ms ) {
+
+        try {
+            Thread.sleep( ms );
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
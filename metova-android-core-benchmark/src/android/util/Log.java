@@ -0,0 +1,89 @@
+package android.util;
+
+/**
+ * JVM stand-in for the Android logger.  Messages at or above {@link #WARN} are written to standard 
+ * error; everything else is discarded so that logging does not distort benchmark results.
+ */
+public final class Log {
+
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int ASSERT = 7;
+
+    private Log() {
+
+    }
+
+    public static boolean isLoggable( String tag, int level ) {
+
+        return level >= WARN;
+    }
+
+    public static int v( String tag, String msg ) {
+
+        return 0;
+    }
+
+    public static int v( String tag, String msg, Throwable tr ) {
+
+        return 0;
+    }
+
+    public static int d( String tag, String msg ) {
+
+        return 0;
+    }
+
+    public static int d( String tag, String msg, Throwable tr ) {
+
+        return 0;
+    }
+
+    public static int i( String tag, String msg ) {
+
+        return 0;
+    }
+
+    public static int i( String tag, String msg, Throwable tr ) {
+
+        return 0;
+    }
+
+    public static int w( String tag, String msg ) {
+
+        return println( tag, msg, null );
+    }
+
+    public static int w( String tag, String msg, Throwable tr ) {
+
+        return println( tag, msg, tr );
+    }
+
+    public static int w( String tag, Throwable tr ) {
+
+        return println( tag, "", tr );
+    }
+
+    public static int e( String tag, String msg ) {
+
+        return println( tag, msg, null );
+    }
+
+    public static int e( String tag, String msg, Throwable tr ) {
+
+        return println( tag, msg, tr );
+    }
+
+    private static int println( String tag, String msg, Throwable tr ) {
+
+        System.err.println( tag + ": " + msg );
+        if ( tr != null ) {
+            tr.printStackTrace();
+        }
+
+        return 0;
+    }
+}
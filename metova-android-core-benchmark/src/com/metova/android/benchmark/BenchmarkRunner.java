@@ -0,0 +1,29 @@
+package com.metova.android.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.metova.android.benchmark.http.QueueWaitProfiler;
+
+/**
+ * Entry point of the benchmarks jar.  Accepts the standard JMH command line, and always enables the 
+ * {@code gc} profiler so that allocation rates are reported next to throughput, and the
+ * {@link QueueWaitProfiler} so that the queued client's benchmarks report how long requests waited.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+
+    }
+
+    public static void main( String[] args ) throws RunnerException, CommandLineOptionException {
+
+        Options options = new OptionsBuilder().parent( new CommandLineOptions( args ) ).addProfiler( GCProfiler.class ).addProfiler( QueueWaitProfiler.class ).build();
+        new Runner( options ).run();
+    }
+}
@@ -0,0 +1,99 @@
+package com.metova.android.benchmark.http;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpGet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.metova.android.util.http.HttpClientConfiguration;
+import com.metova.android.util.http.HttpClients;
+import com.metova.android.util.http.PooledHttpClient;
+import com.metova.android.util.http.response.ContentHandler;
+import com.metova.android.util.http.response.Response;
+
+/**
+ * Measures synchronous {@link HttpClients#execute(org.apache.http.client.HttpClient, org.apache.http.client.methods.HttpUriRequest)}
+ * calls against a {@link MockHttpServer} from {@link #THREADS} threads sharing a {@link PooledHttpClient},
+ * for each {@link #connectionsPerRoute pool size} and {@link #bodySize response body size}.  A pool
+ * smaller than the thread count shows the cost of waiting for connections.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Threads( HttpClientsBenchmark.THREADS )
+@Fork( 1 )
+public class HttpClientsBenchmark {
+
+    static final int THREADS = 8;
+
+    private static final ContentHandler DISCARD = new ContentHandler() {
+
+        @Override
+        public void onContent( byte[] buffer, int length ) {
+
+            //the body is read only to return the connection to the pool
+        }
+    };
+
+    @Param( { "2", "8" } )
+    public int connectionsPerRoute;
+
+    @Param( { "256", "65536" } )
+    public int bodySize;
+
+    private MockHttpServer server;
+    private PooledHttpClient client;
+    private String url;
+
+    @Setup( Level.Trial )
+    public void setUpTrial() throws IOException {
+
+        ResponseProfile profile = new ResponseProfile();
+        profile.setBodySize( bodySize );
+
+        server = new MockHttpServer( THREADS );
+        server.setDefaultProfile( profile );
+        server.start();
+        url = server.getBaseUrl() + "/items";
+
+        HttpClientConfiguration configuration = new HttpClientConfiguration();
+        configuration.setMaxTotalConnections( connectionsPerRoute );
+        configuration.setMaxConnectionsPerRoute( connectionsPerRoute );
+        client = new PooledHttpClient( configuration );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDownTrial() {
+
+        client.shutdown();
+        server.stop();
+    }
+
+    @Benchmark
+    public long execute() throws IOException {
+
+        Response response = HttpClients.execute( client, new HttpGet( url ) );
+        if ( !response.isSuccessful() ) {
+            response.release();
+            throw new IllegalStateException( "Request failed: " + ( response.isFailedRequest() ? response.getReason() : response.getStatusCode() ) );
+        }
+
+        return response.read( DISCARD );
+    }
+}
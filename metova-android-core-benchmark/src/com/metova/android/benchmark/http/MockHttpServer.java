@@ -0,0 +1,276 @@
+package com.metova.android.benchmark.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process HTTP server on the loopback interface, which answers every request according to a
+ * {@link ResponseProfile}, so that the HTTP client stack can be loaded without a real backend.
+ * Profiles are chosen by the longest matching path prefix, falling back to the default profile.
+ * <p/>
+ * Built on the JDK's own {@code com.sun.net.httpserver}.  Each request occupies one of the server's
+ * threads for the whole of its latency, so give it at least as many threads as requests in flight.
+ */
+public class MockHttpServer {
+
+    private static final int BACKLOG = 256;
+
+    /** Shared by every handler thread, as nothing read into it is ever looked at. */
+    private static final byte[] DISCARD = new byte[4096];
+
+    static {
+        //without TCP_NODELAY, headers and body written separately wait on delayed ACKs, costing ~40 ms a response
+        if ( System.getProperty( "sun.net.httpserver.nodelay" ) == null ) {
+            System.setProperty( "sun.net.httpserver.nodelay", "true" );
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, ResponseProfile> profiles = new ConcurrentHashMap<String, ResponseProfile>();
+    private final ConcurrentMap<String, AtomicInteger> attempts = new ConcurrentHashMap<String, AtomicInteger>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong dropCount = new AtomicLong();
+
+    private volatile ResponseProfile defaultProfile = new ResponseProfile();
+    private volatile byte[] body = new byte[0];
+
+    /**
+     * @param threads how many requests the server handles at once
+     */
+    public MockHttpServer(int threads) throws IOException {
+
+        server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), BACKLOG );
+        executor = Executors.newFixedThreadPool( threads, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable runnable ) {
+
+                Thread thread = new Thread( runnable, "mock-http-" + count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+
+        server.setExecutor( executor );
+        server.createContext( "/", new ProfileHandler() );
+    }
+
+    public void start() {
+
+        server.start();
+    }
+
+    public void stop() {
+
+        server.stop( 0 );
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination( 5, TimeUnit.SECONDS );
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the server's address, such as {@code http://127.0.0.1:50123}, without a trailing slash
+     */
+    public String getBaseUrl() {
+
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public ResponseProfile getDefaultProfile() {
+
+        return defaultProfile;
+    }
+
+    public void setDefaultProfile( ResponseProfile defaultProfile ) {
+
+        this.defaultProfile = defaultProfile;
+    }
+
+    /**
+     * Answers requests whose path starts with the prefix according to the profile.
+     */
+    public void setProfile( String pathPrefix, ResponseProfile profile ) {
+
+        profiles.put( pathPrefix, profile );
+    }
+
+    public void removeProfile( String pathPrefix ) {
+
+        profiles.remove( pathPrefix );
+    }
+
+    /**
+     * @return how many requests were received, including those that failed
+     */
+    public long getRequestCount() {
+
+        return requestCount.get();
+    }
+
+    /**
+     * @return how many requests were answered with an error status
+     */
+    public long getErrorCount() {
+
+        return errorCount.get();
+    }
+
+    /**
+     * @return how many requests had their connection closed without a response
+     */
+    public long getDropCount() {
+
+        return dropCount.get();
+    }
+
+    /**
+     * @return how many requests to the path were received while its profile scripted failed first attempts
+     */
+    public int getAttempts( String path ) {
+
+        AtomicInteger count = attempts.get( path );
+        return ( count == null ) ? 0 : count.get();
+    }
+
+    /**
+     * Clears the counters and the per-path attempts, so the scripted failures happen again.
+     */
+    public void reset() {
+
+        requestCount.set( 0 );
+        errorCount.set( 0 );
+        dropCount.set( 0 );
+        attempts.clear();
+    }
+
+    private ResponseProfile getProfile( String path ) {
+
+        ResponseProfile profile = defaultProfile;
+        int matched = -1;
+        for (Map.Entry<String, ResponseProfile> entry : profiles.entrySet()) {
+            String prefix = entry.getKey();
+            if ( prefix.length() > matched && path.startsWith( prefix ) ) {
+                profile = entry.getValue();
+                matched = prefix.length();
+            }
+        }
+
+        return profile;
+    }
+
+    private int nextAttempt( String path ) {
+
+        AtomicInteger count = attempts.get( path );
+        if ( count == null ) {
+            AtomicInteger existing = attempts.putIfAbsent( path, count = new AtomicInteger() );
+            if ( existing != null ) {
+                count = existing;
+            }
+        }
+
+        return count.incrementAndGet();
+    }
+
+    /**
+     * @return a shared body at least the given size, filled with text
+     */
+    private byte[] getBody( int size ) {
+
+        byte[] current = body;
+        if ( current.length < size ) {
+            current = new byte[size];
+            Arrays.fill( current, (byte) 'x' );
+            body = current;
+        }
+
+        return current;
+    }
+
+    private class ProfileHandler implements HttpHandler {
+
+        @Override
+        public void handle( HttpExchange exchange ) throws IOException {
+
+            requestCount.incrementAndGet();
+            try {
+                drain( exchange.getRequestBody() );
+
+                String path = exchange.getRequestURI().getPath();
+                ResponseProfile profile = getProfile( path );
+                Random random = ThreadLocalRandom.current();
+
+                long latency = profile.nextLatencyMillis( random );
+                if ( latency > 0 ) {
+                    Thread.sleep( latency );
+                }
+
+                boolean scriptedFailure = profile.getFailFirstAttempts() > 0 && nextAttempt( path ) <= profile.getFailFirstAttempts();
+                double roll = random.nextDouble();
+                if ( !scriptedFailure && roll < profile.getDropRate() ) {
+                    //closing the exchange before sending headers closes the connection without a response
+                    dropCount.incrementAndGet();
+                    return;
+                }
+
+                if ( scriptedFailure || roll < profile.getDropRate() + profile.getErrorRate() ) {
+                    errorCount.incrementAndGet();
+                    exchange.sendResponseHeaders( profile.getErrorStatus(), -1 );
+                    return;
+                }
+
+                int size = profile.getBodySize();
+                exchange.getResponseHeaders().set( "Content-Type", "text/plain" );
+                if ( "HEAD".equals( exchange.getRequestMethod() ) || size == 0 ) {
+                    exchange.sendResponseHeaders( 200, -1 );
+                    return;
+                }
+
+                exchange.sendResponseHeaders( 200, size );
+                OutputStream output = exchange.getResponseBody();
+                output.write( getBody( size ), 0, size );
+                output.close();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                exchange.close();
+            }
+        }
+
+        private void drain( InputStream input ) throws IOException {
+
+            while (input.read( DISCARD ) != -1) {
+                //request bodies are not inspected
+            }
+            input.close();
+        }
+    }
+}
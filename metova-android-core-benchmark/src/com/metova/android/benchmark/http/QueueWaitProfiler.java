@@ -0,0 +1,67 @@
+package com.metova.android.benchmark.http;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import com.metova.android.util.http.metrics.LatencyHistogram;
+
+/**
+ * Reports how long the requests of each iteration waited in a queue, as the {@code queueWait.p50},
+ * {@code queueWait.p95} and {@code queueWait.max} secondary results, in milliseconds.  The
+ * percentiles are averaged over the iterations, and the maximum is the largest of them.
+ * <p/>
+ * A benchmark takes part by handing a freshly reset histogram to {@link #record(LatencyHistogram)}
+ * as each iteration starts; iterations that hand over nothing report nothing.
+ */
+public class QueueWaitProfiler implements InternalProfiler {
+
+    private static final String UNIT = "ms";
+
+    private static final AtomicReference<LatencyHistogram> queueWait = new AtomicReference<LatencyHistogram>();
+
+    /**
+     * @param histogram the queue wait the current iteration records into
+     */
+    public static void record( LatencyHistogram histogram ) {
+
+        queueWait.set( histogram );
+    }
+
+    @Override
+    public String getDescription() {
+
+        return "Queue wait percentiles of the requests each iteration dispatched";
+    }
+
+    @Override
+    public void beforeIteration( BenchmarkParams benchmarkParams, IterationParams iterationParams ) {
+
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration( BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result ) {
+
+        //taken rather than read, so a benchmark that records nothing is not credited with the last one's wait
+        LatencyHistogram histogram = queueWait.getAndSet( null );
+        if ( histogram == null || histogram.getCount() == 0 ) {
+            return Collections.emptyList();
+        }
+
+        List<Result> results = new ArrayList<Result>( 3 );
+        results.add( new ScalarResult( "queueWait.p50", histogram.getPercentile( 50 ), UNIT, AggregationPolicy.AVG ) );
+        results.add( new ScalarResult( "queueWait.p95", histogram.getPercentile( 95 ), UNIT, AggregationPolicy.AVG ) );
+        results.add( new ScalarResult( "queueWait.max", histogram.getMax(), UNIT, AggregationPolicy.MAX ) );
+        return results;
+    }
+}
@@ -0,0 +1,206 @@
+package com.metova.android.benchmark.http;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.methods.HttpGet;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.metova.android.util.concurrent.ThreadPool;
+import com.metova.android.util.http.HttpClientConfiguration;
+import com.metova.android.util.http.PooledHttpClient;
+import com.metova.android.util.http.async.AsyncHttpRequestBase;
+import com.metova.android.util.http.async.AsyncHttpResponseCallback;
+import com.metova.android.util.http.async.BoundedRequestQueue;
+import com.metova.android.util.http.async.CallbackRegistry;
+import com.metova.android.util.http.async.ExponentialBackoffRetryStrategy;
+import com.metova.android.util.http.async.QueuedHttpClient;
+import com.metova.android.util.http.async.RetryStrategy;
+import com.metova.android.util.http.metrics.HttpMetrics;
+import com.metova.android.util.http.response.Response;
+
+/**
+ * Measures how many requests per second a {@link QueuedHttpClient} completes against a
+ * {@link MockHttpServer}, for each number of {@link #maxConcurrentRequests concurrent requests} and
+ * {@link ResponseProfile named response profile}.  Each invocation submits a batch of requests and
+ * waits for every callback, so the score includes queueing, dispatch, retries and callbacks.
+ * <p/>
+ * Failed attempts are retried with short exponential backoff.  The retries and the responses that
+ * still failed are reported as the {@code retries} and {@code failures} counters.  The time requests
+ * waited in the queue is reported by the {@link QueueWaitProfiler}, which the benchmarks jar enables.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class QueuedHttpClientBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int SERVER_THREADS = 64;
+    private static final long BATCH_TIMEOUT_SECONDS = 60;
+
+    private static final String CALLBACK_KEY = "benchmark.completion";
+    private static final String RETRY_STRATEGY_KEY = "benchmark.retry";
+
+    @Param( { "1", "4", "16" } )
+    public int maxConcurrentRequests;
+
+    @Param( { ResponseProfile.FAST, ResponseProfile.SLOW, ResponseProfile.FLAKY } )
+    public String profile;
+
+    private MockHttpServer server;
+    private PooledHttpClient httpClient;
+    private ThreadPool executor;
+    private QueuedHttpClient client;
+    private HttpMetrics metrics;
+    private CompletionCallback completion;
+    private String url;
+    private long reportedRetries;
+
+    /**
+     * Counts, per iteration, what it took to complete the batches.
+     */
+    @State( Scope.Thread )
+    @AuxCounters( AuxCounters.Type.EVENTS )
+    public static class Outcomes {
+
+        public long retries;
+        public long failures;
+    }
+
+    /**
+     * Backs off for milliseconds rather than seconds, so that retries show up in the score without
+     * dominating it.
+     */
+    public static class BenchmarkRetryStrategy extends ExponentialBackoffRetryStrategy {
+
+        @Override
+        protected int getMaxRetries() {
+
+            return 3;
+        }
+
+        @Override
+        protected long getBaseDelayMillis() {
+
+            return 5;
+        }
+
+        @Override
+        protected long getMaxDelayMillis() {
+
+            return 50;
+        }
+    }
+
+    private static class CompletionCallback implements AsyncHttpResponseCallback {
+
+        private final AtomicLong failures = new AtomicLong();
+        private volatile CountDownLatch latch;
+
+        @Override
+        public void onResponseReceived( Response response ) {
+
+            if ( !response.isSuccessful() ) {
+                failures.incrementAndGet();
+            }
+            latch.countDown();
+        }
+    }
+
+    @Setup( Level.Trial )
+    public void setUpTrial() throws IOException {
+
+        server = new MockHttpServer( SERVER_THREADS );
+        server.setDefaultProfile( ResponseProfile.named( profile ) );
+        server.start();
+        url = server.getBaseUrl() + "/items/";
+
+        HttpClientConfiguration configuration = new HttpClientConfiguration();
+        configuration.setMaxTotalConnections( SERVER_THREADS );
+        configuration.setMaxConnectionsPerRoute( SERVER_THREADS );
+        httpClient = new PooledHttpClient( configuration );
+
+        completion = new CompletionCallback();
+        CallbackRegistry registry = new CallbackRegistry();
+        registry.registerCallback( CALLBACK_KEY, completion );
+        registry.registerRetryStrategy( RETRY_STRATEGY_KEY, new CallbackRegistry.Factory<RetryStrategy>() {
+
+            @Override
+            public RetryStrategy create() {
+
+                return new BenchmarkRetryStrategy();
+            }
+        } );
+
+        //one thread more than the concurrent requests, for the dispatch loop
+        executor = new ThreadPool( maxConcurrentRequests + 1 );
+        metrics = new HttpMetrics();
+        client = new QueuedHttpClient( httpClient, executor, new BoundedRequestQueue( BATCH_SIZE ), null );
+        client.setCallbackRegistry( registry );
+        client.setMetricsSink( metrics );
+        client.setMaxConcurrentRequests( maxConcurrentRequests );
+        client.start();
+    }
+
+    @Setup( Level.Iteration )
+    public void setUpIteration() {
+
+        //every callback of the previous iteration has run, so nothing is recorded while resetting
+        metrics.reset();
+        reportedRetries = 0;
+        QueueWaitProfiler.record( metrics.getQueueWait() );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDownTrial() {
+
+        client.stop();
+        executor.shutdownNow();
+        httpClient.shutdown();
+        server.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( BATCH_SIZE )
+    public void dispatch( Outcomes outcomes ) throws InterruptedException {
+
+        CountDownLatch latch = new CountDownLatch( BATCH_SIZE );
+        completion.latch = latch;
+        long failures = completion.failures.get();
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            AsyncHttpRequestBase request = new AsyncHttpRequestBase( new HttpGet( url + i ) );
+            request.setCallbackKey( CALLBACK_KEY );
+            request.setRetryStrategyKey( RETRY_STRATEGY_KEY );
+            client.submit( request );
+        }
+
+        if ( !latch.await( BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS ) ) {
+            throw new IllegalStateException( latch.getCount() + " of " + BATCH_SIZE + " requests did not complete within " + BATCH_TIMEOUT_SECONDS + " seconds." );
+        }
+
+        long retries = metrics.getRetryCount();
+        outcomes.retries += retries - reportedRetries;
+        outcomes.failures += completion.failures.get() - failures;
+        reportedRetries = retries;
+    }
+}
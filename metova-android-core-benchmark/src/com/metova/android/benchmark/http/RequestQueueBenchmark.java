@@ -0,0 +1,91 @@
+package com.metova.android.benchmark.http;
+
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpGet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.metova.android.util.concurrent.ThreadPool;
+import com.metova.android.util.http.PooledHttpClient;
+import com.metova.android.util.http.async.AsyncHttpRequestBase;
+import com.metova.android.util.http.async.BoundedRequestQueue;
+import com.metova.android.util.http.async.PriorityRequestQueue;
+import com.metova.android.util.http.async.QueuedHttpClient;
+
+/**
+ * Measures the cost of queueing a request on a {@link QueuedHttpClient} that is not dispatching, for
+ * each in-memory {@link #queue queue}.  Everything a submission allocates stays reachable until the
+ * queue is cleared at the end of the invocation, so the {@code gc.alloc.rate.norm} reported by the
+ * {@code gc} profiler is the memory each waiting request occupies, including the request itself.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class RequestQueueBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final URI URI = java.net.URI.create( "http://127.0.0.1/items/1" );
+
+    @Param( { "bounded", "priority" } )
+    public String queue;
+
+    private PooledHttpClient httpClient;
+    private ThreadPool executor;
+    private BlockingQueue<AsyncHttpRequestBase> requests;
+    private QueuedHttpClient client;
+
+    @Setup( Level.Trial )
+    public void setUpTrial() {
+
+        if ( "bounded".equals( queue ) ) {
+            requests = new BoundedRequestQueue( BATCH_SIZE );
+        }
+        else if ( "priority".equals( queue ) ) {
+            requests = new PriorityRequestQueue();
+        }
+        else {
+            throw new IllegalArgumentException( "Unknown queue " + queue );
+        }
+
+        //never started, so submitted requests stay queued
+        httpClient = new PooledHttpClient();
+        executor = new ThreadPool( 1 );
+        client = new QueuedHttpClient( httpClient, executor, requests, null );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDownTrial() {
+
+        executor.shutdownNow();
+        httpClient.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( BATCH_SIZE )
+    public void submit() {
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            client.submit( new AsyncHttpRequestBase( new HttpGet( URI ) ) );
+        }
+
+        requests.clear();
+    }
+}
@@ -0,0 +1,141 @@
+package com.metova.android.benchmark.http;
+
+import java.util.Random;
+
+/**
+ * Describes how a {@link MockHttpServer} answers requests: how long it takes, how often it fails, and
+ * how large a body it sends.  Each request is decided independently, except that the first
+ * {@link #setFailFirstAttempts(int) few attempts} at every distinct path fail, which scripts a
+ * predictable number of retries.
+ * <p/>
+ * A failure is either an error status or, at the {@link #setDropRate(double) drop rate}, a
+ * connection closed without any response.
+ */
+public class ResponseProfile {
+
+    public static final String FAST = "fast";
+    public static final String SLOW = "slow";
+    public static final String FLAKY = "flaky";
+
+    private long latencyMillis;
+    private long jitterMillis;
+    private double errorRate;
+    private double dropRate;
+    private int errorStatus = 503;
+    private int failFirstAttempts;
+    private int bodySize = 256;
+
+    /**
+     * @param name one of {@link #FAST}, {@link #SLOW} or {@link #FLAKY}
+     * @return a new profile of the named kind
+     * @throws IllegalArgumentException if the name is not recognized
+     */
+    public static ResponseProfile named( String name ) {
+
+        ResponseProfile profile = new ResponseProfile();
+        if ( FAST.equals( name ) ) {
+            return profile;
+        }
+        else if ( SLOW.equals( name ) ) {
+            profile.setLatencyMillis( 20 );
+            profile.setJitterMillis( 10 );
+            return profile;
+        }
+        else if ( FLAKY.equals( name ) ) {
+            profile.setLatencyMillis( 2 );
+            profile.setJitterMillis( 2 );
+            profile.setErrorRate( 0.1 );
+            profile.setDropRate( 0.02 );
+            return profile;
+        }
+
+        throw new IllegalArgumentException( "Unknown response profile " + name );
+    }
+
+    public long getLatencyMillis() {
+
+        return latencyMillis;
+    }
+
+    public void setLatencyMillis( long latencyMillis ) {
+
+        this.latencyMillis = latencyMillis;
+    }
+
+    public long getJitterMillis() {
+
+        return jitterMillis;
+    }
+
+    /**
+     * @param jitterMillis the most extra time, chosen uniformly, added to the latency of each response
+     */
+    public void setJitterMillis( long jitterMillis ) {
+
+        this.jitterMillis = jitterMillis;
+    }
+
+    public double getErrorRate() {
+
+        return errorRate;
+    }
+
+    /**
+     * @param errorRate the fraction of requests, between 0 and 1, answered with the {@link #setErrorStatus(int) error status}
+     */
+    public void setErrorRate( double errorRate ) {
+
+        this.errorRate = errorRate;
+    }
+
+    public double getDropRate() {
+
+        return dropRate;
+    }
+
+    /**
+     * @param dropRate the fraction of requests, between 0 and 1, whose connection is closed without a response
+     */
+    public void setDropRate( double dropRate ) {
+
+        this.dropRate = dropRate;
+    }
+
+    public int getErrorStatus() {
+
+        return errorStatus;
+    }
+
+    public void setErrorStatus( int errorStatus ) {
+
+        this.errorStatus = errorStatus;
+    }
+
+    public int getFailFirstAttempts() {
+
+        return failFirstAttempts;
+    }
+
+    /**
+     * @param failFirstAttempts how many requests to each path are answered with the error status before any may succeed
+     */
+    public void setFailFirstAttempts( int failFirstAttempts ) {
+
+        this.failFirstAttempts = failFirstAttempts;
+    }
+
+    public int getBodySize() {
+
+        return bodySize;
+    }
+
+    public void setBodySize( int bodySize ) {
+
+        this.bodySize = bodySize;
+    }
+
+    long nextLatencyMillis( Random random ) {
+
+        return latencyMillis + ( ( jitterMillis > 0 ) ? (long) ( random.nextDouble() * ( jitterMillis + 1 ) ) : 0 );
+    }
+}
@@ -0,0 +1,54 @@
+package com.metova.android.benchmark.persistence;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.metova.android.DatabaseConnectedApplication;
+import com.metova.android.service.persistence.DatabaseConfiguration;
+
+/**
+ * Application used to bind the database service on the JVM.  Calling {@link #onCreate()} binds 
+ * {@code DatabaseService} exactly as a device would, after which every {@code AbstractRecordStore} 
+ * can reach the database.
+ */
+public class BenchmarkApplication extends DatabaseConnectedApplication {
+
+    private static final String DATABASE_NAME = "benchmark.db";
+
+    private final DatabaseConfiguration databaseConfiguration = new BenchmarkDatabaseConfiguration();
+
+    @Override
+    protected DatabaseConfiguration getDatabaseConfiguration() {
+
+        return databaseConfiguration;
+    }
+
+    /**
+     * Deletes any database left behind by a previous run, so that every trial starts empty.
+     */
+    public void deleteDatabase() {
+
+        getDatabasePath( DATABASE_NAME ).delete();
+        getDatabasePath( DATABASE_NAME + "-journal" ).delete();
+    }
+
+    private static final class BenchmarkDatabaseConfiguration extends DatabaseConfiguration {
+
+        @Override
+        public String getDatabaseName() {
+
+            return DATABASE_NAME;
+        }
+
+        @Override
+        public void createTables( SQLiteDatabase db ) {
+
+            BenchmarkRecordStore.instance().createTable( db );
+        }
+
+        @Override
+        public void upgradeTables( SQLiteDatabase db, int oldVersion, int newVersion ) {
+
+            BenchmarkRecordStore.instance().upgradeTable( db, oldVersion, newVersion );
+        }
+    }
+}
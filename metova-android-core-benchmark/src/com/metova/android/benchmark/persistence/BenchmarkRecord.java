@@ -0,0 +1,51 @@
+package com.metova.android.benchmark.persistence;
+
+import com.metova.android.model.persistence.AbstractRecord;
+
+public class BenchmarkRecord extends AbstractRecord {
+
+    private String name;
+    private String payload;
+    private long quantity;
+    private long updatedAt;
+
+    public String getName() {
+
+        return name;
+    }
+
+    public void setName( String name ) {
+
+        this.name = name;
+    }
+
+    public String getPayload() {
+
+        return payload;
+    }
+
+    public void setPayload( String payload ) {
+
+        this.payload = payload;
+    }
+
+    public long getQuantity() {
+
+        return quantity;
+    }
+
+    public void setQuantity( long quantity ) {
+
+        this.quantity = quantity;
+    }
+
+    public long getUpdatedAt() {
+
+        return updatedAt;
+    }
+
+    public void setUpdatedAt( long updatedAt ) {
+
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,47 @@
+package com.metova.android.benchmark.persistence;
+
+import com.metova.android.service.persistence.AbstractRecordStore;
+import com.metova.android.service.persistence.record.CursorWrapper;
+import com.metova.android.service.persistence.record.SQLiteStatementWrapper;
+import com.metova.android.service.persistence.record.column.Column;
+import com.metova.android.service.persistence.record.column.Columns;
+
+public final class BenchmarkRecordStore extends AbstractRecordStore<BenchmarkRecord> {
+
+    private static final Column[] EXTRA_COLUMNS = new Column[] { Columns.text( "name" ), Columns.text( "payload" ), Columns.integer( "quantity" ), Columns.integer( "updatedAt" ) };
+    private static final BenchmarkRecordStore INSTANCE = new BenchmarkRecordStore();
+
+    private BenchmarkRecordStore() {
+
+        super( BenchmarkRecord.class );
+    }
+
+    public static BenchmarkRecordStore instance() {
+
+        return INSTANCE;
+    }
+
+    @Override
+    protected Column[] getExtraColumns() {
+
+        return EXTRA_COLUMNS;
+    }
+
+    @Override
+    protected void bindRecord( SQLiteStatementWrapper statement, BenchmarkRecord object ) {
+
+        statement.bindString( object.getName() );
+        statement.bindString( object.getPayload() );
+        statement.bindLong( object.getQuantity() );
+        statement.bindLong( object.getUpdatedAt() );
+    }
+
+    @Override
+    protected void populateRecord( CursorWrapper cursor, BenchmarkRecord object ) {
+
+        object.setName( cursor.nextString() );
+        object.setPayload( cursor.nextString() );
+        object.setQuantity( cursor.nextLong() );
+        object.setUpdatedAt( cursor.nextLong() );
+    }
+}
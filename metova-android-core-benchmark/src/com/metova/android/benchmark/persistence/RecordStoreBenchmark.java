@@ -0,0 +1,158 @@
+package com.metova.android.benchmark.persistence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.metova.android.DatabaseConnectedApplication;
+
+/**
+ * Measures the throughput of the basic {@link com.metova.android.service.persistence.AbstractRecordStore} 
+ * operations against a table holding {@link #rowCount} records whose text columns are 
+ * {@link #columnWidth} characters wide.  Run with the {@code gc} profiler to report allocation 
+ * rates alongside throughput; {@link com.metova.android.benchmark.BenchmarkRunner} does so by default.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class RecordStoreBenchmark {
+
+    private static final int BULK_SIZE = 100;
+    private static final int PAGE_SIZE = 50;
+
+    @Param( { "1000", "10000" } )
+    public int rowCount;
+
+    @Param( { "16", "256" } )
+    public int columnWidth;
+
+    private BenchmarkApplication application;
+    private BenchmarkRecordStore store;
+    private List<BenchmarkRecord> records;
+    private String text;
+    private Random random;
+
+    @Setup( Level.Trial )
+    public void setUpTrial() {
+
+        application = new BenchmarkApplication();
+        application.deleteDatabase();
+        application.onCreate();
+
+        char[] characters = new char[columnWidth];
+        Arrays.fill( characters, 'x' );
+        text = new String( characters );
+        random = new Random( 42 );
+
+        store = BenchmarkRecordStore.instance();
+        List<BenchmarkRecord> seed = new ArrayList<BenchmarkRecord>( rowCount );
+        for (int i = 0; i < rowCount; i++) {
+            seed.add( newRecord( i ) );
+        }
+
+        store.insert( seed );
+        records = store.selectAll();
+    }
+
+    /**
+     * Removes records added by the insert benchmarks, so every iteration sees {@link #rowCount} records.
+     */
+    @Setup( Level.Iteration )
+    public void setUpIteration() {
+
+        DatabaseConnectedApplication.getWritableDatabase().delete( store.getTableName(), "id > ?", new String[] { Long.toString( records.get( records.size() - 1 ).getId() ) } );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDownTrial() {
+
+        DatabaseConnectedApplication.getWritableDatabase().close();
+        application.deleteDatabase();
+    }
+
+    @Benchmark
+    public long insert() {
+
+        return store.insert( newRecord( random.nextInt() ) );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( BULK_SIZE )
+    public void bulkInsert() {
+
+        List<BenchmarkRecord> batch = new ArrayList<BenchmarkRecord>( BULK_SIZE );
+        for (int i = 0; i < BULK_SIZE; i++) {
+            batch.add( newRecord( i ) );
+        }
+
+        store.insert( batch );
+    }
+
+    @Benchmark
+    public void update() {
+
+        BenchmarkRecord record = randomRecord();
+        record.setUpdatedAt( record.getUpdatedAt() + 1 );
+        store.update( record );
+    }
+
+    @Benchmark
+    public List<BenchmarkRecord> selectAll() {
+
+        return store.selectAll();
+    }
+
+    @Benchmark
+    public List<BenchmarkRecord> selectPage() {
+
+        return store.select( random.nextInt( Math.max( 1, rowCount - PAGE_SIZE ) ), PAGE_SIZE );
+    }
+
+    @Benchmark
+    public BenchmarkRecord getById() {
+
+        return store.get( randomRecord().getId() );
+    }
+
+    @Benchmark
+    public long count() {
+
+        return store.count();
+    }
+
+    private BenchmarkRecord randomRecord() {
+
+        return records.get( random.nextInt( records.size() ) );
+    }
+
+    private BenchmarkRecord newRecord( int index ) {
+
+        BenchmarkRecord record = new BenchmarkRecord();
+        record.setName( "record-" + index );
+        record.setPayload( text );
+        record.setQuantity( index );
+        record.setUpdatedAt( System.currentTimeMillis() );
+
+        return record;
+    }
+}
@@ -17,6 +17,14 @@ public class CoreTestApplication extends DatabaseConnectedApplication {
 
     private static final class CoreTestDatabaseConfiguration extends DatabaseConfiguration {
 
+        private static final int DATABASE_VERSION = 2;
+
+        @Override
+        public int getDatabaseVersion() {
+
+            return DATABASE_VERSION;
+        }
+
         @Override
         public void createTables( SQLiteDatabase db ) {
 
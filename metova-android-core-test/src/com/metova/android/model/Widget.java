@@ -5,6 +5,7 @@ import com.metova.android.model.persistence.AbstractRecord;
 public class Widget extends AbstractRecord {
 
     private String code;
+    private long quantity;
 
     public String getCode() {
 
@@ -15,4 +16,14 @@ public class Widget extends AbstractRecord {
 
         this.code = code;
     }
+
+    public long getQuantity() {
+
+        return quantity;
+    }
+
+    public void setQuantity( long quantity ) {
+
+        this.quantity = quantity;
+    }
 }
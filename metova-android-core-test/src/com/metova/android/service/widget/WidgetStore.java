@@ -1,5 +1,7 @@
 package com.metova.android.service.widget;
 
+import android.database.sqlite.SQLiteDatabase;
+
 import com.metova.android.model.Widget;
 import com.metova.android.service.persistence.AbstractRecordStore;
 import com.metova.android.service.persistence.record.CursorWrapper;
@@ -9,7 +11,10 @@ import com.metova.android.service.persistence.record.column.Columns;
 
 public final class WidgetStore extends AbstractRecordStore<Widget> {
 
-    private static final Column[] EXTRA_COLUMNS = new Column[] { Columns.text( "code" ) };
+    public static final Column CODE = Columns.text( "code" );
+    public static final Column QUANTITY = Columns.integer( "quantity" );
+
+    private static final Column[] EXTRA_COLUMNS = new Column[] { CODE, QUANTITY };
     private static final WidgetStore INSTANCE = new WidgetStore();
 
     protected WidgetStore() {
@@ -28,15 +33,25 @@ public final class WidgetStore extends AbstractRecordStore<Widget> {
         return EXTRA_COLUMNS;
     }
 
+    @Override
+    public void upgradeTable( SQLiteDatabase db, int oldVersion, int newVersion ) {
+
+        if ( oldVersion < 2 ) {
+            db.execSQL( "ALTER TABLE " + getTableName() + " ADD COLUMN " + QUANTITY );
+        }
+    }
+
     @Override
     protected void bindRecord( SQLiteStatementWrapper statement, Widget object ) {
 
         statement.bindString( object.getCode() );
+        statement.bindLong( object.getQuantity() );
     }
 
     @Override
     protected void populateRecord( CursorWrapper cursor, Widget object ) {
 
         object.setCode( cursor.nextString() );
+        object.setQuantity( cursor.nextLong() );
     }
 }
@@ -0,0 +1,270 @@
+package com.metova.android.test.service.persistence;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import com.metova.android.service.persistence.DatabaseMaintenance;
+import com.metova.android.service.persistence.DatabaseStatistics;
+
+public class DatabaseMaintenanceTest extends AndroidTestCase {
+
+    private static final String DATABASE_NAME = "maintenance-test.db";
+    private static final int ROW_COUNT = 200;
+
+    private File databaseFile;
+    private SQLiteDatabase database;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        getContext().deleteDatabase( DATABASE_NAME );
+        databaseFile = getContext().getDatabasePath( DATABASE_NAME );
+        databaseFile.getParentFile().mkdirs();
+        database = SQLiteDatabase.openOrCreateDatabase( databaseFile, null );
+
+        //auto_vacuum must be set before the first table is created
+        database.execSQL( "PRAGMA auto_vacuum = INCREMENTAL" );
+        database.execSQL( "CREATE TABLE filler (id INTEGER PRIMARY KEY, payload BLOB)" );
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < ROW_COUNT; i++) {
+                database.execSQL( "INSERT INTO filler (payload) VALUES (?)", new Object[] { new byte[1024] } );
+            }
+            database.setTransactionSuccessful();
+        }
+        finally {
+            database.endTransaction();
+        }
+        database.execSQL( "DELETE FROM filler" );
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+
+        database.close();
+        getContext().deleteDatabase( DATABASE_NAME );
+
+        super.tearDown();
+    }
+
+    public void testGatherStatisticsReportsPagesAndFreelist() {
+
+        DatabaseMaintenance maintenance = new DatabaseMaintenance( database, new CountingIdleSignal( true ) );
+        assertNull( maintenance.getStatistics() );
+
+        DatabaseStatistics statistics = maintenance.gatherStatistics();
+        assertSame( statistics, maintenance.getStatistics() );
+        assertTrue( statistics.getPageCount() > 0 );
+        assertTrue( statistics.getPageSize() > 0 );
+        assertTrue( statistics.getFreelistCount() > 0 );
+        assertTrue( statistics.getFileSize() > 0 );
+    }
+
+    public void testRunMaintenanceReclaimsFreePages() {
+
+        DatabaseMaintenance maintenance = newMaintenance( new CountingIdleSignal( true ) );
+        long pagesBefore = maintenance.gatherStatistics().getPageCount();
+
+        assertTrue( maintenance.runMaintenance() );
+        assertEquals( 0, maintenance.getStatistics().getFreelistCount() );
+        assertTrue( maintenance.getStatistics().getPageCount() < pagesBefore );
+    }
+
+    public void testBusyApplicationStopsMaintenanceBeforeFirstStep() {
+
+        CountingIdleSignal idleSignal = new CountingIdleSignal( false );
+        DatabaseMaintenance maintenance = newMaintenance( idleSignal );
+        long freelistBefore = maintenance.gatherStatistics().getFreelistCount();
+
+        assertFalse( maintenance.runMaintenance() );
+        assertEquals( 1, idleSignal.getChecks() );
+        assertEquals( freelistBefore, maintenance.gatherStatistics().getFreelistCount() );
+    }
+
+    public void testStepPauseThrottlesEveryStep() {
+
+        CountingIdleSignal idleSignal = new CountingIdleSignal( true );
+        DatabaseMaintenance maintenance = newMaintenance( idleSignal );
+        maintenance.setStepPause( 50 );
+
+        long start = SystemClock.elapsedRealtime();
+        assertTrue( maintenance.runMaintenance() );
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        //checkpoint, ANALYZE, optimize and at least one vacuum step
+        assertTrue( idleSignal.getChecks() >= 4 );
+        assertTrue( elapsed >= 50 * idleSignal.getChecks() );
+    }
+
+    public void testInterruptionStopsMaintenanceBetweenSteps() {
+
+        final AtomicInteger checks = new AtomicInteger();
+        DatabaseMaintenance maintenance = newMaintenance( new DatabaseMaintenance.IdleSignal() {
+
+            @Override
+            public boolean isIdle() {
+
+                checks.incrementAndGet();
+                Thread.currentThread().interrupt();
+                return true;
+            }
+        } );
+
+        assertFalse( maintenance.runMaintenance() );
+        assertTrue( Thread.interrupted() );
+        assertEquals( 1, checks.get() );
+    }
+
+    public void testStopWaitsForRunningStep() throws InterruptedException {
+
+        final CountDownLatch stepStarted = new CountDownLatch( 1 );
+        final AtomicBoolean stepFinished = new AtomicBoolean();
+        DatabaseMaintenance maintenance = newMaintenance( new DatabaseMaintenance.IdleSignal() {
+
+            @Override
+            public boolean isIdle() {
+
+                stepStarted.countDown();
+                //like a statement running inside SQLite, this cannot be interrupted
+                SystemClock.sleep( 200 );
+                stepFinished.set( true );
+                return false;
+            }
+        } );
+        maintenance.setCheckInterval( 10 );
+
+        maintenance.start();
+        assertTrue( stepStarted.await( 5, TimeUnit.SECONDS ) );
+
+        assertTrue( maintenance.stop() );
+        assertTrue( stepFinished.get() );
+        assertFalse( maintenance.isRunning() );
+    }
+
+    public void testStopWithCallbackReturnsBeforeRunningStep() throws InterruptedException {
+
+        final CountDownLatch stepStarted = new CountDownLatch( 1 );
+        final AtomicBoolean stepFinished = new AtomicBoolean();
+        DatabaseMaintenance maintenance = newMaintenance( new DatabaseMaintenance.IdleSignal() {
+
+            @Override
+            public boolean isIdle() {
+
+                stepStarted.countDown();
+                SystemClock.sleep( 200 );
+                stepFinished.set( true );
+                return false;
+            }
+        } );
+        maintenance.setCheckInterval( 10 );
+
+        maintenance.start();
+        assertTrue( stepStarted.await( 5, TimeUnit.SECONDS ) );
+
+        final CountDownLatch stopped = new CountDownLatch( 1 );
+        final AtomicBoolean finishedWhenStopped = new AtomicBoolean();
+        maintenance.stop( new Runnable() {
+
+            @Override
+            public void run() {
+
+                finishedWhenStopped.set( stepFinished.get() );
+                stopped.countDown();
+            }
+        } );
+
+        assertFalse( maintenance.isRunning() );
+        assertFalse( stepFinished.get() );
+        assertTrue( stopped.await( 5, TimeUnit.SECONDS ) );
+        assertTrue( finishedWhenStopped.get() );
+    }
+
+    public void testStopWithCallbackRunsItWhenNotStarted() {
+
+        final AtomicBoolean stopped = new AtomicBoolean();
+        newMaintenance( new CountingIdleSignal( true ) ).stop( new Runnable() {
+
+            @Override
+            public void run() {
+
+                stopped.set( true );
+            }
+        } );
+
+        assertTrue( stopped.get() );
+    }
+
+    public void testRunMaintenanceConvertsDatabaseToIncrementalVacuum() {
+
+        database.execSQL( "DROP TABLE filler" );
+        database.execSQL( "PRAGMA auto_vacuum = NONE" );
+        database.execSQL( "VACUUM" );
+        assertEquals( 0, queryLong( "PRAGMA auto_vacuum" ) );
+
+        database.execSQL( "CREATE TABLE filler (id INTEGER PRIMARY KEY, payload BLOB)" );
+        for (int i = 0; i < ROW_COUNT; i++) {
+            database.execSQL( "INSERT INTO filler (payload) VALUES (?)", new Object[] { new byte[1024] } );
+        }
+        database.execSQL( "DELETE FROM filler" );
+
+        DatabaseMaintenance maintenance = newMaintenance( new CountingIdleSignal( true ) );
+        assertTrue( maintenance.gatherStatistics().getFreelistCount() > 0 );
+
+        assertTrue( maintenance.runMaintenance() );
+        //2 is INCREMENTAL
+        assertEquals( 2, queryLong( "PRAGMA auto_vacuum" ) );
+        assertEquals( 0, maintenance.getStatistics().getFreelistCount() );
+    }
+
+    private long queryLong( String query ) {
+
+        Cursor cursor = database.rawQuery( query, null );
+        try {
+            return cursor.moveToFirst() ? cursor.getLong( 0 ) : -1;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    private DatabaseMaintenance newMaintenance( DatabaseMaintenance.IdleSignal idleSignal ) {
+
+        DatabaseMaintenance maintenance = new DatabaseMaintenance( database, idleSignal );
+        maintenance.setStepPause( 0 );
+        maintenance.setVacuumThreshold( 0 );
+        return maintenance;
+    }
+
+    private static class CountingIdleSignal implements DatabaseMaintenance.IdleSignal {
+
+        private final boolean idle;
+        private final AtomicInteger checks = new AtomicInteger();
+
+        public CountingIdleSignal(boolean idle) {
+
+            this.idle = idle;
+        }
+
+        @Override
+        public boolean isIdle() {
+
+            checks.incrementAndGet();
+            return idle;
+        }
+
+        public int getChecks() {
+
+            return checks.get();
+        }
+    }
+}
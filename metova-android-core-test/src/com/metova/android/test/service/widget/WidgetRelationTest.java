@@ -0,0 +1,173 @@
+package com.metova.android.test.service.widget;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.metova.android.model.Widget;
+import com.metova.android.service.persistence.record.relation.ManyToOne;
+import com.metova.android.service.persistence.record.relation.OneToMany;
+import com.metova.android.service.widget.WidgetStore;
+import com.metova.android.test.MainActivityTest;
+
+/**
+ * Links widgets to each other, a child widget's quantity holding its parent's ID, to exercise the relations without a second table.
+ */
+public class WidgetRelationTest extends MainActivityTest {
+
+    /** More than SQLite's bound-parameter limit used by AbstractRecordStore, so the IN list is split. */
+    private static final int LARGE_PAGE_SIZE = 1200;
+
+    private final Map<Long, List<Widget>> childrenByParent = new HashMap<Long, List<Widget>>();
+    private final Map<Widget, Widget> parentByChild = new HashMap<Widget, Widget>();
+
+    private final OneToMany<Widget, Widget> children = new OneToMany<Widget, Widget>( WidgetStore.instance(), WidgetStore.QUANTITY ) {
+
+        @Override
+        protected long getForeignKey( Widget child ) {
+
+            return child.getQuantity();
+        }
+
+        @Override
+        protected void attach( Widget parent, List<Widget> attached ) {
+
+            childrenByParent.put( parent.getId(), attached );
+        }
+    };
+
+    private final ManyToOne<Widget, Widget> parent = new ManyToOne<Widget, Widget>( WidgetStore.instance() ) {
+
+        @Override
+        protected long getForeignKey( Widget child ) {
+
+            return child.getQuantity();
+        }
+
+        @Override
+        protected void attach( Widget child, Widget attached ) {
+
+            parentByChild.put( child, attached );
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+
+        super.setUp();
+        WidgetStore.instance().deleteAll();
+        childrenByParent.clear();
+        parentByChild.clear();
+    }
+
+    public void testOneToManyAttachesChildrenToEveryParent() {
+
+        Widget parent1 = insertWidget( "P1", 0 );
+        Widget parent2 = insertWidget( "P2", 0 );
+        insertWidget( "C1", parent1.getId() );
+        insertWidget( "C2", parent1.getId() );
+
+        Map<Long, List<Widget>> loaded = children.prefetch( toList( parent1, parent2 ) );
+        assertEquals( 1, loaded.size() );
+
+        List<Widget> children1 = childrenByParent.get( parent1.getId() );
+        assertEquals( 2, children1.size() );
+        assertEquals( "C1", children1.get( 0 ).getCode() );
+        assertEquals( "C2", children1.get( 1 ).getCode() );
+
+        //a parent without children is still attached, with an empty list
+        assertTrue( childrenByParent.containsKey( parent2.getId() ) );
+        assertTrue( childrenByParent.get( parent2.getId() ).isEmpty() );
+    }
+
+    public void testOneToManyWithEmptyPageQueriesNothing() {
+
+        assertTrue( children.prefetch( Collections.<Widget> emptyList() ).isEmpty() );
+        assertTrue( childrenByParent.isEmpty() );
+    }
+
+    public void testOneToManySplitsLargePages() {
+
+        List<Widget> parents = insertWidgets( "P", LARGE_PAGE_SIZE, null );
+        insertWidgets( "C", LARGE_PAGE_SIZE, parents );
+
+        Map<Long, List<Widget>> loaded = children.prefetch( parents );
+        assertEquals( LARGE_PAGE_SIZE, loaded.size() );
+        assertEquals( LARGE_PAGE_SIZE, childrenByParent.size() );
+        for (int i = 0; i < LARGE_PAGE_SIZE; i++) {
+
+            List<Widget> attached = childrenByParent.get( parents.get( i ).getId() );
+            assertEquals( 1, attached.size() );
+            assertEquals( "C" + i, attached.get( 0 ).getCode() );
+        }
+    }
+
+    public void testManyToOneAttachesSharedParent() {
+
+        Widget parent1 = insertWidget( "P1", 0 );
+        Widget child1 = insertWidget( "C1", parent1.getId() );
+        Widget child2 = insertWidget( "C2", parent1.getId() );
+        Widget orphan = insertWidget( "C3", 0 );
+
+        Map<Long, Widget> loaded = parent.prefetch( toList( child1, child2, orphan ) );
+        assertEquals( 1, loaded.size() );
+        assertEquals( "P1", parentByChild.get( child1 ).getCode() );
+        assertSame( parentByChild.get( child1 ), parentByChild.get( child2 ) );
+        assertFalse( parentByChild.containsKey( orphan ) );
+    }
+
+    public void testManyToOneWithEmptyPageQueriesNothing() {
+
+        assertTrue( parent.prefetch( Collections.<Widget> emptyList() ).isEmpty() );
+        assertTrue( parentByChild.isEmpty() );
+    }
+
+    public void testManyToOneSplitsLargePages() {
+
+        List<Widget> parents = insertWidgets( "P", LARGE_PAGE_SIZE, null );
+        List<Widget> childWidgets = insertWidgets( "C", LARGE_PAGE_SIZE, parents );
+
+        Map<Long, Widget> loaded = parent.prefetch( childWidgets );
+        assertEquals( LARGE_PAGE_SIZE, loaded.size() );
+        for (int i = 0; i < LARGE_PAGE_SIZE; i++) {
+            assertEquals( "P" + i, parentByChild.get( childWidgets.get( i ) ).getCode() );
+        }
+    }
+
+    private List<Widget> toList( Widget... widgets ) {
+
+        List<Widget> list = new ArrayList<Widget>( widgets.length );
+        Collections.addAll( list, widgets );
+        return list;
+    }
+
+    /**
+     * Inserts widgets coded with the prefix and their index, the i-th referencing the i-th of the parents, if any.
+     */
+    private List<Widget> insertWidgets( String prefix, int count, List<Widget> parents ) {
+
+        List<Widget> widgets = new ArrayList<Widget>( count );
+        for (int i = 0; i < count; i++) {
+
+            Widget widget = new Widget();
+            widget.setCode( prefix + i );
+            widget.setQuantity( parents == null ? 0 : parents.get( i ).getId() );
+            widgets.add( widget );
+        }
+
+        WidgetStore.instance().insert( widgets );
+        return widgets;
+    }
+
+    private Widget insertWidget( String code, long quantity ) {
+
+        Widget widget = new Widget();
+        widget.setCode( code );
+        widget.setQuantity( quantity );
+
+        WidgetStore.instance().insert( widget );
+        return widget;
+    }
+}
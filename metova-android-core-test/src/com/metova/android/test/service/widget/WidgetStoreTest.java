@@ -1,6 +1,16 @@
 package com.metova.android.test.service.widget;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
 import com.metova.android.model.Widget;
+import com.metova.android.service.persistence.record.aggregate.Aggregate;
+import com.metova.android.service.persistence.record.aggregate.AggregateRow;
+import com.metova.android.service.persistence.record.column.Columns;
+import com.metova.android.service.persistence.record.transfer.TransferFormat;
 import com.metova.android.service.widget.WidgetStore;
 import com.metova.android.test.MainActivityTest;
 
@@ -18,4 +28,95 @@ public class WidgetStoreTest extends MainActivityTest {
         assertEquals( widget1.getCode(), widget2.getCode() );
         assertEquals( widget1.getId(), widget2.getId() );
     }
+
+    public void testAggregatesAreEvaluatedInDatabase() {
+
+        WidgetStore.instance().deleteAll();
+        insertWidget( "A", 2 );
+        insertWidget( "A", 4 );
+        insertWidget( "B", 9 );
+
+        assertEquals( 15, WidgetStore.instance().sum( WidgetStore.QUANTITY ) );
+        assertEquals( 2, WidgetStore.instance().min( WidgetStore.QUANTITY ) );
+        assertEquals( 9, WidgetStore.instance().max( WidgetStore.QUANTITY ) );
+        assertEquals( 5.0, WidgetStore.instance().average( WidgetStore.QUANTITY ), 0.0001 );
+        assertEquals( 2, WidgetStore.instance().count( "code=?", new String[] { "A" } ) );
+    }
+
+    public void testGroupByReturnsOneRowPerGroup() {
+
+        WidgetStore.instance().deleteAll();
+        insertWidget( "A", 2 );
+        insertWidget( "A", 4 );
+        insertWidget( "B", 9 );
+
+        List<AggregateRow> rows = WidgetStore.instance().groupBy( WidgetStore.CODE, Aggregate.SUM, WidgetStore.QUANTITY, null, null );
+        assertEquals( 2, rows.size() );
+
+        assertEquals( "A", rows.get( 0 ).getKey() );
+        assertEquals( 2, rows.get( 0 ).getCount() );
+        assertEquals( 6, rows.get( 0 ).getLongValue() );
+
+        assertEquals( "B", rows.get( 1 ).getKey() );
+        assertEquals( 1, rows.get( 1 ).getCount() );
+        assertEquals( 9, rows.get( 1 ).getLongValue() );
+    }
+
+    public void testAggregateRejectsUndeclaredColumn() {
+
+        try {
+
+            WidgetStore.instance().sum( Columns.integer( "price" ) );
+            fail( "Expected an IllegalArgumentException." );
+        }
+        catch (IllegalArgumentException e) {
+            //success
+        }
+    }
+
+    public void testSelectByIdsLoadsAllRequestedRecords() {
+
+        WidgetStore.instance().deleteAll();
+        Widget widget1 = insertWidget( "A", 1 );
+        insertWidget( "B", 2 );
+        Widget widget3 = insertWidget( "C", 3 );
+
+        List<Widget> widgets = WidgetStore.instance().selectByIds( Arrays.asList( widget3.getId(), widget1.getId(), widget1.getId() ) );
+        assertEquals( 2, widgets.size() );
+        assertEquals( "A", widgets.get( 0 ).getCode() );
+        assertEquals( "C", widgets.get( 1 ).getCode() );
+    }
+
+    public void testExportThenImportRestoresRecords() throws IOException {
+
+        for (TransferFormat format : TransferFormat.values()) {
+
+            WidgetStore.instance().deleteAll();
+            Widget widget1 = insertWidget( "A", 7 );
+            insertWidget( null, 0 );
+
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            assertEquals( 2, WidgetStore.instance().exportTo( outputStream, format, true ) );
+
+            WidgetStore.instance().deleteAll();
+            assertEquals( 2, WidgetStore.instance().importFrom( new ByteArrayInputStream( outputStream.toByteArray() ), format, true ) );
+
+            List<Widget> widgets = WidgetStore.instance().selectAll();
+            assertEquals( 2, widgets.size() );
+            assertEquals( widget1.getId(), widgets.get( 0 ).getId() );
+            assertEquals( "A", widgets.get( 0 ).getCode() );
+            assertEquals( 7, widgets.get( 0 ).getQuantity() );
+            assertNull( widgets.get( 1 ).getCode() );
+        }
+    }
+
+    private Widget insertWidget( String code, long quantity ) {
+
+        Widget widget = new Widget();
+        widget.setCode( code );
+        widget.setQuantity( quantity );
+
+        WidgetStore.instance().insert( widget );
+        return widget;
+    }
 }
@@ -0,0 +1,157 @@
+package com.metova.android.util.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+public class CoalescingHttpClientTest extends TestCase {
+
+    private static final int CALLERS = 4;
+
+    private GatedHttpClient server;
+    private CoalescingHttpClient client;
+    private ExecutorService executor;
+
+    @Override
+    public void setUp() {
+
+        server = new GatedHttpClient();
+        client = new CoalescingHttpClient( server );
+        executor = Executors.newFixedThreadPool( CALLERS );
+    }
+
+    @Override
+    public void tearDown() {
+
+        executor.shutdownNow();
+    }
+
+    public void testIdenticalGetsShareOneCall() throws Exception {
+
+        List<Future<String>> results = submit( CALLERS, "http://example.com/catalog", null );
+        awaitCoalesced( CALLERS - 1 );
+        server.release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals( "body-1", result.get( 5, TimeUnit.SECONDS ) );
+        }
+        assertEquals( 1, server.callCount.get() );
+    }
+
+    public void testDifferentKeyHeadersAreNotCoalesced() throws Exception {
+
+        List<Future<String>> results = submit( 1, "http://example.com/catalog", "application/json" );
+        results.addAll( submit( 1, "http://example.com/catalog", "text/xml" ) );
+        server.release.countDown();
+
+        for (Future<String> result : results) {
+            result.get( 5, TimeUnit.SECONDS );
+        }
+        assertEquals( 2, server.callCount.get() );
+        assertEquals( 0, client.getCoalescedCount() );
+    }
+
+    public void testFailureIsSharedWithWaitingCallers() throws Exception {
+
+        server.failure = new IOException( "connection reset" );
+        List<Future<String>> results = submit( CALLERS, "http://example.com/catalog", null );
+        awaitCoalesced( CALLERS - 1 );
+        server.release.countDown();
+
+        for (Future<String> result : results) {
+            try {
+                result.get( 5, TimeUnit.SECONDS );
+                fail( "Expected the shared failure." );
+            }
+            catch (ExecutionException e) {
+                assertSame( server.failure, e.getCause() );
+            }
+        }
+        assertEquals( 1, server.callCount.get() );
+    }
+
+    public void testLaterRequestMakesNewCall() throws Exception {
+
+        server.release.countDown();
+        assertEquals( "body-1", EntityUtils.toString( client.execute( new HttpGet( "http://example.com/catalog" ) ).getEntity() ) );
+        assertEquals( "body-2", EntityUtils.toString( client.execute( new HttpGet( "http://example.com/catalog" ) ).getEntity() ) );
+    }
+
+    private List<Future<String>> submit( int count, final String uri, final String accept ) {
+
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < count; i++) {
+            results.add( executor.submit( new Callable<String>() {
+
+                @Override
+                public String call() throws Exception {
+
+                    HttpGet get = new HttpGet( uri );
+                    if ( accept != null ) {
+                        get.addHeader( "Accept", accept );
+                    }
+                    return EntityUtils.toString( client.execute( get ).getEntity() );
+                }
+            } ) );
+        }
+        return results;
+    }
+
+    private void awaitCoalesced( int expected ) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.getCoalescedCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep( 10 );
+        }
+        assertEquals( expected, client.getCoalescedCount() );
+    }
+
+    /**
+     * Holds every request until {@link #release} opens, then answers with a numbered body or {@link #failure}.
+     */
+    static class GatedHttpClient extends FakeHttpClient {
+
+        private final CountDownLatch release = new CountDownLatch( 1 );
+        private final AtomicInteger callCount = new AtomicInteger();
+        private volatile IOException failure;
+
+        @Override
+        public HttpResponse execute( HttpUriRequest request, HttpContext context ) throws IOException {
+
+            int call = callCount.incrementAndGet();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                throw new IOException( "interrupted" );
+            }
+
+            if ( failure != null ) {
+                throw failure;
+            }
+
+            BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+            response.setEntity( new StringEntity( "body-" + call ) );
+            return response;
+        }
+    }
+}
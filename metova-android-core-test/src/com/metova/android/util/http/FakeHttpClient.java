@@ -0,0 +1,80 @@
+package com.metova.android.util.http;
+
+import java.io.IOException;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * An in-memory {@link HttpClient} for tests. Subclasses answer {@link #execute(HttpUriRequest, HttpContext)}, which
+ * {@link #execute(HttpUriRequest)} also goes through; the other variants are not supported.
+ */
+public abstract class FakeHttpClient implements HttpClient {
+
+    /**
+     * @param context null when the request was sent without one
+     */
+    @Override
+    public abstract HttpResponse execute( HttpUriRequest request, HttpContext context ) throws IOException;
+
+    @Override
+    public HttpResponse execute( HttpUriRequest request ) throws IOException {
+
+        return execute( request, (HttpContext) null );
+    }
+
+    @Override
+    public HttpResponse execute( HttpHost target, HttpRequest request ) {
+
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public HttpResponse execute( HttpHost target, HttpRequest request, HttpContext context ) {
+
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> T execute( HttpUriRequest request, ResponseHandler<? extends T> responseHandler ) {
+
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> T execute( HttpUriRequest request, ResponseHandler<? extends T> responseHandler, HttpContext context ) {
+
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> T execute( HttpHost target, HttpRequest request, ResponseHandler<? extends T> responseHandler ) {
+
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> T execute( HttpHost target, HttpRequest request, ResponseHandler<? extends T> responseHandler, HttpContext context ) {
+
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public HttpParams getParams() {
+
+        return null;
+    }
+
+    @Override
+    public ClientConnectionManager getConnectionManager() {
+
+        return null;
+    }
+}
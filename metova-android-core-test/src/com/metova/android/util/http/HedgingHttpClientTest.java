@@ -0,0 +1,125 @@
+package com.metova.android.util.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+
+public class HedgingHttpClientTest extends TestCase {
+
+    private StallingHttpClient server;
+    private HedgingHttpClient client;
+
+    @Override
+    public void setUp() {
+
+        server = new StallingHttpClient();
+        client = new HedgingHttpClient( server );
+        client.setInitialHedgeDelayMillis( 50 );
+    }
+
+    @Override
+    public void tearDown() {
+
+        client.shutdown();
+    }
+
+    public void testStalledRequestIsHedgedToTheAlternateHost() throws Exception {
+
+        client.setHedgeFraction( 1 );
+        client.setAlternateHost( "example.com", new HttpHost( "mirror.example.com" ) );
+        server.stallHost = "example.com";
+
+        HttpResponse response = client.execute( new HttpGet( "http://example.com/profile" ) );
+
+        assertEquals( 200, response.getStatusLine().getStatusCode() );
+        assertEquals( 1, client.getHedgeCount() );
+        assertEquals( 1, client.getHedgeWinCount() );
+        assertEquals( 1, server.aborted );
+        assertEquals( "mirror.example.com", server.hosts.get( 1 ) );
+    }
+
+    public void testWinningHedgesAreRecordedAsResponseTimes() throws Exception {
+
+        client.setHedgeFraction( 1 );
+        client.setAlternateHost( "example.com", new HttpHost( "mirror.example.com" ) );
+        server.stallHost = "example.com";
+
+        //every primary stalls until the hedge answers and aborts it
+        for (int i = 0; i < 20; i++) {
+            client.execute( new HttpGet( "http://example.com/" + i ) );
+        }
+        client.setInitialHedgeDelayMillis( 5000 );
+
+        assertEquals( 20, client.getHedgeWinCount() );
+        assertTrue( client.getHedgeDelayMillis( "example.com" ) < 5000 );
+    }
+
+    public void testHedgesStayWithinBudget() throws Exception {
+
+        client.setHedgeFraction( 0.5 );
+        server.delayMillis = 150;
+
+        for (int i = 0; i < 4; i++) {
+            client.execute( new HttpGet( "http://example.com/" + i ) );
+        }
+
+        assertEquals( 2, client.getHedgeCount() );
+    }
+
+    public void testNonIdempotentRequestsAreNotHedged() throws Exception {
+
+        client.setHedgeFraction( 1 );
+        server.delayMillis = 150;
+
+        client.execute( new HttpPost( "http://example.com/orders" ) );
+
+        assertEquals( 0, client.getHedgeCount() );
+        assertEquals( 1, server.hosts.size() );
+    }
+
+    /**
+     * Answers after a delay, or never, until aborted, for requests to the stalled host.
+     */
+    static class StallingHttpClient extends FakeHttpClient {
+
+        private final List<String> hosts = Collections.synchronizedList( new ArrayList<String>() );
+        private volatile String stallHost;
+        private volatile long delayMillis;
+        private volatile int aborted;
+
+        @Override
+        public HttpResponse execute( HttpUriRequest request, HttpContext context ) throws IOException {
+
+            String host = request.getURI().getHost();
+            hosts.add( host );
+
+            long wakeAt = System.currentTimeMillis() + ( host.equals( stallHost ) ? 5000 : delayMillis );
+            while (System.currentTimeMillis() < wakeAt) {
+                if ( ( (HttpRequestBase) request ).isAborted() ) {
+                    aborted++;
+                    throw new IOException( "Request aborted" );
+                }
+                try {
+                    Thread.sleep( 5 );
+                }
+                catch (InterruptedException e) {
+                    throw new IOException( "Interrupted" );
+                }
+            }
+            return new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+        }
+    }
+}
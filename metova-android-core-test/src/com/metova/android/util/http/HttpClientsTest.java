@@ -0,0 +1,35 @@
+package com.metova.android.util.http;
+
+import junit.framework.TestCase;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+
+import com.metova.android.util.http.PooledHttpClientTest.RecordingServer;
+import com.metova.android.util.http.response.Response;
+
+public class HttpClientsTest extends TestCase {
+
+    public void testSharedClientFollowsReconfiguration() throws Exception {
+
+        HttpClient shared = HttpClients.getSharedClient();
+        HttpClients.configureSharedClient( new HttpClientConfiguration() );
+        assertSame( shared, HttpClients.getSharedClient() );
+
+        RecordingServer server = new RecordingServer();
+        server.start();
+        try {
+            HttpPost post = new HttpPost( server.getUrl() );
+            post.setEntity( new StringEntity( "{}" ) );
+
+            //a client that captured the shared client before the reconfiguration keeps working
+            Response response = HttpClients.execute( shared, post );
+            assertEquals( 200, response.getStatusCode() );
+            response.release();
+        }
+        finally {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.metova.android.util.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+
+import com.metova.android.util.http.response.Response;
+
+public class PooledHttpClientTest extends TestCase {
+
+    private static final String JSON = "{\"items\":[{\"id\":1},{\"id\":2},{\"id\":3},{\"id\":4},{\"id\":5}]}";
+
+    private RecordingServer server;
+    private PooledHttpClient client;
+
+    @Override
+    public void setUp() throws IOException {
+
+        server = new RecordingServer();
+        server.start();
+
+        HttpClientConfiguration configuration = new HttpClientConfiguration();
+        configuration.setCompressionEnabled( true );
+        configuration.getCompressionPolicy().setDefaultThreshold( 16 );
+        configuration.setEvictionIntervalMillis( 50 );
+        client = new PooledHttpClient( configuration );
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+
+        client.shutdown();
+        server.close();
+    }
+
+    public void testCompressedPostIsSentWithMatchingHeaders() throws Exception {
+
+        HttpPost post = new HttpPost( server.getUrl() );
+        post.setEntity( new StringEntity( JSON ) );
+
+        Response response = HttpClients.execute( client, post );
+        assertEquals( 200, response.getStatusCode() );
+        response.release();
+        server.join( 5000 );
+
+        assertNull( server.failure );
+        assertEquals( "gzip", server.headers.get( "content-encoding" ) );
+        String contentLength = server.headers.get( "content-length" );
+        if ( contentLength != null ) {
+            assertEquals( Integer.parseInt( contentLength ), server.body.length );
+        }
+        else {
+            assertEquals( "chunked", server.headers.get( "transfer-encoding" ) );
+        }
+        assertEquals( JSON, gunzip( server.body ) );
+    }
+
+    public void testShutdownWhenIdleLetsLeasedConnectionsFinish() throws Exception {
+
+        server.responseBody = "done";
+        HttpPost post = new HttpPost( server.getUrl() );
+        post.setEntity( new StringEntity( "{}" ) );
+
+        Response response = HttpClients.execute( client, post );
+        client.shutdownWhenIdle();
+        Thread.sleep( 200 );
+        assertEquals( "done", EntityUtils.toString( response.getEntity() ) );
+
+        //the last connection is back, so the pool shuts down at the next eviction pass
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!isShutDown( client ) && System.currentTimeMillis() < deadline) {
+            Thread.sleep( 50 );
+        }
+        assertTrue( isShutDown( client ) );
+    }
+
+    private static boolean isShutDown( PooledHttpClient client ) throws Exception {
+
+        try {
+            client.getConnectionManager().requestConnection( new HttpRoute( new HttpHost( "127.0.0.1" ) ), null ).getConnection( 1, TimeUnit.MILLISECONDS ).releaseConnection();
+            return false;
+        }
+        catch (IllegalStateException e) {
+            return true;
+        }
+        catch (ConnectionPoolTimeoutException e) {
+            return false;
+        }
+    }
+
+    private static String gunzip( byte[] compressed ) throws IOException {
+
+        InputStream input = new GZIPInputStream( new ByteArrayInputStream( compressed ) );
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int read;
+        while (( read = input.read( buffer ) ) != -1) {
+            plain.write( buffer, 0, read );
+        }
+        return plain.toString( "UTF-8" );
+    }
+
+    /**
+     * Accepts one request on the loopback interface, records its headers and body as they arrived on the wire, and answers 200.
+     */
+    static class RecordingServer extends Thread {
+
+        private final ServerSocket serverSocket;
+        private final Map<String, String> headers = new HashMap<String, String>();
+        volatile String responseBody = "";
+        private volatile byte[] body;
+        private volatile Exception failure;
+
+        RecordingServer() throws IOException {
+
+            serverSocket = new ServerSocket( 0, 1, InetAddress.getByName( "127.0.0.1" ) );
+            setDaemon( true );
+        }
+
+        String getUrl() {
+
+            return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/items";
+        }
+
+        void close() throws IOException {
+
+            serverSocket.close();
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                Socket socket = serverSocket.accept();
+                try {
+                    DataInputStream input = new DataInputStream( socket.getInputStream() );
+                    readLine( input );
+                    String line;
+                    while (( line = readLine( input ) ).length() > 0) {
+                        int colon = line.indexOf( ':' );
+                        headers.put( line.substring( 0, colon ).trim().toLowerCase( Locale.US ), line.substring( colon + 1 ).trim() );
+                    }
+
+                    body = headers.containsKey( "content-length" ) ? readFully( input, Integer.parseInt( headers.get( "content-length" ) ) ) : readChunked( input );
+
+                    OutputStream output = socket.getOutputStream();
+                    byte[] response = responseBody.getBytes( "US-ASCII" );
+                    output.write( ( "HTTP/1.1 200 OK\r\nContent-Length: " + response.length + "\r\nConnection: close\r\n\r\n" ).getBytes( "US-ASCII" ) );
+                    output.write( response );
+                    output.flush();
+                }
+                finally {
+                    socket.close();
+                }
+            }
+            catch (Exception e) {
+                failure = e;
+            }
+        }
+
+        private static String readLine( DataInputStream input ) throws IOException {
+
+            StringBuilder line = new StringBuilder();
+            int c;
+            while (( c = input.read() ) != '\n') {
+                if ( c == -1 ) {
+                    throw new IOException( "Connection closed mid-line." );
+                }
+                if ( c != '\r' ) {
+                    line.append( (char) c );
+                }
+            }
+            return line.toString();
+        }
+
+        private static byte[] readFully( DataInputStream input, int length ) throws IOException {
+
+            byte[] bytes = new byte[length];
+            input.readFully( bytes );
+            return bytes;
+        }
+
+        private static byte[] readChunked( DataInputStream input ) throws IOException {
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            int size;
+            while (( size = Integer.parseInt( readLine( input ).split( ";" )[0].trim(), 16 ) ) > 0) {
+                bytes.write( readFully( input, size ) );
+                readLine( input );
+            }
+            readLine( input );
+            return bytes.toByteArray();
+        }
+    }
+}
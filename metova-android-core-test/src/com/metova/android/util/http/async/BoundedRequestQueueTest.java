@@ -0,0 +1,136 @@
+package com.metova.android.util.http.async;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.http.client.methods.HttpGet;
+
+public class BoundedRequestQueueTest extends TestCase {
+
+    public void testFifoAcrossWraparound() {
+
+        BoundedRequestQueue queue = new BoundedRequestQueue( 3 );
+        for (int i = 0; i < 10; i++) {
+            assertTrue( queue.offer( request( i ) ) );
+            assertTrue( queue.offer( request( i + 100 ) ) );
+            assertEquals( i, indexOf( queue.poll() ) );
+            assertEquals( i + 100, indexOf( queue.poll() ) );
+        }
+        assertNull( queue.poll() );
+        assertEquals( 0, queue.size() );
+    }
+
+    public void testOfferFailsWhenFull() {
+
+        BoundedRequestQueue queue = new BoundedRequestQueue( 2 );
+        assertTrue( queue.offer( request( 1 ) ) );
+        assertTrue( queue.offer( request( 2 ) ) );
+        assertFalse( queue.offer( request( 3 ) ) );
+        assertEquals( 2, queue.size() );
+        assertEquals( 0, queue.remainingCapacity() );
+        assertEquals( 1, indexOf( queue.peek() ) );
+    }
+
+    public void testTakeWaitsForOffer() throws Exception {
+
+        final BoundedRequestQueue queue = new BoundedRequestQueue( 1 );
+        final List<AsyncHttpRequestBase> taken = Collections.synchronizedList( new ArrayList<AsyncHttpRequestBase>() );
+        final CountDownLatch done = new CountDownLatch( 1 );
+        new Thread() {
+
+            @Override
+            public void run() {
+
+                try {
+                    taken.add( queue.take() );
+                }
+                catch (InterruptedException e) {
+                    //leave taken empty
+                }
+                done.countDown();
+            }
+        }.start();
+
+        Thread.sleep( 100 );
+        queue.offer( request( 7 ) );
+
+        assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 7, indexOf( taken.get( 0 ) ) );
+    }
+
+    public void testPutWaitsForRoom() throws Exception {
+
+        final BoundedRequestQueue queue = new BoundedRequestQueue( 1 );
+        queue.offer( request( 1 ) );
+        final CountDownLatch done = new CountDownLatch( 1 );
+        new Thread() {
+
+            @Override
+            public void run() {
+
+                try {
+                    queue.put( request( 2 ) );
+                    done.countDown();
+                }
+                catch (InterruptedException e) {
+                    //leave done open
+                }
+            }
+        }.start();
+
+        assertFalse( done.await( 100, TimeUnit.MILLISECONDS ) );
+        assertEquals( 1, indexOf( queue.take() ) );
+        assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 2, indexOf( queue.take() ) );
+    }
+
+    public void testConcurrentProducersLoseNothing() throws Exception {
+
+        final BoundedRequestQueue queue = new BoundedRequestQueue( 16 );
+        final int producers = 4;
+        final int perProducer = 500;
+        for (int p = 0; p < producers; p++) {
+            final int offset = p * perProducer;
+            new Thread() {
+
+                @Override
+                public void run() {
+
+                    for (int i = 0; i < perProducer; i++) {
+                        try {
+                            queue.put( request( offset + i ) );
+                        }
+                        catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            }.start();
+        }
+
+        Set<Integer> seen = new HashSet<Integer>();
+        for (int i = 0; i < producers * perProducer; i++) {
+            AsyncHttpRequestBase request = queue.poll( 5, TimeUnit.SECONDS );
+            assertNotNull( request );
+            assertTrue( seen.add( indexOf( request ) ) );
+        }
+        assertNull( queue.poll() );
+    }
+
+    private static AsyncHttpRequestBase request( int index ) {
+
+        return new AsyncHttpRequestBase( new HttpGet( "http://example.com/" + index ) );
+    }
+
+    private static int indexOf( AsyncHttpRequestBase request ) {
+
+        return Integer.parseInt( request.getRequest().getURI().getPath().substring( 1 ) );
+    }
+}
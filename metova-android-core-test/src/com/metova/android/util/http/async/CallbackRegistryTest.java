@@ -0,0 +1,80 @@
+package com.metova.android.util.http.async;
+
+import junit.framework.TestCase;
+
+import com.metova.android.util.http.response.Response;
+
+public class CallbackRegistryTest extends TestCase {
+
+    private CallbackRegistry registry;
+
+    @Override
+    public void setUp() {
+
+        registry = new CallbackRegistry();
+    }
+
+    public void testRegisteredFactoryIsUsedForItsKey() {
+
+        registry.registerRetryStrategy( "never", new CallbackRegistry.Factory<RetryStrategy>() {
+
+            @Override
+            public RetryStrategy create() {
+
+                return new NeverRetryStrategy();
+            }
+        } );
+
+        RetryStrategy first = registry.createRetryStrategy( "never" );
+        assertTrue( first instanceof NeverRetryStrategy );
+        assertNotSame( first, registry.createRetryStrategy( "never" ) );
+    }
+
+    public void testUnknownKeyFails() {
+
+        try {
+            registry.getCallback( "missing" );
+            fail( "Expected an IllegalArgumentException." );
+        }
+        catch (IllegalArgumentException e) {
+            //success
+        }
+    }
+
+    public void testCallbackTypeIsInstantiatedOnce() {
+
+        AsyncHttpResponseCallback callback = registry.getCallback( NoOpCallback.class );
+        assertSame( callback, registry.getCallback( NoOpCallback.class ) );
+    }
+
+    public void testRegistrationByTypeNameReplacesReflection() {
+
+        NoOpCallback registered = new NoOpCallback();
+        registry.registerCallback( NoOpCallback.class.getName(), registered );
+
+        assertSame( registered, registry.getCallback( NoOpCallback.class ) );
+    }
+
+    public void testDefaultRegistryKnowsTheDefaultRetryStrategy() {
+
+        assertTrue( CallbackRegistry.getDefault().hasRetryStrategy( DefaultRetryStrategy.class.getName() ) );
+        assertTrue( CallbackRegistry.getDefault().createRetryStrategy( DefaultRetryStrategy.class ) instanceof DefaultRetryStrategy );
+    }
+
+    static class NoOpCallback implements AsyncHttpResponseCallback {
+
+        @Override
+        public void onResponseReceived( Response response ) {
+
+        }
+    }
+
+    static class NeverRetryStrategy implements RetryStrategy {
+
+        @Override
+        public boolean onRetry( Response response, Throwable throwable ) {
+
+            return false;
+        }
+    }
+}
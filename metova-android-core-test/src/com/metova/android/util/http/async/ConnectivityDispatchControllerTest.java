@@ -0,0 +1,168 @@
+package com.metova.android.util.http.async;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.metova.android.util.net.ConnectivitySource;
+import com.metova.android.util.net.NetworkState;
+
+public class ConnectivityDispatchControllerTest extends TestCase {
+
+    private static final NetworkState WIFI = new NetworkState( true, "WIFI", false );
+    private static final NetworkState MOBILE = new NetworkState( true, "MOBILE", true );
+
+    private HttpClient mockHttpClient;
+    private QueuedHttpClient queuedHttpClient;
+    private FakeConnectivitySource source;
+    private ConnectivityDispatchController controller;
+
+    @Override
+    public void setUp() throws Exception {
+
+        mockHttpClient = mock( HttpClient.class );
+        HttpResponse success = mock( HttpResponse.class, RETURNS_DEEP_STUBS );
+        when( success.getStatusLine().getStatusCode() ).thenReturn( 200 );
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenReturn( success );
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, Executors.newFixedThreadPool( 3 ), new LinkedBlockingQueue<AsyncHttpRequestBase>(), null );
+        source = new FakeConnectivitySource();
+        controller = new ConnectivityDispatchController( queuedHttpClient, source );
+        controller.setSettleDelayMillis( 0 );
+    }
+
+    @Override
+    public void tearDown() {
+
+        controller.stop();
+        queuedHttpClient.stop();
+    }
+
+    public void testRequestsWaitWhileDisconnected() throws Exception {
+
+        source.networkState = NetworkState.DISCONNECTED;
+        controller.start();
+        queuedHttpClient.start();
+
+        HttpPost request = new HttpPost( "http://example.com/sync" );
+        queuedHttpClient.submit( request );
+        Thread.sleep( 300 );
+        verify( mockHttpClient, never() ).execute( any( HttpUriRequest.class ) );
+        assertTrue( queuedHttpClient.isPaused() );
+
+        source.change( MOBILE );
+        verify( mockHttpClient, timeout( 2000 ) ).execute( eq( request ) );
+        assertFalse( queuedHttpClient.isPaused() );
+    }
+
+    public void testWifiOnlyRequestWaitsForWifi() throws Exception {
+
+        source.networkState = MOBILE;
+        controller.start();
+        queuedHttpClient.start();
+
+        HttpPost upload = new HttpPost( "http://example.com/upload" );
+        AsyncHttpRequestBase wifiOnly = new AsyncHttpRequestBase( upload );
+        wifiOnly.setNetworkConstraint( NetworkConstraint.WIFI );
+        HttpGet status = new HttpGet( "http://example.com/status" );
+        queuedHttpClient.submit( wifiOnly );
+        queuedHttpClient.submit( new AsyncHttpRequestBase( status ) );
+
+        verify( mockHttpClient, timeout( 2000 ) ).execute( eq( status ) );
+        verify( mockHttpClient, never() ).execute( eq( upload ) );
+        assertEquals( 1, queuedHttpClient.getParkedRequestCount() );
+
+        source.change( WIFI );
+        verify( mockHttpClient, timeout( 2000 ) ).execute( eq( upload ) );
+    }
+
+    public void testDisconnectDoesNotInterruptRequestInFlight() throws Exception {
+
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch finish = new CountDownLatch( 1 );
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenAnswer( new Answer<HttpResponse>() {
+
+            @Override
+            public HttpResponse answer( InvocationOnMock invocation ) throws Throwable {
+
+                started.countDown();
+                try {
+                    finish.await( 5, TimeUnit.SECONDS );
+                }
+                catch (InterruptedException e) {
+                    interrupted.set( true );
+                }
+                return mock( HttpResponse.class, RETURNS_DEEP_STUBS );
+            }
+        } );
+
+        source.networkState = WIFI;
+        controller.start();
+        queuedHttpClient.start();
+        queuedHttpClient.submit( new HttpPost( "http://example.com/sync" ) );
+        assertTrue( started.await( 2, TimeUnit.SECONDS ) );
+
+        source.change( NetworkState.DISCONNECTED );
+        assertTrue( queuedHttpClient.isPaused() );
+        finish.countDown();
+        Thread.sleep( 200 );
+
+        assertFalse( interrupted.get() );
+    }
+
+    static class FakeConnectivitySource implements ConnectivitySource {
+
+        private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+        private volatile NetworkState networkState = NetworkState.DISCONNECTED;
+
+        public void change( NetworkState networkState ) {
+
+            this.networkState = networkState;
+            for (Listener listener : listeners) {
+                listener.onNetworkStateChanged( networkState );
+            }
+        }
+
+        @Override
+        public NetworkState getNetworkState() {
+
+            return networkState;
+        }
+
+        @Override
+        public void addListener( Listener listener ) {
+
+            listeners.add( listener );
+        }
+
+        @Override
+        public void removeListener( Listener listener ) {
+
+            listeners.remove( listener );
+        }
+    }
+}
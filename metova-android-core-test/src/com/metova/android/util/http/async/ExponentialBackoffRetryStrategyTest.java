@@ -0,0 +1,95 @@
+package com.metova.android.util.http.async;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+
+import com.metova.android.util.http.response.Response;
+
+public class ExponentialBackoffRetryStrategyTest extends TestCase {
+
+    private ExponentialBackoffRetryStrategy retryStrategy;
+
+    @Override
+    public void setUp() {
+
+        retryStrategy = new ExponentialBackoffRetryStrategy();
+    }
+
+    public void testServerErrorsAreRetried() {
+
+        assertTrue( retryStrategy.onRetry( createResponse( 503, null ), null ) );
+        assertTrue( retryStrategy.onRetry( createResponse( 429, null ), null ) );
+    }
+
+    public void testClientErrorsAreNotRetried() {
+
+        assertFalse( retryStrategy.onRetry( createResponse( 404, null ), null ) );
+    }
+
+    public void testConnectionFailuresAreRetried() {
+
+        Response response = new Response();
+        response.setFailedRequest( true );
+
+        assertTrue( retryStrategy.onRetry( response, null ) );
+        assertTrue( retryStrategy.onRetry( null, new IOException() ) );
+    }
+
+    public void testOtherExceptionsAreNotRetried() {
+
+        assertFalse( retryStrategy.onRetry( null, new IllegalStateException() ) );
+    }
+
+    public void testGivesUpAfterMaxRetries() {
+
+        Response response = createResponse( 500, null );
+        for (int i = 0; i < retryStrategy.getMaxRetries(); i++) {
+            assertTrue( retryStrategy.onRetry( response, null ) );
+        }
+        assertFalse( retryStrategy.onRetry( response, null ) );
+    }
+
+    public void testDelayIsJitteredWithinExponentialCeiling() {
+
+        Response response = createResponse( 500, null );
+        for (int attempt = 1; attempt <= 4; attempt++) {
+
+            retryStrategy.onRetry( response, null );
+            long ceiling = retryStrategy.getBaseDelayMillis() << ( attempt - 1 );
+            long delay = retryStrategy.getRetryDelayMillis( response, null );
+            assertTrue( "delay " + delay + " exceeds " + ceiling, delay >= 0 && delay <= ceiling );
+        }
+    }
+
+    public void testRetryAfterSecondsIsHonoured() {
+
+        Response response = createResponse( 503, "120" );
+
+        retryStrategy.onRetry( response, null );
+        assertEquals( 120000, retryStrategy.getRetryDelayMillis( response, null ) );
+    }
+
+    public void testMalformedRetryAfterFallsBackToBackoff() {
+
+        Response response = createResponse( 503, "soon" );
+
+        retryStrategy.onRetry( response, null );
+        assertTrue( retryStrategy.getRetryDelayMillis( response, null ) <= retryStrategy.getBaseDelayMillis() );
+    }
+
+    private static Response createResponse( int statusCode, String retryAfter ) {
+
+        BasicHttpResponse httpResponse = new BasicHttpResponse( HttpVersion.HTTP_1_1, statusCode, null );
+        if ( retryAfter != null ) {
+            httpResponse.addHeader( "Retry-After", retryAfter );
+        }
+
+        Response response = new Response();
+        response.setHttpResponse( httpResponse );
+        return response;
+    }
+}
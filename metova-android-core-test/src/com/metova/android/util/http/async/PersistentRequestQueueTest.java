@@ -0,0 +1,191 @@
+package com.metova.android.util.http.async;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import junit.framework.TestCase;
+
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+
+import com.metova.android.util.http.response.Response;
+
+public class PersistentRequestQueueTest extends TestCase {
+
+    private File file;
+    private PersistentRequestQueue queue;
+
+    @Override
+    public void setUp() throws IOException {
+
+        file = File.createTempFile( "requests", ".queue" );
+        file.delete();
+        queue = new PersistentRequestQueue( file );
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+
+        queue.close();
+        file.delete();
+    }
+
+    public void testRequestSurvivesReopen() throws Exception {
+
+        HttpPost post = new HttpPost( "http://example.com/widgets/1" );
+        post.addHeader( "X-Token", "abc" );
+        post.setEntity( new StringEntity( "{\"quantity\":3}" ) );
+        queue.offer( new AsyncHttpRequestBase( post, NoOpCallback.class, "widget-1" ) );
+
+        reopen();
+
+        assertEquals( 1, queue.size() );
+        AsyncHttpRequestBase restored = queue.take();
+        assertEquals( "POST", restored.getRequest().getMethod() );
+        assertEquals( "http://example.com/widgets/1", restored.getRequest().getURI().toString() );
+        assertEquals( "abc", restored.getRequest().getFirstHeader( "X-Token" ).getValue() );
+        assertEquals( "{\"quantity\":3}", EntityUtils.toString( ( (HttpPost) restored.getRequest() ).getEntity() ) );
+        assertEquals( NoOpCallback.class, restored.getCallbackType() );
+        assertEquals( "widget-1", restored.getOrderingKey() );
+    }
+
+    public void testAcknowledgedRequestsStayTakenAfterReopen() throws Exception {
+
+        queue.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/1" ) ) );
+        queue.offer( new AsyncHttpRequestBase( new HttpDelete( "http://example.com/2" ) ) );
+        queue.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/3" ) ) );
+        queue.acknowledge( queue.take() );
+
+        reopen();
+
+        assertEquals( 2, queue.size() );
+        assertEquals( "http://example.com/2", queue.take().getRequest().getURI().toString() );
+        assertEquals( "http://example.com/3", queue.take().getRequest().getURI().toString() );
+    }
+
+    public void testUnacknowledgedRequestsAreRestoredAfterReopen() throws Exception {
+
+        queue.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/1" ) ) );
+        queue.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/2" ) ) );
+        queue.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/3" ) ) );
+        AsyncHttpRequestBase first = queue.take();
+        AsyncHttpRequestBase second = queue.take();
+        queue.acknowledge( second );
+        assertEquals( 1, queue.getUnacknowledgedCount() );
+        assertEquals( 1, queue.size() );
+
+        reopen();
+
+        //the request taken but never acknowledged, as if the process died while dispatching it, comes back in its place
+        assertEquals( 0, queue.getUnacknowledgedCount() );
+        assertEquals( 2, queue.size() );
+        assertEquals( first.getRequest().getURI(), queue.take().getRequest().getURI() );
+        assertEquals( "http://example.com/3", queue.take().getRequest().getURI().toString() );
+    }
+
+    public void testAcknowledgeIgnoresUnknownRequests() throws Exception {
+
+        queue.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/1" ) ) );
+        AsyncHttpRequestBase taken = queue.take();
+        queue.acknowledge( taken );
+        queue.acknowledge( taken );
+        queue.acknowledge( new AsyncHttpRequestBase( new HttpGet( "http://example.com/1" ) ) );
+
+        reopen();
+
+        assertEquals( 0, queue.size() );
+    }
+
+    public void testCompactionPreservesOrder() throws Exception {
+
+        queue.setCompactionThreshold( 4 );
+        for (int i = 0; i < 10; i++) {
+            queue.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/" + i ) ) );
+        }
+        AsyncHttpRequestBase unacknowledged = null;
+        for (int i = 0; i < 6; i++) {
+            AsyncHttpRequestBase taken = queue.take();
+            if ( i == 2 ) {
+                unacknowledged = taken;
+            }
+            else {
+                queue.acknowledge( taken );
+            }
+        }
+
+        reopen();
+
+        //compaction keeps the unacknowledged request ahead of the ones never taken
+        assertEquals( unacknowledged.getRequest().getURI(), queue.take().getRequest().getURI() );
+        for (int i = 6; i < 10; i++) {
+            assertEquals( "http://example.com/" + i, queue.take().getRequest().getURI().toString() );
+        }
+        assertNull( queue.poll() );
+    }
+
+    public void testAcknowledgingAfterCompactionRemovesTheRequest() throws Exception {
+
+        queue.setCompactionThreshold( 2 );
+        for (int i = 0; i < 5; i++) {
+            queue.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/" + i ) ) );
+        }
+        AsyncHttpRequestBase held = queue.take();
+        for (int i = 1; i < 4; i++) {
+            queue.acknowledge( queue.take() );
+        }
+
+        //compacted while held was taken, so its entry moved
+        queue.acknowledge( held );
+        reopen();
+
+        assertEquals( 1, queue.size() );
+        assertEquals( "http://example.com/4", queue.take().getRequest().getURI().toString() );
+    }
+
+    public void testIncompleteTrailingEntryIsDiscarded() throws Exception {
+
+        queue.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/kept" ) ) );
+        queue.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/torn" ) ) );
+        queue.close();
+
+        RandomAccessFile raw = new RandomAccessFile( file, "rw" );
+        raw.setLength( raw.length() - 3 );
+        raw.close();
+
+        queue = new PersistentRequestQueue( file );
+        assertEquals( 1, queue.size() );
+        assertEquals( "http://example.com/kept", queue.take().getRequest().getURI().toString() );
+    }
+
+    public void testOfferRespectsCapacity() throws Exception {
+
+        queue.close();
+        queue = new PersistentRequestQueue( file, 1 );
+
+        assertTrue( queue.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/1" ) ) ) );
+        assertFalse( queue.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/2" ) ) ) );
+        assertEquals( 0, queue.remainingCapacity() );
+    }
+
+    private void reopen() throws IOException {
+
+        queue.close();
+        queue = new PersistentRequestQueue( file );
+    }
+
+    static class NoOpCallback implements AsyncHttpResponseCallback {
+
+        public NoOpCallback() {
+
+        }
+
+        @Override
+        public void onResponseReceived( Response response ) {
+
+        }
+    }
+}
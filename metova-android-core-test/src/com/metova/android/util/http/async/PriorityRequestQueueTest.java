@@ -0,0 +1,89 @@
+package com.metova.android.util.http.async;
+
+import junit.framework.TestCase;
+
+import org.apache.http.client.methods.HttpGet;
+
+public class PriorityRequestQueueTest extends TestCase {
+
+    private PriorityRequestQueue queue;
+
+    @Override
+    public void setUp() {
+
+        queue = new PriorityRequestQueue();
+    }
+
+    public void testHigherPriorityTakenFirst() throws InterruptedException {
+
+        queue.offer( createRequest( "background", Priority.BACKGROUND ) );
+        queue.offer( createRequest( "normal", Priority.NORMAL ) );
+        queue.offer( createRequest( "interactive", Priority.INTERACTIVE ) );
+
+        assertEquals( "/interactive", queue.take().getRequest().getURI().getPath() );
+        assertEquals( "/normal", queue.take().getRequest().getURI().getPath() );
+        assertEquals( "/background", queue.take().getRequest().getURI().getPath() );
+    }
+
+    public void testSamePriorityIsFifo() throws InterruptedException {
+
+        queue.offer( createRequest( "first", Priority.NORMAL ) );
+        queue.offer( createRequest( "second", Priority.NORMAL ) );
+
+        assertEquals( "/first", queue.take().getRequest().getURI().getPath() );
+        assertEquals( "/second", queue.take().getRequest().getURI().getPath() );
+    }
+
+    public void testAgingPreventsStarvation() throws InterruptedException {
+
+        queue.setAgingIntervalMillis( 50 );
+        queue.offer( createRequest( "background", Priority.BACKGROUND ) );
+
+        //two aging intervals promote the background request to interactive, and it has waited longest
+        Thread.sleep( 120 );
+        queue.offer( createRequest( "interactive", Priority.INTERACTIVE ) );
+
+        assertEquals( "/background", queue.take().getRequest().getURI().getPath() );
+    }
+
+    public void testExpiredRequestsAreTakenFirst() throws InterruptedException {
+
+        queue.offer( createRequest( "live", Priority.INTERACTIVE ) );
+        AsyncHttpRequestBase expired = createRequest( "expired", Priority.BACKGROUND );
+        expired.setDeadline( System.currentTimeMillis() - 1 );
+        queue.offer( expired );
+
+        //handed out for QueuedHttpClient to drop, rather than dropped where nobody hears of it
+        assertSame( expired, queue.take() );
+        assertEquals( "/live", queue.take().getRequest().getURI().getPath() );
+        assertNull( queue.poll() );
+    }
+
+    public void testFullQueueRefusesOffer() {
+
+        queue = new PriorityRequestQueue( 1 );
+
+        assertTrue( queue.offer( createRequest( "first", Priority.NORMAL ) ) );
+        assertFalse( queue.offer( createRequest( "second", Priority.INTERACTIVE ) ) );
+        assertEquals( 0, queue.remainingCapacity() );
+    }
+
+    public void testPollLastTakesNewestOfLowestPriority() throws InterruptedException {
+
+        queue.offer( createRequest( "background1", Priority.BACKGROUND ) );
+        queue.offer( createRequest( "background2", Priority.BACKGROUND ) );
+        queue.offer( createRequest( "interactive", Priority.INTERACTIVE ) );
+
+        assertEquals( "/background2", queue.pollLast().getRequest().getURI().getPath() );
+        assertEquals( "/interactive", queue.take().getRequest().getURI().getPath() );
+        assertEquals( "/background1", queue.pollLast().getRequest().getURI().getPath() );
+        assertNull( queue.pollLast() );
+    }
+
+    private static AsyncHttpRequestBase createRequest( String path, Priority priority ) {
+
+        AsyncHttpRequestBase request = new AsyncHttpRequestBase( new HttpGet( "http://example.com/" + path ) );
+        request.setPriority( priority );
+        return request;
+    }
+}
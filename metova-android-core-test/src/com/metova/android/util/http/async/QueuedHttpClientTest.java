@@ -10,15 +10,29 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.TestCase;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpDelete;
@@ -26,9 +40,17 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
 import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.metova.android.util.http.response.Response;
+import com.metova.android.util.net.NetworkState;
+import com.metova.android.util.net.Networks;
 
 public class QueuedHttpClientTest extends TestCase {
 
@@ -213,6 +235,417 @@ public class QueuedHttpClientTest extends TestCase {
         assertTrue( NeverCalledRetryStrategy.neverCalled );
     }
 
+    public void testConcurrentDispatchRunsRequestsInParallel() throws Exception {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, Executors.newFixedThreadPool( 3 ), blockingQueue, null );
+        queuedHttpClient.setMaxConcurrentRequests( 2 );
+
+        final CountDownLatch started = new CountDownLatch( 2 );
+        final CountDownLatch finish = new CountDownLatch( 1 );
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenAnswer( new BlockingAnswer( started, finish ) );
+
+        queuedHttpClient.submit( new AsyncHttpRequestBase( new HttpPost(), null, "upload" ) );
+        queuedHttpClient.submit( new AsyncHttpRequestBase( new HttpGet(), null, "status" ) );
+        queuedHttpClient.start();
+
+        //both requests are blocked inside execute, so they can only both start if dispatched concurrently
+        assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+        finish.countDown();
+        queuedHttpClient.stop();
+    }
+
+    public void testConcurrentDispatchPreservesOrderingKey() throws Exception {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, Executors.newFixedThreadPool( 3 ), blockingQueue, null );
+        queuedHttpClient.setMaxConcurrentRequests( 2 );
+
+        final CountDownLatch started = new CountDownLatch( 2 );
+        final CountDownLatch finish = new CountDownLatch( 1 );
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenAnswer( new BlockingAnswer( started, finish ) );
+
+        HttpRequestBase request1 = new HttpPost();
+        HttpRequestBase request2 = new HttpDelete();
+        queuedHttpClient.submit( new AsyncHttpRequestBase( request1, null, "resource" ) );
+        queuedHttpClient.submit( new AsyncHttpRequestBase( request2, null, "resource" ) );
+        queuedHttpClient.start();
+
+        //the second request shares the first one's key, so it must wait for the first to complete
+        assertFalse( started.await( 500, TimeUnit.MILLISECONDS ) );
+        assertEquals( 1, queuedHttpClient.getParkedRequestCount() );
+
+        finish.countDown();
+        assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+        queuedHttpClient.stop();
+
+        InOrder inOrder = inOrder( mockHttpClient );
+        inOrder.verify( mockHttpClient ).execute( eq( request1 ) );
+        inOrder.verify( mockHttpClient ).execute( eq( request2 ) );
+    }
+
+    public void testRejectedLaunchIsRetriedWithoutAnotherSubmit() throws Exception {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, new RejectingExecutor( 3, 2 ), blockingQueue, null );
+        queuedHttpClient.setMaxConcurrentRequests( 2 );
+
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch finish = new CountDownLatch( 0 );
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenAnswer( new BlockingAnswer( started, finish ) );
+
+        queuedHttpClient.submit( new HttpGet() );
+        queuedHttpClient.start();
+
+        //both immediate launches are rejected; the request is sent when the dispatch loop checks again, not when another one arrives
+        assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+        queuedHttpClient.stop();
+    }
+
+    public void testDelayedRetryDoesNotBlockOtherRequests() throws Exception {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, blockingQueue, DelayedRetryOnceStrategy.class );
+
+        HttpResponse failure = mock( HttpResponse.class, RETURNS_DEEP_STUBS );
+        HttpResponse success = mock( HttpResponse.class, RETURNS_DEEP_STUBS );
+        when( failure.getStatusLine().getStatusCode() ).thenReturn( 503 );
+        when( success.getStatusLine().getStatusCode() ).thenReturn( 200 );
+
+        HttpRequestBase request1 = new HttpPost();
+        HttpRequestBase request2 = new HttpGet();
+        when( mockHttpClient.execute( eq( request1 ) ) ).thenReturn( failure, success );
+        when( mockHttpClient.execute( eq( request2 ) ) ).thenReturn( success );
+
+        queuedHttpClient.submit( request1 );
+        queuedHttpClient.submit( request2 );
+        queuedHttpClient.start();
+
+        Thread.sleep( DelayedRetryOnceStrategy.DELAY_MILLIS * 3 );
+
+        //the second request is sent while the first one waits to be retried
+        InOrder inOrder = inOrder( mockHttpClient );
+        inOrder.verify( mockHttpClient ).execute( eq( request1 ) );
+        inOrder.verify( mockHttpClient ).execute( eq( request2 ) );
+        inOrder.verify( mockHttpClient ).execute( eq( request1 ) );
+    }
+
+    public void testBatchedRequestsShareOneCall() throws Exception {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, blockingQueue, null );
+        LineBatchEndpoint endpoint = new LineBatchEndpoint();
+        endpoint.setMaxBatchSize( 3 );
+        endpoint.setLingerMillis( 200 );
+        queuedHttpClient.addBatchEndpoint( endpoint );
+
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenAnswer( new LineBatchAnswer() );
+
+        RecordingCallback.reset( 5 );
+        for (int i = 0; i < 4; i++) {
+            queuedHttpClient.submit( new HttpPost( "http://example.com/events/" + i ), RecordingCallback.class );
+        }
+        queuedHttpClient.submit( new HttpGet( "http://example.com/profile" ), RecordingCallback.class );
+        queuedHttpClient.start();
+
+        //the first three fill a batch, the fourth lingers until its batch is sent anyway
+        assertTrue( RecordingCallback.received.await( 5, TimeUnit.SECONDS ) );
+        queuedHttpClient.stop();
+
+        verify( mockHttpClient, times( 3 ) ).execute( any( HttpUriRequest.class ) );
+        List<String> bodies = new ArrayList<String>( RecordingCallback.bodies );
+        Collections.sort( bodies );
+        assertEquals( Arrays.asList( "/profile", "ok-0", "ok-1", "ok-2", "ok-3" ), bodies );
+    }
+
+    public void testBatchKeepsItsRequestsNetworkConstraint() throws Exception {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, blockingQueue, null );
+        queuedHttpClient.setNetworkState( new NetworkState( true, Networks.NETWORK_MOBILE, true ) );
+        LineBatchEndpoint endpoint = new LineBatchEndpoint();
+        endpoint.setMaxBatchSize( 2 );
+        endpoint.setLingerMillis( 200 );
+        queuedHttpClient.addBatchEndpoint( endpoint );
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenAnswer( new LineBatchAnswer() );
+
+        RecordingCallback.reset( 1 );
+        for (int i = 0; i < 2; i++) {
+            AsyncHttpRequestBase wifiOnly = new AsyncHttpRequestBase( new HttpPost( "http://example.com/events/" + i ), RecordingCallback.class );
+            wifiOnly.setNetworkConstraint( NetworkConstraint.WIFI );
+            queuedHttpClient.submit( wifiOnly );
+        }
+        queuedHttpClient.submit( new HttpPost( "http://example.com/events/2" ), RecordingCallback.class );
+        queuedHttpClient.start();
+
+        //the full Wi-Fi batch stays parked on the cellular network, the other batch is sent once it has lingered
+        assertTrue( RecordingCallback.received.await( 5, TimeUnit.SECONDS ) );
+        queuedHttpClient.stop();
+
+        verify( mockHttpClient, times( 1 ) ).execute( any( HttpUriRequest.class ) );
+        assertEquals( Arrays.asList( "ok-2" ), RecordingCallback.bodies );
+        assertEquals( 1, queuedHttpClient.getParkedRequestCount() );
+    }
+
+    public void testRequestsWaitingForNetworkDoNotFillParking() throws Exception {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, blockingQueue, null );
+        queuedHttpClient.setNetworkState( new NetworkState( true, Networks.NETWORK_MOBILE, true ) );
+        queuedHttpClient.setMaxParkedRequests( 2 );
+        HttpResponse mockHttpResponse = mock( HttpResponse.class, RETURNS_DEEP_STUBS );
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenReturn( mockHttpResponse );
+
+        for (int i = 0; i < 3; i++) {
+            AsyncHttpRequestBase wifiOnly = new AsyncHttpRequestBase( new HttpGet( "http://example.com/wifi/" + i ) );
+            wifiOnly.setNetworkConstraint( NetworkConstraint.WIFI );
+            queuedHttpClient.submit( wifiOnly );
+        }
+        HttpRequestBase request = new HttpGet( "http://example.com/any" );
+        queuedHttpClient.submit( request, WakingCallback.class );
+
+        WakingCallback.lock = this;
+        synchronized (this) {
+            queuedHttpClient.start();
+            wait( 5000 );
+        }
+        assertTrue( WakingCallback.calledBack );
+
+        verify( mockHttpClient ).execute( eq( request ) );
+        verifyNoMoreInteractions( mockHttpClient );
+        assertEquals( 3, queuedHttpClient.getParkedRequestCount() );
+    }
+
+    public void testKeyedRequestsAreNotBatched() throws Exception {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, blockingQueue, null );
+        LineBatchEndpoint endpoint = new LineBatchEndpoint();
+        endpoint.setMaxBatchSize( 2 );
+        queuedHttpClient.addBatchEndpoint( endpoint );
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenAnswer( new LineBatchAnswer() );
+
+        RecordingCallback.reset( 2 );
+        List<HttpRequestBase> requests = new ArrayList<HttpRequestBase>();
+        for (int i = 0; i < 2; i++) {
+            requests.add( new HttpPost( "http://example.com/events/" + i ) );
+            queuedHttpClient.submit( new AsyncHttpRequestBase( requests.get( i ), RecordingCallback.class, "events" ) );
+        }
+        queuedHttpClient.start();
+
+        assertTrue( RecordingCallback.received.await( 5, TimeUnit.SECONDS ) );
+        queuedHttpClient.stop();
+
+        InOrder inOrder = inOrder( mockHttpClient );
+        inOrder.verify( mockHttpClient ).execute( eq( requests.get( 0 ) ) );
+        inOrder.verify( mockHttpClient ).execute( eq( requests.get( 1 ) ) );
+        verifyNoMoreInteractions( mockHttpClient );
+    }
+
+    public void testFullQueueRejectsByDefault() {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, new BoundedRequestQueue( 1 ), null );
+        queuedHttpClient.submit( new HttpGet( "http://example.com/1" ) );
+
+        try {
+            queuedHttpClient.submit( new HttpGet( "http://example.com/2" ) );
+            fail( "Expected an IllegalStateException." );
+        }
+        catch (IllegalStateException e) {
+            //success
+        }
+    }
+
+    public void testDropNewestFailsTheSubmittedRequest() {
+
+        BoundedRequestQueue queue = new BoundedRequestQueue( 1 );
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, queue, null );
+        queuedHttpClient.setOverflowPolicy( OverflowPolicy.DROP_NEWEST );
+
+        FailureCallback.reset();
+        assertTrue( queuedHttpClient.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/1" ), FailureCallback.class ) ) );
+        assertFalse( queuedHttpClient.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/2" ), FailureCallback.class ) ) );
+
+        assertEquals( 1, FailureCallback.failures.size() );
+        assertEquals( "http://example.com/1", queue.peek().getRequest().getURI().toString() );
+    }
+
+    public void testDropOldestEvictsTheHead() {
+
+        BoundedRequestQueue queue = new BoundedRequestQueue( 2 );
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, queue, null );
+        queuedHttpClient.setOverflowPolicy( OverflowPolicy.DROP_OLDEST );
+
+        FailureCallback.reset();
+        for (int i = 1; i <= 3; i++) {
+            assertTrue( queuedHttpClient.offer( new AsyncHttpRequestBase( new HttpGet( "http://example.com/" + i ), FailureCallback.class ) ) );
+        }
+
+        assertEquals( 1, FailureCallback.failures.size() );
+        assertEquals( "http://example.com/2", queue.poll().getRequest().getURI().toString() );
+        assertEquals( "http://example.com/3", queue.poll().getRequest().getURI().toString() );
+    }
+
+    public void testDropOldestEvictsTheLowestPriority() {
+
+        PriorityRequestQueue queue = new PriorityRequestQueue( 2 );
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, queue, null );
+        queuedHttpClient.setOverflowPolicy( OverflowPolicy.DROP_OLDEST );
+
+        FailureCallback.reset();
+        Priority[] priorities = { Priority.INTERACTIVE, Priority.BACKGROUND, Priority.NORMAL };
+        for (int i = 0; i < priorities.length; i++) {
+            AsyncHttpRequestBase asyncRequest = new AsyncHttpRequestBase( new HttpGet( "http://example.com/" + priorities[i] ), FailureCallback.class );
+            asyncRequest.setPriority( priorities[i] );
+            assertTrue( queuedHttpClient.offer( asyncRequest ) );
+        }
+
+        assertEquals( 1, FailureCallback.failures.size() );
+        assertEquals( "http://example.com/INTERACTIVE", queue.poll().getRequest().getURI().toString() );
+        assertEquals( "http://example.com/NORMAL", queue.poll().getRequest().getURI().toString() );
+    }
+
+    public void testExpiredRequestsAreNotSent() throws Exception {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, new PriorityRequestQueue(), null );
+        HttpResponse mockHttpResponse = mock( HttpResponse.class, RETURNS_DEEP_STUBS );
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenReturn( mockHttpResponse );
+
+        AsyncHttpRequestBase expired = new AsyncHttpRequestBase( new HttpGet( "http://example.com/expired" ) );
+        expired.setDeadline( System.currentTimeMillis() - 1 );
+        queuedHttpClient.submit( expired );
+        HttpRequestBase live = new HttpGet( "http://example.com/live" );
+        queuedHttpClient.submit( live, WakingCallback.class );
+
+        WakingCallback.lock = this;
+        synchronized (this) {
+            queuedHttpClient.start();
+            wait( 5000 );
+        }
+        assertTrue( WakingCallback.calledBack );
+
+        verify( mockHttpClient ).execute( eq( live ) );
+        verifyNoMoreInteractions( mockHttpClient );
+    }
+
+    public void testKeyedCallbackRunsOnCallbackExecutor() throws Exception {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, blockingQueue, null );
+        BasicHttpResponse httpResponse = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+        httpResponse.setEntity( new StringEntity( "ok" ) );
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenReturn( httpResponse );
+
+        CallbackRegistry registry = new CallbackRegistry();
+        registry.registerCallback( "record", new RecordingCallback() );
+        queuedHttpClient.setCallbackRegistry( registry );
+        ExecutorService callbackExecutor = Executors.newSingleThreadExecutor();
+        queuedHttpClient.setCallbackExecutor( callbackExecutor );
+
+        RecordingCallback.reset( 1 );
+        AsyncHttpRequestBase asyncRequest = new AsyncHttpRequestBase( new HttpGet( "http://example.com/profile" ) );
+        asyncRequest.setCallbackKey( "record" );
+        queuedHttpClient.submit( asyncRequest );
+        queuedHttpClient.start();
+
+        assertTrue( RecordingCallback.received.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( Collections.singletonList( "ok" ), RecordingCallback.bodies );
+        callbackExecutor.shutdown();
+    }
+
+    public void testCallbackOnDispatchingThreadStreamsTheResponse() throws Exception {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, blockingQueue, null );
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenReturn( createStreamedResponse( "first" ), createStreamedResponse( "second" ) );
+
+        KeepingCallback.reset( 2 );
+        queuedHttpClient.submit( new HttpGet( "http://example.com/1" ), KeepingCallback.class );
+        queuedHttpClient.submit( new HttpGet( "http://example.com/2" ), KeepingCallback.class );
+        queuedHttpClient.start();
+
+        //not held in memory, so the first body was released once its callback returned
+        assertTrue( KeepingCallback.received.await( 5, TimeUnit.SECONDS ) );
+        HttpEntity entity = KeepingCallback.responses.get( 0 ).getEntity();
+        assertTrue( entity instanceof ConnectionEntity );
+        try {
+            entity.getContent();
+            fail( "Expected an IOException." );
+        }
+        catch (IOException e) {
+            //success
+        }
+    }
+
+    public void testCallbackOnCallbackExecutorMayReadTheResponseAfterReturning() throws Exception {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, blockingQueue, null );
+        when( mockHttpClient.execute( any( HttpUriRequest.class ) ) ).thenReturn( createStreamedResponse( "first" ), createStreamedResponse( "second" ) );
+        ExecutorService callbackExecutor = Executors.newSingleThreadExecutor();
+        queuedHttpClient.setCallbackExecutor( callbackExecutor );
+
+        KeepingCallback.reset( 2 );
+        queuedHttpClient.submit( new HttpGet( "http://example.com/1" ), KeepingCallback.class );
+        queuedHttpClient.submit( new HttpGet( "http://example.com/2" ), KeepingCallback.class );
+        queuedHttpClient.start();
+
+        //the first dispatch is over once the second callback runs, so the first response is read long after its callback returned
+        assertTrue( KeepingCallback.received.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( "first", EntityUtils.toString( KeepingCallback.responses.get( 0 ).getEntity() ) );
+        assertEquals( "second", EntityUtils.toString( KeepingCallback.responses.get( 1 ).getEntity() ) );
+        callbackExecutor.shutdown();
+    }
+
+    public void testUnregisteredCallbackKeyIsRejectedOnSubmit() {
+
+        queuedHttpClient = new QueuedHttpClient( mockHttpClient, executorService, blockingQueue, null );
+        queuedHttpClient.setCallbackRegistry( new CallbackRegistry() );
+
+        AsyncHttpRequestBase asyncRequest = new AsyncHttpRequestBase( new HttpGet( "http://example.com/profile" ) );
+        asyncRequest.setCallbackKey( "missing" );
+        try {
+            queuedHttpClient.submit( asyncRequest );
+            fail( "Expected an IllegalArgumentException." );
+        }
+        catch (IllegalArgumentException e) {
+            //success
+        }
+        assertTrue( blockingQueue.isEmpty() );
+    }
+
+    private static class BlockingAnswer implements Answer<HttpResponse> {
+
+        private final CountDownLatch started;
+        private final CountDownLatch finish;
+
+        public BlockingAnswer(CountDownLatch started, CountDownLatch finish) {
+
+            this.started = started;
+            this.finish = finish;
+        }
+
+        @Override
+        public HttpResponse answer( InvocationOnMock invocation ) throws Throwable {
+
+            started.countDown();
+            finish.await( 5, TimeUnit.SECONDS );
+            return mock( HttpResponse.class, RETURNS_DEEP_STUBS );
+        }
+    }
+
+    /**
+     * Rejects the first few requests launched on it, but never the dispatch loop, which is submitted rather than executed.
+     */
+    private static class RejectingExecutor extends ThreadPoolExecutor {
+
+        private final AtomicInteger rejections;
+
+        public RejectingExecutor(int threads, int rejections) {
+
+            super( threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>() );
+            this.rejections = new AtomicInteger( rejections );
+        }
+
+        @Override
+        public void execute( Runnable command ) {
+
+            if ( !( command instanceof Future ) && rejections.getAndDecrement() > 0 ) {
+                throw new RejectedExecutionException( "Rejected for the test." );
+            }
+            super.execute( command );
+        }
+    }
+
     static class NeverCalledRetryStrategy implements RetryStrategy {
 
         static boolean neverCalled = true;
@@ -243,6 +676,203 @@ public class QueuedHttpClientTest extends TestCase {
         }
     }
 
+    static class DelayedRetryOnceStrategy implements DelayedRetryStrategy {
+
+        static final long DELAY_MILLIS = 500;
+
+        int ctr = 0;
+
+        public DelayedRetryOnceStrategy() {
+
+        }
+
+        @Override
+        public boolean onRetry( Response response, Throwable throwable ) {
+
+            return ( ctr++ < 1 );
+        }
+
+        @Override
+        public long getRetryDelayMillis( Response response, Throwable throwable ) {
+
+            return DELAY_MILLIS;
+        }
+    }
+
+    /**
+     * Answers a batch from {@link LineBatchEndpoint} with "ok-" and the event number per line, and any other request with its path.
+     */
+    private static class LineBatchAnswer implements Answer<HttpResponse> {
+
+        @Override
+        public HttpResponse answer( InvocationOnMock invocation ) throws Throwable {
+
+            HttpUriRequest request = (HttpUriRequest) invocation.getArguments()[0];
+            String body = request.getURI().getPath();
+            if ( request instanceof HttpPost && ( (HttpPost) request ).getEntity() != null ) {
+                body = EntityUtils.toString( ( (HttpPost) request ).getEntity() ).replace( "/events/", "ok-" );
+            }
+
+            BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+            response.setEntity( new StringEntity( body ) );
+            return response;
+        }
+    }
+
+    /**
+     * Packs requests as one path per line, and expects one response body per line back.
+     */
+    static class LineBatchEndpoint extends BatchEndpoint {
+
+        @Override
+        public boolean accepts( AsyncHttpRequestBase asyncRequest ) {
+
+            return asyncRequest.getRequest().getURI().getPath().startsWith( "/events/" );
+        }
+
+        @Override
+        public HttpRequestBase pack( List<AsyncHttpRequestBase> asyncRequests ) throws IOException {
+
+            StringBuilder body = new StringBuilder();
+            for (AsyncHttpRequestBase asyncRequest : asyncRequests) {
+                body.append( asyncRequest.getRequest().getURI().getPath() ).append( '\n' );
+            }
+
+            HttpPost batch = new HttpPost( "http://example.com/batch" );
+            batch.setEntity( new StringEntity( body.toString() ) );
+            return batch;
+        }
+
+        @Override
+        public List<Response> unpack( Response batchResponse, List<AsyncHttpRequestBase> asyncRequests ) throws IOException {
+
+            List<Response> responses = new ArrayList<Response>();
+            for (String line : EntityUtils.toString( batchResponse.getEntity() ).split( "\n" )) {
+                BasicHttpResponse httpResponse = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+                httpResponse.setEntity( new StringEntity( line ) );
+
+                Response response = new Response();
+                response.setHttpResponse( httpResponse );
+                responses.add( response );
+            }
+            return responses;
+        }
+    }
+
+    static class RecordingCallback implements AsyncHttpResponseCallback {
+
+        static List<String> bodies;
+        static CountDownLatch received;
+
+        static void reset( int expected ) {
+
+            bodies = Collections.synchronizedList( new ArrayList<String>() );
+            received = new CountDownLatch( expected );
+        }
+
+        public RecordingCallback() {
+
+        }
+
+        @Override
+        public void onResponseReceived( Response response ) {
+
+            try {
+                bodies.add( EntityUtils.toString( response.getEntity() ) );
+            }
+            catch (IOException e) {
+                bodies.add( e.toString() );
+            }
+            received.countDown();
+        }
+    }
+
+    /**
+     * Keeps the responses, as a callback handing them to another thread would.
+     */
+    static class KeepingCallback implements AsyncHttpResponseCallback {
+
+        static List<Response> responses;
+        static CountDownLatch received;
+
+        static void reset( int expected ) {
+
+            responses = Collections.synchronizedList( new ArrayList<Response>() );
+            received = new CountDownLatch( expected );
+        }
+
+        public KeepingCallback() {
+
+        }
+
+        @Override
+        public void onResponseReceived( Response response ) {
+
+            responses.add( response );
+            received.countDown();
+        }
+    }
+
+    /**
+     * @return a response whose body can only be read from the connection once, like a real one
+     */
+    private static HttpResponse createStreamedResponse( String body ) {
+
+        BasicHttpResponse httpResponse = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+        httpResponse.setEntity( new ConnectionEntity( body.getBytes() ) );
+        return httpResponse;
+    }
+
+    /**
+     * Behaves like the entity of a pooled connection: consuming it releases the connection, after which the body cannot be read.
+     */
+    private static class ConnectionEntity extends InputStreamEntity {
+
+        private boolean released;
+
+        public ConnectionEntity(byte[] body) {
+
+            super( new ByteArrayInputStream( body ), body.length );
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+
+            if ( released ) {
+                throw new IOException( "Connection already released." );
+            }
+            return super.getContent();
+        }
+
+        @Override
+        public void consumeContent() throws IOException {
+
+            released = true;
+        }
+    }
+
+    static class FailureCallback implements AsyncHttpResponseCallback {
+
+        static List<String> failures;
+
+        static void reset() {
+
+            failures = Collections.synchronizedList( new ArrayList<String>() );
+        }
+
+        public FailureCallback() {
+
+        }
+
+        @Override
+        public void onResponseReceived( Response response ) {
+
+            if ( response.isFailedRequest() ) {
+                failures.add( response.getReason() );
+            }
+        }
+    }
+
     static class WakingCallback implements AsyncHttpResponseCallback {
 
         static boolean calledBack = false;
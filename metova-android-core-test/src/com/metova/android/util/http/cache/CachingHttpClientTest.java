@@ -0,0 +1,185 @@
+package com.metova.android.util.http.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.cookie.DateUtils;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import com.metova.android.util.http.FakeHttpClient;
+
+public class CachingHttpClientTest extends TestCase {
+
+    private static final String URI = "http://example.com/catalog";
+
+    private File directory;
+    private ScriptedHttpClient server;
+    private CachingHttpClient client;
+
+    @Override
+    public void setUp() throws IOException {
+
+        directory = File.createTempFile( "http", "cache" );
+        directory.delete();
+        server = new ScriptedHttpClient();
+        client = new CachingHttpClient( server, new HttpResponseCache( directory, 64 * 1024, 64 * 1024 ) );
+    }
+
+    @Override
+    public void tearDown() {
+
+        client.getCache().clear();
+        directory.delete();
+    }
+
+    public void testFreshResponseIsServedFromCache() throws Exception {
+
+        server.enqueue( response( 200, "catalog-v1", "Cache-Control", "max-age=60" ) );
+
+        assertEquals( "catalog-v1", EntityUtils.toString( client.execute( new HttpGet( URI ) ).getEntity() ) );
+        assertEquals( "catalog-v1", EntityUtils.toString( client.execute( new HttpGet( URI ) ).getEntity() ) );
+
+        assertEquals( 1, server.requests.size() );
+        assertEquals( 1, client.getHitCount() );
+    }
+
+    public void testStaleResponseIsRevalidatedWithEtag() throws Exception {
+
+        server.enqueue( response( 200, "catalog-v1", "Cache-Control", "no-cache", "ETag", "\"v1\"" ) );
+        server.enqueue( response( 304, null, "ETag", "\"v1\"" ) );
+
+        client.execute( new HttpGet( URI ) ).getEntity().consumeContent();
+        HttpGet revalidated = new HttpGet( URI );
+        HttpResponse response = client.execute( revalidated );
+
+        assertEquals( 200, response.getStatusLine().getStatusCode() );
+        assertEquals( "catalog-v1", EntityUtils.toString( response.getEntity() ) );
+        assertEquals( "\"v1\"", server.requests.get( 1 ).getFirstHeader( "If-None-Match" ).getValue() );
+        assertNull( revalidated.getFirstHeader( "If-None-Match" ) );
+        assertEquals( 1, client.getValidatedCount() );
+    }
+
+    public void testLastModifiedIsSentAsIfModifiedSince() throws Exception {
+
+        String lastModified = DateUtils.formatDate( new Date( System.currentTimeMillis() - 60000 ) );
+        server.enqueue( response( 200, "catalog-v1", "Cache-Control", "max-age=0", "Last-Modified", lastModified ) );
+        server.enqueue( response( 200, "catalog-v2", "Cache-Control", "max-age=0", "Last-Modified", lastModified ) );
+
+        client.execute( new HttpGet( URI ) ).getEntity().consumeContent();
+        HttpResponse response = client.execute( new HttpGet( URI ) );
+
+        assertEquals( "catalog-v2", EntityUtils.toString( response.getEntity() ) );
+        assertEquals( lastModified, server.requests.get( 1 ).getFirstHeader( "If-Modified-Since" ).getValue() );
+    }
+
+    public void testNoStoreIsNotCached() throws Exception {
+
+        server.enqueue( response( 200, "secret", "Cache-Control", "no-store", "ETag", "\"s\"" ) );
+        server.enqueue( response( 200, "secret", "Cache-Control", "no-store", "ETag", "\"s\"" ) );
+
+        client.execute( new HttpGet( URI ) ).getEntity().consumeContent();
+        client.execute( new HttpGet( URI ) ).getEntity().consumeContent();
+
+        assertEquals( 2, server.requests.size() );
+        assertNull( server.requests.get( 1 ).getFirstHeader( "If-None-Match" ) );
+    }
+
+    public void testUnsafeRequestInvalidatesEntry() throws Exception {
+
+        server.enqueue( response( 200, "catalog-v1", "Cache-Control", "max-age=60" ) );
+        server.enqueue( response( 204, null ) );
+        server.enqueue( response( 200, "catalog-v2", "Cache-Control", "max-age=60" ) );
+
+        client.execute( new HttpGet( URI ) ).getEntity().consumeContent();
+        client.execute( new HttpPost( URI ) );
+
+        assertEquals( "catalog-v2", EntityUtils.toString( client.execute( new HttpGet( URI ) ).getEntity() ) );
+    }
+
+    public void testEntriesSurviveReopeningTheDiskCache() throws Exception {
+
+        server.enqueue( response( 200, "catalog-v1", "Cache-Control", "max-age=60" ) );
+        client.execute( new HttpGet( URI ) ).getEntity().consumeContent();
+
+        CachingHttpClient reopened = new CachingHttpClient( server, new HttpResponseCache( directory, 64 * 1024, 64 * 1024 ) );
+
+        assertEquals( "catalog-v1", EntityUtils.toString( reopened.execute( new HttpGet( URI ) ).getEntity() ) );
+        assertEquals( 1, server.requests.size() );
+    }
+
+    public void testDiskCacheEvictsLeastRecentlyUsed() throws Exception {
+
+        HttpResponseCache cache = new HttpResponseCache( directory, 0, 600 );
+        client = new CachingHttpClient( server, cache );
+        String body = new String( new char[200] ).replace( '\0', 'x' );
+        for (int i = 0; i < 3; i++) {
+            server.enqueue( response( 200, body, "Cache-Control", "max-age=60" ) );
+            client.execute( new HttpGet( URI + "/" + i ) ).getEntity().consumeContent();
+        }
+
+        assertTrue( cache.getDiskSize() <= 600 );
+        assertNull( cache.get( URI + "/0" ) );
+        assertNotNull( cache.get( URI + "/2" ) );
+    }
+
+    public void testOversizedBodyIsPassedThroughUncached() throws Exception {
+
+        client.setMaxEntryBytes( 4 );
+        server.enqueue( response( 200, "catalog-v1", "Cache-Control", "max-age=60" ) );
+        server.enqueue( response( 200, "catalog-v1", "Cache-Control", "max-age=60" ) );
+
+        assertEquals( "catalog-v1", EntityUtils.toString( client.execute( new HttpGet( URI ) ).getEntity() ) );
+        client.execute( new HttpGet( URI ) ).getEntity().consumeContent();
+
+        assertEquals( 2, server.requests.size() );
+    }
+
+    private static HttpResponse response( int statusCode, String body, String... headers ) throws IOException {
+
+        BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, statusCode, null );
+        response.addHeader( "Date", DateUtils.formatDate( new Date() ) );
+        for (int i = 0; i < headers.length; i += 2) {
+            response.addHeader( headers[i], headers[i + 1] );
+        }
+        if ( body != null ) {
+            response.setEntity( new StringEntity( body ) );
+        }
+        return response;
+    }
+
+    /**
+     * Answers requests with queued responses and records what it was sent.
+     */
+    static class ScriptedHttpClient extends FakeHttpClient {
+
+        private final LinkedList<HttpResponse> responses = new LinkedList<HttpResponse>();
+        private final List<HttpUriRequest> requests = new LinkedList<HttpUriRequest>();
+
+        public void enqueue( HttpResponse response ) {
+
+            responses.add( response );
+        }
+
+        @Override
+        public HttpResponse execute( HttpUriRequest request, HttpContext context ) throws IOException {
+
+            HttpGet copy = new HttpGet( request.getURI() );
+            copy.setHeaders( request.getAllHeaders() );
+            requests.add( copy );
+            return responses.removeFirst();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.metova.android.util.http.circuit;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.message.BasicHttpResponse;
+
+import com.metova.android.util.http.circuit.CircuitBreaker.State;
+import com.metova.android.util.http.response.Response;
+
+public class CircuitBreakerTest extends TestCase {
+
+    private static final long OPEN_DURATION_MILLIS = 200;
+
+    private CircuitBreakerRegistry registry;
+    private CircuitBreaker breaker;
+
+    @Override
+    public void setUp() {
+
+        registry = new CircuitBreakerRegistry();
+        registry.setWindowSize( 4 );
+        registry.setMinimumRequests( 4 );
+        registry.setFailureRateThreshold( 0.5f );
+        registry.setOpenDurationMillis( OPEN_DURATION_MILLIS );
+        breaker = registry.getBreaker( "api.example.com" );
+    }
+
+    public void testOpensAtFailureRateThreshold() {
+
+        record( 200 );
+        record( 503 );
+        record( 200 );
+        assertEquals( State.CLOSED, breaker.getState() );
+
+        record( 500 );
+        assertEquals( State.OPEN, breaker.getState() );
+        assertFalse( breaker.allowRequest() );
+        assertEquals( 1, breaker.getOpenedCount() );
+        assertEquals( 1, breaker.getRejectedCount() );
+    }
+
+    public void testClientErrorsDoNotOpen() {
+
+        for (int i = 0; i < 4; i++) {
+            record( 404 );
+        }
+        assertEquals( State.CLOSED, breaker.getState() );
+    }
+
+    public void testSuccessfulTrialCloses() throws InterruptedException {
+
+        open();
+        Thread.sleep( OPEN_DURATION_MILLIS + 50 );
+
+        assertTrue( breaker.allowRequest() );
+        assertEquals( State.HALF_OPEN, breaker.getState() );
+        assertFalse( "only one trial is admitted at a time", breaker.allowRequest() );
+
+        breaker.record( createResponse( 200 ), null );
+        assertEquals( State.CLOSED, breaker.getState() );
+        assertEquals( 1, breaker.getClosedCount() );
+    }
+
+    public void testFailedTrialReopens() throws InterruptedException {
+
+        open();
+        Thread.sleep( OPEN_DURATION_MILLIS + 50 );
+
+        assertTrue( breaker.allowRequest() );
+        breaker.record( null, new IllegalStateException() );
+
+        assertEquals( State.OPEN, breaker.getState() );
+        assertEquals( 2, breaker.getOpenedCount() );
+    }
+
+    public void testRegistryKeysBreakersByHost() {
+
+        assertSame( breaker, registry.getBreaker( new HttpGet( "http://api.example.com/widgets" ) ) );
+        assertNotSame( breaker, registry.getBreaker( new HttpGet( "http://cdn.example.com/widgets" ) ) );
+        assertEquals( 2, registry.getBreakers().size() );
+    }
+
+    private void open() {
+
+        for (int i = 0; i < 4; i++) {
+            record( 503 );
+        }
+        assertEquals( State.OPEN, breaker.getState() );
+    }
+
+    private void record( int statusCode ) {
+
+        assertTrue( breaker.allowRequest() );
+        breaker.record( createResponse( statusCode ), null );
+    }
+
+    private static Response createResponse( int statusCode ) {
+
+        Response response = new Response();
+        response.setHttpResponse( new BasicHttpResponse( HttpVersion.HTTP_1_1, statusCode, null ) );
+        return response;
+    }
+}
@@ -0,0 +1,218 @@
+package com.metova.android.util.http.download;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+
+import com.metova.android.util.concurrent.ThreadPool;
+import com.metova.android.util.http.FakeHttpClient;
+import com.metova.android.util.text.Strings;
+
+public class DownloadManagerTest extends TestCase {
+
+    private static final String URL = "http://example.com/content.bin";
+
+    private RangeServer server;
+    private DownloadManager manager;
+    private File destination;
+
+    @Override
+    public void setUp() throws IOException {
+
+        byte[] content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+
+        server = new RangeServer( content );
+        manager = new DownloadManager( server, new ThreadPool( 4 ) );
+        manager.setMinSegmentSize( 100 );
+        destination = File.createTempFile( "download", ".bin" );
+    }
+
+    @Override
+    public void tearDown() {
+
+        manager.shutdown();
+        destination.delete();
+        new FileDownload( URL, destination ).getStateFile().delete();
+    }
+
+    public void testSegmentsAreDownloadedInParallelAndVerified() throws Exception {
+
+        FileDownload download = new FileDownload( URL, destination );
+        download.setChecksum( "MD5", md5( server.content ) );
+
+        manager.download( download );
+
+        assertTrue( Arrays.equals( server.content, read( destination ) ) );
+        assertEquals( 4, server.ranges.size() );
+        assertTrue( server.ranges.contains( "bytes=750-999" ) );
+        assertFalse( download.getStateFile().exists() );
+
+        //the HEAD and every range must ask for the bytes as stored, or the ranges would index into a compressed body
+        assertEquals( Collections.nCopies( 5, "identity" ), server.acceptEncodings );
+    }
+
+    public void testInterruptedDownloadResumesFromSavedState() throws Exception {
+
+        server.failRangeStart = 250;
+        server.failAfterBytes = 50;
+        FileDownload download = new FileDownload( URL, destination );
+
+        try {
+            manager.download( download );
+            fail( "Expected an IOException." );
+        }
+        catch (IOException e) {
+            //success
+        }
+        assertTrue( download.getStateFile().exists() );
+
+        server.ranges.clear();
+        manager.download( new FileDownload( URL, destination ) );
+
+        //other segments may have been cancelled before they finished, but the failed one continues where it stopped
+        assertTrue( server.ranges.contains( "bytes=300-499" ) );
+        assertFalse( server.ranges.contains( "bytes=250-499" ) );
+        assertTrue( Arrays.equals( server.content, read( destination ) ) );
+        assertFalse( download.getStateFile().exists() );
+    }
+
+    public void testChecksumMismatchDeletesTheFile() throws Exception {
+
+        FileDownload download = new FileDownload( URL, destination );
+        download.setChecksum( "MD5", "00000000000000000000000000000000" );
+
+        try {
+            manager.download( download );
+            fail( "Expected a DownloadVerificationException." );
+        }
+        catch (DownloadVerificationException e) {
+            //success
+        }
+        assertFalse( destination.exists() );
+        assertFalse( download.getStateFile().exists() );
+    }
+
+    private static String md5( byte[] bytes ) throws Exception {
+
+        return Strings.bytesToHexString( MessageDigest.getInstance( "MD5" ).digest( bytes ) );
+    }
+
+    private static byte[] read( File file ) throws IOException {
+
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream input = new FileInputStream( file );
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += input.read( bytes, offset, bytes.length - offset );
+            }
+        }
+        finally {
+            input.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * Serves a byte array, honoring {@code Range} requests. Can be told to drop the connection partway through one range.
+     */
+    static class RangeServer extends FakeHttpClient {
+
+        private final byte[] content;
+        private final List<String> ranges = Collections.synchronizedList( new ArrayList<String>() );
+        private final List<String> acceptEncodings = Collections.synchronizedList( new ArrayList<String>() );
+        private volatile long failRangeStart = -1;
+        private volatile int failAfterBytes;
+
+        RangeServer(byte[] content) {
+
+            this.content = content;
+        }
+
+        @Override
+        public HttpResponse execute( HttpUriRequest request, HttpContext context ) {
+
+            Header acceptEncoding = request.getFirstHeader( "Accept-Encoding" );
+            acceptEncodings.add( ( acceptEncoding == null ) ? null : acceptEncoding.getValue() );
+
+            if ( "HEAD".equals( request.getMethod() ) ) {
+                BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+                response.setHeader( "Content-Length", String.valueOf( content.length ) );
+                response.setHeader( "Accept-Ranges", "bytes" );
+                response.setHeader( "ETag", "\"v1\"" );
+                return response;
+            }
+
+            String range = request.getFirstHeader( "Range" ).getValue();
+            ranges.add( range );
+            String[] bounds = range.substring( "bytes=".length() ).split( "-" );
+            int start = Integer.parseInt( bounds[0] );
+            int end = Integer.parseInt( bounds[1] );
+
+            InputStream body = new ByteArrayInputStream( content, start, end - start + 1 );
+            if ( start == failRangeStart ) {
+                failRangeStart = -1;
+                body = new FailingInputStream( body, failAfterBytes );
+            }
+
+            BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 206, "Partial Content" );
+            response.setHeader( "Content-Range", "bytes " + start + "-" + end + "/" + content.length );
+            response.setEntity( new InputStreamEntity( body, end - start + 1 ) );
+            return response;
+        }
+    }
+
+    /**
+     * Returns the first {@code limit} bytes of a stream, then fails as a dropped connection would.
+     */
+    static class FailingInputStream extends InputStream {
+
+        private final InputStream in;
+        private int remaining;
+
+        FailingInputStream(InputStream in, int limit) {
+
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            byte[] b = new byte[1];
+            return ( read( b, 0, 1 ) == -1 ) ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len ) throws IOException {
+
+            if ( remaining <= 0 ) {
+                throw new IOException( "connection reset" );
+            }
+
+            int read = in.read( b, off, Math.min( len, remaining ) );
+            remaining -= read;
+            return read;
+        }
+    }
+}
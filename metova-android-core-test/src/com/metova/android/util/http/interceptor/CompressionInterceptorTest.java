@@ -0,0 +1,137 @@
+package com.metova.android.util.http.interceptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+public class CompressionInterceptorTest extends TestCase {
+
+    private static final String JSON = "{\"items\":[{\"id\":1},{\"id\":2},{\"id\":3},{\"id\":4},{\"id\":5}]}";
+
+    public void testAcceptEncodingIsAdvertised() throws Exception {
+
+        HttpGet get = new HttpGet( "http://example.com/" );
+        new CompressionRequestInterceptor().process( get, context( "example.com" ) );
+
+        assertEquals( "gzip, deflate", get.getFirstHeader( "Accept-Encoding" ).getValue() );
+    }
+
+    public void testGzipResponseIsDecoded() throws Exception {
+
+        HttpResponse response = encodedResponse( gzip( JSON ), "gzip" );
+        new CompressionResponseInterceptor().process( response, context( "example.com" ) );
+
+        assertEquals( JSON, EntityUtils.toString( response.getEntity() ) );
+        assertNull( response.getFirstHeader( "Content-Encoding" ) );
+        assertNull( response.getFirstHeader( "Content-Length" ) );
+    }
+
+    public void testZlibAndRawDeflateResponsesAreDecoded() throws Exception {
+
+        for (boolean raw : new boolean[] { false, true }) {
+            HttpResponse response = encodedResponse( deflate( JSON, raw ), "deflate" );
+            new CompressionResponseInterceptor().process( response, context( "example.com" ) );
+
+            assertEquals( JSON, EntityUtils.toString( response.getEntity() ) );
+        }
+    }
+
+    public void testRequestBodyIsCompressedPerHostThreshold() throws Exception {
+
+        CompressionPolicy policy = new CompressionPolicy();
+        policy.setThreshold( "api.example.com", 16 );
+        CompressionRequestInterceptor interceptor = new CompressionRequestInterceptor( policy );
+
+        HttpPost large = post( JSON );
+        interceptor.process( large, context( "api.example.com" ) );
+        assertEquals( "gzip", large.getEntity().getContentEncoding().getValue() );
+        assertEquals( JSON, gunzip( large ) );
+
+        HttpPost small = post( "{}" );
+        interceptor.process( small, context( "api.example.com" ) );
+        assertNull( small.getEntity().getContentEncoding() );
+
+        HttpPost otherHost = post( JSON );
+        interceptor.process( otherHost, context( "cdn.example.com" ) );
+        assertNull( otherHost.getEntity().getContentEncoding() );
+    }
+
+    private static HttpContext context( String host ) {
+
+        HttpContext context = new BasicHttpContext();
+        context.setAttribute( ExecutionContext.HTTP_TARGET_HOST, new HttpHost( host ) );
+        return context;
+    }
+
+    private static HttpPost post( String body ) throws IOException {
+
+        HttpPost post = new HttpPost( "http://example.com/" );
+        post.setEntity( new StringEntity( body ) );
+        return post;
+    }
+
+    private static HttpResponse encodedResponse( byte[] body, String encoding ) {
+
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent( new ByteArrayInputStream( body ) );
+        entity.setContentLength( body.length );
+        entity.setContentEncoding( encoding );
+
+        BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+        response.addHeader( "Content-Encoding", encoding );
+        response.addHeader( "Content-Length", Integer.toString( body.length ) );
+        response.setEntity( entity );
+        return response;
+    }
+
+    private static byte[] gzip( String text ) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream( bytes );
+        gzip.write( text.getBytes( "UTF-8" ) );
+        gzip.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate( String text, boolean raw ) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream( bytes, new Deflater( Deflater.DEFAULT_COMPRESSION, raw ) );
+        deflater.write( text.getBytes( "UTF-8" ) );
+        deflater.close();
+        return bytes.toByteArray();
+    }
+
+    private static String gunzip( HttpPost post ) throws IOException {
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        post.getEntity().writeTo( compressed );
+        GZIPInputStream input = new GZIPInputStream( new ByteArrayInputStream( compressed.toByteArray() ) );
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int read;
+        while (( read = input.read( buffer ) ) != -1) {
+            plain.write( buffer, 0, read );
+        }
+        return plain.toString( "UTF-8" );
+    }
+}
@@ -0,0 +1,77 @@
+package com.metova.android.util.http.interceptor;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import com.metova.android.util.http.entity.TeeEntity;
+
+public class WireLoggingInterceptorTest extends TestCase {
+
+    public void testResponseBodyStreamsThroughWithBoundedPrefix() throws Exception {
+
+        LoggingPolicy policy = new LoggingPolicy();
+        policy.setMaxBodyBytes( 16 );
+        WireLoggingInterceptor interceptor = new WireLoggingInterceptor( policy );
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append( i ).append( ',' );
+        }
+        byte[] bytes = body.toString().getBytes( "UTF-8" );
+        InputStreamEntity streaming = new InputStreamEntity( new ByteArrayInputStream( bytes ), bytes.length );
+        streaming.setContentType( "text/plain" );
+
+        HttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+        response.setEntity( streaming );
+        interceptor.process( response, new BasicHttpContext() );
+
+        TeeEntity tee = (TeeEntity) response.getEntity();
+        assertEquals( body.toString(), EntityUtils.toString( tee ) );
+        assertEquals( 16, tee.getPrefix().length );
+        assertTrue( tee.isTruncated() );
+        assertEquals( bytes.length, tee.getByteCount() );
+    }
+
+    public void testUnsampledExchangeIsLeftAlone() throws Exception {
+
+        LoggingPolicy policy = new LoggingPolicy();
+        policy.setSampleRate( 0 );
+        WireLoggingInterceptor interceptor = new WireLoggingInterceptor( policy );
+
+        HttpPost post = new HttpPost( "http://example.com/login" );
+        HttpEntity entity = new StringEntity( "user=a&password=b" );
+        post.setEntity( entity );
+        HttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+        HttpEntity responseEntity = new StringEntity( "ok" );
+        response.setEntity( responseEntity );
+
+        HttpContext context = new BasicHttpContext();
+        interceptor.process( post, context );
+        interceptor.process( response, context );
+
+        assertSame( entity, post.getEntity() );
+        assertSame( responseEntity, response.getEntity() );
+    }
+
+    public void testCredentialsAreRedacted() {
+
+        LoggingPolicy policy = new LoggingPolicy();
+
+        assertEquals( LoggingPolicy.REDACTED, policy.redactHeader( "authorization", "Bearer abc" ) );
+        assertEquals( "text/plain", policy.redactHeader( "Content-Type", "text/plain" ) );
+        assertEquals( "{\"user\":\"a\",\"password\":\"***\"}", policy.redactBody( "{\"user\":\"a\",\"password\":\"hunter\\\"2\"}" ) );
+        assertEquals( "user=a&token=***&next=/", policy.redactBody( "user=a&token=xyz&next=/" ) );
+    }
+}
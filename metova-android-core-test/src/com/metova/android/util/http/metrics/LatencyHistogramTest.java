@@ -0,0 +1,44 @@
+package com.metova.android.util.http.metrics;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+    public void testBucketsCoverTheirValues() {
+
+        for (long millis = 0; millis < 100000; millis += 7) {
+            int bucket = LatencyHistogram.bucketOf( millis );
+            assertTrue( millis <= LatencyHistogram.upperBoundOf( bucket ) );
+            assertTrue( bucket == 0 || millis > LatencyHistogram.upperBoundOf( bucket - 1 ) );
+        }
+    }
+
+    public void testPercentilesAreWithinBucketError() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record( millis );
+        }
+
+        assertEquals( 1000, histogram.getCount() );
+        assertEquals( 1000, histogram.getMax() );
+        assertEquals( 500.5, histogram.getMean(), 0.001 );
+        assertWithin( 500, histogram.getPercentile( 50 ), 0.2 );
+        assertWithin( 990, histogram.getPercentile( 99 ), 0.2 );
+        assertEquals( 1000, histogram.getPercentile( 100 ) );
+    }
+
+    public void testUnavailableMeasurementsAreIgnored() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record( -1 );
+
+        assertEquals( 0, histogram.getCount() );
+        assertEquals( 0, histogram.getPercentile( 50 ) );
+    }
+
+    private static void assertWithin( long expected, long actual, double tolerance ) {
+
+        assertTrue( "expected about " + expected + " but was " + actual, Math.abs( actual - expected ) <= expected * tolerance );
+    }
+}
@@ -0,0 +1,109 @@
+package com.metova.android.util.http.metrics;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import com.metova.android.util.http.FakeHttpClient;
+
+public class MetricsHttpClientTest extends TestCase {
+
+    private StubHttpClient server;
+    private HttpMetrics metrics;
+    private MetricsHttpClient client;
+
+    @Override
+    public void setUp() {
+
+        server = new StubHttpClient();
+        metrics = new HttpMetrics();
+        client = new MetricsHttpClient( server, metrics );
+    }
+
+    public void testExchangeIsReportedOnceTheBodyIsRead() throws Exception {
+
+        server.body = "0123456789";
+        HttpResponse response = client.execute( new HttpGet( "http://example.com/users/42" ) );
+        assertTrue( metrics.getHostMetrics().isEmpty() );
+
+        assertEquals( "0123456789", EntityUtils.toString( response.getEntity() ) );
+
+        EndpointMetrics host = metrics.getHostMetrics().get( "example.com" );
+        assertEquals( 1, host.getExchangeCount() );
+        assertEquals( 1, host.getStatusCount( 2 ) );
+        assertEquals( 10, host.getBytesReceived() );
+        assertEquals( 1, host.getConnectLatency().getCount() );
+        assertEquals( 1, host.getTotalLatency().getCount() );
+    }
+
+    public void testIdentifiersAreCollapsedInEndpointKeys() throws Exception {
+
+        server.status = 404;
+        client.execute( new HttpGet( "http://example.com/users/42" ) ).getEntity().consumeContent();
+        client.execute( new HttpGet( "http://example.com/users/43" ) ).getEntity().consumeContent();
+
+        EndpointMetrics endpoint = metrics.getEndpointMetrics().get( "GET example.com/users/{id}" );
+        assertEquals( 2, endpoint.getExchangeCount() );
+        assertEquals( 2, endpoint.getStatusCount( 4 ) );
+    }
+
+    public void testFailureAndRequestBytesAreRecorded() throws Exception {
+
+        server.failure = new IOException( "connection reset" );
+        HttpPost post = new HttpPost( "http://example.com/upload" );
+        post.setEntity( new StringEntity( "payload" ) );
+
+        try {
+            client.execute( post );
+            fail( "Expected an IOException." );
+        }
+        catch (IOException e) {
+            //success
+        }
+
+        EndpointMetrics endpoint = metrics.getEndpointMetrics().get( "POST example.com/upload" );
+        assertEquals( 1, endpoint.getFailureCount() );
+        assertEquals( 7, endpoint.getBytesSent() );
+    }
+
+    /**
+     * Answers every request with a canned response, running the {@link MetricsInterceptor} as a real client would.
+     */
+    static class StubHttpClient extends FakeHttpClient {
+
+        private final MetricsInterceptor interceptor = new MetricsInterceptor();
+        private volatile int status = 200;
+        private volatile String body = "";
+        private volatile IOException failure;
+
+        @Override
+        public HttpResponse execute( HttpUriRequest request, HttpContext context ) throws IOException {
+
+            try {
+                interceptor.process( request, context );
+                if ( failure != null ) {
+                    throw failure;
+                }
+
+                BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, status, "Stub" );
+                response.setEntity( new StringEntity( body ) );
+                interceptor.process( response, context );
+                return response;
+            }
+            catch (HttpException e) {
+                throw new IOException( e.getMessage() );
+            }
+        }
+    }
+}
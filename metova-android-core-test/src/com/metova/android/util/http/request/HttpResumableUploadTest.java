@@ -0,0 +1,150 @@
+package com.metova.android.util.http.request;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+
+import com.metova.android.util.http.FakeHttpClient;
+import com.metova.android.util.http.entity.FileChannelEntity;
+import com.metova.android.util.http.response.Response;
+
+public class HttpResumableUploadTest extends TestCase {
+
+    private File file;
+    private File stateFile;
+
+    @Override
+    public void setUp() throws IOException {
+
+        file = File.createTempFile( "upload", ".bin" );
+        stateFile = new File( file.getPath() + ".state" );
+
+        FileOutputStream output = new FileOutputStream( file );
+        for (int i = 0; i < 10; i++) {
+            output.write( '0' + i );
+        }
+        output.close();
+    }
+
+    @Override
+    public void tearDown() {
+
+        file.delete();
+        stateFile.delete();
+    }
+
+    public void testFileChannelEntityWritesOnlyItsRange() throws IOException {
+
+        FileChannelEntity entity = new FileChannelEntity( file, 3, 4, "text/plain" );
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        entity.writeTo( bytes );
+
+        assertEquals( 4, entity.getContentLength() );
+        assertEquals( "3456", bytes.toString() );
+    }
+
+    public void testUploadIsSentInChunks() {
+
+        UploadServer server = new UploadServer();
+        HttpResumableUpload upload = new HttpResumableUpload( "http://example.com/upload", file, "text/plain", stateFile );
+        upload.setChunkSize( 4 );
+
+        Response response = upload.execute( server );
+
+        assertEquals( 201, response.getStatusCode() );
+        assertEquals( "0123456789", server.received.toString() );
+        assertEquals( 1, server.sessionsOpened );
+        assertFalse( stateFile.exists() );
+    }
+
+    public void testInterruptedUploadResumesFromTheServerOffset() {
+
+        UploadServer server = new UploadServer();
+        server.failOnChunk = 2;
+        HttpResumableUpload upload = new HttpResumableUpload( "http://example.com/upload", file, "text/plain", stateFile );
+        upload.setChunkSize( 4 );
+
+        assertTrue( upload.execute( server ).isFailedRequest() );
+        assertTrue( stateFile.exists() );
+        assertEquals( "0123", server.received.toString() );
+
+        //a new instance, as after a restart, picks the session up from the state file
+        HttpResumableUpload resumed = new HttpResumableUpload( "http://example.com/upload", file, "text/plain", stateFile );
+        resumed.setChunkSize( 4 );
+        Response response = resumed.execute( server );
+
+        assertEquals( 201, response.getStatusCode() );
+        assertEquals( "0123456789", server.received.toString() );
+        assertEquals( 1, server.sessionsOpened );
+        assertFalse( stateFile.exists() );
+    }
+
+    public void testServerThatNeverAdvancesEndsTheUploadOfAnEmptyFile() throws IOException {
+
+        new FileOutputStream( file ).close();
+        UploadServer server = new UploadServer();
+        server.alwaysIncomplete = true;
+        HttpResumableUpload upload = new HttpResumableUpload( "http://example.com/upload", file, "text/plain", stateFile );
+
+        Response response = upload.execute( server );
+
+        assertEquals( 308, response.getStatusCode() );
+        assertEquals( 1, server.puts );
+        assertTrue( stateFile.exists() );
+    }
+
+    /**
+     * Implements the server side of the resumable upload protocol in memory.
+     */
+    static class UploadServer extends FakeHttpClient {
+
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private int sessionsOpened;
+        private int chunks;
+        private int failOnChunk = -1;
+        private int puts;
+        private boolean alwaysIncomplete;
+
+        @Override
+        public HttpResponse execute( HttpUriRequest request, HttpContext context ) throws IOException {
+
+            if ( "POST".equals( request.getMethod() ) ) {
+                sessionsOpened++;
+                BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+                response.setHeader( "Location", "/upload/session" );
+                return response;
+            }
+
+            assertEquals( "http://example.com/upload/session", request.getURI().toString() );
+            puts++;
+            String contentRange = request.getFirstHeader( "Content-Range" ).getValue();
+            if ( !contentRange.startsWith( "bytes */" ) ) {
+                if ( ++chunks == failOnChunk ) {
+                    throw new IOException( "connection reset" );
+                }
+                ( (HttpEntityEnclosingRequest) request ).getEntity().writeTo( received );
+            }
+
+            long total = Long.parseLong( contentRange.substring( contentRange.indexOf( '/' ) + 1 ) );
+            if ( received.size() == total && !alwaysIncomplete ) {
+                return new BasicHttpResponse( HttpVersion.HTTP_1_1, 201, "Created" );
+            }
+
+            BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 308, "Resume Incomplete" );
+            if ( received.size() > 0 ) {
+                response.setHeader( "Range", "bytes=0-" + ( received.size() - 1 ) );
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.metova.android.util.http.response;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+import com.metova.android.util.Files;
+
+public class ResponseTest extends TestCase {
+
+    private static final int BODY_SIZE = 100000;
+
+    private byte[] body;
+    private TrackingInputStream content;
+    private Response response;
+
+    @Override
+    public void setUp() {
+
+        body = new byte[BODY_SIZE];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ( 'a' + i % 26 );
+        }
+        response = newResponse( body, "text/plain; charset=US-ASCII" );
+    }
+
+    public void testWriteToStreamCopiesBodyAndReleases() throws IOException {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertEquals( BODY_SIZE, response.writeTo( output, new byte[1024] ) );
+        assertTrue( Arrays.equals( body, output.toByteArray() ) );
+        assertTrue( content.closed );
+    }
+
+    public void testWriteToFile() throws IOException {
+
+        File file = File.createTempFile( "response", ".body" );
+        try {
+            assertEquals( BODY_SIZE, response.writeTo( file ) );
+            assertTrue( Arrays.equals( body, Files.toByteArray( file.getPath() ) ) );
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    public void testReadDeliversChunksAndReleasesOnFailure() {
+
+        final int[] chunks = new int[1];
+        try {
+            response.read( new ContentHandler() {
+
+                @Override
+                public void onContent( byte[] buffer, int length ) throws IOException {
+
+                    assertTrue( length <= 8192 );
+                    if ( ++chunks[0] == 3 ) {
+                        throw new IOException( "disk full" );
+                    }
+                }
+            } );
+            fail( "Expected the handler's exception." );
+        }
+        catch (IOException e) {
+            assertEquals( "disk full", e.getMessage() );
+        }
+        assertEquals( 3, chunks[0] );
+        assertTrue( content.closed );
+    }
+
+    public void testReadTextDecodesWithDeclaredCharset() throws IOException {
+
+        response = newResponse( "caf\u00e9".getBytes( "ISO-8859-1" ), "text/plain; charset=ISO-8859-1" );
+        final StringBuilder text = new StringBuilder();
+
+        response.readText( new TextContentHandler() {
+
+            @Override
+            public void onText( char[] buffer, int length ) {
+
+                text.append( buffer, 0, length );
+            }
+        } );
+
+        assertEquals( "caf\u00e9", text.toString() );
+    }
+
+    public void testReaderDefaultsToUtf8() throws IOException {
+
+        response = newResponse( "caf\u00e9".getBytes( "UTF-8" ), null );
+        Reader reader = response.getReader();
+        char[] buffer = new char[16];
+        int read = reader.read( buffer );
+        reader.close();
+
+        assertEquals( "caf\u00e9", new String( buffer, 0, read ) );
+        assertTrue( content.closed );
+    }
+
+    private Response newResponse( byte[] bytes, String contentType ) {
+
+        content = new TrackingInputStream( bytes );
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent( content );
+        entity.setContentLength( bytes.length );
+        entity.setContentType( contentType );
+
+        BasicHttpResponse httpResponse = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+        httpResponse.setEntity( entity );
+
+        Response response = new Response();
+        response.setHttpResponse( httpResponse );
+        return response;
+    }
+
+    private static class TrackingInputStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        public TrackingInputStream(byte[] bytes) {
+
+            super( bytes );
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            closed = true;
+            super.close();
+        }
+    }
+}
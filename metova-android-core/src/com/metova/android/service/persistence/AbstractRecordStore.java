@@ -1,7 +1,16 @@
 package com.metova.android.service.persistence;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -13,8 +22,13 @@ import com.metova.android.DatabaseConnectedApplication;
 import com.metova.android.model.persistence.AbstractRecord;
 import com.metova.android.service.persistence.record.CursorWrapper;
 import com.metova.android.service.persistence.record.SQLiteStatementWrapper;
+import com.metova.android.service.persistence.record.aggregate.Aggregate;
+import com.metova.android.service.persistence.record.aggregate.AggregateRow;
 import com.metova.android.service.persistence.record.column.Column;
 import com.metova.android.service.persistence.record.column.ColumnType;
+import com.metova.android.service.persistence.record.transfer.RowReader;
+import com.metova.android.service.persistence.record.transfer.RowWriter;
+import com.metova.android.service.persistence.record.transfer.TransferFormat;
 import com.metova.android.util.Streams;
 
 /**
@@ -27,6 +41,14 @@ public abstract class AbstractRecordStore<T extends AbstractRecord> {
     private static final Column[] ABSTRACT_COLUMNS = { new Column( "id", ColumnType.INTEGER_PRIMARY_KEY ) };
     private static final String ID_ASCENDING = "id ASC";
 
+    /**
+     * SQLite refuses statements with more than 999 bound parameters by default.
+     */
+    private static final int MAX_BOUND_PARAMETERS = 500;
+
+    private static final int IMPORT_CHUNK_SIZE = 500;
+    private static final int TRANSFER_BUFFER_SIZE = 8192;
+
     private final Class<T> type;
 
     protected AbstractRecordStore(Class<T> type) {
@@ -356,6 +378,170 @@ public abstract class AbstractRecordStore<T extends AbstractRecord> {
         return count;
     }
 
+    /**
+     * Retrieves a count of the records in the given table which match the specified selection.
+     * 
+     * @param whereClause the optional WHERE clause to apply (excluding the WHERE itself). Passing null counts all records.
+     * @param whereArgs the values which replace any ?s in the where clause.
+     * @return the number of matching records.
+     */
+    public final long count( String whereClause, String[] whereArgs ) {
+
+        return aggregateLong( Aggregate.COUNT, null, whereClause, whereArgs );
+    }
+
+    /**
+     * Sums the values of the specified INTEGER column across all records.
+     * 
+     * @param column a column declared by this store.
+     * @return the sum, or 0 if the table is empty.
+     */
+    public final long sum( Column column ) {
+
+        return aggregateLong( Aggregate.TOTAL, column, null, null );
+    }
+
+    /**
+     * Finds the smallest value of the specified column across all records.
+     * 
+     * @param column a column declared by this store.
+     * @return the minimum value, or 0 if the table is empty.
+     */
+    public final long min( Column column ) {
+
+        return aggregateLong( Aggregate.MIN, column, null, null );
+    }
+
+    /**
+     * Finds the largest value of the specified column across all records.
+     * 
+     * @param column a column declared by this store.
+     * @return the maximum value, or 0 if the table is empty.
+     */
+    public final long max( Column column ) {
+
+        return aggregateLong( Aggregate.MAX, column, null, null );
+    }
+
+    /**
+     * Averages the values of the specified column across all records.
+     * 
+     * @param column a column declared by this store.
+     * @return the average value, or 0 if the table is empty.
+     */
+    public final double average( Column column ) {
+
+        return aggregateDouble( Aggregate.AVG, column, null, null );
+    }
+
+    /**
+     * Evaluates an aggregate inside the database and returns the result as a long.  No records are 
+     * loaded into memory.
+     * 
+     * @param aggregate the aggregate function to apply.
+     * @param column a column declared by this store, or null when counting rows.
+     * @param whereClause the optional WHERE clause to apply (excluding the WHERE itself).
+     * @param whereArgs the values which replace any ?s in the where clause.
+     * @return the aggregated value, or 0 if no non-null values were aggregated.
+     */
+    public final long aggregateLong( Aggregate aggregate, Column column, String whereClause, String[] whereArgs ) {
+
+        String query = createAggregateQuery( aggregate, column, whereClause );
+        long result = 0;
+
+        SQLiteStatement statement = null;
+        try {
+
+            statement = DatabaseConnectedApplication.getWritableDatabase().compileStatement( query );
+            bindArguments( new SQLiteStatementWrapper( statement ), whereArgs );
+            result = statement.simpleQueryForLong();
+        }
+        finally {
+
+            Streams.close( statement );
+        }
+
+        return result;
+    }
+
+    /**
+     * Evaluates an aggregate inside the database and returns the result as a double.  Use this for 
+     * {@link Aggregate#AVG} or for aggregates over REAL values.
+     * 
+     * @param aggregate the aggregate function to apply.
+     * @param column a column declared by this store, or null when counting rows.
+     * @param whereClause the optional WHERE clause to apply (excluding the WHERE itself).
+     * @param whereArgs the values which replace any ?s in the where clause.
+     * @return the aggregated value, or 0 if no non-null values were aggregated.
+     */
+    public final double aggregateDouble( Aggregate aggregate, Column column, String whereClause, String[] whereArgs ) {
+
+        String query = createAggregateQuery( aggregate, column, whereClause );
+        double result = 0;
+
+        Cursor cursor = null;
+        try {
+
+            cursor = DatabaseConnectedApplication.getWritableDatabase().rawQuery( query, whereArgs );
+            if ( cursor.moveToFirst() ) {
+                result = cursor.getDouble( 0 );
+            }
+        }
+        finally {
+
+            Streams.close( cursor );
+        }
+
+        return result;
+    }
+
+    /**
+     * Groups records by the values of one column and evaluates an aggregate for each group inside 
+     * the database.  Each returned row also carries the number of records in its group, so passing 
+     * {@link Aggregate#COUNT} with a null value column is a plain group-by-with-count.
+     * 
+     * @param groupColumn a column declared by this store whose values define the groups.
+     * @param aggregate the aggregate function to apply to each group.
+     * @param valueColumn a column declared by this store, or null when counting rows.
+     * @param whereClause the optional WHERE clause to apply (excluding the WHERE itself).
+     * @param whereArgs the values which replace any ?s in the where clause.
+     * @return one row per group, ordered by the group column.
+     */
+    public final List<AggregateRow> groupBy( Column groupColumn, Aggregate aggregate, Column valueColumn, String whereClause, String[] whereArgs ) {
+
+        assertDeclared( groupColumn );
+        assertDeclared( valueColumn );
+
+        StringBuffer query = new StringBuffer( "SELECT " );
+        query.append( groupColumn.getName() );
+        query.append( ", COUNT(1), " );
+        query.append( aggregate.of( valueColumn ) );
+        query.append( " FROM " );
+        query.append( getTableName() );
+        appendWhereClause( query, whereClause );
+        query.append( " GROUP BY " );
+        query.append( groupColumn.getName() );
+        query.append( " ORDER BY " );
+        query.append( groupColumn.getName() );
+
+        final List<AggregateRow> rows = new ArrayList<AggregateRow>();
+
+        Cursor cursor = null;
+        try {
+
+            cursor = DatabaseConnectedApplication.getWritableDatabase().rawQuery( query.toString(), whereArgs );
+            while (cursor.moveToNext()) {
+                rows.add( new AggregateRow( cursor.getString( 0 ), cursor.getLong( 1 ), cursor.getDouble( 2 ) ) );
+            }
+        }
+        finally {
+
+            Streams.close( cursor );
+        }
+
+        return rows;
+    }
+
     /**
      * Select all available records for the given table.
      * 
@@ -455,6 +641,93 @@ public abstract class AbstractRecordStore<T extends AbstractRecord> {
         return list;
     }
 
+    /**
+     * Select the records identified by the specified IDs.
+     * 
+     * @param ids the IDs of the desired records.
+     * @return the records found, ordered by ID.
+     * @see #selectWhereIn(Column, Collection)
+     */
+    public final List<T> selectByIds( Collection<Long> ids ) {
+
+        return selectWhereIn( ABSTRACT_COLUMNS[0], ids );
+    }
+
+    /**
+     * Select all records whose value for the specified column is one of the specified values.  The 
+     * values are bound into a single {@code IN (...)} query, split only when there are more values 
+     * than SQLite accepts as parameters of one statement.  This is the building block for batched 
+     * relationship loading, which avoids issuing one query per parent record.
+     * 
+     * @param column a column declared by this store.
+     * @param values the values to match.  Duplicates are ignored.
+     * @return the matching records, ordered by ID within each batch.
+     */
+    public final List<T> selectWhereIn( Column column, Collection<Long> values ) {
+
+        assertDeclared( column );
+
+        final List<T> list = new ArrayList<T>();
+        if ( values == null || values.isEmpty() ) {
+            return list;
+        }
+
+        final List<Long> distinctValues = new ArrayList<Long>( new LinkedHashSet<Long>( values ) );
+        for (int start = 0; start < distinctValues.size(); start += MAX_BOUND_PARAMETERS) {
+
+            List<Long> batch = distinctValues.subList( start, Math.min( start + MAX_BOUND_PARAMETERS, distinctValues.size() ) );
+
+            StringBuffer selection = new StringBuffer( column.getName() );
+            selection.append( " IN (" );
+
+            String[] selectionArgs = new String[batch.size()];
+            for (int i = 0; i < selectionArgs.length; i++) {
+
+                selectionArgs[i] = Long.toString( batch.get( i ) );
+                selection.append( i == 0 ? "?" : ",?" );
+            }
+
+            selection.append( ")" );
+
+            CursorWrapper cursorWrapper = null;
+            try {
+
+                cursorWrapper = new CursorWrapper( DatabaseConnectedApplication.getWritableDatabase().query( getTableName(), getColumnNames(), selection.toString(), selectionArgs, null, null, ID_ASCENDING ) );
+                readRecords( cursorWrapper, list );
+            }
+            finally {
+
+                Streams.close( cursorWrapper );
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Hydrates a record for every row of the cursor, which must select the columns returned by 
+     * {@link #getColumnNames()} in order.
+     */
+    private void readRecords( CursorWrapper cursorWrapper, List<T> list ) {
+
+        while (cursorWrapper.moveToNext()) {
+
+            try {
+
+                T object = getType().newInstance();
+                object.setId( cursorWrapper.nextLong() );
+                populateRecord( cursorWrapper, object );
+                list.add( object );
+            }
+            catch (IllegalAccessException e) {
+                Log.e( TAG + "#readRecords", "Could not access constructor of " + type + " from the current context.", e );
+            }
+            catch (InstantiationException e) {
+                Log.e( TAG + "#readRecords", "Could not instantiate new instance of " + type, e );
+            }
+        }
+    }
+
     /**
      * Retrieve the record identified by the specified ID.
      * 
@@ -549,6 +822,142 @@ public abstract class AbstractRecordStore<T extends AbstractRecord> {
         return list;
     }
 
+    /**
+     * Streams every record of the table to the specified stream, one row at a time and in ID order.  
+     * Column values are read straight from the cursor according to their declared {@link ColumnType}, 
+     * so no records are hydrated and memory use does not grow with the size of the table.  The 
+     * stream is not closed.
+     * 
+     * @param outputStream the destination stream.
+     * @param format the format to write.
+     * @param compress whether to gzip the output.
+     * @return the number of records written.
+     * @throws IOException the stream could not be written.
+     */
+    public final long exportTo( OutputStream outputStream, TransferFormat format, boolean compress ) throws IOException {
+
+        final GZIPOutputStream gzipOutputStream = compress ? new GZIPOutputStream( outputStream, TRANSFER_BUFFER_SIZE ) : null;
+        final OutputStream target = new BufferedOutputStream( compress ? gzipOutputStream : outputStream, TRANSFER_BUFFER_SIZE );
+
+        final Column[] columns = getColumns();
+        final Object[] values = new Object[columns.length];
+        final RowWriter writer = format.newWriter( target, getTableName(), columns );
+        long exported = 0;
+
+        Cursor cursor = null;
+        try {
+
+            cursor = DatabaseConnectedApplication.getWritableDatabase().query( getTableName(), getColumnNames(), null, null, null, null, ID_ASCENDING );
+            while (cursor.moveToNext()) {
+
+                for (int i = 0; i < columns.length; i++) {
+                    values[i] = readValue( cursor, i, columns[i].getType() );
+                }
+
+                writer.writeRow( values );
+                exported++;
+            }
+        }
+        finally {
+
+            Streams.close( cursor );
+        }
+
+        writer.finish();
+        target.flush();
+        if ( gzipOutputStream != null ) {
+            gzipOutputStream.finish();
+        }
+
+        return exported;
+    }
+
+    /**
+     * Streams records from the specified stream into the table, one row at a time.  Records keep the 
+     * IDs they were exported with, replacing any existing record with the same ID.  Rows are written 
+     * with a single compiled statement and committed every {@value #IMPORT_CHUNK_SIZE} rows, so a 
+     * failure part way through leaves previously committed chunks in place.  The stream is not closed.
+     * 
+     * @param inputStream the source stream, as written by {@link #exportTo(OutputStream, TransferFormat, boolean)}.
+     * @param format the format to read.
+     * @param compressed whether the input is gzipped.
+     * @return the number of records imported.
+     * @throws IOException the stream could not be read, is malformed, or was exported from a table with different columns.
+     */
+    public final long importFrom( InputStream inputStream, TransferFormat format, boolean compressed ) throws IOException {
+
+        final InputStream source = new BufferedInputStream( compressed ? new GZIPInputStream( inputStream, TRANSFER_BUFFER_SIZE ) : inputStream, TRANSFER_BUFFER_SIZE );
+
+        final Column[] columns = getColumns();
+        final Object[] values = new Object[columns.length];
+        final RowReader reader = format.newReader( source, getTableName(), columns );
+        final SQLiteDatabase database = DatabaseConnectedApplication.getWritableDatabase();
+        long imported = 0;
+
+        SQLiteStatement statement = null;
+        try {
+
+            statement = database.compileStatement( createImportQuery().toString() );
+            database.beginTransaction();
+
+            while (reader.readRow( values )) {
+
+                SQLiteStatementWrapper statementWrapper = new SQLiteStatementWrapper( statement );
+                for (Object value : values) {
+
+                    if ( value instanceof Long ) {
+                        statementWrapper.bindLong( (Long) value );
+                    }
+                    else if ( value instanceof byte[] ) {
+                        statementWrapper.bindBlob( (byte[]) value );
+                    }
+                    else {
+                        statementWrapper.bindString( (String) value );
+                    }
+                }
+
+                statement.executeInsert();
+                imported++;
+
+                if ( imported % IMPORT_CHUNK_SIZE == 0 ) {
+
+                    database.setTransactionSuccessful();
+                    database.endTransaction();
+                    database.beginTransaction();
+                }
+            }
+
+            database.setTransactionSuccessful();
+        }
+        finally {
+
+            if ( database.inTransaction() ) {
+                database.endTransaction();
+            }
+
+            Streams.close( statement );
+        }
+
+        return imported;
+    }
+
+    private Object readValue( Cursor cursor, int index, ColumnType type ) {
+
+        if ( cursor.isNull( index ) ) {
+            return null;
+        }
+
+        switch (type) {
+            case INTEGER:
+            case INTEGER_PRIMARY_KEY:
+                return Long.valueOf( cursor.getLong( index ) );
+            case BLOB:
+                return cursor.getBlob( index );
+            default:
+                return cursor.getString( index );
+        }
+    }
+
     /**
      * Convenience method to check whether a record exists.
      * 
@@ -600,6 +1009,59 @@ public abstract class AbstractRecordStore<T extends AbstractRecord> {
         return columns;
     }
 
+    private String createAggregateQuery( Aggregate aggregate, Column column, String whereClause ) {
+
+        if ( aggregate == null ) {
+            throw new IllegalArgumentException( "Aggregate can not be null." );
+        }
+
+        assertDeclared( column );
+
+        StringBuffer query = new StringBuffer( "SELECT " );
+        query.append( aggregate.of( column ) );
+        query.append( " FROM " );
+        query.append( getTableName() );
+        appendWhereClause( query, whereClause );
+
+        return query.toString();
+    }
+
+    private void appendWhereClause( StringBuffer query, String whereClause ) {
+
+        if ( whereClause != null && whereClause.length() > 0 ) {
+            query.append( " WHERE " );
+            query.append( whereClause );
+        }
+    }
+
+    private void bindArguments( SQLiteStatementWrapper statement, String[] arguments ) {
+
+        if ( arguments != null ) {
+            for (String argument : arguments) {
+                statement.bindString( argument );
+            }
+        }
+    }
+
+    /**
+     * Ensures the specified column belongs to this store's table, so that aggregate queries are only 
+     * ever built from declared column names.  A null column is allowed.
+     */
+    private void assertDeclared( Column column ) {
+
+        if ( column == null ) {
+            return;
+        }
+
+        for (Column declared : getColumns()) {
+            if ( declared.getName().equals( column.getName() ) ) {
+                return;
+            }
+        }
+
+        throw new IllegalArgumentException( "Column " + column.getName() + " is not declared by " + getTableName() + "." );
+    }
+
     private StringBuffer createInsertQuery() {
 
         StringBuffer query = new StringBuffer( "INSERT INTO " );
@@ -629,6 +1091,35 @@ public abstract class AbstractRecordStore<T extends AbstractRecord> {
         return query;
     }
 
+    private StringBuffer createImportQuery() {
+
+        StringBuffer query = new StringBuffer( "INSERT OR REPLACE INTO " );
+        query.append( getTableName() );
+        query.append( " ( " );
+
+        Column[] columns = getColumns();
+        int columnsLength = columns.length;
+        for (int i = 0; i < columnsLength; i++) {
+
+            query.append( columns[i].getName() );
+            if ( i < columnsLength - 1 ) {
+                query.append( " , " );
+            }
+        }
+
+        query.append( " ) VALUES ( " );
+        for (int i = 0; i < columnsLength; i++) {
+
+            query.append( "?" );
+            if ( i < columnsLength - 1 ) {
+                query.append( " , " );
+            }
+        }
+
+        query.append( " )" );
+        return query;
+    }
+
     private StringBuffer createUpdateQuery() {
 
         StringBuffer query = new StringBuffer( "UPDATE " );
@@ -1,5 +1,6 @@
 package com.metova.android.service.persistence;
 
+import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 
 /**
@@ -23,4 +24,17 @@ public abstract class DatabaseConfiguration {
     public abstract void createTables( SQLiteDatabase db );
 
     public abstract void upgradeTables( SQLiteDatabase db, int oldVersion, int newVersion );
+
+    /**
+     * Creates the background maintenance which {@link DatabaseService} should run against the 
+     * database.  By default no maintenance is performed.
+     * 
+     * @param context the service's application context.
+     * @param db the writable database.
+     * @return the maintenance to start, or null to disable maintenance.
+     */
+    public DatabaseMaintenance createMaintenance( Context context, SQLiteDatabase db ) {
+
+        return null;
+    }
 }
@@ -0,0 +1,539 @@
+package com.metova.android.service.persistence;
+
+import java.io.File;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.PowerManager;
+import android.util.Log;
+
+import com.metova.android.util.Streams;
+
+/**
+ * Keeps a database healthy by periodically refreshing query planner statistics ({@code ANALYZE} and 
+ * {@code PRAGMA optimize}), checkpointing the write-ahead log and reclaiming free pages with 
+ * {@code PRAGMA incremental_vacuum}.
+ * <p/>
+ * Maintenance runs on a single low-priority background thread and only while the supplied 
+ * {@link IdleSignal} reports the application as idle.  Work is split into short steps separated by a 
+ * pause, and the idle signal is checked again before every step, so maintenance yields quickly once 
+ * the user returns.  {@link #stop()} interrupts any pending step and waits for a step already 
+ * running in SQLite to finish, so the database may be closed once it returns; from the main thread, 
+ * use {@link #stop(Runnable)} and close the database in its callback instead.
+ * <p/>
+ * Incremental vacuum only reclaims pages when the database uses {@code PRAGMA auto_vacuum = INCREMENTAL}, 
+ * which SQLite only accepts before the first table is created or with a full {@code VACUUM}.  The 
+ * first time a database without it passes the vacuum threshold, maintenance sets it and runs that 
+ * {@code VACUUM} in a single step, rewriting the whole file once; later passes vacuum incrementally.  
+ * {@code PRAGMA optimize} and WAL checkpoints are ignored by SQLite versions or journal modes which 
+ * do not support them.
+ * <p/>
+ * Create an instance from {@link DatabaseConfiguration#createMaintenance(Context, SQLiteDatabase)} to 
+ * have {@link DatabaseService} start and stop it with the database.
+ */
+public class DatabaseMaintenance {
+
+    private static final String TAG = DatabaseMaintenance.class.getSimpleName();
+
+    private static final long DEFAULT_CHECK_INTERVAL = TimeUnit.MINUTES.toMillis( 15 );
+    private static final long DEFAULT_ANALYZE_INTERVAL = TimeUnit.DAYS.toMillis( 1 );
+    private static final long DEFAULT_CHECKPOINT_INTERVAL = TimeUnit.HOURS.toMillis( 1 );
+    private static final long DEFAULT_STEP_PAUSE = 250;
+    private static final int DEFAULT_VACUUM_PAGES_PER_STEP = 64;
+    private static final int DEFAULT_MAX_VACUUM_STEPS = 32;
+    private static final double DEFAULT_VACUUM_THRESHOLD = 0.1;
+    private static final long DEFAULT_STOP_TIMEOUT = TimeUnit.SECONDS.toMillis( 5 );
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final SQLiteDatabase database;
+    private final IdleSignal idleSignal;
+
+    private long checkInterval = DEFAULT_CHECK_INTERVAL;
+    private long analyzeInterval = DEFAULT_ANALYZE_INTERVAL;
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private long stepPause = DEFAULT_STEP_PAUSE;
+    private int vacuumPagesPerStep = DEFAULT_VACUUM_PAGES_PER_STEP;
+    private int maxVacuumSteps = DEFAULT_MAX_VACUUM_STEPS;
+    private double vacuumThreshold = DEFAULT_VACUUM_THRESHOLD;
+    private long stopTimeout = DEFAULT_STOP_TIMEOUT;
+
+    private MaintenanceExecutor executor;
+    private ScheduledFuture<?> maintenanceFuture;
+    private volatile boolean running;
+
+    private volatile long lastAnalyzeTime;
+    private volatile long lastCheckpointTime;
+    private volatile DatabaseStatistics statistics;
+
+    /**
+     * Creates maintenance which only runs while the device's screen is off.
+     * 
+     * @param context any context.
+     * @param database the database to maintain.
+     */
+    public DatabaseMaintenance(Context context, SQLiteDatabase database) {
+
+        this( database, new ScreenOffIdleSignal( context ) );
+    }
+
+    /**
+     * @param database the database to maintain.
+     * @param idleSignal decides whether the application is idle enough to perform maintenance.
+     */
+    public DatabaseMaintenance(SQLiteDatabase database, IdleSignal idleSignal) {
+
+        if ( database == null || idleSignal == null ) {
+            throw new IllegalArgumentException( "Database and idle signal can not be null." );
+        }
+
+        this.database = database;
+        this.idleSignal = idleSignal;
+    }
+
+    /**
+     * Starts checking for maintenance work every {@link #getCheckInterval()} milliseconds.
+     */
+    public synchronized void start() {
+
+        if ( running ) {
+            return;
+        }
+
+        running = true;
+        executor = new MaintenanceExecutor();
+        maintenanceFuture = executor.scheduleWithFixedDelay( new MaintenanceRunnable(), getCheckInterval(), getCheckInterval(), TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Stops maintenance, interrupting any maintenance pass between steps.  A step which is already 
+     * executing inside SQLite cannot be interrupted, so this waits up to {@link #getStopTimeout()} 
+     * milliseconds for it to complete before returning.
+     * 
+     * @return true if maintenance has stopped, false if a step was still running when the timeout 
+     * elapsed, in which case closing the database may fail that step.
+     */
+    public synchronized boolean stop() {
+
+        ScheduledThreadPoolExecutor stopping = shutdown( null );
+        if ( stopping == null ) {
+            return true;
+        }
+
+        try {
+
+            if ( stopping.awaitTermination( getStopTimeout(), TimeUnit.MILLISECONDS ) ) {
+                return true;
+            }
+
+            Log.w( TAG, "Maintenance step still running " + getStopTimeout() + "ms after stop." );
+            return false;
+        }
+        catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Stops maintenance without waiting, interrupting any maintenance pass between steps, so it may be 
+     * called from the main thread.  A step which is already executing inside SQLite completes in the 
+     * background, and the callback runs once it has.
+     * 
+     * @param onStopped run once no maintenance step is executing, such as to close the database; on the 
+     * maintenance thread, or on the calling thread if maintenance is not running.  May be null.
+     */
+    public synchronized void stop( Runnable onStopped ) {
+
+        if ( shutdown( onStopped ) == null && onStopped != null ) {
+            onStopped.run();
+        }
+    }
+
+    /**
+     * Cancels the schedule and shuts its executor down, which runs the callback once it terminates.
+     * 
+     * @return the executor shut down, or null if maintenance was not started.
+     */
+    private ScheduledThreadPoolExecutor shutdown( Runnable onTerminated ) {
+
+        running = false;
+
+        if ( maintenanceFuture != null ) {
+
+            maintenanceFuture.cancel( true );
+            maintenanceFuture = null;
+        }
+
+        if ( executor == null ) {
+            return null;
+        }
+
+        MaintenanceExecutor stopping = executor;
+        executor = null;
+        stopping.onTerminated = onTerminated;
+        stopping.shutdownNow();
+        return stopping;
+    }
+
+    public boolean isRunning() {
+
+        return running;
+    }
+
+    /**
+     * Performs a single maintenance pass on the calling thread, as the scheduler does when the 
+     * application is idle.  Must not be called from the main thread.
+     * 
+     * @return true if the pass completed, false if it was cut short because the application became 
+     * busy or the thread was interrupted.
+     */
+    public boolean runMaintenance() {
+
+        try {
+
+            DatabaseStatistics before = gatherStatistics();
+
+            long now = System.currentTimeMillis();
+            if ( now - lastCheckpointTime >= getCheckpointInterval() ) {
+
+                if ( !awaitStep() ) {
+                    return false;
+                }
+
+                executePragma( "PRAGMA wal_checkpoint(PASSIVE)" );
+                lastCheckpointTime = System.currentTimeMillis();
+            }
+
+            if ( now - lastAnalyzeTime >= getAnalyzeInterval() ) {
+
+                if ( !awaitStep() ) {
+                    return false;
+                }
+
+                database.execSQL( "ANALYZE" );
+
+                if ( !awaitStep() ) {
+                    return false;
+                }
+
+                executePragma( "PRAGMA optimize" );
+                lastAnalyzeTime = System.currentTimeMillis();
+            }
+
+            if ( before.getFragmentation() >= getVacuumThreshold() && queryLong( "PRAGMA auto_vacuum" ) != AUTO_VACUUM_INCREMENTAL ) {
+
+                if ( !awaitStep() ) {
+                    return false;
+                }
+
+                //the mode only changes once a full VACUUM rebuilds the database, which also empties the freelist
+                Log.i( TAG, "Converting database to incremental auto-vacuum." );
+                database.execSQL( "PRAGMA auto_vacuum = INCREMENTAL" );
+                database.execSQL( "VACUUM" );
+            }
+            else if ( before.getFragmentation() >= getVacuumThreshold() ) {
+
+                for (int step = 0; step < getMaxVacuumSteps(); step++) {
+
+                    if ( !awaitStep() ) {
+                        return false;
+                    }
+
+                    executePragma( "PRAGMA incremental_vacuum(" + getVacuumPagesPerStep() + ")" );
+                    if ( queryLong( "PRAGMA freelist_count" ) == 0 ) {
+                        break;
+                    }
+                }
+            }
+
+            gatherStatistics();
+            return true;
+        }
+        catch (InterruptedException e) {
+
+            Log.d( TAG, "Interrupted during maintenance pass." );
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Reads the page count, page size and freelist size of the database along with the size of its 
+     * files, and retains them as the latest statistics.
+     * 
+     * @return the statistics observed.
+     */
+    public DatabaseStatistics gatherStatistics() {
+
+        long walFileSize = 0;
+        long fileSize = 0;
+
+        String path = database.getPath();
+        if ( path != null ) {
+
+            fileSize = new File( path ).length();
+            walFileSize = new File( path + "-wal" ).length();
+        }
+
+        DatabaseStatistics statistics = new DatabaseStatistics( queryLong( "PRAGMA page_count" ), queryLong( "PRAGMA page_size" ), queryLong( "PRAGMA freelist_count" ), fileSize, walFileSize, System.currentTimeMillis() );
+        this.statistics = statistics;
+
+        if ( Log.isLoggable( TAG, Log.DEBUG ) ) {
+            Log.d( TAG, "Observed " + statistics );
+        }
+
+        return statistics;
+    }
+
+    /**
+     * The statistics observed during the most recent maintenance pass or call to {@link #gatherStatistics()}.
+     * 
+     * @return the latest statistics, or null if none have been gathered yet.
+     */
+    public DatabaseStatistics getStatistics() {
+
+        return statistics;
+    }
+
+    /**
+     * Pauses between steps, then confirms maintenance should continue.
+     */
+    private boolean awaitStep() throws InterruptedException {
+
+        Thread.sleep( getStepPause() );
+        return idleSignal.isIdle() && !Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Executes a PRAGMA which may return rows.  Android requires these to be run as queries, and 
+     * the statement is only stepped to completion once every row is read.
+     */
+    private void executePragma( String pragma ) {
+
+        Cursor cursor = null;
+        try {
+
+            cursor = database.rawQuery( pragma, null );
+            while (cursor.moveToNext()) {
+                // step through every result row
+            }
+        }
+        finally {
+
+            Streams.close( cursor );
+        }
+    }
+
+    private long queryLong( String query ) {
+
+        Cursor cursor = null;
+        try {
+
+            cursor = database.rawQuery( query, null );
+            return cursor.moveToFirst() ? cursor.getLong( 0 ) : 0;
+        }
+        finally {
+
+            Streams.close( cursor );
+        }
+    }
+
+    /**
+     * Decides whether the application is idle enough for maintenance to run.
+     */
+    public interface IdleSignal {
+
+        /**
+         * Called from the maintenance thread before each maintenance step.
+         * 
+         * @return true if maintenance may proceed.
+         */
+        public boolean isIdle();
+    }
+
+    /**
+     * Considers the application idle while the device's screen is off.
+     */
+    public static class ScreenOffIdleSignal implements IdleSignal {
+
+        private final PowerManager powerManager;
+
+        public ScreenOffIdleSignal(Context context) {
+
+            this.powerManager = (PowerManager) context.getSystemService( Context.POWER_SERVICE );
+        }
+
+        public boolean isIdle() {
+
+            return !powerManager.isScreenOn();
+        }
+    }
+
+    private final class MaintenanceRunnable implements Runnable {
+
+        public void run() {
+
+            if ( !running || !idleSignal.isIdle() ) {
+                return;
+            }
+
+            try {
+
+                if ( !runMaintenance() ) {
+                    Log.d( TAG, "Maintenance pass cut short; it will resume on the next check." );
+                }
+            }
+            catch (RuntimeException e) {
+                // never let a failure cancel the periodic schedule
+                Log.e( TAG, "Maintenance pass failed.", e );
+            }
+        }
+    }
+
+    /**
+     * Runs a callback once shut down and no maintenance step is executing.
+     */
+    private static final class MaintenanceExecutor extends ScheduledThreadPoolExecutor {
+
+        private volatile Runnable onTerminated;
+
+        public MaintenanceExecutor() {
+
+            super( 1, new MaintenanceThreadFactory() );
+        }
+
+        @Override
+        protected void terminated() {
+
+            super.terminated();
+
+            Runnable callback = onTerminated;
+            if ( callback == null ) {
+                return;
+            }
+
+            try {
+                callback.run();
+            }
+            catch (RuntimeException e) {
+                Log.e( TAG, "Callback after stopping maintenance failed.", e );
+            }
+        }
+    }
+
+    private static final class MaintenanceThreadFactory implements ThreadFactory {
+
+        public Thread newThread( Runnable runnable ) {
+
+            Thread thread = new Thread( runnable, TAG );
+            thread.setPriority( Thread.MIN_PRIORITY );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+
+    public long getCheckInterval() {
+
+        return checkInterval;
+    }
+
+    /**
+     * Sets how often the scheduler checks whether maintenance is due.  Takes effect on the next {@link #start()}.
+     */
+    public void setCheckInterval( long checkInterval ) {
+
+        this.checkInterval = checkInterval;
+    }
+
+    public long getAnalyzeInterval() {
+
+        return analyzeInterval;
+    }
+
+    /**
+     * Sets the minimum time between refreshes of query planner statistics.
+     */
+    public void setAnalyzeInterval( long analyzeInterval ) {
+
+        this.analyzeInterval = analyzeInterval;
+    }
+
+    public long getCheckpointInterval() {
+
+        return checkpointInterval;
+    }
+
+    /**
+     * Sets the minimum time between write-ahead log checkpoints.
+     */
+    public void setCheckpointInterval( long checkpointInterval ) {
+
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public long getStepPause() {
+
+        return stepPause;
+    }
+
+    /**
+     * Sets the pause before every maintenance step, which throttles how much of the database's 
+     * time maintenance may take.
+     */
+    public void setStepPause( long stepPause ) {
+
+        this.stepPause = stepPause;
+    }
+
+    public int getVacuumPagesPerStep() {
+
+        return vacuumPagesPerStep;
+    }
+
+    public void setVacuumPagesPerStep( int vacuumPagesPerStep ) {
+
+        this.vacuumPagesPerStep = vacuumPagesPerStep;
+    }
+
+    public int getMaxVacuumSteps() {
+
+        return maxVacuumSteps;
+    }
+
+    public void setMaxVacuumSteps( int maxVacuumSteps ) {
+
+        this.maxVacuumSteps = maxVacuumSteps;
+    }
+
+    public long getStopTimeout() {
+
+        return stopTimeout;
+    }
+
+    /**
+     * Sets how long {@link #stop()} waits for a running maintenance step to complete.
+     */
+    public void setStopTimeout( long stopTimeout ) {
+
+        this.stopTimeout = stopTimeout;
+    }
+
+    public double getVacuumThreshold() {
+
+        return vacuumThreshold;
+    }
+
+    /**
+     * Sets the fraction of free pages above which an incremental vacuum is performed.
+     */
+    public void setVacuumThreshold( double vacuumThreshold ) {
+
+        this.vacuumThreshold = vacuumThreshold;
+    }
+}
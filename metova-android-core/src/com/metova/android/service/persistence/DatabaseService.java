@@ -17,6 +17,7 @@ public final class DatabaseService extends Service {
     private final Binder binder = new DatabaseServiceBinder();
     private Database database;
     private SQLiteDatabase writableDatabase;
+    private DatabaseMaintenance maintenance;
 
     @Override
     public void onCreate() {
@@ -26,17 +27,42 @@ public final class DatabaseService extends Service {
         Database database = new Database( getApplicationContext() );
         setDatabase( database );
         setWritableDatabase( database.getWritableDatabase() );
+
+        DatabaseMaintenance maintenance = getDatabaseConfiguration().createMaintenance( getApplicationContext(), getWritableDatabase() );
+        if ( maintenance != null ) {
+
+            maintenance.start();
+            setMaintenance( maintenance );
+        }
     }
 
     @Override
     public void onDestroy() {
 
-        Streams.close( getWritableDatabase() );
-        Streams.close( getDatabase() );
+        if ( getMaintenance() != null ) {
+            //closes the database once a running step has finished, rather than blocking the main thread on it
+            getMaintenance().stop( new Runnable() {
+
+                @Override
+                public void run() {
+
+                    closeDatabase();
+                }
+            } );
+        }
+        else {
+            closeDatabase();
+        }
 
         super.onDestroy();
     }
 
+    private void closeDatabase() {
+
+        Streams.close( getWritableDatabase() );
+        Streams.close( getDatabase() );
+    }
+
     @Override
     public IBinder onBind( Intent intent ) {
 
@@ -97,6 +123,22 @@ public final class DatabaseService extends Service {
         this.writableDatabase = writableDatabase;
     }
 
+    /**
+     * The background maintenance running against the database, if any.
+     * 
+     * @return the maintenance, or null if maintenance is disabled.
+     * @see DatabaseConfiguration#createMaintenance(Context, SQLiteDatabase)
+     */
+    public final DatabaseMaintenance getMaintenance() {
+
+        return maintenance;
+    }
+
+    private void setMaintenance( DatabaseMaintenance maintenance ) {
+
+        this.maintenance = maintenance;
+    }
+
     public static DatabaseConfiguration getDatabaseConfiguration() {
 
         return databaseConfiguration;
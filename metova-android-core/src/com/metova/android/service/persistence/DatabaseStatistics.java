@@ -0,0 +1,86 @@
+package com.metova.android.service.persistence;
+
+/**
+ * A snapshot of the storage statistics of a database, as observed by {@link DatabaseMaintenance}.
+ */
+public final class DatabaseStatistics {
+
+    private final long pageCount;
+    private final long pageSize;
+    private final long freelistCount;
+    private final long fileSize;
+    private final long walFileSize;
+    private final long observedAt;
+
+    public DatabaseStatistics(long pageCount, long pageSize, long freelistCount, long fileSize, long walFileSize, long observedAt) {
+
+        this.pageCount = pageCount;
+        this.pageSize = pageSize;
+        this.freelistCount = freelistCount;
+        this.fileSize = fileSize;
+        this.walFileSize = walFileSize;
+        this.observedAt = observedAt;
+    }
+
+    /**
+     * @return the total number of pages in the database file.
+     */
+    public long getPageCount() {
+
+        return pageCount;
+    }
+
+    /**
+     * @return the size of a database page in bytes.
+     */
+    public long getPageSize() {
+
+        return pageSize;
+    }
+
+    /**
+     * @return the number of unused pages which could be reclaimed by a vacuum.
+     */
+    public long getFreelistCount() {
+
+        return freelistCount;
+    }
+
+    /**
+     * @return the size of the database file in bytes.
+     */
+    public long getFileSize() {
+
+        return fileSize;
+    }
+
+    /**
+     * @return the size of the write-ahead log in bytes, or 0 if the database is not in WAL mode.
+     */
+    public long getWalFileSize() {
+
+        return walFileSize;
+    }
+
+    /**
+     * @return the fraction of pages which are unused, between 0 and 1.
+     */
+    public double getFragmentation() {
+
+        return pageCount > 0 ? (double) freelistCount / pageCount : 0;
+    }
+
+    /**
+     * @return the system time at which these statistics were gathered.
+     */
+    public long getObservedAt() {
+
+        return observedAt;
+    }
+
+    @Override
+    public String toString() {
+
+        return "pages=" + pageCount + "; pageSize=" + pageSize + "; freelist=" + freelistCount + "; fileSize=" + fileSize + "; walFileSize=" + walFileSize;
+    }
+}
@@ -0,0 +1,42 @@
+package com.metova.android.service.persistence.record.aggregate;
+
+import com.metova.android.service.persistence.record.column.Column;
+
+/**
+ * SQLite aggregate functions which may be evaluated against a {@link Column} inside the database.
+ */
+public enum Aggregate {
+
+    AVG,
+    COUNT,
+    MAX,
+    MIN,
+    SUM,
+    TOTAL;
+
+    /**
+     * Builds the SQL expression which applies this aggregate to the specified column. A {@code null} 
+     * column is only valid for {@link #COUNT}, and counts every row.
+     * 
+     * @param column the column to aggregate, or null to count rows.
+     * @return the SQL expression, e.g. "SUM(quantity)".
+     */
+    public String of( Column column ) {
+
+        if ( column == null ) {
+
+            if ( this != COUNT ) {
+                throw new IllegalArgumentException( "A column is required for " + name() + "." );
+            }
+
+            return "COUNT(1)";
+        }
+
+        StringBuffer buffer = new StringBuffer( name() );
+        buffer.append( "(" );
+        buffer.append( column.getName() );
+        buffer.append( ")" );
+
+        return buffer.toString();
+    }
+}
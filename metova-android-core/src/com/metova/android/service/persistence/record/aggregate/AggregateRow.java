@@ -0,0 +1,65 @@
+package com.metova.android.service.persistence.record.aggregate;
+
+/**
+ * A single row of a grouped aggregate query: the value of the grouping column, the number of 
+ * records in the group, and the aggregated value for the group.
+ */
+public final class AggregateRow {
+
+    private final String key;
+    private final long count;
+    private final double value;
+
+    public AggregateRow(String key, long count, double value) {
+
+        this.key = key;
+        this.count = count;
+        this.value = value;
+    }
+
+    /**
+     * The value of the grouping column for this row.  May be null if records exist with a null value.
+     * 
+     * @return the group key.
+     */
+    public String getKey() {
+
+        return key;
+    }
+
+    /**
+     * The number of records in the group.
+     * 
+     * @return the record count.
+     */
+    public long getCount() {
+
+        return count;
+    }
+
+    /**
+     * The aggregated value for the group, or 0 if every aggregated value was null.
+     * 
+     * @return the aggregated value.
+     */
+    public double getValue() {
+
+        return value;
+    }
+
+    /**
+     * Convenience accessor for aggregates over INTEGER columns.
+     * 
+     * @return the aggregated value, truncated to a long.
+     */
+    public long getLongValue() {
+
+        return (long) value;
+    }
+
+    @Override
+    public String toString() {
+
+        return key + "=" + value + " (" + count + ")";
+    }
+}
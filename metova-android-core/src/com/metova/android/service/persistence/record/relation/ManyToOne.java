@@ -0,0 +1,97 @@
+package com.metova.android.service.persistence.record.relation;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.metova.android.model.persistence.AbstractRecord;
+import com.metova.android.service.persistence.AbstractRecordStore;
+
+/**
+ * Describes a many-to-one link from a child record to the parent record it references through a 
+ * foreign key column.
+ * <p/>
+ * Parents are loaded for a whole page of children at once using {@link #prefetch(List)}, which 
+ * issues a single {@code IN (...)} query against the parent table instead of one query per child.
+ * 
+ * @param <C> the child record type, which holds the foreign key.
+ * @param <P> the parent record type.
+ */
+public abstract class ManyToOne<C extends AbstractRecord, P extends AbstractRecord> {
+
+    private final AbstractRecordStore<P> parentStore;
+
+    /**
+     * @param parentStore the store holding the parent records.
+     */
+    protected ManyToOne(AbstractRecordStore<P> parentStore) {
+
+        if ( parentStore == null ) {
+            throw new IllegalArgumentException( "Parent store can not be null." );
+        }
+
+        this.parentStore = parentStore;
+    }
+
+    /**
+     * Returns the parent ID referenced by the specified child.
+     * 
+     * @param child a child record.
+     * @return the value of the child's foreign key column, or 0 if the child has no parent.
+     */
+    protected abstract long getForeignKey( C child );
+
+    /**
+     * Attaches the loaded parent to the child.  Called once for every child passed to 
+     * {@link #prefetch(List)} whose parent was found.
+     * 
+     * @param child the child record.
+     * @param parent the parent referenced by the child.
+     */
+    protected abstract void attach( C child, P parent );
+
+    /**
+     * Loads the parents of every specified child in a single batched query and attaches them to 
+     * their children in memory.  Children which share a parent share the same parent instance.
+     * 
+     * @param children the child records.
+     * @return the loaded parents, keyed by ID.
+     */
+    public Map<Long, P> prefetch( List<C> children ) {
+
+        final Map<Long, P> parentsById = new HashMap<Long, P>();
+        if ( children == null || children.isEmpty() ) {
+            return parentsById;
+        }
+
+        final Set<Long> parentIds = new LinkedHashSet<Long>();
+        for (C child : children) {
+
+            long parentId = getForeignKey( child );
+            if ( parentId > 0 ) {
+                parentIds.add( Long.valueOf( parentId ) );
+            }
+        }
+
+        for (P parent : getParentStore().selectByIds( parentIds )) {
+            parentsById.put( Long.valueOf( parent.getId() ), parent );
+        }
+
+        for (C child : children) {
+
+            P parent = parentsById.get( Long.valueOf( getForeignKey( child ) ) );
+            if ( parent != null ) {
+                attach( child, parent );
+            }
+        }
+
+        return parentsById;
+    }
+
+    public AbstractRecordStore<P> getParentStore() {
+
+        return parentStore;
+    }
+}
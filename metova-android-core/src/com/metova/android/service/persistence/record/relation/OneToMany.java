@@ -0,0 +1,131 @@
+package com.metova.android.service.persistence.record.relation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.metova.android.model.persistence.AbstractRecord;
+import com.metova.android.service.persistence.AbstractRecordStore;
+import com.metova.android.service.persistence.record.column.Column;
+
+/**
+ * Describes a one-to-many link from a parent record to the child records which reference it 
+ * through a foreign key column in the child table.
+ * <p/>
+ * Children are loaded for a whole page of parents at once using {@link #prefetch(List)}, which 
+ * issues a single {@code IN (...)} query against the child table instead of one query per parent.
+ * <p/>
+ * Example usage:
+ * 
+ * <pre>
+ * OneToMany&lt;Order, LineItem&gt; lineItems = new OneToMany&lt;Order, LineItem&gt;( LineItemStore.instance(), LineItemStore.ORDER_ID ) {
+ * 
+ *     protected long getForeignKey( LineItem child ) {
+ *         return child.getOrderId();
+ *     }
+ * 
+ *     protected void attach( Order parent, List&lt;LineItem&gt; children ) {
+ *         parent.setLineItems( children );
+ *     }
+ * };
+ * 
+ * lineItems.prefetch( OrderStore.instance().select( 0, 50 ) );
+ * </pre>
+ * 
+ * @param <P> the parent record type.
+ * @param <C> the child record type.
+ */
+public abstract class OneToMany<P extends AbstractRecord, C extends AbstractRecord> {
+
+    private final AbstractRecordStore<C> childStore;
+    private final Column foreignKey;
+
+    /**
+     * @param childStore the store holding the child records.
+     * @param foreignKey the column of the child table which holds the parent ID.
+     */
+    protected OneToMany(AbstractRecordStore<C> childStore, Column foreignKey) {
+
+        if ( childStore == null || foreignKey == null ) {
+            throw new IllegalArgumentException( "Child store and foreign key can not be null." );
+        }
+
+        this.childStore = childStore;
+        this.foreignKey = foreignKey;
+    }
+
+    /**
+     * Returns the parent ID referenced by the specified child.
+     * 
+     * @param child a child record loaded by this relation.
+     * @return the value of the child's foreign key column.
+     */
+    protected abstract long getForeignKey( C child );
+
+    /**
+     * Attaches the loaded children to their parent.  Called once for every parent passed to 
+     * {@link #prefetch(List)}, with an empty list for parents which have no children.
+     * 
+     * @param parent the parent record.
+     * @param children the children of the parent, ordered by ID.
+     */
+    protected abstract void attach( P parent, List<C> children );
+
+    /**
+     * Loads the children of every specified parent in a single batched query and attaches them 
+     * to their parents in memory.
+     * 
+     * @param parents the parent records.  Records which have not been inserted are skipped.
+     * @return the loaded children, keyed by parent ID.
+     */
+    public Map<Long, List<C>> prefetch( List<P> parents ) {
+
+        final Map<Long, List<C>> childrenByParentId = new HashMap<Long, List<C>>();
+        if ( parents == null || parents.isEmpty() ) {
+            return childrenByParentId;
+        }
+
+        final List<Long> parentIds = new ArrayList<Long>( parents.size() );
+        for (P parent : parents) {
+            if ( parent.getId() > 0 ) {
+                parentIds.add( parent.getId() );
+            }
+        }
+
+        for (C child : getChildStore().selectWhereIn( getForeignKeyColumn(), parentIds )) {
+
+            Long parentId = Long.valueOf( getForeignKey( child ) );
+            List<C> children = childrenByParentId.get( parentId );
+            if ( children == null ) {
+
+                children = new ArrayList<C>();
+                childrenByParentId.put( parentId, children );
+            }
+
+            children.add( child );
+        }
+
+        for (P parent : parents) {
+
+            if ( parent.getId() > 0 ) {
+
+                List<C> children = childrenByParentId.get( Long.valueOf( parent.getId() ) );
+                attach( parent, children == null ? Collections.<C> emptyList() : children );
+            }
+        }
+
+        return childrenByParentId;
+    }
+
+    public AbstractRecordStore<C> getChildStore() {
+
+        return childStore;
+    }
+
+    public Column getForeignKeyColumn() {
+
+        return foreignKey;
+    }
+}
@@ -0,0 +1,117 @@
+package com.metova.android.service.persistence.record.transfer;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.metova.android.service.persistence.record.column.Column;
+import com.metova.android.util.text.CharacterEncodings;
+
+final class BinaryRowReader implements RowReader {
+
+    private final DataInputStream inputStream;
+    private final Column[] columns;
+
+    /**
+     * Holds the frame of the row currently being read.  Grown as needed and reused for every row.
+     */
+    private byte[] frame = new byte[512];
+    private boolean finished;
+
+    BinaryRowReader(InputStream inputStream, String tableName, Column[] columns) throws IOException {
+
+        this.inputStream = new DataInputStream( inputStream );
+        this.columns = columns;
+
+        if ( this.inputStream.readInt() != BinaryRowWriter.MAGIC ) {
+            throw new IOException( "Stream is not a binary export." );
+        }
+
+        this.inputStream.readUTF();
+
+        String[] names = new String[this.inputStream.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = this.inputStream.readUTF();
+        }
+
+        Transfers.assertColumnsMatch( tableName, columns, names );
+    }
+
+    public boolean readRow( Object[] values ) throws IOException {
+
+        if ( finished ) {
+            return false;
+        }
+
+        int length = inputStream.readInt();
+        if ( length == BinaryRowWriter.END_OF_ROWS ) {
+
+            finished = true;
+            return false;
+        }
+
+        if ( length < 0 ) {
+            throw new IOException( "Malformed row length " + length + "." );
+        }
+
+        if ( frame.length < length ) {
+            frame = new byte[Math.max( length, frame.length * 2 )];
+        }
+
+        inputStream.readFully( frame, 0, length );
+
+        int position = 0;
+        for (int i = 0; i < columns.length; i++) {
+
+            if ( position >= length ) {
+                throw new EOFException( "Row ended after " + i + " of " + columns.length + " values." );
+            }
+
+            byte type = frame[position++];
+            switch (type) {
+                case BinaryRowWriter.TYPE_NULL:
+                    values[i] = null;
+                    break;
+                case BinaryRowWriter.TYPE_LONG:
+                    values[i] = Long.valueOf( readLong( position ) );
+                    position += 8;
+                    break;
+                case BinaryRowWriter.TYPE_STRING:
+                case BinaryRowWriter.TYPE_BLOB:
+                    int size = readInt( position );
+                    position += 4;
+                    if ( size < 0 || position + size > length ) {
+                        throw new IOException( "Malformed value length " + size + "." );
+                    }
+
+                    if ( type == BinaryRowWriter.TYPE_STRING ) {
+                        values[i] = new String( frame, position, size, CharacterEncodings.UTF_8 );
+                    }
+                    else {
+
+                        byte[] bytes = new byte[size];
+                        System.arraycopy( frame, position, bytes, 0, size );
+                        values[i] = bytes;
+                    }
+
+                    position += size;
+                    break;
+                default:
+                    throw new IOException( "Unknown value type " + type + "." );
+            }
+        }
+
+        return true;
+    }
+
+    private int readInt( int position ) {
+
+        return ( ( frame[position] & 0xFF ) << 24 ) | ( ( frame[position + 1] & 0xFF ) << 16 ) | ( ( frame[position + 2] & 0xFF ) << 8 ) | ( frame[position + 3] & 0xFF );
+    }
+
+    private long readLong( int position ) {
+
+        return ( (long) readInt( position ) << 32 ) | ( readInt( position + 4 ) & 0xFFFFFFFFL );
+    }
+}
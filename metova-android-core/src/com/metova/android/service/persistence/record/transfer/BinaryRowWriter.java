@@ -0,0 +1,81 @@
+package com.metova.android.service.persistence.record.transfer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.metova.android.service.persistence.record.column.Column;
+import com.metova.android.util.text.CharacterEncodings;
+
+final class BinaryRowWriter implements RowWriter {
+
+    static final int MAGIC = 0x4D525331; // "MRS1"
+    static final int END_OF_ROWS = -1;
+
+    static final byte TYPE_NULL = 0;
+    static final byte TYPE_LONG = 1;
+    static final byte TYPE_STRING = 2;
+    static final byte TYPE_BLOB = 3;
+
+    private final DataOutputStream outputStream;
+
+    /**
+     * Holds the frame of the row currently being written, so that its length can be written 
+     * first.  Reused for every row.
+     */
+    private final ByteArrayOutputStream frameBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream frame = new DataOutputStream( frameBuffer );
+
+    BinaryRowWriter(OutputStream outputStream, String tableName, Column[] columns) throws IOException {
+
+        this.outputStream = new DataOutputStream( outputStream );
+
+        this.outputStream.writeInt( MAGIC );
+        this.outputStream.writeUTF( tableName );
+        this.outputStream.writeInt( columns.length );
+        for (Column column : columns) {
+            this.outputStream.writeUTF( column.getName() );
+        }
+    }
+
+    public void writeRow( Object[] values ) throws IOException {
+
+        frameBuffer.reset();
+        for (Object value : values) {
+
+            if ( value == null ) {
+                frame.writeByte( TYPE_NULL );
+            }
+            else if ( value instanceof Long ) {
+
+                frame.writeByte( TYPE_LONG );
+                frame.writeLong( ( (Long) value ).longValue() );
+            }
+            else if ( value instanceof byte[] ) {
+
+                byte[] bytes = (byte[]) value;
+                frame.writeByte( TYPE_BLOB );
+                frame.writeInt( bytes.length );
+                frame.write( bytes );
+            }
+            else {
+
+                byte[] bytes = value.toString().getBytes( CharacterEncodings.UTF_8 );
+                frame.writeByte( TYPE_STRING );
+                frame.writeInt( bytes.length );
+                frame.write( bytes );
+            }
+        }
+
+        frame.flush();
+        outputStream.writeInt( frameBuffer.size() );
+        frameBuffer.writeTo( outputStream );
+    }
+
+    public void finish() throws IOException {
+
+        outputStream.writeInt( END_OF_ROWS );
+        outputStream.flush();
+    }
+}
@@ -0,0 +1,91 @@
+package com.metova.android.service.persistence.record.transfer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Base64;
+
+import com.metova.android.service.persistence.record.column.Column;
+import com.metova.android.service.persistence.record.column.ColumnType;
+import com.metova.android.util.text.CharacterEncodings;
+
+final class JsonLinesRowReader implements RowReader {
+
+    private final BufferedReader reader;
+    private final Column[] columns;
+
+    JsonLinesRowReader(InputStream inputStream, String tableName, Column[] columns) throws IOException {
+
+        this.reader = new BufferedReader( new InputStreamReader( inputStream, CharacterEncodings.UTF_8 ) );
+        this.columns = columns;
+
+        String line = reader.readLine();
+        if ( line == null ) {
+            throw new IOException( "Missing header for " + tableName + "." );
+        }
+
+        try {
+
+            JSONObject header = new JSONObject( line );
+            JSONArray columnNames = header.getJSONArray( JsonLinesRowWriter.KEY_COLUMNS );
+
+            String[] names = new String[columnNames.length()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = columnNames.getString( i );
+            }
+
+            Transfers.assertColumnsMatch( tableName, columns, names );
+        }
+        catch (JSONException e) {
+            throw new IOException( "Malformed header for " + tableName + ": " + e.getMessage() );
+        }
+    }
+
+    public boolean readRow( Object[] values ) throws IOException {
+
+        String line = reader.readLine();
+        while (line != null && line.length() == 0) {
+            line = reader.readLine();
+        }
+
+        if ( line == null ) {
+            return false;
+        }
+
+        try {
+
+            JSONArray row = new JSONArray( line );
+            if ( row.length() != columns.length ) {
+                throw new IOException( "Expected " + columns.length + " values but found " + row.length() + "." );
+            }
+
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = row.isNull( i ) ? null : readValue( row, i, columns[i].getType() );
+            }
+        }
+        catch (JSONException e) {
+            throw new IOException( "Malformed row: " + e.getMessage() );
+        }
+
+        return true;
+    }
+
+    private Object readValue( JSONArray row, int index, ColumnType type ) throws JSONException {
+
+        switch (type) {
+            case INTEGER:
+            case INTEGER_PRIMARY_KEY:
+                return Long.valueOf( row.getLong( index ) );
+            case BLOB:
+                return Base64.decode( row.getString( index ), Base64.NO_WRAP );
+            default:
+                return row.getString( index );
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.metova.android.service.persistence.record.transfer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Base64;
+
+import com.metova.android.service.persistence.record.column.Column;
+import com.metova.android.util.text.CharacterEncodings;
+
+final class JsonLinesRowWriter implements RowWriter {
+
+    static final String KEY_TABLE = "table";
+    static final String KEY_COLUMNS = "columns";
+
+    private final Writer writer;
+
+    JsonLinesRowWriter(OutputStream outputStream, String tableName, Column[] columns) throws IOException {
+
+        this.writer = new BufferedWriter( new OutputStreamWriter( outputStream, CharacterEncodings.UTF_8 ) );
+
+        JSONArray columnNames = new JSONArray();
+        for (Column column : columns) {
+            columnNames.put( column.getName() );
+        }
+
+        try {
+
+            JSONObject header = new JSONObject();
+            header.put( KEY_TABLE, tableName );
+            header.put( KEY_COLUMNS, columnNames );
+            writeLine( header.toString() );
+        }
+        catch (JSONException e) {
+            throw new IOException( "Could not write header for " + tableName + ": " + e.getMessage() );
+        }
+    }
+
+    public void writeRow( Object[] values ) throws IOException {
+
+        JSONArray row = new JSONArray();
+        for (Object value : values) {
+
+            if ( value == null ) {
+                row.put( JSONObject.NULL );
+            }
+            else if ( value instanceof byte[] ) {
+                row.put( Base64.encodeToString( (byte[]) value, Base64.NO_WRAP ) );
+            }
+            else {
+                row.put( value );
+            }
+        }
+
+        writeLine( row.toString() );
+    }
+
+    public void finish() throws IOException {
+
+        writer.flush();
+    }
+
+    private void writeLine( String line ) throws IOException {
+
+        writer.write( line );
+        writer.write( '\n' );
+    }
+}
@@ -0,0 +1,19 @@
+package com.metova.android.service.persistence.record.transfer;
+
+import java.io.IOException;
+
+/**
+ * Reads table rows from a stream, one row at a time.
+ */
+public interface RowReader {
+
+    /**
+     * Reads the next row into the specified array.  Values are {@code null}, {@link Long}, 
+     * {@link String} or {@code byte[]}, in the order of the columns the reader was created with.
+     * 
+     * @param values the array to fill; its length must equal the number of columns.
+     * @return true if a row was read, false if the end of the stream was reached.
+     * @throws IOException the row could not be read or is malformed.
+     */
+    public boolean readRow( Object[] values ) throws IOException;
+}
@@ -0,0 +1,25 @@
+package com.metova.android.service.persistence.record.transfer;
+
+import java.io.IOException;
+
+/**
+ * Writes table rows to a stream, one row at a time.
+ */
+public interface RowWriter {
+
+    /**
+     * Writes a single row.  Values are {@code null}, {@link Long}, {@link String} or {@code byte[]}, 
+     * and appear in the order of the columns the writer was created with.
+     * 
+     * @param values the row's values.  The array may be reused by the caller once this method returns.
+     * @throws IOException the row could not be written.
+     */
+    public void writeRow( Object[] values ) throws IOException;
+
+    /**
+     * Writes any buffered data to the underlying stream.  The underlying stream is not closed.
+     * 
+     * @throws IOException the data could not be written.
+     */
+    public void finish() throws IOException;
+}
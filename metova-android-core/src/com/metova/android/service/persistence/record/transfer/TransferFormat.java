@@ -0,0 +1,74 @@
+package com.metova.android.service.persistence.record.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.metova.android.service.persistence.record.column.Column;
+
+/**
+ * Serialization formats supported when streaming a table to or from a stream.
+ */
+public enum TransferFormat {
+
+    /**
+     * One JSON document per line.  The first line describes the table's columns, and every 
+     * following line is a JSON array holding one row's values in column order.  BLOB values are 
+     * Base64 encoded.
+     */
+    JSON_LINES {
+
+        @Override
+        public RowWriter newWriter( OutputStream outputStream, String tableName, Column[] columns ) throws IOException {
+
+            return new JsonLinesRowWriter( outputStream, tableName, columns );
+        }
+
+        @Override
+        public RowReader newReader( InputStream inputStream, String tableName, Column[] columns ) throws IOException {
+
+            return new JsonLinesRowReader( inputStream, tableName, columns );
+        }
+    },
+
+    /**
+     * A compact binary format.  A header describes the table's columns, followed by one 
+     * length-prefixed frame per row holding type-tagged values in column order.
+     */
+    BINARY {
+
+        @Override
+        public RowWriter newWriter( OutputStream outputStream, String tableName, Column[] columns ) throws IOException {
+
+            return new BinaryRowWriter( outputStream, tableName, columns );
+        }
+
+        @Override
+        public RowReader newReader( InputStream inputStream, String tableName, Column[] columns ) throws IOException {
+
+            return new BinaryRowReader( inputStream, tableName, columns );
+        }
+    };
+
+    /**
+     * Creates a writer which writes the format's header and then rows to the specified stream.
+     * 
+     * @param outputStream the destination stream.
+     * @param tableName the name of the table being exported.
+     * @param columns all columns of the table, including the ID column.
+     * @return a new row writer.
+     * @throws IOException the header could not be written.
+     */
+    public abstract RowWriter newWriter( OutputStream outputStream, String tableName, Column[] columns ) throws IOException;
+
+    /**
+     * Creates a reader which validates the format's header and then reads rows from the specified stream.
+     * 
+     * @param inputStream the source stream.
+     * @param tableName the name of the table being imported.
+     * @param columns all columns of the table, including the ID column.
+     * @return a new row reader.
+     * @throws IOException the header could not be read, or does not describe the specified columns.
+     */
+    public abstract RowReader newReader( InputStream inputStream, String tableName, Column[] columns ) throws IOException;
+}
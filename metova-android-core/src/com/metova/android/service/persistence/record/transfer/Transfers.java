@@ -0,0 +1,27 @@
+package com.metova.android.service.persistence.record.transfer;
+
+import java.io.IOException;
+
+import com.metova.android.service.persistence.record.column.Column;
+
+final class Transfers {
+
+    private Transfers() {
+
+    }
+
+    /**
+     * Ensures a stream's header describes exactly the columns of the table being imported, in order.
+     */
+    static void assertColumnsMatch( String tableName, Column[] columns, String[] names ) throws IOException {
+
+        boolean matches = columns.length == names.length;
+        for (int i = 0; matches && i < columns.length; i++) {
+            matches = columns[i].getName().equals( names[i] );
+        }
+
+        if ( !matches ) {
+            throw new IOException( "Stream columns do not match the columns of " + tableName + "." );
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.metova.android.util.concurrent;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import android.os.Handler;
@@ -14,6 +16,7 @@ public class GlobalThreadPool {
 
     private static final ThreadPool threadPool;
     private static final Handler handler;
+    private static final Executor uiThreadExecutor;
 
     private GlobalThreadPool() {
 
@@ -22,6 +25,16 @@ public class GlobalThreadPool {
     static {
         handler = new Handler( Looper.getMainLooper() );
         threadPool = new ThreadPool();
+        uiThreadExecutor = new Executor() {
+
+            @Override
+            public void execute( Runnable task ) {
+
+                if ( !handler.post( task ) ) {
+                    throw new RejectedExecutionException( "The UI thread's looper has quit." );
+                }
+            }
+        };
     }
 
     /**
@@ -42,6 +55,14 @@ public class GlobalThreadPool {
         return handler.postDelayed( task, delayMillis );
     }
 
+    /**
+     * Returns an {@link Executor} that runs tasks on the UI thread, for APIs that take an executor rather than a {@code Runnable}.
+     */
+    public static Executor getUiThreadExecutor() {
+
+        return uiThreadExecutor;
+    }
+
     /**
      * Submits a given <code>Runnable</code> for execution and returns a <code>Future</code> object representing
      * that task.
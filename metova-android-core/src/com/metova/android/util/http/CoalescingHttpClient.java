@@ -0,0 +1,219 @@
+package com.metova.android.util.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import android.util.Log;
+
+/**
+ * {@link HttpClient} that collapses identical {@code GET}s issued while one is already in flight into a single network call.
+ * The first caller executes the request and buffers the response; every caller that arrived in the meantime waits for it and
+ * receives its own copy of the buffered response, or the same failure. Like any other client, it can be passed to
+ * {@link HttpClients#execute(HttpClient, HttpUriRequest)} or to a {@link com.metova.android.util.http.async.QueuedHttpClient}.
+ * <p/>
+ * Requests are identical when their URI and the values of the {@link #setKeyHeaders(String...) key headers} match. Since 
+ * coalesced responses are held in memory, this client is meant for the small resources that screens and widgets fetch 
+ * repeatedly, not for downloads.
+ */
+public class CoalescingHttpClient extends DelegatingHttpClient {
+
+    private static final String TAG = CoalescingHttpClient.class.getSimpleName();
+
+    private static final String[] DEFAULT_KEY_HEADERS = { "Accept", "Accept-Encoding", "Accept-Language", "Authorization", "Cookie" };
+
+    private final ConcurrentMap<String, InFlightCall> inFlightCalls = new ConcurrentHashMap<String, InFlightCall>();
+    private final AtomicInteger coalescedCount = new AtomicInteger();
+
+    private volatile List<String> keyHeaders = Arrays.asList( DEFAULT_KEY_HEADERS );
+
+    public CoalescingHttpClient(final HttpClient delegate) {
+
+        super( delegate );
+    }
+
+    @Override
+    public HttpResponse execute( HttpUriRequest request, HttpContext context ) throws IOException, ClientProtocolException {
+
+        if ( !HttpGet.METHOD_NAME.equals( request.getMethod() ) ) {
+            return super.execute( request, context );
+        }
+
+        String key = getKey( request );
+        InFlightCall call = new InFlightCall();
+        InFlightCall existing = inFlightCalls.putIfAbsent( key, call );
+        if ( existing != null ) {
+            coalescedCount.incrementAndGet();
+            Log.d( TAG, "Joining in-flight request for " + request.getURI() );
+            return existing.await();
+        }
+
+        try {
+            HttpResponse response = super.execute( request, context );
+            call.complete( new BufferedResponse( response ) );
+        }
+        catch (IOException e) {
+            call.fail( e );
+        }
+        catch (RuntimeException e) {
+            call.fail( e );
+        }
+        finally {
+            inFlightCalls.remove( key, call );
+            if ( !call.isDone() ) {
+                call.fail( new IOException( "In-flight request for " + request.getURI() + " was aborted." ) );
+            }
+        }
+
+        return call.await();
+    }
+
+    private String getKey( HttpUriRequest request ) {
+
+        StringBuilder key = new StringBuilder( request.getURI().toString() );
+        for (String name : keyHeaders) {
+            for (Header header : request.getHeaders( name )) {
+                key.append( '\n' ).append( name ).append( ':' ).append( header.getValue() );
+            }
+        }
+        return key.toString();
+    }
+
+    public List<String> getKeyHeaders() {
+
+        return keyHeaders;
+    }
+
+    /**
+     * Sets the request headers that, along with the URI, decide whether two requests are identical. Headers that change what the
+     * server returns, such as {@code Accept} or {@code Authorization}, belong here.
+     */
+    public void setKeyHeaders( String... keyHeaders ) {
+
+        this.keyHeaders = Arrays.asList( keyHeaders.clone() );
+    }
+
+    /**
+     * @return how many requests were served by joining a call already in flight
+     */
+    public int getCoalescedCount() {
+
+        return coalescedCount.get();
+    }
+
+    /**
+     * A response whose entity has been read into memory, so it can be handed out any number of times.
+     */
+    private static final class BufferedResponse {
+
+        private final StatusLine statusLine;
+        private final Header[] headers;
+        private final byte[] body;
+        private final Header contentType;
+        private final Header contentEncoding;
+
+        public BufferedResponse(HttpResponse response) throws IOException {
+
+            statusLine = response.getStatusLine();
+            headers = response.getAllHeaders();
+
+            HttpEntity entity = response.getEntity();
+            if ( entity == null ) {
+                body = null;
+                contentType = null;
+                contentEncoding = null;
+            }
+            else {
+                try {
+                    body = EntityUtils.toByteArray( entity );
+                }
+                finally {
+                    entity.consumeContent();
+                }
+                contentType = entity.getContentType();
+                contentEncoding = entity.getContentEncoding();
+            }
+        }
+
+        public HttpResponse copy() {
+
+            BasicHttpResponse response = new BasicHttpResponse( statusLine );
+            response.setHeaders( headers );
+            if ( body != null ) {
+                ByteArrayEntity entity = new ByteArrayEntity( body );
+                entity.setContentType( contentType );
+                entity.setContentEncoding( contentEncoding );
+                response.setEntity( entity );
+            }
+            return response;
+        }
+    }
+
+    private static final class InFlightCall {
+
+        private final CountDownLatch done = new CountDownLatch( 1 );
+        private volatile BufferedResponse response;
+        private volatile IOException ioException;
+        private volatile RuntimeException runtimeException;
+
+        public void complete( BufferedResponse response ) {
+
+            this.response = response;
+            done.countDown();
+        }
+
+        public void fail( IOException e ) {
+
+            this.ioException = e;
+            done.countDown();
+        }
+
+        public void fail( RuntimeException e ) {
+
+            this.runtimeException = e;
+            done.countDown();
+        }
+
+        public boolean isDone() {
+
+            return done.getCount() == 0;
+        }
+
+        public HttpResponse await() throws IOException {
+
+            try {
+                done.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Interrupted while waiting for an in-flight request." );
+            }
+
+            if ( ioException != null ) {
+                throw ioException;
+            }
+            if ( runtimeException != null ) {
+                throw runtimeException;
+            }
+            return response.copy();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.metova.android.util.http;
+
+import java.io.IOException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import com.metova.android.util.Assertions;
+
+/**
+ * Base class for {@link HttpClient} decorators. Every {@link HttpUriRequest} variant of {@code execute}, including those taking a
+ * {@link ResponseHandler}, funnels into {@link #execute(HttpUriRequest, HttpContext)}, so a subclass only needs to override that one
+ * method. Requests given as an {@link HttpHost} and {@link HttpRequest} pass straight to the delegate. Every call goes through
+ * {@link #getDelegate()}, so a subclass may override it to switch delegates.
+ */
+public abstract class DelegatingHttpClient implements HttpClient {
+
+    private final HttpClient delegate;
+
+    protected DelegatingHttpClient(final HttpClient delegate) {
+
+        Assertions.notNull( "delegate", delegate );
+        this.delegate = delegate;
+    }
+
+    public HttpClient getDelegate() {
+
+        return delegate;
+    }
+
+    @Override
+    public HttpParams getParams() {
+
+        return getDelegate().getParams();
+    }
+
+    @Override
+    public ClientConnectionManager getConnectionManager() {
+
+        return getDelegate().getConnectionManager();
+    }
+
+    @Override
+    public HttpResponse execute( HttpUriRequest request ) throws IOException, ClientProtocolException {
+
+        return execute( request, (HttpContext) null );
+    }
+
+    @Override
+    public HttpResponse execute( HttpUriRequest request, HttpContext context ) throws IOException, ClientProtocolException {
+
+        return getDelegate().execute( request, context );
+    }
+
+    @Override
+    public HttpResponse execute( HttpHost target, HttpRequest request ) throws IOException, ClientProtocolException {
+
+        return getDelegate().execute( target, request );
+    }
+
+    @Override
+    public HttpResponse execute( HttpHost target, HttpRequest request, HttpContext context ) throws IOException, ClientProtocolException {
+
+        return getDelegate().execute( target, request, context );
+    }
+
+    @Override
+    public <T> T execute( HttpUriRequest request, ResponseHandler<? extends T> responseHandler ) throws IOException, ClientProtocolException {
+
+        return execute( request, responseHandler, null );
+    }
+
+    @Override
+    public <T> T execute( HttpUriRequest request, ResponseHandler<? extends T> responseHandler, HttpContext context ) throws IOException, ClientProtocolException {
+
+        HttpResponse response = execute( request, context );
+        try {
+            return responseHandler.handleResponse( response );
+        }
+        finally {
+            HttpEntity entity = response.getEntity();
+            if ( entity != null ) {
+                entity.consumeContent();
+            }
+        }
+    }
+
+    @Override
+    public <T> T execute( HttpHost target, HttpRequest request, ResponseHandler<? extends T> responseHandler ) throws IOException, ClientProtocolException {
+
+        return getDelegate().execute( target, request, responseHandler );
+    }
+
+    @Override
+    public <T> T execute( HttpHost target, HttpRequest request, ResponseHandler<? extends T> responseHandler, HttpContext context ) throws IOException, ClientProtocolException {
+
+        return getDelegate().execute( target, request, responseHandler, context );
+    }
+}
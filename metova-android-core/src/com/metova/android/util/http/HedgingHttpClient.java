@@ -0,0 +1,510 @@
+package com.metova.android.util.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.protocol.HttpContext;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.metova.android.util.Assertions;
+import com.metova.android.util.http.metrics.LatencyHistogram;
+
+/**
+ * {@link HttpClient} that hedges {@code GET}s and {@code HEAD}s against stalled connections: if no response has arrived after a
+ * delay, a second, identical request is sent, optionally to an {@link #setAlternateHost(String, HttpHost) alternate host}, and
+ * whichever answers first is returned while the other is aborted. Like any other client, it can be passed to
+ * {@link HttpClients#execute(HttpClient, HttpUriRequest)} or to a {@link com.metova.android.util.http.async.QueuedHttpClient}, and
+ * is meant for the latency-critical calls that can afford the extra traffic.
+ * <p/>
+ * The delay is a high {@link #setHedgePercentile(double) percentile} of the recent response times of the host, so only the slowest
+ * few requests are hedged. A budget caps hedges at a {@link #setHedgeFraction(double) fraction} of requests, so that a slow server
+ * is not sent twice the load. Other methods pass straight to the delegate.
+ * <p/>
+ * Both attempts are sent as copies of the request, so aborting the given request does not stop them; interrupt the calling thread
+ * instead.
+ */
+public class HedgingHttpClient extends DelegatingHttpClient {
+
+    private static final String TAG = HedgingHttpClient.class.getSimpleName();
+
+    public static final double DEFAULT_HEDGE_PERCENTILE = 95;
+    public static final double DEFAULT_HEDGE_FRACTION = 0.05;
+    public static final long DEFAULT_INITIAL_HEDGE_DELAY_MILLIS = 1000;
+    public static final long DEFAULT_MIN_HEDGE_DELAY_MILLIS = 50;
+
+    private static final int DEFAULT_HEDGE_THREADS = 2;
+    private static final int MIN_SAMPLES = 20;
+    private static final int WINDOW_SAMPLES = 500;
+    private static final double MAX_BUDGET = 10;
+
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, HostLatency> latencies = new ConcurrentHashMap<String, HostLatency>();
+    private final Map<String, HttpHost> alternateHosts = new ConcurrentHashMap<String, HttpHost>();
+    private final AtomicInteger hedgeCount = new AtomicInteger();
+    private final AtomicInteger hedgeWinCount = new AtomicInteger();
+
+    private final Object budgetLock = new Object();
+    private double budget;
+
+    private volatile double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+    private volatile double hedgeFraction = DEFAULT_HEDGE_FRACTION;
+    private volatile long initialHedgeDelayMillis = DEFAULT_INITIAL_HEDGE_DELAY_MILLIS;
+    private volatile long minHedgeDelayMillis = DEFAULT_MIN_HEDGE_DELAY_MILLIS;
+
+    /**
+     * Creates a client that sends hedges from a pool of two daemon threads.
+     */
+    public HedgingHttpClient(final HttpClient delegate) {
+
+        this( delegate, new ScheduledThreadPoolExecutor( DEFAULT_HEDGE_THREADS, new ThreadFactory() {
+
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable runnable ) {
+
+                Thread thread = new Thread( runnable, TAG + "-" + threadCount.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } ) );
+    }
+
+    /**
+     * @param scheduler runs the hedges once their delay is up. Hedges wait for a free thread, so its size bounds how many can be in
+     *            flight at once.
+     */
+    public HedgingHttpClient(final HttpClient delegate, final ScheduledExecutorService scheduler) {
+
+        super( delegate );
+
+        Assertions.notNull( "scheduler", scheduler );
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public HttpResponse execute( HttpUriRequest request, HttpContext context ) throws IOException, ClientProtocolException {
+
+        String method = request.getMethod();
+        if ( !HttpGet.METHOD_NAME.equals( method ) && !HttpHead.METHOD_NAME.equals( method ) ) {
+            return super.execute( request, context );
+        }
+
+        deposit();
+
+        String host = request.getURI().getHost();
+        Race race = new Race( request, copy( request, request.getURI() ) );
+        long start = SystemClock.elapsedRealtime();
+        Future<?> hedge;
+        try {
+            hedge = scheduler.schedule( race, getHedgeDelayMillis( host ), TimeUnit.MILLISECONDS );
+        }
+        catch (RejectedExecutionException e) {
+            Log.w( TAG, "Hedge scheduler rejected " + request.getURI() + "; sending it unhedged.", e );
+            hedge = null;
+        }
+
+        HttpResponse response;
+        try {
+            response = super.execute( race.primary, context );
+        }
+        catch (IOException e) {
+            if ( hedge != null ) {
+                hedge.cancel( false );
+            }
+            HttpResponse hedgeResponse = race.onPrimaryFailed( e );
+            //a slow primary is usually aborted by the hedge, and leaving it out would hide the very delays hedging is for
+            getLatency( host ).record( race.hedgeAnsweredAt - start );
+            return hedgeResponse;
+        }
+        catch (RuntimeException e) {
+            if ( hedge != null ) {
+                hedge.cancel( false );
+            }
+            race.abandon();
+            throw e;
+        }
+
+        if ( hedge != null ) {
+            hedge.cancel( false );
+        }
+        if ( race.onPrimaryResponse() ) {
+            getLatency( host ).record( SystemClock.elapsedRealtime() - start );
+            return response;
+        }
+
+        //the hedge won while this response was on its way
+        getLatency( host ).record( race.hedgeAnsweredAt - start );
+        discard( race.primary, response );
+        return race.hedgeResponse;
+    }
+
+    public double getHedgePercentile() {
+
+        return hedgePercentile;
+    }
+
+    /**
+     * @param hedgePercentile the percentile of a host's recent response times to wait before hedging, between 0 and 100.
+     *            Defaults to {@link #DEFAULT_HEDGE_PERCENTILE}.
+     */
+    public void setHedgePercentile( double hedgePercentile ) {
+
+        if ( hedgePercentile < 0 || hedgePercentile > 100 ) {
+            throw new IllegalArgumentException( "hedgePercentile must be in [0, 100], was " + hedgePercentile );
+        }
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public double getHedgeFraction() {
+
+        return hedgeFraction;
+    }
+
+    /**
+     * @param hedgeFraction the most hedges to send per request, over time. Short bursts may exceed it. Defaults to
+     *            {@link #DEFAULT_HEDGE_FRACTION}; 0 disables hedging.
+     */
+    public void setHedgeFraction( double hedgeFraction ) {
+
+        if ( hedgeFraction < 0 || hedgeFraction > 1 ) {
+            throw new IllegalArgumentException( "hedgeFraction must be in [0, 1], was " + hedgeFraction );
+        }
+        this.hedgeFraction = hedgeFraction;
+    }
+
+    public long getInitialHedgeDelayMillis() {
+
+        return initialHedgeDelayMillis;
+    }
+
+    /**
+     * @param initialHedgeDelayMillis the delay used for a host until enough of its response times have been seen
+     */
+    public void setInitialHedgeDelayMillis( long initialHedgeDelayMillis ) {
+
+        this.initialHedgeDelayMillis = initialHedgeDelayMillis;
+    }
+
+    public long getMinHedgeDelayMillis() {
+
+        return minHedgeDelayMillis;
+    }
+
+    /**
+     * @param minHedgeDelayMillis the shortest delay before hedging, however fast the host has been
+     */
+    public void setMinHedgeDelayMillis( long minHedgeDelayMillis ) {
+
+        this.minHedgeDelayMillis = minHedgeDelayMillis;
+    }
+
+    /**
+     * Sends hedges of requests to {@code host} to {@code alternate} instead, such as a mirror in another region.
+     *
+     * @param alternate the host to send hedges to, or null to send them to {@code host} itself
+     */
+    public void setAlternateHost( String host, HttpHost alternate ) {
+
+        Assertions.notNull( "host", host );
+        if ( alternate == null ) {
+            alternateHosts.remove( host );
+        }
+        else {
+            alternateHosts.put( host, alternate );
+        }
+    }
+
+    /**
+     * @return how many hedges have been sent
+     */
+    public int getHedgeCount() {
+
+        return hedgeCount.get();
+    }
+
+    /**
+     * @return how many hedges answered before the request they hedged
+     */
+    public int getHedgeWinCount() {
+
+        return hedgeWinCount.get();
+    }
+
+    /**
+     * Stops the hedge scheduler. Requests already hedged complete.
+     */
+    public void shutdown() {
+
+        scheduler.shutdown();
+    }
+
+    /**
+     * @return how long to wait for the host before hedging
+     */
+    long getHedgeDelayMillis( String host ) {
+
+        LatencyHistogram histogram = getLatency( host ).getSampled();
+        if ( histogram == null ) {
+            return initialHedgeDelayMillis;
+        }
+        return Math.max( minHedgeDelayMillis, histogram.getPercentile( hedgePercentile ) );
+    }
+
+    private HostLatency getLatency( String host ) {
+
+        String key = ( host == null ) ? "" : host;
+        HostLatency latency = latencies.get( key );
+        if ( latency == null ) {
+            latency = new HostLatency();
+            HostLatency existing = latencies.putIfAbsent( key, latency );
+            if ( existing != null ) {
+                latency = existing;
+            }
+        }
+        return latency;
+    }
+
+    /**
+     * Earns the fraction of a hedge that each request pays for.
+     */
+    private void deposit() {
+
+        synchronized (budgetLock) {
+            budget = Math.min( MAX_BUDGET, budget + hedgeFraction );
+        }
+    }
+
+    private boolean withdraw() {
+
+        synchronized (budgetLock) {
+            if ( budget < 1 ) {
+                return false;
+            }
+            budget--;
+            return true;
+        }
+    }
+
+    private static HttpRequestBase copy( HttpUriRequest request, URI uri ) {
+
+        HttpRequestBase copy = HttpHead.METHOD_NAME.equals( request.getMethod() ) ? new HttpHead( uri ) : new HttpGet( uri );
+        copy.setHeaders( request.getAllHeaders() );
+        copy.setParams( request.getParams() );
+        return copy;
+    }
+
+    /**
+     * Aborts a request whose response is not wanted, closing its connection rather than reading the rest of the body.
+     */
+    private static void discard( HttpRequestBase request, HttpResponse response ) {
+
+        request.abort();
+        HttpEntity entity = response.getEntity();
+        if ( entity != null ) {
+            try {
+                entity.consumeContent();
+            }
+            catch (IOException e) {
+                //expected once the request is aborted
+            }
+        }
+    }
+
+    /**
+     * A host's recent response times, as the caller saw them: when a hedge wins, the time until the hedge answered. Each histogram
+     * covers a window of requests, and the last full window is used while the next fills, so the delay follows the host's latency as
+     * it changes.
+     */
+    private static class HostLatency {
+
+        private volatile LatencyHistogram current = new LatencyHistogram();
+        private volatile LatencyHistogram previous;
+
+        public void record( long millis ) {
+
+            LatencyHistogram histogram = current;
+            histogram.record( millis );
+            if ( histogram.getCount() >= WINDOW_SAMPLES ) {
+                synchronized (this) {
+                    if ( current == histogram ) {
+                        previous = histogram;
+                        current = new LatencyHistogram();
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the histogram to take the delay from, or null if too few requests have been seen
+         */
+        public LatencyHistogram getSampled() {
+
+            LatencyHistogram histogram = current;
+            return ( histogram.getCount() >= MIN_SAMPLES ) ? histogram : previous;
+        }
+    }
+
+    /**
+     * One request and its hedge. The first to produce a response wins and aborts the other. The hedge runs this as its task.
+     */
+    private class Race implements Runnable {
+
+        private final HttpUriRequest request;
+        private final HttpRequestBase primary;
+        private HttpRequestBase hedge;
+        private boolean primaryDone;
+        private boolean primaryFailed;
+        private boolean hedgeDone;
+        private boolean hedgeWon;
+        private HttpResponse hedgeResponse;
+        private long hedgeAnsweredAt;
+
+        public Race(HttpUriRequest request, HttpRequestBase primary) {
+
+            this.request = request;
+            this.primary = primary;
+        }
+
+        @Override
+        public void run() {
+
+            HttpRequestBase attempt;
+            synchronized (this) {
+                if ( primaryDone || primaryFailed || !withdraw() ) {
+                    return;
+                }
+
+                URI uri = request.getURI();
+                HttpHost alternate = alternateHosts.get( uri.getHost() );
+                try {
+                    attempt = copy( request, ( alternate == null ) ? uri : URIUtils.rewriteURI( uri, alternate ) );
+                }
+                catch (Exception e) {
+                    Log.w( TAG, "Unable to hedge " + uri, e );
+                    return;
+                }
+                hedge = attempt;
+            }
+
+            hedgeCount.incrementAndGet();
+            Log.d( TAG, "Hedging " + request.getURI() + " with " + attempt.getURI() );
+
+            HttpResponse response = null;
+            try {
+                response = getDelegate().execute( attempt );
+            }
+            catch (IOException e) {
+                Log.d( TAG, "Hedge of " + request.getURI() + " failed: " + e );
+            }
+            catch (RuntimeException e) {
+                Log.w( TAG, "Hedge of " + request.getURI() + " failed.", e );
+            }
+
+            boolean won;
+            synchronized (this) {
+                hedgeDone = true;
+                won = ( response != null && !primaryDone );
+                if ( won ) {
+                    hedgeWon = true;
+                    hedgeResponse = response;
+                    hedgeAnsweredAt = SystemClock.elapsedRealtime();
+                    hedgeWinCount.incrementAndGet();
+                }
+                notifyAll();
+            }
+
+            if ( won ) {
+                //unblocks the thread waiting on the primary
+                primary.abort();
+            }
+            else if ( response != null ) {
+                discard( attempt, response );
+            }
+        }
+
+        /**
+         * @return true if the primary's response stands, or false if the hedge had already won
+         */
+        public boolean onPrimaryResponse() {
+
+            HttpRequestBase loser;
+            synchronized (this) {
+                if ( hedgeWon ) {
+                    return false;
+                }
+                primaryDone = true;
+                loser = hedgeDone ? null : hedge;
+            }
+
+            if ( loser != null ) {
+                loser.abort();
+            }
+            return true;
+        }
+
+        /**
+         * Waits for a hedge already in flight, which may yet succeed; otherwise rethrows the primary's failure.
+         */
+        public HttpResponse onPrimaryFailed( IOException failure ) throws IOException {
+
+            synchronized (this) {
+                primaryFailed = true;
+                try {
+                    while (hedge != null && !hedgeDone) {
+                        wait();
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    hedge.abort();
+                    throw new InterruptedIOException( "Interrupted while waiting for the hedge of " + request.getURI() );
+                }
+
+                if ( hedgeWon ) {
+                    return hedgeResponse;
+                }
+            }
+            throw failure;
+        }
+
+        /**
+         * Gives up on the race, aborting the hedge if it is in flight.
+         */
+        public void abandon() {
+
+            HttpRequestBase loser;
+            synchronized (this) {
+                primaryDone = true;
+                loser = hedgeDone ? null : hedge;
+            }
+
+            if ( loser != null ) {
+                loser.abort();
+            }
+        }
+    }
+}
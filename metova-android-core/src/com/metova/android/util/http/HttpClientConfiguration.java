@@ -0,0 +1,201 @@
+package com.metova.android.util.http;
+
+import com.metova.android.util.http.interceptor.CompressionPolicy;
+import com.metova.android.util.http.metrics.MetricsSink;
+
+/**
+ * Connection pool, keep-alive, timeout, compression and metrics settings for a {@link PooledHttpClient}.
+ */
+public class HttpClientConfiguration {
+
+    private static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 20;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 4;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = 30000;
+    private static final long DEFAULT_CONNECTION_REQUEST_TIMEOUT_MILLIS = 10000;
+    private static final long DEFAULT_KEEP_ALIVE_MILLIS = 30000;
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60000;
+    private static final long DEFAULT_EVICTION_INTERVAL_MILLIS = 30000;
+    private static final int DEFAULT_SOCKET_BUFFER_SIZE = 8192;
+
+    private int maxTotalConnections = DEFAULT_MAX_TOTAL_CONNECTIONS;
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private int socketTimeoutMillis = DEFAULT_SOCKET_TIMEOUT_MILLIS;
+    private long connectionRequestTimeoutMillis = DEFAULT_CONNECTION_REQUEST_TIMEOUT_MILLIS;
+    private long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+    private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+    private long evictionIntervalMillis = DEFAULT_EVICTION_INTERVAL_MILLIS;
+    private int socketBufferSize = DEFAULT_SOCKET_BUFFER_SIZE;
+    private boolean staleCheckingEnabled = true;
+    private String userAgent;
+    private boolean compressionEnabled = true;
+    private CompressionPolicy compressionPolicy = new CompressionPolicy();
+    private MetricsSink metricsSink;
+
+    public int getMaxTotalConnections() {
+
+        return maxTotalConnections;
+    }
+
+    public void setMaxTotalConnections( int maxTotalConnections ) {
+
+        this.maxTotalConnections = maxTotalConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute( int maxConnectionsPerRoute ) {
+
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getConnectTimeoutMillis() {
+
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis( int connectTimeoutMillis ) {
+
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public int getSocketTimeoutMillis() {
+
+        return socketTimeoutMillis;
+    }
+
+    public void setSocketTimeoutMillis( int socketTimeoutMillis ) {
+
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    public long getConnectionRequestTimeoutMillis() {
+
+        return connectionRequestTimeoutMillis;
+    }
+
+    /**
+     * @param connectionRequestTimeoutMillis how long a request waits for a pooled connection to become free
+     */
+    public void setConnectionRequestTimeoutMillis( long connectionRequestTimeoutMillis ) {
+
+        this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+    }
+
+    public long getKeepAliveMillis() {
+
+        return keepAliveMillis;
+    }
+
+    /**
+     * @param keepAliveMillis how long to keep a connection open when the server's response carries no {@code Keep-Alive} timeout
+     */
+    public void setKeepAliveMillis( long keepAliveMillis ) {
+
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * @param idleTimeoutMillis how long a pooled connection may sit unused before the evictor closes it
+     */
+    public void setIdleTimeoutMillis( long idleTimeoutMillis ) {
+
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public long getEvictionIntervalMillis() {
+
+        return evictionIntervalMillis;
+    }
+
+    public void setEvictionIntervalMillis( long evictionIntervalMillis ) {
+
+        this.evictionIntervalMillis = evictionIntervalMillis;
+    }
+
+    public int getSocketBufferSize() {
+
+        return socketBufferSize;
+    }
+
+    public void setSocketBufferSize( int socketBufferSize ) {
+
+        this.socketBufferSize = socketBufferSize;
+    }
+
+    public boolean isStaleCheckingEnabled() {
+
+        return staleCheckingEnabled;
+    }
+
+    /**
+     * @param staleCheckingEnabled whether to test a pooled connection before reusing it. Costs a little latency per request, 
+     * but avoids failures on connections the server has already closed.
+     */
+    public void setStaleCheckingEnabled( boolean staleCheckingEnabled ) {
+
+        this.staleCheckingEnabled = staleCheckingEnabled;
+    }
+
+    public String getUserAgent() {
+
+        return userAgent;
+    }
+
+    public void setUserAgent( String userAgent ) {
+
+        this.userAgent = userAgent;
+    }
+
+    public boolean isCompressionEnabled() {
+
+        return compressionEnabled;
+    }
+
+    /**
+     * @param compressionEnabled whether to advertise {@code Accept-Encoding: gzip, deflate} and transparently decode compressed 
+     * responses, and to compress request bodies as the {@link #setCompressionPolicy(CompressionPolicy) compression policy} directs
+     */
+    public void setCompressionEnabled( boolean compressionEnabled ) {
+
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    public CompressionPolicy getCompressionPolicy() {
+
+        return compressionPolicy;
+    }
+
+    /**
+     * @param compressionPolicy the per-host thresholds above which request bodies are gzipped. By default no request bodies are 
+     * compressed.
+     */
+    public void setCompressionPolicy( CompressionPolicy compressionPolicy ) {
+
+        this.compressionPolicy = compressionPolicy;
+    }
+
+    public MetricsSink getMetricsSink() {
+
+        return metricsSink;
+    }
+
+    /**
+     * @param metricsSink where {@link HttpClients#configureSharedClient(HttpClientConfiguration)} reports the shared client's
+     * exchanges, or null for none, the default
+     */
+    public void setMetricsSink( MetricsSink metricsSink ) {
+
+        this.metricsSink = metricsSink;
+    }
+
+}
@@ -6,10 +6,12 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.impl.client.DefaultHttpClient;
 
 import android.util.Log;
 
+import com.metova.android.util.http.circuit.CircuitBreaker;
+import com.metova.android.util.http.circuit.CircuitBreakerRegistry;
+import com.metova.android.util.http.metrics.MetricsHttpClient;
 import com.metova.android.util.http.response.Response;
 
 /**
@@ -17,15 +19,62 @@ import com.metova.android.util.http.response.Response;
  */
 public final class HttpClients {
 
+    private static SharedHttpClient sharedClient;
+    private static PooledHttpClient sharedPool;
+
+    /**
+     * Returns the process-wide client, backed by a {@link PooledHttpClient} created with the default {@link HttpClientConfiguration} 
+     * on first use. Sharing one client lets requests reuse pooled connections instead of paying a fresh TCP and TLS handshake each time.
+     * The same instance is returned for the life of the process, and follows {@link #configureSharedClient(HttpClientConfiguration)}.
+     * 
+     * @return the shared client
+     */
+    public static synchronized HttpClient getSharedClient() {
+
+        if ( sharedClient == null ) {
+            sharedPool = new PooledHttpClient();
+            sharedClient = new SharedHttpClient( sharedPool );
+        }
+        return sharedClient;
+    }
+
     /**
-     * Executes the specified request. 
+     * Rebuilds the shared client's pool from the given configuration. Best called once at startup. Clients that already hold the 
+     * {@link #getSharedClient() shared client} send their next requests through the new pool, while requests in flight finish on 
+     * the previous one, which shuts down once they have.
+     * <p/>
+     * If the configuration has a {@link HttpClientConfiguration#getMetricsSink() metrics sink}, the shared client is a 
+     * {@link MetricsHttpClient} reporting to it.
+     * 
+     * @param configuration the pool, timeout and keep-alive settings
+     */
+    public static synchronized void configureSharedClient( HttpClientConfiguration configuration ) {
+
+        PooledHttpClient previous = sharedPool;
+        sharedPool = new PooledHttpClient( configuration );
+        HttpClient client = ( configuration.getMetricsSink() == null ) ? sharedPool : new MetricsHttpClient( sharedPool, configuration.getMetricsSink() );
+        if ( sharedClient == null ) {
+            sharedClient = new SharedHttpClient( client );
+        }
+        else {
+            sharedClient.current = client;
+        }
+
+        if ( previous != null ) {
+            previous.shutdownWhenIdle();
+        }
+    }
+
+    /**
+     * Executes the specified request with the {@link #getSharedClient() shared client}. The response entity must be consumed, 
+     * or the response {@link Response#release() released}, for its connection to return to the pool.
      * 
      * @param request
      * @return 
      */
     public static Response execute( HttpUriRequest request ) {
 
-        return execute( new DefaultHttpClient(), request );
+        return execute( getSharedClient(), request );
     }
 
     /**
@@ -54,4 +103,63 @@ public final class HttpClients {
 
         return response;
     }
+
+    /**
+     * Executes the specified request with the specified client, unless the circuit breaker for the request's 
+     * host is open. A rejected request fails immediately, without touching the network.
+     * 
+     * @param client
+     * @param request
+     * @param breakers the registry holding the per-host circuit breakers
+     * @return the response, marked as a failed request if the circuit was open
+     */
+    public static Response execute( HttpClient client, HttpUriRequest request, CircuitBreakerRegistry breakers ) {
+
+        CircuitBreaker breaker = breakers.getBreaker( request );
+        if ( breaker == null ) {
+            return execute( client, request );
+        }
+
+        if ( !breaker.allowRequest() ) {
+            Log.d( "HttpClients#execute", "Circuit open for " + breaker.getHost() + "; failing " + request.getURI() + " fast." );
+            Response response = new Response();
+            response.setFailedRequest( true );
+            response.setReason( "Circuit open for " + breaker.getHost() + "." );
+            return response;
+        }
+
+        Response response = null;
+        Throwable throwable = null;
+        try {
+            response = execute( client, request );
+            return response;
+        }
+        catch (RuntimeException e) {
+            throwable = e;
+            throw e;
+        }
+        finally {
+            breaker.record( response, throwable );
+        }
+    }
+
+    /**
+     * The client handed out by {@link #getSharedClient()}, which sends every request to whichever client was configured last.
+     */
+    private static final class SharedHttpClient extends DelegatingHttpClient {
+
+        private volatile HttpClient current;
+
+        public SharedHttpClient(HttpClient current) {
+
+            super( current );
+            this.current = current;
+        }
+
+        @Override
+        public HttpClient getDelegate() {
+
+            return current;
+        }
+    }
 }
@@ -0,0 +1,229 @@
+package com.metova.android.util.http;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import android.util.Log;
+
+import com.metova.android.util.http.interceptor.CompressionRequestInterceptor;
+import com.metova.android.util.http.interceptor.CompressionResponseInterceptor;
+import com.metova.android.util.http.metrics.MetricsHttpClient;
+import com.metova.android.util.http.metrics.MetricsInterceptor;
+
+/**
+ * {@link DefaultHttpClient} backed by a thread-safe connection pool, so that connections, and their TCP and TLS handshakes, are
+ * reused across requests and threads.
+ * <p/>
+ * Pool sizes, timeouts, keep-alive and compression come from an {@link HttpClientConfiguration}. A daemon thread periodically closes expired
+ * connections and those idle for longer than the configured timeout. A pooled connection is only returned to the pool once the
+ * response entity has been consumed, so callers must always read or consume it. Call {@link #shutdown()} once the client is no
+ * longer needed.
+ * <p/>
+ * A {@link MetricsInterceptor} is always installed. It costs nothing unless the client is wrapped in a {@link MetricsHttpClient}.
+ */
+public class PooledHttpClient extends DefaultHttpClient {
+
+    private static final String TAG = PooledHttpClient.class.getSimpleName();
+
+    private static final String KEEP_ALIVE = "Keep-Alive";
+    private static final String TIMEOUT = "timeout";
+
+    private final IdleConnectionEvictor evictor;
+
+    public PooledHttpClient() {
+
+        this( new HttpClientConfiguration() );
+    }
+
+    public PooledHttpClient(final HttpClientConfiguration configuration) {
+
+        this( configuration, createParams( configuration ) );
+    }
+
+    private PooledHttpClient(final HttpClientConfiguration configuration, final HttpParams params) {
+
+        super( new ThreadSafeClientConnManager( params, createSchemeRegistry() ), params );
+
+        setKeepAliveStrategy( new HeaderKeepAliveStrategy( configuration.getKeepAliveMillis() ) );
+
+        if ( configuration.isCompressionEnabled() ) {
+            //ahead of RequestContent, so that the Content-Length and Content-Encoding headers describe the compressed body
+            addRequestInterceptor( new CompressionRequestInterceptor( configuration.getCompressionPolicy() ), 0 );
+            addResponseInterceptor( new CompressionResponseInterceptor(), 0 );
+        }
+
+        //last to see the request body and first to see the response body, so that both are measured as sent
+        MetricsInterceptor metricsInterceptor = new MetricsInterceptor();
+        addRequestInterceptor( metricsInterceptor );
+        addResponseInterceptor( metricsInterceptor, 0 );
+
+        evictor = new IdleConnectionEvictor( (ThreadSafeClientConnManager) getConnectionManager(), configuration.getIdleTimeoutMillis(), configuration.getEvictionIntervalMillis() );
+        evictor.start();
+    }
+
+    /**
+     * Stops the idle connection evictor and closes every pooled connection. The client may not be used afterwards.
+     */
+    public void shutdown() {
+
+        evictor.shutdown();
+        getConnectionManager().shutdown();
+    }
+
+    /**
+     * Closes the idle pooled connections now, and shuts the client down like {@link #shutdown()} once the connections still in use 
+     * have been released. Requests already in flight complete normally, so this suits a client that is being replaced.
+     */
+    public void shutdownWhenIdle() {
+
+        evictor.retire();
+    }
+
+    private static HttpParams createParams( HttpClientConfiguration configuration ) {
+
+        HttpParams params = new BasicHttpParams();
+
+        ConnManagerParams.setMaxTotalConnections( params, configuration.getMaxTotalConnections() );
+        ConnManagerParams.setMaxConnectionsPerRoute( params, new ConnPerRouteBean( configuration.getMaxConnectionsPerRoute() ) );
+        ConnManagerParams.setTimeout( params, configuration.getConnectionRequestTimeoutMillis() );
+
+        HttpConnectionParams.setConnectionTimeout( params, configuration.getConnectTimeoutMillis() );
+        HttpConnectionParams.setSoTimeout( params, configuration.getSocketTimeoutMillis() );
+        HttpConnectionParams.setSocketBufferSize( params, configuration.getSocketBufferSize() );
+        HttpConnectionParams.setStaleCheckingEnabled( params, configuration.isStaleCheckingEnabled() );
+        HttpConnectionParams.setTcpNoDelay( params, true );
+
+        HttpProtocolParams.setVersion( params, HttpVersion.HTTP_1_1 );
+        HttpProtocolParams.setContentCharset( params, HTTP.UTF_8 );
+        if ( configuration.getUserAgent() != null ) {
+            HttpProtocolParams.setUserAgent( params, configuration.getUserAgent() );
+        }
+
+        return params;
+    }
+
+    private static SchemeRegistry createSchemeRegistry() {
+
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register( new Scheme( "http", PlainSocketFactory.getSocketFactory(), 80 ) );
+        schemeRegistry.register( new Scheme( "https", SSLSocketFactory.getSocketFactory(), 443 ) );
+        return schemeRegistry;
+    }
+
+    /**
+     * Keeps a connection alive for as long as the server's {@code Keep-Alive: timeout=N} header allows, or for the 
+     * configured default when the server does not say.
+     */
+    private static class HeaderKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+        private final long defaultKeepAliveMillis;
+
+        public HeaderKeepAliveStrategy(long defaultKeepAliveMillis) {
+
+            this.defaultKeepAliveMillis = defaultKeepAliveMillis;
+        }
+
+        @Override
+        public long getKeepAliveDuration( HttpResponse response, HttpContext context ) {
+
+            HeaderElementIterator iterator = new BasicHeaderElementIterator( response.headerIterator( KEEP_ALIVE ) );
+            while (iterator.hasNext()) {
+
+                HeaderElement element = iterator.nextElement();
+                if ( TIMEOUT.equalsIgnoreCase( element.getName() ) && element.getValue() != null ) {
+                    try {
+                        return Long.parseLong( element.getValue() ) * 1000;
+                    }
+                    catch (NumberFormatException e) {
+                        Log.w( TAG, "Ignoring malformed " + KEEP_ALIVE + " timeout: " + element.getValue() );
+                    }
+                }
+            }
+
+            return defaultKeepAliveMillis;
+        }
+    }
+
+    /**
+     * Periodically closes expired and idle pooled connections, so that the pool does not hand out sockets the 
+     * server has long since closed.
+     */
+    private static class IdleConnectionEvictor extends Thread {
+
+        private final ThreadSafeClientConnManager connectionManager;
+        private final long idleTimeoutMillis;
+        private final long intervalMillis;
+
+        private volatile boolean running = true;
+        private volatile boolean retiring;
+
+        public IdleConnectionEvictor(ThreadSafeClientConnManager connectionManager, long idleTimeoutMillis, long intervalMillis) {
+
+            super( TAG + "-evictor" );
+            setDaemon( true );
+
+            this.connectionManager = connectionManager;
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            this.intervalMillis = intervalMillis;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                while (running) {
+                    synchronized (this) {
+                        wait( intervalMillis );
+                    }
+                    connectionManager.closeExpiredConnections();
+                    connectionManager.closeIdleConnections( retiring ? 0 : idleTimeoutMillis, TimeUnit.MILLISECONDS );
+
+                    //only connections still leased remain, and once none do, nothing can use the pool again
+                    if ( retiring && connectionManager.getConnectionsInPool() == 0 ) {
+                        connectionManager.shutdown();
+                        running = false;
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Log.d( TAG, "Idle connection evictor interrupted." );
+            }
+        }
+
+        public void retire() {
+
+            retiring = true;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        public void shutdown() {
+
+            running = false;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+}
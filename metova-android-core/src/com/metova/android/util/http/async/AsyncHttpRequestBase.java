@@ -7,8 +7,18 @@ import com.metova.android.util.Assertions;
 
 public class AsyncHttpRequestBase {
 
+    public static final long NO_DEADLINE = 0;
+
     private final HttpRequestBase request;
     private final Class<? extends AsyncHttpResponseCallback> callbackType;
+    private final String orderingKey;
+    private String callbackKey;
+    private String retryStrategyKey;
+
+    private Priority priority = Priority.NORMAL;
+    private long deadline = NO_DEADLINE;
+    private NetworkConstraint networkConstraint = NetworkConstraint.ANY;
+    private long submittedAt;
 
     /**
      * Convenience constructor that invokes {@link #AsyncHttpUriRequest(HttpUriRequest, AsyncHttpResponseCallback)}
@@ -27,6 +37,8 @@ public class AsyncHttpRequestBase {
      * This constructor allows the inclusion of a callback type (not required). This type
      * will be instantiated and invoked when a response occurs. This class obviously needs
      * to be stateless since instantiation will be controlled by the {@link QueuedHttpClient}.
+     * Registering a factory for it in a {@link CallbackRegistry}, or naming it with {@link #setCallbackKey(String)}, 
+     * avoids instantiating it reflectively.
      * The reason that this approach is taken is to allow persistence of {@link AsyncHttpRequestBase}s,
      * which would not be possible if an object instance were provided for a callback.
      * 
@@ -35,9 +47,26 @@ public class AsyncHttpRequestBase {
      */
     public AsyncHttpRequestBase(final HttpRequestBase request, final Class<? extends AsyncHttpResponseCallback> callbackType) {
 
+        this( request, callbackType, null );
+    }
+
+    /**
+     * Creates a new {@link AsyncHttpRequestBase} with an ordering key.
+     * <p/>
+     * When a {@link QueuedHttpClient} dispatches concurrently, requests sharing an ordering key 
+     * (for example, every change to the same resource) are still dispatched one at a time, in the 
+     * order they were submitted. Requests without a key are not ordered relative to each other.
+     * 
+     * @param request the request to be dispatched
+     * @param callbackType a type to be instantiated for callback. May be null.
+     * @param orderingKey the key whose requests must be dispatched in FIFO order. May be null.
+     */
+    public AsyncHttpRequestBase(final HttpRequestBase request, final Class<? extends AsyncHttpResponseCallback> callbackType, final String orderingKey) {
+
         Assertions.notNull( "request", request );
         this.request = request;
         this.callbackType = callbackType;
+        this.orderingKey = orderingKey;
     }
 
     public Class<? extends AsyncHttpResponseCallback> getCallbackType() {
@@ -45,8 +74,106 @@ public class AsyncHttpRequestBase {
         return callbackType;
     }
 
+    public String getCallbackKey() {
+
+        return callbackKey;
+    }
+
+    /**
+     * Names the callback for this request by its key in the client's {@link CallbackRegistry}, in place of a callback type. 
+     * The registry must have the key when the request is submitted.
+     */
+    public void setCallbackKey( String callbackKey ) {
+
+        this.callbackKey = callbackKey;
+    }
+
+    public String getRetryStrategyKey() {
+
+        return retryStrategyKey;
+    }
+
+    /**
+     * Names the retry strategy for this request by its key in the client's {@link CallbackRegistry}, in place of the client's own
+     * strategy type.
+     */
+    public void setRetryStrategyKey( String retryStrategyKey ) {
+
+        this.retryStrategyKey = retryStrategyKey;
+    }
+
     public HttpRequestBase getRequest() {
 
         return request;
     }
+
+    public String getOrderingKey() {
+
+        return orderingKey;
+    }
+
+    public Priority getPriority() {
+
+        return priority;
+    }
+
+    /**
+     * Sets the scheduling class honoured by {@link PriorityRequestQueue}. Defaults to {@link Priority#NORMAL}.
+     */
+    public void setPriority( Priority priority ) {
+
+        Assertions.notNull( "priority", priority );
+        this.priority = priority;
+    }
+
+    public long getDeadline() {
+
+        return deadline;
+    }
+
+    /**
+     * Sets the wall-clock time, in milliseconds since the epoch, after which this request is no longer
+     * worth sending. An expired request is dropped without being dispatched and without a callback.
+     * 
+     * @param deadline the deadline, or {@link #NO_DEADLINE}
+     */
+    public void setDeadline( long deadline ) {
+
+        this.deadline = deadline;
+    }
+
+    public boolean isExpired() {
+
+        return deadline != NO_DEADLINE && System.currentTimeMillis() > deadline;
+    }
+
+    public NetworkConstraint getNetworkConstraint() {
+
+        return networkConstraint;
+    }
+
+    /**
+     * Restricts the networks this request may be sent over, for example to keep large uploads off cellular data. 
+     * Defaults to {@link NetworkConstraint#ANY}.
+     */
+    public void setNetworkConstraint( NetworkConstraint networkConstraint ) {
+
+        Assertions.notNull( "networkConstraint", networkConstraint );
+        this.networkConstraint = networkConstraint;
+    }
+
+    /**
+     * @return the {@link android.os.SystemClock#elapsedRealtime()} at which {@link QueuedHttpClient} accepted this request, or 0 if
+     *         it was not submitted in this process
+     */
+    long getSubmittedAt() {
+
+        return submittedAt;
+    }
+
+    void setSubmittedAt( long submittedAt ) {
+
+        this.submittedAt = submittedAt;
+    }
+
 }
@@ -4,7 +4,12 @@ import com.metova.android.util.http.response.Response;
 
 /**
  * Used to provide a callback cability with {@link QueuedHttpClient}.
- *
+ * <p/>
+ * The response entity streams from the connection, and whatever is left of it is consumed once 
+ * {@link #onResponseReceived(Response)} returns, releasing its pooled connection, so implementations must read it 
+ * before returning. When the {@link QueuedHttpClient} delivers callbacks on a 
+ * {@link QueuedHttpClient#setCallbackExecutor(java.util.concurrent.Executor) callback executor}, the entity has 
+ * instead been read into memory, and may be read at any time.
  */
 public interface AsyncHttpResponseCallback {
 
@@ -0,0 +1,78 @@
+package com.metova.android.util.http.async;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+import com.metova.android.util.http.response.Response;
+
+/**
+ * A server endpoint that accepts many requests packed into one, registered with {@link QueuedHttpClient#addBatchEndpoint(BatchEndpoint)}.
+ * <p/>
+ * Queued requests that the endpoint {@link #accepts(AsyncHttpRequestBase) accepts} are held back and collected until 
+ * {@link #getMaxBatchSize()} have accumulated or the first of them has lingered for {@link #getLingerMillis()}. They are then 
+ * {@link #pack(List) packed} into a single request, and the batch response is {@link #unpack(Response, List) unpacked} so that 
+ * each request's callback receives its own response. A failed batch is retried as a whole by the client's {@link RetryStrategy}.
+ * <p/>
+ * Requests with an {@link AsyncHttpRequestBase#getOrderingKey() ordering key} are never offered to an endpoint. Requests with 
+ * different {@link AsyncHttpRequestBase#getNetworkConstraint() network constraints} are collected into separate batches, and each 
+ * batch is sent with its requests' constraint and the highest {@link AsyncHttpRequestBase#getPriority() priority} among them.
+ */
+public abstract class BatchEndpoint {
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 50;
+    private static final long DEFAULT_LINGER_MILLIS = 2000;
+
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile long lingerMillis = DEFAULT_LINGER_MILLIS;
+
+    /**
+     * @return whether the request should be sent as part of a batch to this endpoint
+     */
+    public abstract boolean accepts( AsyncHttpRequestBase asyncRequest );
+
+    /**
+     * Packs the requests, in order, into a single request to this endpoint.
+     */
+    public abstract HttpRequestBase pack( List<AsyncHttpRequestBase> asyncRequests ) throws IOException;
+
+    /**
+     * Splits a successful batch response into one response per packed request.
+     * 
+     * @param batchResponse the response to the request built by {@link #pack(List)}
+     * @param asyncRequests the requests that were packed, in order
+     * @return the responses, in the same order as the requests
+     * @throws IOException the batch response could not be read
+     */
+    public abstract List<Response> unpack( Response batchResponse, List<AsyncHttpRequestBase> asyncRequests ) throws IOException;
+
+    public int getMaxBatchSize() {
+
+        return maxBatchSize;
+    }
+
+    /**
+     * @param maxBatchSize how many requests are packed together at most. Must be at least 1.
+     */
+    public void setMaxBatchSize( int maxBatchSize ) {
+
+        if ( maxBatchSize < 1 ) {
+            throw new IllegalArgumentException( "maxBatchSize must be at least 1, was " + maxBatchSize );
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getLingerMillis() {
+
+        return lingerMillis;
+    }
+
+    /**
+     * @param lingerMillis how long the first request of a batch waits for others to join it before the batch is sent anyway
+     */
+    public void setLingerMillis( long lingerMillis ) {
+
+        this.lingerMillis = lingerMillis;
+    }
+}
@@ -0,0 +1,32 @@
+package com.metova.android.util.http.async;
+
+import java.util.List;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * Requests packed into a single request to a {@link BatchEndpoint}. Only ever dispatched by {@link QueuedHttpClient}, which
+ * hands each packed request its own response once the batch completes.
+ */
+final class BatchRequest extends AsyncHttpRequestBase {
+
+    private final BatchEndpoint endpoint;
+    private final List<AsyncHttpRequestBase> packedRequests;
+
+    BatchRequest(BatchEndpoint endpoint, HttpRequestBase request, List<AsyncHttpRequestBase> packedRequests) {
+
+        super( request );
+        this.endpoint = endpoint;
+        this.packedRequests = packedRequests;
+    }
+
+    public BatchEndpoint getEndpoint() {
+
+        return endpoint;
+    }
+
+    public List<AsyncHttpRequestBase> getPackedRequests() {
+
+        return packedRequests;
+    }
+}
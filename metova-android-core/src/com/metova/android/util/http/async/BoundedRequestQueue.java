@@ -0,0 +1,365 @@
+package com.metova.android.util.http.async;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-capacity FIFO {@link BlockingQueue} for {@link QueuedHttpClient}, built on a preallocated ring of slots.
+ * <p/>
+ * {@link #offer(AsyncHttpRequestBase)} and {@link #poll()} take no lock and allocate nothing: producers and consumers claim slots
+ * with a compare-and-set on a shared counter, and each slot carries a sequence number that says whether it is free to write or ready
+ * to read. A lock is only taken by the blocking methods, and by a non-blocking call only when some thread is actually blocked waiting
+ * for it, so submitting from the UI thread never waits on the dispatcher.
+ */
+public class BoundedRequestQueue extends AbstractQueue<AsyncHttpRequestBase> implements BlockingQueue<AsyncHttpRequestBase> {
+
+    private final int capacity;
+    private final int length;
+    private final AtomicReferenceArray<AsyncHttpRequestBase> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+
+    public BoundedRequestQueue(int capacity) {
+
+        if ( capacity <= 0 ) {
+            throw new IllegalArgumentException( "Capacity must be positive: " + capacity );
+        }
+
+        //a single slot cannot tell "published" from "free for the next lap", so the ring always has at least two
+        this.capacity = capacity;
+        this.length = Math.max( 2, capacity );
+        this.slots = new AtomicReferenceArray<AsyncHttpRequestBase>( length );
+        this.sequences = new AtomicLongArray( length );
+        for (int i = 0; i < length; i++) {
+            sequences.set( i, i );
+        }
+    }
+
+    @Override
+    public boolean offer( AsyncHttpRequestBase request ) {
+
+        if ( request == null ) {
+            throw new NullPointerException();
+        }
+
+        if ( !enqueue( request ) ) {
+            return false;
+        }
+
+        signal( waitingConsumers, notEmpty );
+        return true;
+    }
+
+    @Override
+    public boolean offer( AsyncHttpRequestBase request, long timeout, TimeUnit unit ) throws InterruptedException {
+
+        if ( offer( request ) ) {
+            return true;
+        }
+
+        long nanos = unit.toNanos( timeout );
+        lock.lockInterruptibly();
+        waitingProducers.incrementAndGet();
+        try {
+            while (!enqueue( request )) {
+                if ( nanos <= 0 ) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos( nanos );
+            }
+        }
+        finally {
+            waitingProducers.decrementAndGet();
+            lock.unlock();
+        }
+
+        signal( waitingConsumers, notEmpty );
+        return true;
+    }
+
+    @Override
+    public void put( AsyncHttpRequestBase request ) throws InterruptedException {
+
+        if ( offer( request ) ) {
+            return;
+        }
+
+        lock.lockInterruptibly();
+        waitingProducers.incrementAndGet();
+        try {
+            while (!enqueue( request )) {
+                notFull.await();
+            }
+        }
+        finally {
+            waitingProducers.decrementAndGet();
+            lock.unlock();
+        }
+
+        signal( waitingConsumers, notEmpty );
+    }
+
+    @Override
+    public AsyncHttpRequestBase poll() {
+
+        AsyncHttpRequestBase request = dequeue();
+        if ( request != null ) {
+            signal( waitingProducers, notFull );
+        }
+        return request;
+    }
+
+    @Override
+    public AsyncHttpRequestBase take() throws InterruptedException {
+
+        AsyncHttpRequestBase request = poll();
+        if ( request != null ) {
+            return request;
+        }
+
+        lock.lockInterruptibly();
+        waitingConsumers.incrementAndGet();
+        try {
+            while (( request = dequeue() ) == null) {
+                notEmpty.await();
+            }
+        }
+        finally {
+            waitingConsumers.decrementAndGet();
+            lock.unlock();
+        }
+
+        signal( waitingProducers, notFull );
+        return request;
+    }
+
+    @Override
+    public AsyncHttpRequestBase poll( long timeout, TimeUnit unit ) throws InterruptedException {
+
+        AsyncHttpRequestBase request = poll();
+        if ( request != null ) {
+            return request;
+        }
+
+        long nanos = unit.toNanos( timeout );
+        lock.lockInterruptibly();
+        waitingConsumers.incrementAndGet();
+        try {
+            while (( request = dequeue() ) == null) {
+                if ( nanos <= 0 ) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos( nanos );
+            }
+        }
+        finally {
+            waitingConsumers.decrementAndGet();
+            lock.unlock();
+        }
+
+        signal( waitingProducers, notFull );
+        return request;
+    }
+
+    @Override
+    public AsyncHttpRequestBase peek() {
+
+        while (true) {
+
+            long position = head.get();
+            int index = indexOf( position );
+            if ( sequences.get( index ) != position + 1 ) {
+                return null;
+            }
+
+            AsyncHttpRequestBase request = slots.get( index );
+            if ( request != null && head.get() == position ) {
+                return request;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of queued requests. While other threads are offering or polling, the count is only a snapshot.
+     */
+    @Override
+    public int size() {
+
+        while (true) {
+
+            long position = head.get();
+            long end = tail.get();
+            if ( head.get() == position ) {
+                return (int) Math.max( 0, Math.min( capacity, end - position ) );
+            }
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+
+        return capacity - size();
+    }
+
+    public int getCapacity() {
+
+        return capacity;
+    }
+
+    @Override
+    public int drainTo( Collection<? super AsyncHttpRequestBase> collection ) {
+
+        return drainTo( collection, Integer.MAX_VALUE );
+    }
+
+    @Override
+    public int drainTo( Collection<? super AsyncHttpRequestBase> collection, int maxElements ) {
+
+        if ( collection == this ) {
+            throw new IllegalArgumentException( "Cannot drain a queue into itself." );
+        }
+
+        int drained = 0;
+        AsyncHttpRequestBase request;
+        while (drained < maxElements && ( request = dequeue() ) != null) {
+            collection.add( request );
+            drained++;
+        }
+
+        if ( drained > 0 ) {
+            signal( waitingProducers, notFull );
+        }
+        return drained;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queued requests, in FIFO order. Requests offered or polled while the snapshot is
+     * taken may or may not appear in it. The iterator does not support removal.
+     */
+    @Override
+    public Iterator<AsyncHttpRequestBase> iterator() {
+
+        List<AsyncHttpRequestBase> snapshot = new ArrayList<AsyncHttpRequestBase>();
+        long end = tail.get();
+        for (long position = head.get(); position < end; position++) {
+
+            int index = indexOf( position );
+            AsyncHttpRequestBase request = slots.get( index );
+            if ( request != null && sequences.get( index ) == position + 1 ) {
+                snapshot.add( request );
+            }
+        }
+        return Collections.unmodifiableList( snapshot ).iterator();
+    }
+
+    @Override
+    public void clear() {
+
+        drainTo( new ArrayList<AsyncHttpRequestBase>() );
+    }
+
+    /**
+     * Claims the slot at the tail and publishes the request into it.
+     *
+     * @return false if the queue is full
+     */
+    private boolean enqueue( AsyncHttpRequestBase request ) {
+
+        long position = tail.get();
+        while (true) {
+
+            int index = indexOf( position );
+            long difference = sequences.get( index ) - position;
+            if ( position - head.get() >= capacity ) {
+                return false;
+            }
+            else if ( difference == 0 ) {
+                if ( tail.compareAndSet( position, position + 1 ) ) {
+                    slots.set( index, request );
+                    sequences.set( index, position + 1 );
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if ( difference < 0 ) {
+                //the slot still holds the request from one lap ago, so the queue is full
+                return false;
+            }
+            else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Claims the slot at the head and takes its request, freeing the slot for the producer one lap ahead.
+     *
+     * @return the request, or null if none is ready
+     */
+    private AsyncHttpRequestBase dequeue() {
+
+        long position = head.get();
+        while (true) {
+
+            int index = indexOf( position );
+            long difference = sequences.get( index ) - ( position + 1 );
+            if ( difference == 0 ) {
+                if ( head.compareAndSet( position, position + 1 ) ) {
+                    AsyncHttpRequestBase request = slots.get( index );
+                    slots.set( index, null );
+                    sequences.set( index, position + length );
+                    return request;
+                }
+                position = head.get();
+            }
+            else if ( difference < 0 ) {
+                //empty, or the producer that claimed this slot has not published into it yet
+                return null;
+            }
+            else {
+                position = head.get();
+            }
+        }
+    }
+
+    private int indexOf( long position ) {
+
+        return (int) ( position % length );
+    }
+
+    /**
+     * Wakes the threads blocked on the given condition, if there are any. A waiter registers itself before its final check of the
+     * ring, so either it sees the change that preceded this call or this call sees it waiting.
+     */
+    private void signal( AtomicInteger waiters, Condition condition ) {
+
+        if ( waiters.get() > 0 ) {
+            lock.lock();
+            try {
+                condition.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+}
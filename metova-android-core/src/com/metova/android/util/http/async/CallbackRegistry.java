@@ -0,0 +1,189 @@
+package com.metova.android.util.http.async;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import android.util.Log;
+
+import com.metova.android.util.Assertions;
+
+/**
+ * Maps stable keys to the {@link AsyncHttpResponseCallback}s and {@link RetryStrategy}s of queued requests, so that a request
+ * can name its callback and strategy, and so be persisted, without {@link QueuedHttpClient} instantiating them reflectively.
+ * <p/>
+ * Register factories at startup, before any persisted requests are restored, and name them with
+ * {@link AsyncHttpRequestBase#setCallbackKey(String)} and {@link AsyncHttpRequestBase#setRetryStrategyKey(String)}. Unlike class
+ * names, keys survive obfuscation and refactoring.
+ * <p/>
+ * Requests that still give a callback type are looked up by the type's name first. An unregistered callback type is instantiated
+ * once and the instance reused, as callbacks are stateless; an unregistered retry strategy type, being stateful, is still
+ * instantiated per request. The default registry has factories for the library's own strategies.
+ */
+public class CallbackRegistry {
+
+    private static final String TAG = CallbackRegistry.class.getSimpleName();
+
+    private static final CallbackRegistry DEFAULT = new CallbackRegistry();
+
+    static {
+        DEFAULT.registerRetryStrategy( DefaultRetryStrategy.class.getName(), new Factory<RetryStrategy>() {
+
+            @Override
+            public RetryStrategy create() {
+
+                return new DefaultRetryStrategy();
+            }
+        } );
+        DEFAULT.registerRetryStrategy( ExponentialBackoffRetryStrategy.class.getName(), new Factory<RetryStrategy>() {
+
+            @Override
+            public RetryStrategy create() {
+
+                return new ExponentialBackoffRetryStrategy();
+            }
+        } );
+    }
+
+    private final ConcurrentMap<String, Factory<? extends AsyncHttpResponseCallback>> callbacks = new ConcurrentHashMap<String, Factory<? extends AsyncHttpResponseCallback>>();
+    private final ConcurrentMap<String, Factory<? extends RetryStrategy>> retryStrategies = new ConcurrentHashMap<String, Factory<? extends RetryStrategy>>();
+    private final ConcurrentMap<Class<?>, AsyncHttpResponseCallback> callbackInstances = new ConcurrentHashMap<Class<?>, AsyncHttpResponseCallback>();
+
+    /**
+     * Creates the objects registered under a key.
+     */
+    public interface Factory<T> {
+
+        public T create();
+    }
+
+    /**
+     * @return the registry used by every {@link QueuedHttpClient} not given its own
+     */
+    public static CallbackRegistry getDefault() {
+
+        return DEFAULT;
+    }
+
+    public void registerCallback( String key, Factory<? extends AsyncHttpResponseCallback> factory ) {
+
+        Assertions.notNull( "key", key );
+        Assertions.notNull( "factory", factory );
+        callbacks.put( key, factory );
+    }
+
+    /**
+     * Registers a single callback instance, which receives every response for the key. It must be safe to call from whichever
+     * threads deliver callbacks.
+     */
+    public void registerCallback( String key, final AsyncHttpResponseCallback callback ) {
+
+        Assertions.notNull( "callback", callback );
+        registerCallback( key, new Factory<AsyncHttpResponseCallback>() {
+
+            @Override
+            public AsyncHttpResponseCallback create() {
+
+                return callback;
+            }
+        } );
+    }
+
+    /**
+     * Registers a factory for a retry strategy. Strategies keep per-request state, so the factory must return a new instance each
+     * time.
+     */
+    public void registerRetryStrategy( String key, Factory<? extends RetryStrategy> factory ) {
+
+        Assertions.notNull( "key", key );
+        Assertions.notNull( "factory", factory );
+        retryStrategies.put( key, factory );
+    }
+
+    public boolean hasCallback( String key ) {
+
+        return callbacks.containsKey( key );
+    }
+
+    public boolean hasRetryStrategy( String key ) {
+
+        return retryStrategies.containsKey( key );
+    }
+
+    /**
+     * @throws IllegalArgumentException if nothing is registered under the key
+     */
+    public AsyncHttpResponseCallback getCallback( String key ) {
+
+        Factory<? extends AsyncHttpResponseCallback> factory = callbacks.get( key );
+        if ( factory == null ) {
+            throw new IllegalArgumentException( "No callback registered for key " + key );
+        }
+        return factory.create();
+    }
+
+    /**
+     * Returns the callback registered under the type's name, or else the one shared instance of the type.
+     *
+     * @throws IllegalArgumentException if the type is not registered and has no accessible no-argument constructor
+     */
+    public AsyncHttpResponseCallback getCallback( Class<? extends AsyncHttpResponseCallback> type ) {
+
+        Factory<? extends AsyncHttpResponseCallback> factory = callbacks.get( type.getName() );
+        if ( factory != null ) {
+            return factory.create();
+        }
+
+        AsyncHttpResponseCallback callback = callbackInstances.get( type );
+        if ( callback == null ) {
+            callback = newInstance( type );
+            AsyncHttpResponseCallback existing = callbackInstances.putIfAbsent( type, callback );
+            if ( existing != null ) {
+                callback = existing;
+            }
+        }
+        return callback;
+    }
+
+    /**
+     * @throws IllegalArgumentException if nothing is registered under the key
+     */
+    public RetryStrategy createRetryStrategy( String key ) {
+
+        Factory<? extends RetryStrategy> factory = retryStrategies.get( key );
+        if ( factory == null ) {
+            throw new IllegalArgumentException( "No retry strategy registered for key " + key );
+        }
+        return factory.create();
+    }
+
+    /**
+     * Creates the retry strategy registered under the type's name, or else instantiates the type.
+     *
+     * @throws IllegalArgumentException if the type is not registered and has no accessible no-argument constructor
+     */
+    public RetryStrategy createRetryStrategy( Class<? extends RetryStrategy> type ) {
+
+        Factory<? extends RetryStrategy> factory = retryStrategies.get( type.getName() );
+        if ( factory != null ) {
+            return factory.create();
+        }
+
+        if ( Log.isLoggable( TAG, Log.DEBUG ) ) {
+            Log.d( TAG, "Instantiating unregistered retry strategy " + type.getName() + " reflectively." );
+        }
+        return newInstance( type );
+    }
+
+    private static <T> T newInstance( Class<T> type ) {
+
+        try {
+            return type.newInstance();
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalArgumentException( "Unable to instantiate " + type.getName() + "; register a factory for it instead.", e );
+        }
+        catch (InstantiationException e) {
+            throw new IllegalArgumentException( "Unable to instantiate " + type.getName() + "; register a factory for it instead.", e );
+        }
+    }
+}
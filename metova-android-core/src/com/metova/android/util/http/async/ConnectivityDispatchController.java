@@ -0,0 +1,133 @@
+package com.metova.android.util.http.async;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+import android.util.Log;
+
+import com.metova.android.util.Assertions;
+import com.metova.android.util.net.ConnectivitySource;
+import com.metova.android.util.net.NetworkState;
+
+/**
+ * Pauses and resumes a {@link QueuedHttpClient} as connectivity comes and goes, so that callers no longer need to 
+ * {@link QueuedHttpClient#stop() stop} and {@link QueuedHttpClient#start() start} it themselves. Requests already in flight 
+ * when the network drops are left to complete or fail on their own rather than being interrupted.
+ * <p/>
+ * When the network returns, dispatch resumes after a short settle delay (see {@link #setSettleDelayMillis(long)}), so that a 
+ * flapping connection does not wake the radio for each blip, and everything queued in the meantime goes out in one burst. 
+ * The controller also keeps the client's {@link QueuedHttpClient#setNetworkState(NetworkState) network state} current, which 
+ * is what lets {@link NetworkConstraint}s take effect.
+ */
+public class ConnectivityDispatchController implements ConnectivitySource.Listener {
+
+    private static final String TAG = ConnectivityDispatchController.class.getSimpleName();
+
+    private static final long DEFAULT_SETTLE_DELAY_MILLIS = 2000;
+
+    private final QueuedHttpClient client;
+    private final ConnectivitySource source;
+
+    private Timer timer;
+    private TimerTask pendingResume;
+    private long settleDelayMillis = DEFAULT_SETTLE_DELAY_MILLIS;
+
+    public ConnectivityDispatchController(final QueuedHttpClient client, final ConnectivitySource source) {
+
+        Assertions.notNull( "client", client );
+        Assertions.notNull( "source", source );
+
+        this.client = client;
+        this.source = source;
+    }
+
+    /**
+     * Starts following the connectivity source, applying its current state straight away.
+     */
+    public synchronized void start() {
+
+        timer = new Timer( TAG, true );
+        source.addListener( this );
+
+        NetworkState networkState = source.getNetworkState();
+        client.setNetworkState( networkState );
+        if ( networkState.isConnected() ) {
+            client.resume();
+        }
+        else {
+            client.pause();
+        }
+    }
+
+    /**
+     * Stops following the connectivity source. The client is left in whatever state it was last put in.
+     */
+    public synchronized void stop() {
+
+        source.removeListener( this );
+        cancelPendingResume();
+        if ( timer != null ) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    @Override
+    public synchronized void onNetworkStateChanged( NetworkState networkState ) {
+
+        Log.d( TAG, "Network changed to " + networkState );
+        client.setNetworkState( networkState );
+
+        if ( !networkState.isConnected() ) {
+            cancelPendingResume();
+            client.pause();
+        }
+        else if ( client.isPaused() && pendingResume == null && timer != null ) {
+            scheduleResume();
+        }
+    }
+
+    private void scheduleResume() {
+
+        if ( settleDelayMillis <= 0 ) {
+            client.resume();
+            return;
+        }
+
+        pendingResume = new TimerTask() {
+
+            @Override
+            public void run() {
+
+                synchronized (ConnectivityDispatchController.this) {
+                    if ( pendingResume == this ) {
+                        pendingResume = null;
+                        client.resume();
+                    }
+                }
+            }
+        };
+        timer.schedule( pendingResume, settleDelayMillis );
+    }
+
+    private void cancelPendingResume() {
+
+        if ( pendingResume != null ) {
+            pendingResume.cancel();
+            pendingResume = null;
+        }
+    }
+
+    public synchronized long getSettleDelayMillis() {
+
+        return settleDelayMillis;
+    }
+
+    /**
+     * @param settleDelayMillis how long the network must stay up before dispatch resumes, or 0 to resume immediately
+     */
+    public synchronized void setSettleDelayMillis( long settleDelayMillis ) {
+
+        this.settleDelayMillis = settleDelayMillis;
+    }
+}
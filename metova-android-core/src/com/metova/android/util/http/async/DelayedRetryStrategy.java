@@ -0,0 +1,17 @@
+package com.metova.android.util.http.async;
+
+import com.metova.android.util.http.response.Response;
+
+/**
+ * {@link RetryStrategy} that waits before each retry. {@link QueuedHttpClient} schedules the retry 
+ * for later rather than sleeping, so other requests are dispatched in the meantime.
+ */
+public interface DelayedRetryStrategy extends RetryStrategy {
+
+    /**
+     * Called after {@link #onRetry(Response, Throwable)} returns true, with the same arguments.
+     * 
+     * @return how long to wait before the next attempt, in milliseconds. Zero or less retries immediately.
+     */
+    public long getRetryDelayMillis( Response response, Throwable throwable );
+}
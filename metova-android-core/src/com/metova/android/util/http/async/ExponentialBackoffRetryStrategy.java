@@ -0,0 +1,149 @@
+package com.metova.android.util.http.async;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Random;
+
+import org.apache.http.Header;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+
+import android.util.Log;
+
+import com.metova.android.util.http.response.Response;
+
+/**
+ * Retries transient failures with exponential backoff and full jitter: the n-th retry waits a random time 
+ * between zero and {@code baseDelay * 2^(n-1)}, capped at the maximum delay. A {@code Retry-After} header,
+ * as sent with a 503 or 429, takes precedence over the computed delay.
+ * <p/>
+ * Connection failures, I/O exceptions, 5xx responses, 408 and 429 are retried; other exceptions and responses are not. 
+ * Subclasses may override the protected getters to tune the limits, and must keep a public null constructor.
+ */
+public class ExponentialBackoffRetryStrategy implements DelayedRetryStrategy {
+
+    private static final String TAG = ExponentialBackoffRetryStrategy.class.getSimpleName();
+
+    private static final String RETRY_AFTER = "Retry-After";
+    private static final int MAX_RETRIES = 5;
+    private static final long BASE_DELAY_MILLIS = 1000;
+    private static final long MAX_DELAY_MILLIS = 5 * 60 * 1000;
+
+    private static final Random RANDOM = new Random();
+
+    private int retries = 0;
+
+    public ExponentialBackoffRetryStrategy() {
+
+        //instantiated by reflection, so explicit null constructor needed
+    }
+
+    @Override
+    public boolean onRetry( Response response, Throwable throwable ) {
+
+        if ( !isRetryable( response, throwable ) ) {
+
+            Log.d( TAG, "Failure is not retryable." );
+            return false;
+        }
+
+        if ( retries < getMaxRetries() ) {
+
+            retries++;
+            Log.d( TAG, "Attempt #" + retries + " failed. Retrying." );
+            return true;
+        }
+        else {
+
+            Log.d( TAG, "Max number of retries (" + getMaxRetries() + ") reached." );
+            return false;
+        }
+    }
+
+    @Override
+    public long getRetryDelayMillis( Response response, Throwable throwable ) {
+
+        long retryAfter = getRetryAfterMillis( response );
+        if ( retryAfter >= 0 ) {
+            return Math.min( retryAfter, getMaxDelayMillis() );
+        }
+
+        long ceiling = Math.min( getMaxDelayMillis(), getBaseDelayMillis() << Math.min( Math.max( retries - 1, 0 ), 30 ) );
+        return (long) ( RANDOM.nextDouble() * ceiling );
+    }
+
+    /**
+     * @return whether the failure is worth retrying at all
+     */
+    protected boolean isRetryable( Response response, Throwable throwable ) {
+
+        if ( throwable != null ) {
+            //anything but an I/O failure is a bug, which another attempt will not fix
+            return throwable instanceof IOException;
+        }
+
+        if ( response == null || response.isFailedRequest() ) {
+            return true;
+        }
+
+        int statusCode = response.getStatusCode();
+        return statusCode >= 500 || statusCode == 408 || statusCode == 429;
+    }
+
+    protected int getMaxRetries() {
+
+        return MAX_RETRIES;
+    }
+
+    protected long getBaseDelayMillis() {
+
+        return BASE_DELAY_MILLIS;
+    }
+
+    /**
+     * @return the longest delay between attempts, which also caps {@code Retry-After}
+     */
+    protected long getMaxDelayMillis() {
+
+        return MAX_DELAY_MILLIS;
+    }
+
+    protected int getRetryCount() {
+
+        return retries;
+    }
+
+    /**
+     * Reads the {@code Retry-After} header, given either in seconds or as an HTTP date.
+     * 
+     * @return the requested delay in milliseconds, or -1 if the response has no usable header
+     */
+    static long getRetryAfterMillis( Response response ) {
+
+        if ( response == null || response.isFailedRequest() || response.getHttpResponse() == null ) {
+            return -1;
+        }
+
+        Header header = response.getHttpResponse().getFirstHeader( RETRY_AFTER );
+        if ( header == null || header.getValue() == null ) {
+            return -1;
+        }
+
+        String value = header.getValue().trim();
+        try {
+            return Math.max( 0, Long.parseLong( value ) * 1000 );
+        }
+        catch (NumberFormatException e) {
+            //not delta-seconds, so it must be an HTTP date
+        }
+
+        try {
+            Date date = DateUtils.parseDate( value );
+            return Math.max( 0, date.getTime() - System.currentTimeMillis() );
+        }
+        catch (DateParseException e) {
+            Log.w( TAG, "Ignoring malformed " + RETRY_AFTER + " header: " + value );
+            return -1;
+        }
+    }
+}
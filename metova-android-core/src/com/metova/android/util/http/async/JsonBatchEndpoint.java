@@ -0,0 +1,212 @@
+package com.metova.android.util.http.async;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.metova.android.util.Assertions;
+import com.metova.android.util.http.response.Response;
+import com.metova.android.util.text.CharacterEncodings;
+
+/**
+ * {@link BatchEndpoint} that packs requests into a JSON document posted to a single URI:
+ * 
+ * <pre>
+ * {"requests":[{"method":"POST","path":"/events?v=2","headers":{"Content-Type":"application/json"},"body":"{...}"}, ...]}
+ * </pre>
+ * 
+ * and expects the responses in the same order:
+ * 
+ * <pre>
+ * {"responses":[{"status":201,"headers":{...},"body":"..."}, ...]}
+ * </pre>
+ * 
+ * Only requests to the endpoint's host whose paths start with one of the configured prefixes are batched, and only if they have 
+ * no {@link AsyncHttpRequestBase#getOrderingKey() ordering key}, since batched requests no longer wait for each other, and no 
+ * {@link AsyncHttpRequestBase#getNetworkConstraint() network constraint}. Bodies 
+ * are carried as strings, so they should be textual.
+ */
+public class JsonBatchEndpoint extends BatchEndpoint {
+
+    private static final String REQUESTS = "requests";
+    private static final String RESPONSES = "responses";
+    private static final String METHOD = "method";
+    private static final String PATH = "path";
+    private static final String HEADERS = "headers";
+    private static final String BODY = "body";
+    private static final String STATUS = "status";
+
+    private static final long DEFAULT_MAX_BODY_BYTES = 16 * 1024;
+
+    private final URI uri;
+    private final String[] pathPrefixes;
+    private volatile long maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+
+    /**
+     * @param uri the batch endpoint
+     * @param pathPrefixes the paths, on the endpoint's host, of the requests to batch
+     */
+    public JsonBatchEndpoint(final URI uri, final String... pathPrefixes) {
+
+        Assertions.notNull( "uri", uri );
+        this.uri = uri;
+        this.pathPrefixes = pathPrefixes.clone();
+    }
+
+    @Override
+    public boolean accepts( AsyncHttpRequestBase asyncRequest ) {
+
+        HttpRequestBase request = asyncRequest.getRequest();
+        URI requestUri = request.getURI();
+        if ( asyncRequest.getOrderingKey() != null || asyncRequest.getNetworkConstraint() != NetworkConstraint.ANY || requestUri == null || !uri.getHost().equalsIgnoreCase( requestUri.getHost() ) ) {
+            return false;
+        }
+
+        if ( request instanceof HttpEntityEnclosingRequest ) {
+            HttpEntity entity = ( (HttpEntityEnclosingRequest) request ).getEntity();
+            if ( entity != null && ( !entity.isRepeatable() || entity.getContentLength() < 0 || entity.getContentLength() > maxBodyBytes ) ) {
+                return false;
+            }
+        }
+
+        String path = requestUri.getRawPath();
+        for (String prefix : pathPrefixes) {
+            if ( path != null && path.startsWith( prefix ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public HttpRequestBase pack( List<AsyncHttpRequestBase> asyncRequests ) throws IOException {
+
+        try {
+            JSONArray requests = new JSONArray();
+            for (AsyncHttpRequestBase asyncRequest : asyncRequests) {
+                requests.put( toJson( asyncRequest.getRequest() ) );
+            }
+
+            StringEntity entity = new StringEntity( new JSONObject().put( REQUESTS, requests ).toString(), CharacterEncodings.UTF_8 );
+            entity.setContentType( "application/json; charset=UTF-8" );
+
+            HttpPost post = new HttpPost( uri );
+            post.setEntity( entity );
+            return post;
+        }
+        catch (JSONException e) {
+            throw new IOException( "Unable to pack batch: " + e.getMessage() );
+        }
+    }
+
+    private JSONObject toJson( HttpRequestBase request ) throws JSONException, IOException {
+
+        URI requestUri = request.getURI();
+        String path = requestUri.getRawPath();
+        if ( requestUri.getRawQuery() != null ) {
+            path += "?" + requestUri.getRawQuery();
+        }
+
+        JSONObject headers = new JSONObject();
+        for (Header header : request.getAllHeaders()) {
+            headers.put( header.getName(), header.getValue() );
+        }
+
+        JSONObject json = new JSONObject();
+        json.put( METHOD, request.getMethod() );
+        json.put( PATH, path );
+        json.put( HEADERS, headers );
+
+        if ( request instanceof HttpEntityEnclosingRequest ) {
+            HttpEntity entity = ( (HttpEntityEnclosingRequest) request ).getEntity();
+            if ( entity != null ) {
+                if ( entity.getContentType() != null && !headers.has( entity.getContentType().getName() ) ) {
+                    headers.put( entity.getContentType().getName(), entity.getContentType().getValue() );
+                }
+                json.put( BODY, EntityUtils.toString( entity, CharacterEncodings.UTF_8 ) );
+            }
+        }
+
+        return json;
+    }
+
+    @Override
+    public List<Response> unpack( Response batchResponse, List<AsyncHttpRequestBase> asyncRequests ) throws IOException {
+
+        try {
+            JSONArray responses = new JSONObject( EntityUtils.toString( batchResponse.getEntity(), CharacterEncodings.UTF_8 ) ).getJSONArray( RESPONSES );
+            if ( responses.length() != asyncRequests.size() ) {
+                throw new IOException( "Batch of " + asyncRequests.size() + " requests answered with " + responses.length() + " responses." );
+            }
+
+            List<Response> unpacked = new ArrayList<Response>( responses.length() );
+            for (int i = 0; i < responses.length(); i++) {
+                unpacked.add( toResponse( responses.getJSONObject( i ) ) );
+            }
+            return unpacked;
+        }
+        catch (JSONException e) {
+            throw new IOException( "Unable to unpack batch: " + e.getMessage() );
+        }
+    }
+
+    private Response toResponse( JSONObject json ) throws JSONException, IOException {
+
+        BasicHttpResponse httpResponse = new BasicHttpResponse( HttpVersion.HTTP_1_1, json.getInt( STATUS ), null );
+
+        JSONObject headers = json.optJSONObject( HEADERS );
+        if ( headers != null ) {
+            Iterator<?> names = headers.keys();
+            while (names.hasNext()) {
+                String name = (String) names.next();
+                httpResponse.addHeader( name, headers.getString( name ) );
+            }
+        }
+
+        if ( json.has( BODY ) && !json.isNull( BODY ) ) {
+            StringEntity entity = new StringEntity( json.getString( BODY ), CharacterEncodings.UTF_8 );
+            Header contentType = httpResponse.getFirstHeader( "Content-Type" );
+            if ( contentType != null ) {
+                entity.setContentType( contentType );
+            }
+            httpResponse.setEntity( entity );
+        }
+
+        Response response = new Response();
+        response.setHttpResponse( httpResponse );
+        return response;
+    }
+
+    public URI getUri() {
+
+        return uri;
+    }
+
+    public long getMaxBodyBytes() {
+
+        return maxBodyBytes;
+    }
+
+    /**
+     * @param maxBodyBytes the largest request body that is batched; larger requests are sent on their own
+     */
+    public void setMaxBodyBytes( long maxBodyBytes ) {
+
+        this.maxBodyBytes = maxBodyBytes;
+    }
+}
@@ -0,0 +1,41 @@
+package com.metova.android.util.http.async;
+
+import com.metova.android.util.net.NetworkState;
+
+/**
+ * The kind of network an {@link AsyncHttpRequestBase} may be sent over. {@link QueuedHttpClient} holds a constrained request 
+ * back until the network it was last told about satisfies the constraint.
+ */
+public enum NetworkConstraint {
+
+    /**
+     * Any network will do. The default.
+     */
+    ANY,
+
+    /**
+     * Only a network that does not charge for traffic, such as Wi-Fi or Ethernet.
+     */
+    UNMETERED,
+
+    /**
+     * Only Wi-Fi.
+     */
+    WIFI;
+
+    /**
+     * @param networkState the current network, or null if unknown, in which case every constraint is considered satisfied
+     */
+    public boolean isSatisfiedBy( NetworkState networkState ) {
+
+        if ( this == ANY || networkState == null ) {
+            return true;
+        }
+
+        if ( this == UNMETERED ) {
+            return networkState.isConnected() && !networkState.isMetered();
+        }
+
+        return networkState.isWifi();
+    }
+}
@@ -0,0 +1,32 @@
+package com.metova.android.util.http.async;
+
+/**
+ * What {@link QueuedHttpClient#submit(AsyncHttpRequestBase)} does when its queue is full. A request that is turned away, whether
+ * it was the one being submitted or one evicted to make room, has its callback invoked with a failed response.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Wait for room in the queue. Should not be used when submitting from the UI thread.
+     */
+    BLOCK,
+
+    /**
+     * Evict a queued request to make room. From a {@link PriorityRequestQueue} this is the {@link PriorityRequestQueue#pollLast() last} 
+     * request of the lowest priority, so that more important requests are kept. From any other queue it is the head, taken with the 
+     * queue's own {@code poll()}, which is the oldest request of a FIFO queue; a {@link PersistentRequestQueue} also deletes it from 
+     * its file.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Turn away the request being submitted, and have {@code offer} return false.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Throw an {@link IllegalStateException} from {@code submit}, as adding to a full queue does, leaving the request's callback
+     * uninvoked. The default.
+     */
+    REJECT;
+}
@@ -0,0 +1,806 @@
+package com.metova.android.util.http.async;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.metova.android.util.Assertions;
+import com.metova.android.util.http.entity.FileReferenceEntity;
+
+/**
+ * {@link BlockingQueue} of {@link AsyncHttpRequestBase}s that survives process death, for use with {@link QueuedHttpClient}.
+ * <p/>
+ * Each request's method, URI, headers, entity, callback type and ordering key are appended to a single segment file. Taking a request
+ * appends a small marker rather than rewriting the file, and once enough requests have been taken the remaining ones are copied to a
+ * fresh file. Only file offsets are held in memory, so a large backlog does not fill the heap.
+ * <p/>
+ * Every write reaches the operating system before the call returns, which is enough to survive the process being killed. Writes are
+ * forced to storage in batches (see {@link #setSyncBatchSize(int)}), and a background timer forces any left over at most
+ * {@link #setSyncIntervalMillis(long) the sync interval} later, so a power loss may drop the most recent ones. Entities are copied into
+ * the file, except for {@link FileReferenceEntity}s, of which only the path is stored.
+ * <p/>
+ * A taken request stays in the file until it is {@link #acknowledge(AsyncHttpRequestBase) acknowledged}. {@link QueuedHttpClient}
+ * acknowledges each request once it has succeeded or been given up, so requests that were parked, waiting for a retry or in flight
+ * when the process died are dispatched again after a restart. Other consumers must acknowledge what they take, or will see it again
+ * the next time the file is opened. {@link #iterator()} returns a snapshot of the requests not yet taken and does not support removal.
+ */
+public class PersistentRequestQueue extends AbstractQueue<AsyncHttpRequestBase> implements BlockingQueue<AsyncHttpRequestBase>, Closeable {
+
+    private static final String TAG = PersistentRequestQueue.class.getSimpleName();
+
+    private static final int MAGIC = 0x4D525131;
+    private static final int FILE_HEADER_LENGTH = 4;
+    private static final int ENTRY_HEADER_LENGTH = 9;
+    private static final byte ENTRY_ENQUEUE = 1;
+    /** Removes the request written at the offset in its payload. */
+    private static final byte ENTRY_ACKNOWLEDGE = 2;
+
+    private static final int DEFAULT_SYNC_BATCH_SIZE = 32;
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 256;
+
+    private final File file;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final LinkedList<Long> offsets = new LinkedList<Long>();
+    private final Map<AsyncHttpRequestBase, Long> unacknowledged = new IdentityHashMap<AsyncHttpRequestBase, Long>();
+
+    private static ScheduledThreadPoolExecutor syncScheduler;
+
+    private RandomAccessFile segment;
+    private int takenEntries;
+    private int unsyncedWrites;
+    private long lastSyncTime;
+    private boolean syncScheduled;
+    private boolean closed;
+
+    private int syncBatchSize = DEFAULT_SYNC_BATCH_SIZE;
+    private long syncIntervalMillis = DEFAULT_SYNC_INTERVAL_MILLIS;
+    private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+    /**
+     * Opens an unbounded queue backed by the given file, restoring any requests left in it.
+     *
+     * @param file the segment file. Created if it does not exist.
+     * @throws IOException the file could not be read, or is not a request queue
+     */
+    public PersistentRequestQueue(final File file) throws IOException {
+
+        this( file, Integer.MAX_VALUE );
+    }
+
+    /**
+     * Opens a queue backed by the given file, restoring any requests left in it.
+     *
+     * @param file the segment file. Created if it does not exist.
+     * @param capacity the maximum number of queued requests
+     * @throws IOException the file could not be read, or is not a request queue
+     */
+    public PersistentRequestQueue(final File file, final int capacity) throws IOException {
+
+        Assertions.notNull( "file", file );
+        if ( capacity < 1 ) {
+            throw new IllegalArgumentException( "capacity must be at least 1, was " + capacity );
+        }
+
+        this.file = file;
+        this.capacity = capacity;
+
+        open();
+    }
+
+    private void open() throws IOException {
+
+        File parent = file.getParentFile();
+        if ( parent != null ) {
+            parent.mkdirs();
+        }
+
+        getCompactionFile().delete();
+
+        segment = new RandomAccessFile( file, "rw" );
+        if ( segment.length() < FILE_HEADER_LENGTH ) {
+            segment.setLength( 0 );
+            segment.writeInt( MAGIC );
+        }
+        else if ( segment.readInt() != MAGIC ) {
+            segment.close();
+            throw new IOException( file + " is not a request queue file." );
+        }
+
+        replay();
+        lastSyncTime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Rebuilds the in-memory offsets from the segment file. An incomplete or corrupt entry at the end
+     * of the file, left by a write that never finished, is discarded along with anything after it.
+     */
+    private void replay() throws IOException {
+
+        offsets.clear();
+        unacknowledged.clear();
+        takenEntries = 0;
+
+        Set<Long> live = new LinkedHashSet<Long>();
+
+        long length = segment.length();
+        long position = FILE_HEADER_LENGTH;
+        while (position + ENTRY_HEADER_LENGTH <= length) {
+
+            segment.seek( position );
+            byte type = segment.readByte();
+            int size = segment.readInt();
+            int checksum = segment.readInt();
+
+            long end = position + ENTRY_HEADER_LENGTH + size;
+            if ( size < 0 || end > length ) {
+                break;
+            }
+
+            if ( type == ENTRY_ENQUEUE || type == ENTRY_ACKNOWLEDGE ) {
+
+                byte[] payload = new byte[size];
+                segment.readFully( payload );
+                if ( checksum( payload ) != checksum ) {
+                    break;
+                }
+
+                if ( type == ENTRY_ENQUEUE ) {
+                    live.add( Long.valueOf( position ) );
+                }
+                else {
+                    live.remove( Long.valueOf( ByteBuffer.wrap( payload ).getLong() ) );
+                    takenEntries++;
+                }
+            }
+            else {
+                break;
+            }
+
+            position = end;
+        }
+
+        if ( position < length ) {
+            Log.w( TAG, "Discarding " + ( length - position ) + " bytes of incomplete entries from " + file );
+            segment.setLength( position );
+        }
+
+        offsets.addAll( live );
+
+        Log.d( TAG, "Restored " + offsets.size() + " queued requests from " + file );
+    }
+
+    @Override
+    public boolean offer( AsyncHttpRequestBase request ) {
+
+        byte[] payload = encode( request );
+        if ( payload == null ) {
+            return false;
+        }
+
+        lock.lock();
+        try {
+            return offsets.size() < capacity && enqueue( payload );
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer( AsyncHttpRequestBase request, long timeout, TimeUnit unit ) throws InterruptedException {
+
+        byte[] payload = encode( request );
+        if ( payload == null ) {
+            return false;
+        }
+
+        long nanos = unit.toNanos( timeout );
+        lock.lockInterruptibly();
+        try {
+            while (offsets.size() >= capacity) {
+                if ( nanos <= 0 ) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos( nanos );
+            }
+            return enqueue( payload );
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put( AsyncHttpRequestBase request ) throws InterruptedException {
+
+        byte[] payload = encode( request );
+        if ( payload == null ) {
+            throw new IllegalStateException( "Unable to serialize request " + request.getRequest().getRequestLine() );
+        }
+
+        lock.lockInterruptibly();
+        try {
+            while (offsets.size() >= capacity) {
+                notFull.await();
+            }
+            if ( !enqueue( payload ) ) {
+                throw new IllegalStateException( "Unable to write request to " + file );
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public AsyncHttpRequestBase take() throws InterruptedException {
+
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                while (offsets.isEmpty()) {
+                    notEmpty.await();
+                }
+
+                AsyncHttpRequestBase request = dequeue();
+                if ( request != null ) {
+                    return request;
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public AsyncHttpRequestBase poll() {
+
+        lock.lock();
+        try {
+            while (!offsets.isEmpty()) {
+                AsyncHttpRequestBase request = dequeue();
+                if ( request != null ) {
+                    return request;
+                }
+            }
+            return null;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public AsyncHttpRequestBase poll( long timeout, TimeUnit unit ) throws InterruptedException {
+
+        long nanos = unit.toNanos( timeout );
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                while (offsets.isEmpty()) {
+                    if ( nanos <= 0 ) {
+                        return null;
+                    }
+                    nanos = notEmpty.awaitNanos( nanos );
+                }
+
+                AsyncHttpRequestBase request = dequeue();
+                if ( request != null ) {
+                    return request;
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public AsyncHttpRequestBase peek() {
+
+        lock.lock();
+        try {
+            while (!offsets.isEmpty()) {
+                AsyncHttpRequestBase request = readHead();
+                if ( request != null ) {
+                    return request;
+                }
+                discardHead();
+            }
+            return null;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+
+        lock.lock();
+        try {
+            return offsets.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+
+        lock.lock();
+        try {
+            return capacity - offsets.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo( Collection<? super AsyncHttpRequestBase> collection ) {
+
+        return drainTo( collection, Integer.MAX_VALUE );
+    }
+
+    @Override
+    public int drainTo( Collection<? super AsyncHttpRequestBase> collection, int maxElements ) {
+
+        if ( collection == this ) {
+            throw new IllegalArgumentException( "Cannot drain a queue into itself." );
+        }
+
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && !offsets.isEmpty()) {
+                AsyncHttpRequestBase request = dequeue();
+                if ( request != null ) {
+                    collection.add( request );
+                    drained++;
+                }
+            }
+            return drained;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queued requests. Every request is read from disk,
+     * so this is intended for inspection rather than routine use.
+     */
+    @Override
+    public Iterator<AsyncHttpRequestBase> iterator() {
+
+        lock.lock();
+        try {
+            List<AsyncHttpRequestBase> snapshot = new ArrayList<AsyncHttpRequestBase>( offsets.size() );
+            for (Long position : offsets) {
+                AsyncHttpRequestBase request = read( position.longValue() );
+                if ( request != null ) {
+                    snapshot.add( request );
+                }
+            }
+            return Collections.unmodifiableList( snapshot ).iterator();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+
+        lock.lock();
+        try {
+            List<Long> cleared = new ArrayList<Long>( offsets );
+            offsets.clear();
+            notFull.signalAll();
+            for (Long position : cleared) {
+                removeEntry( position.longValue() );
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a taken request from the file, once it has been dispatched or given up, so that it is not restored the next time the
+     * file is opened. Does nothing for a request that was not taken from this queue or is already acknowledged.
+     *
+     * @param request the request exactly as returned by {@link #take()}, {@link #poll()} or {@link #drainTo(Collection)}
+     */
+    public void acknowledge( AsyncHttpRequestBase request ) {
+
+        lock.lock();
+        try {
+            Long position = unacknowledged.remove( request );
+            if ( position != null ) {
+                removeEntry( position.longValue() );
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return how many requests have been taken but not yet acknowledged
+     */
+    public int getUnacknowledgedCount() {
+
+        lock.lock();
+        try {
+            return unacknowledged.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces every write so far to storage.
+     */
+    public void sync() throws IOException {
+
+        lock.lock();
+        try {
+            forceSync();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Syncs and closes the segment file. The queue may not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+
+        lock.lock();
+        try {
+            closed = true;
+            forceSync();
+            segment.close();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private byte[] encode( AsyncHttpRequestBase request ) {
+
+        if ( request == null ) {
+            throw new NullPointerException();
+        }
+
+        try {
+            return RequestCodec.encode( request );
+        }
+        catch (IOException e) {
+            Log.e( TAG, "Unable to serialize request " + request.getRequest().getRequestLine(), e );
+            return null;
+        }
+    }
+
+    private boolean enqueue( byte[] payload ) {
+
+        try {
+            offsets.add( Long.valueOf( append( ENTRY_ENQUEUE, payload ) ) );
+            notEmpty.signal();
+            return true;
+        }
+        catch (IOException e) {
+            Log.e( TAG, "Unable to write request to " + file, e );
+            return false;
+        }
+    }
+
+    /**
+     * Reads the head request and hands it out, leaving it in the file until it is acknowledged. Returns null if the head entry could
+     * not be read, in which case it is dropped.
+     */
+    private AsyncHttpRequestBase dequeue() {
+
+        AsyncHttpRequestBase request = readHead();
+        if ( request == null ) {
+            discardHead();
+            return null;
+        }
+
+        unacknowledged.put( request, offsets.removeFirst() );
+        notFull.signal();
+        return request;
+    }
+
+    private AsyncHttpRequestBase readHead() {
+
+        return read( offsets.getFirst().longValue() );
+    }
+
+    private AsyncHttpRequestBase read( long position ) {
+
+        try {
+            segment.seek( position + 1 );
+            byte[] payload = new byte[segment.readInt()];
+            segment.readInt();
+            segment.readFully( payload );
+            return RequestCodec.decode( payload );
+        }
+        catch (IOException e) {
+            Log.e( TAG, "Dropping unreadable request stored at offset " + position + " of " + file, e );
+            return null;
+        }
+    }
+
+    private void discardHead() {
+
+        long position = offsets.removeFirst().longValue();
+        notFull.signal();
+        removeEntry( position );
+    }
+
+    /**
+     * Records that the request written at the position is gone, truncating the file once nothing in it is live and compacting it once
+     * enough is dead.
+     */
+    private void removeEntry( long position ) {
+
+        try {
+            if ( offsets.isEmpty() && unacknowledged.isEmpty() ) {
+                truncate();
+                return;
+            }
+
+            append( ENTRY_ACKNOWLEDGE, ByteBuffer.allocate( 8 ).putLong( position ).array() );
+            takenEntries++;
+            if ( takenEntries >= compactionThreshold && takenEntries >= offsets.size() + unacknowledged.size() ) {
+                compact();
+            }
+        }
+        catch (IOException e) {
+            Log.e( TAG, "Unable to record removal of a request from " + file + "; it will be dispatched again after a restart.", e );
+        }
+    }
+
+    private long append( byte type, byte[] payload ) throws IOException {
+
+        ByteBuffer entry = ByteBuffer.allocate( ENTRY_HEADER_LENGTH + payload.length );
+        entry.put( type ).putInt( payload.length ).putInt( checksum( payload ) ).put( payload );
+
+        long position = segment.length();
+        try {
+            segment.seek( position );
+            segment.write( entry.array() );
+        }
+        catch (IOException e) {
+            //roll back a partial write so that later entries are not hidden behind it on replay
+            segment.setLength( position );
+            throw e;
+        }
+
+        unsyncedWrites++;
+        long now = SystemClock.elapsedRealtime();
+        if ( unsyncedWrites >= syncBatchSize || now - lastSyncTime >= syncIntervalMillis ) {
+            forceSync();
+        }
+        else {
+            scheduleSync( syncIntervalMillis - ( now - lastSyncTime ) );
+        }
+
+        return position;
+    }
+
+    /**
+     * Makes sure the writes not yet forced are forced after the delay, even if nothing else is written in the meantime.
+     */
+    private void scheduleSync( long delayMillis ) {
+
+        if ( syncScheduled ) {
+            return;
+        }
+
+        syncScheduled = true;
+        getSyncScheduler().schedule( new Runnable() {
+
+            @Override
+            public void run() {
+
+                lock.lock();
+                try {
+                    syncScheduled = false;
+                    if ( !closed ) {
+                        forceSync();
+                    }
+                }
+                catch (IOException e) {
+                    Log.w( TAG, "Unable to sync " + file, e );
+                }
+                finally {
+                    lock.unlock();
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS );
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getSyncScheduler() {
+
+        if ( syncScheduler == null ) {
+            syncScheduler = new ScheduledThreadPoolExecutor( 1, new ThreadFactory() {
+
+                @Override
+                public Thread newThread( Runnable runnable ) {
+
+                    Thread thread = new Thread( runnable, TAG );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        }
+        return syncScheduler;
+    }
+
+    private void forceSync() throws IOException {
+
+        if ( unsyncedWrites > 0 ) {
+            segment.getFD().sync();
+            unsyncedWrites = 0;
+        }
+        lastSyncTime = SystemClock.elapsedRealtime();
+    }
+
+    private void truncate() {
+
+        try {
+            segment.setLength( FILE_HEADER_LENGTH );
+            takenEntries = 0;
+        }
+        catch (IOException e) {
+            Log.e( TAG, "Unable to truncate " + file, e );
+        }
+    }
+
+    /**
+     * Copies the live entries, both queued and unacknowledged, to a new file in their original order, then replaces the segment file
+     * with it.
+     */
+    private void compact() throws IOException {
+
+        Log.d( TAG, "Compacting " + file + ": " + offsets.size() + " queued and " + unacknowledged.size() + " unacknowledged entries, " + takenEntries + " taken." );
+
+        List<Long> live = new ArrayList<Long>( offsets.size() + unacknowledged.size() );
+        live.addAll( offsets );
+        live.addAll( unacknowledged.values() );
+        Collections.sort( live );
+
+        File compactionFile = getCompactionFile();
+        Map<Long, Long> compactedOffsets = new HashMap<Long, Long>( live.size() * 2 );
+
+        RandomAccessFile target = new RandomAccessFile( compactionFile, "rw" );
+        try {
+            target.setLength( 0 );
+            target.writeInt( MAGIC );
+            for (Long position : live) {
+
+                segment.seek( position.longValue() + 1 );
+                byte[] entry = new byte[ENTRY_HEADER_LENGTH + segment.readInt()];
+                segment.seek( position.longValue() );
+                segment.readFully( entry );
+
+                compactedOffsets.put( position, Long.valueOf( target.getFilePointer() ) );
+                target.write( entry );
+            }
+            target.getFD().sync();
+        }
+        finally {
+            target.close();
+        }
+
+        segment.close();
+        boolean renamed = compactionFile.renameTo( file );
+        segment = new RandomAccessFile( file, "rw" );
+
+        if ( !renamed ) {
+            compactionFile.delete();
+            throw new IOException( "Unable to replace " + file + " with its compacted copy." );
+        }
+
+        for (ListIterator<Long> iterator = offsets.listIterator(); iterator.hasNext();) {
+            iterator.set( compactedOffsets.get( iterator.next() ) );
+        }
+        for (Map.Entry<AsyncHttpRequestBase, Long> entry : unacknowledged.entrySet()) {
+            entry.setValue( compactedOffsets.get( entry.getValue() ) );
+        }
+        takenEntries = 0;
+        unsyncedWrites = 0;
+    }
+
+    private File getCompactionFile() {
+
+        return new File( file.getPath() + ".compact" );
+    }
+
+    private static int checksum( byte[] payload ) {
+
+        CRC32 crc = new CRC32();
+        crc.update( payload );
+        return (int) crc.getValue();
+    }
+
+    public File getFile() {
+
+        return file;
+    }
+
+    public void setSyncBatchSize( int syncBatchSize ) {
+
+        lock.lock();
+        try {
+            this.syncBatchSize = syncBatchSize;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public void setSyncIntervalMillis( long syncIntervalMillis ) {
+
+        lock.lock();
+        try {
+            this.syncIntervalMillis = syncIntervalMillis;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets how many taken requests may accumulate in the file before it is compacted. Compaction
+     * also waits until at least half of the file's entries are taken.
+     */
+    public void setCompactionThreshold( int compactionThreshold ) {
+
+        lock.lock();
+        try {
+            this.compactionThreshold = compactionThreshold;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.metova.android.util.http.async;
+
+/**
+ * Scheduling class of an {@link AsyncHttpRequestBase}, used by {@link PriorityRequestQueue}.
+ */
+public enum Priority {
+
+    /**
+     * A request the user is waiting on.
+     */
+    INTERACTIVE,
+
+    /**
+     * The default for requests that do not specify a priority.
+     */
+    NORMAL,
+
+    /**
+     * Bulk or sync work that may wait behind everything else.
+     */
+    BACKGROUND;
+}
@@ -0,0 +1,420 @@
+package com.metova.android.util.http.async;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import android.os.SystemClock;
+
+/**
+ * {@link BlockingQueue} that orders {@link AsyncHttpRequestBase}s by {@link Priority}, for use with {@link QueuedHttpClient}.
+ * <p/>
+ * Each priority has its own FIFO lane. To keep a steady stream of interactive requests from starving background work, a waiting
+ * request is treated as one priority higher for every aging interval it has spent in the queue (see {@link #setAgingIntervalMillis(long)}).
+ * When two lanes' heads end up with the same effective priority, the one that has waited longer is taken first.
+ * <p/>
+ * A request whose {@link AsyncHttpRequestBase#getDeadline() deadline} has passed by the time it reaches the head of its lane is
+ * taken ahead of everything else, so that {@link QueuedHttpClient} drops it promptly, without sending it, instead of leaving it
+ * to wait its turn.
+ * <p/>
+ * The queue is unbounded unless constructed with a capacity. When a bounded queue is full, {@link #pollLast()} makes room by removing
+ * the request that would be dispatched last, which is what {@link OverflowPolicy#DROP_OLDEST} evicts.
+ */
+public class PriorityRequestQueue extends AbstractQueue<AsyncHttpRequestBase> implements BlockingQueue<AsyncHttpRequestBase> {
+
+    private static final long DEFAULT_AGING_INTERVAL_MILLIS = 10000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final List<LinkedList<Entry>> lanes;
+    private final int capacity;
+
+    private int size;
+    private long agingIntervalMillis = DEFAULT_AGING_INTERVAL_MILLIS;
+
+    public PriorityRequestQueue() {
+
+        this( Integer.MAX_VALUE );
+    }
+
+    /**
+     * @param capacity the maximum number of queued requests
+     */
+    public PriorityRequestQueue(int capacity) {
+
+        if ( capacity <= 0 ) {
+            throw new IllegalArgumentException( "Capacity must be positive: " + capacity );
+        }
+
+        this.capacity = capacity;
+        Priority[] priorities = Priority.values();
+        lanes = new ArrayList<LinkedList<Entry>>( priorities.length );
+        for (int i = 0; i < priorities.length; i++) {
+            lanes.add( new LinkedList<Entry>() );
+        }
+    }
+
+    @Override
+    public boolean offer( AsyncHttpRequestBase request ) {
+
+        if ( request == null ) {
+            throw new NullPointerException();
+        }
+
+        lock.lock();
+        try {
+            if ( size >= capacity ) {
+                return false;
+            }
+
+            enqueue( request );
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer( AsyncHttpRequestBase request, long timeout, TimeUnit unit ) throws InterruptedException {
+
+        if ( request == null ) {
+            throw new NullPointerException();
+        }
+
+        long nanos = unit.toNanos( timeout );
+        lock.lockInterruptibly();
+        try {
+            while (size >= capacity) {
+                if ( nanos <= 0 ) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos( nanos );
+            }
+
+            enqueue( request );
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put( AsyncHttpRequestBase request ) throws InterruptedException {
+
+        if ( request == null ) {
+            throw new NullPointerException();
+        }
+
+        lock.lockInterruptibly();
+        try {
+            while (size >= capacity) {
+                notFull.await();
+            }
+
+            enqueue( request );
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public AsyncHttpRequestBase take() throws InterruptedException {
+
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                while (size == 0) {
+                    notEmpty.await();
+                }
+
+                LinkedList<Entry> lane = nextLane();
+                if ( lane != null ) {
+                    return remove( lane );
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public AsyncHttpRequestBase poll() {
+
+        lock.lock();
+        try {
+            LinkedList<Entry> lane = nextLane();
+            return ( lane == null ) ? null : remove( lane );
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the request that would be dispatched last, ignoring aging: the most recently queued request of the lowest priority.
+     *
+     * @return the request, or null if the queue is empty
+     */
+    public AsyncHttpRequestBase pollLast() {
+
+        lock.lock();
+        try {
+            for (int i = lanes.size() - 1; i >= 0; i--) {
+
+                LinkedList<Entry> lane = lanes.get( i );
+                if ( !lane.isEmpty() ) {
+                    size--;
+                    notFull.signal();
+                    return lane.removeLast().request;
+                }
+            }
+            return null;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public AsyncHttpRequestBase poll( long timeout, TimeUnit unit ) throws InterruptedException {
+
+        long nanos = unit.toNanos( timeout );
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                while (size == 0) {
+                    if ( nanos <= 0 ) {
+                        return null;
+                    }
+                    nanos = notEmpty.awaitNanos( nanos );
+                }
+
+                LinkedList<Entry> lane = nextLane();
+                if ( lane != null ) {
+                    return remove( lane );
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public AsyncHttpRequestBase peek() {
+
+        lock.lock();
+        try {
+            LinkedList<Entry> lane = nextLane();
+            return ( lane == null ) ? null : lane.getFirst().request;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+
+        lock.lock();
+        try {
+            return size;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+
+        lock.lock();
+        try {
+            return capacity - size;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo( Collection<? super AsyncHttpRequestBase> collection ) {
+
+        return drainTo( collection, Integer.MAX_VALUE );
+    }
+
+    @Override
+    public int drainTo( Collection<? super AsyncHttpRequestBase> collection, int maxElements ) {
+
+        if ( collection == this ) {
+            throw new IllegalArgumentException( "Cannot drain a queue into itself." );
+        }
+
+        lock.lock();
+        try {
+            int drained = 0;
+            LinkedList<Entry> lane;
+            while (drained < maxElements && ( lane = nextLane() ) != null) {
+                collection.add( remove( lane ) );
+                drained++;
+            }
+            return drained;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queued requests, listed lane by lane from the highest priority
+     * down. The snapshot ignores aging, and does not support removal.
+     */
+    @Override
+    public Iterator<AsyncHttpRequestBase> iterator() {
+
+        lock.lock();
+        try {
+            List<AsyncHttpRequestBase> snapshot = new ArrayList<AsyncHttpRequestBase>( size );
+            for (LinkedList<Entry> lane : lanes) {
+                for (Entry entry : lane) {
+                    snapshot.add( entry.request );
+                }
+            }
+            return Collections.unmodifiableList( snapshot ).iterator();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+
+        lock.lock();
+        try {
+            for (LinkedList<Entry> lane : lanes) {
+                lane.clear();
+            }
+            size = 0;
+            notFull.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the request to the tail of its lane. Must be called while holding {@link #lock}, with room in the queue.
+     */
+    private void enqueue( AsyncHttpRequestBase request ) {
+
+        int priority = request.getPriority().ordinal();
+        lanes.get( priority ).add( new Entry( request, priority, SystemClock.elapsedRealtime() ) );
+        size++;
+        notEmpty.signal();
+    }
+
+    /**
+     * Picks the lane whose head should be taken next, which is the first lane with an expired head, if any. Must be called while 
+     * holding {@link #lock}.
+     *
+     * @return the lane, or null if the queue is empty
+     */
+    private LinkedList<Entry> nextLane() {
+
+        long now = SystemClock.elapsedRealtime();
+
+        LinkedList<Entry> next = null;
+        int nextPriority = Integer.MAX_VALUE;
+        for (LinkedList<Entry> lane : lanes) {
+
+            if ( lane.isEmpty() ) {
+                continue;
+            }
+
+            Entry head = lane.getFirst();
+            if ( head.request.isExpired() ) {
+                return lane;
+            }
+
+            int effectivePriority = getEffectivePriority( head, now );
+            if ( effectivePriority < nextPriority || ( effectivePriority == nextPriority && head.enqueuedAt < next.getFirst().enqueuedAt ) ) {
+                next = lane;
+                nextPriority = effectivePriority;
+            }
+        }
+
+        return next;
+    }
+
+    private int getEffectivePriority( Entry entry, long now ) {
+
+        int priority = entry.priority;
+        if ( agingIntervalMillis > 0 ) {
+            long promotions = ( now - entry.enqueuedAt ) / agingIntervalMillis;
+            priority = (int) Math.max( 0, priority - promotions );
+        }
+        return priority;
+    }
+
+    private AsyncHttpRequestBase remove( LinkedList<Entry> lane ) {
+
+        size--;
+        notFull.signal();
+        return lane.removeFirst().request;
+    }
+
+    public long getAgingIntervalMillis() {
+
+        lock.lock();
+        try {
+            return agingIntervalMillis;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets how long a request waits before it is treated as one priority higher.
+     *
+     * @param agingIntervalMillis the interval, or 0 to disable aging
+     */
+    public void setAgingIntervalMillis( long agingIntervalMillis ) {
+
+        lock.lock();
+        try {
+            this.agingIntervalMillis = agingIntervalMillis;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry {
+
+        private final AsyncHttpRequestBase request;
+        private final int priority;
+        private final long enqueuedAt;
+
+        public Entry(AsyncHttpRequestBase request, int priority, long enqueuedAt) {
+
+            this.request = request;
+            this.priority = priority;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
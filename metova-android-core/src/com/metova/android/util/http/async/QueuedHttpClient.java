@@ -1,34 +1,92 @@
 package com.metova.android.util.http.async;
 
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.entity.BufferedHttpEntity;
 
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.metova.android.util.Assertions;
 import com.metova.android.util.concurrent.ThreadPool;
 import com.metova.android.util.http.HttpClients;
+import com.metova.android.util.http.circuit.CircuitBreaker;
+import com.metova.android.util.http.circuit.CircuitBreakerRegistry;
+import com.metova.android.util.http.metrics.MetricsHttpClient;
+import com.metova.android.util.http.metrics.MetricsSink;
+import com.metova.android.util.http.request.HttpResumableUpload;
 import com.metova.android.util.http.response.Response;
+import com.metova.android.util.net.NetworkState;
 
 /**
  * HTTP client that places {@link HttpUriRequest}s on a {@link Queue} for asynchronous dispatch. Clients may provide their own {@link BlockingQueue}s, {@link ThreadPoolExecutor}s, and {@link HttpClient}s if desired.
  * <p/>
  * Requests will be dispatched in FIFO order. If no {@link ThreadPoolExecutor} is provided, a single-threaded {@link ThreadPool} is used, which guarantees that requests are dispatched serially.  
- *
+ * If no queue is provided, an unbounded {@link LinkedBlockingQueue} is used. Pass a bounded queue, such as a {@link BoundedRequestQueue}, to cap
+ * the memory held by waiting requests; {@link #setOverflowPolicy(OverflowPolicy)} then decides what happens once it is full.
+ * <p/>
+ * Calling {@link #setMaxConcurrentRequests(int)} with a value greater than one enables concurrent dispatch. Up to that many
+ * requests are then in flight at once, optionally limited per host by {@link #setMaxRequestsPerHost(int)}. Requests that share
+ * an {@link AsyncHttpRequestBase#getOrderingKey() ordering key} are still dispatched one at a time and in FIFO order. Requests that
+ * cannot be dispatched yet are parked, and remain parked across {@link #stop()} and {@link #start()}. Concurrent dispatch runs on the
+ * provided executor, which therefore needs at least one more thread than the maximum number of concurrent requests.
+ * <p/>
+ * Failed requests are retried according to the {@link RetryStrategy}. When it is a {@link DelayedRetryStrategy}, such as the default
+ * {@link DefaultRetryStrategy}, the retry is scheduled for later rather than waited for, and other requests are dispatched meanwhile. A request
+ * waiting to be retried keeps its ordering key, so requests sharing the key cannot overtake it. Scheduled retries survive {@link #stop()}.
+ * <p/>
+ * Pass a {@link PriorityRequestQueue} to dispatch by {@link Priority} instead of FIFO. Whatever the queue, requests whose
+ * {@link AsyncHttpRequestBase#getDeadline() deadline} has passed are dropped rather than dispatched.
+ * <p/>
+ * Requests accepted by a {@link BatchEndpoint} added with {@link #addBatchEndpoint(BatchEndpoint)} are not dispatched on their own.
+ * They are collected as they come off the queue and sent packed together, and each one's callback receives its own unpacked response.
+ * <p/>
+ * {@link #pause()} and {@link #resume()} hold dispatch back without interrupting requests already in flight, unlike {@link #stop()}. 
+ * A {@link ConnectivityDispatchController} calls them as the network comes and goes, and keeps {@link #setNetworkState(NetworkState)} 
+ * current so that requests with a {@link NetworkConstraint} wait, parked, for a suitable network.
+ * <p/>
+ * An {@link HttpResumableUpload} is run as a whole upload, and each retry resumes it from the last byte the server acknowledged.
+ * <p/>
+ * Callbacks and retry strategies come from a {@link CallbackRegistry}, by key or by type. Callbacks run on the dispatching thread
+ * unless {@link #setCallbackExecutor(Executor)} moves them elsewhere, such as to the UI thread, so that slow callbacks no longer hold
+ * up the queue.
  */
 public class QueuedHttpClient {
 
     private static final String TAG = QueuedHttpClient.class.getSimpleName();
 
+    public static final int UNLIMITED = 0;
+    private static final int DEFAULT_MAX_PARKED_REQUESTS = 64;
+    private static final long PARKING_FULL_POLL_MILLIS = 1000;
+    private static final long NETWORK_CONSTRAINT_RECHECK_MILLIS = 10000;
+    private static final long REJECTED_LAUNCH_RECHECK_MILLIS = 1000;
+
     private final BlockingQueue<AsyncHttpRequestBase> queue;
     private final ExecutorService executor;
     private final HttpClient httpClient;
@@ -38,6 +96,29 @@ public class QueuedHttpClient {
     private Runnable dispatchRunnable;
     private Future<?> dispatchFuture;
 
+    private final Object dispatchLock = new Object();
+    private final List<AsyncHttpRequestBase> parkedRequests = new LinkedList<AsyncHttpRequestBase>();
+    private final Map<String, Integer> inFlightRequestsByHost = new HashMap<String, Integer>();
+    private final Set<String> inFlightOrderingKeys = new HashSet<String>();
+    private final DelayQueue<PendingDispatch> scheduledRetries = new DelayQueue<PendingDispatch>();
+    private final List<PendingDispatch> dueRetries = new LinkedList<PendingDispatch>();
+    private final List<BatchEndpoint> batchEndpoints = new CopyOnWriteArrayList<BatchEndpoint>();
+    private final List<OpenBatch> openBatches = new ArrayList<OpenBatch>();
+    private volatile Thread dispatchThread;
+    private volatile CircuitBreakerRegistry circuitBreakers;
+    private volatile NetworkState networkState;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+    private volatile MetricsSink metricsSink;
+    private volatile CallbackRegistry callbackRegistry = CallbackRegistry.getDefault();
+    private volatile Executor callbackExecutor;
+    private boolean paused;
+    private boolean awaitingQueue;
+    private int inFlightRequests;
+    private long relaunchAt;
+    private int maxConcurrentRequests = 1;
+    private int maxRequestsPerHost = UNLIMITED;
+    private int maxParkedRequests = DEFAULT_MAX_PARKED_REQUESTS;
+
     public QueuedHttpClient() {
 
         this( new LinkedBlockingQueue<AsyncHttpRequestBase>() );
@@ -50,7 +131,7 @@ public class QueuedHttpClient {
 
     public QueuedHttpClient(ThreadPoolExecutor executor, BlockingQueue<AsyncHttpRequestBase> queue) {
 
-        this( new DefaultHttpClient(), executor, queue, DefaultRetryStrategy.class );
+        this( HttpClients.getSharedClient(), executor, queue, DefaultRetryStrategy.class );
     }
 
     /**
@@ -102,19 +183,128 @@ public class QueuedHttpClient {
         submit( new AsyncHttpRequestBase( request, callbackType ) );
     }
 
+    /**
+     * Submits the request for asynchronous dispatch. If the queue is full, the {@link #setOverflowPolicy(OverflowPolicy) overflow policy}
+     * decides what happens; use {@link #offer(AsyncHttpRequestBase)} to find out whether the request was queued.
+     * 
+     * @throws IllegalStateException if the queue is full and the policy is {@link OverflowPolicy#REJECT}
+     * @throws IllegalArgumentException if the request's callback or retry strategy key is not in the {@link CallbackRegistry}, or
+     *             its callback type cannot be instantiated
+     */
     public void submit( AsyncHttpRequestBase asyncRequest ) {
 
-        final HttpUriRequest request = asyncRequest.getRequest();
-        final Class<? extends AsyncHttpResponseCallback> callbackType = asyncRequest.getCallbackType();
+        offer( asyncRequest );
+    }
+
+    /**
+     * Submits the request like {@link #submit(AsyncHttpRequestBase)}, and reports whether it was queued.
+     * 
+     * @return true if the request was queued, or false if it was turned away under {@link OverflowPolicy#DROP_NEWEST}, or
+     *         interrupted while waiting under {@link OverflowPolicy#BLOCK}
+     * @throws IllegalStateException if the queue is full and the policy is {@link OverflowPolicy#REJECT}
+     * @throws IllegalArgumentException if the request's callback or retry strategy key is not in the {@link CallbackRegistry}, or
+     *             its callback type cannot be instantiated
+     */
+    public boolean offer( AsyncHttpRequestBase asyncRequest ) {
+
+        boolean hasCallback = checkCallbacks( asyncRequest );
+        if ( Log.isLoggable( TAG, Log.DEBUG ) ) {
+            HttpUriRequest request = asyncRequest.getRequest();
+            Log.d( TAG, "Request submitted: " + request.getRequestLine() + ( hasCallback ? " with callback" : " without callback" ) );
+        }
+
+        asyncRequest.setSubmittedAt( SystemClock.elapsedRealtime() );
+        if ( queue.offer( asyncRequest ) ) {
+            return true;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put( asyncRequest );
+                    return true;
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    turnAway( asyncRequest, "Interrupted while waiting for room in the request queue." );
+                    return false;
+                }
+            case DROP_OLDEST:
+                do {
+                    AsyncHttpRequestBase evicted = ( queue instanceof PriorityRequestQueue ) ? ( (PriorityRequestQueue) queue ).pollLast() : queue.poll();
+                    if ( evicted != null ) {
+                        turnAway( evicted, "Evicted from a full request queue." );
+                    }
+                }
+                while (!queue.offer( asyncRequest ));
+                return true;
+            case DROP_NEWEST:
+                turnAway( asyncRequest, "Request queue full." );
+                return false;
+            default:
+                //as BlockingQueue.add() does, which is what submit() used before overflow policies
+                throw new IllegalStateException( "Request queue full; rejected " + asyncRequest.getRequest().getRequestLine() );
+        }
+    }
+
+    /**
+     * Fails fast, on the submitting thread, if the request's callback or retry strategy cannot be found.
+     * 
+     * @return whether the request has a callback
+     */
+    private boolean checkCallbacks( AsyncHttpRequestBase asyncRequest ) {
+
+        CallbackRegistry registry = callbackRegistry;
+        String retryStrategyKey = asyncRequest.getRetryStrategyKey();
+        if ( retryStrategyKey != null && !registry.hasRetryStrategy( retryStrategyKey ) ) {
+            throw new IllegalArgumentException( "No retry strategy registered for key " + retryStrategyKey );
+        }
+
+        String callbackKey = asyncRequest.getCallbackKey();
+        if ( callbackKey != null ) {
+            if ( !registry.hasCallback( callbackKey ) ) {
+                throw new IllegalArgumentException( "No callback registered for key " + callbackKey );
+            }
+            return true;
+        }
 
-        StringBuilder stringBuilder = new StringBuilder( "Request submitted: " );
-        stringBuilder.append( request.getRequestLine() ).append( " to " ).append( request.getURI() );
-        stringBuilder.append( ( callbackType == null ) ? " without callback" : " with callback" );
-        Log.d( TAG, "Request submitted: " + request.getRequestLine() + " to " + request.getURI() );
+        if ( asyncRequest.getCallbackType() != null ) {
+            //resolves the type once, so that dispatch never has to instantiate it
+            registry.getCallback( asyncRequest.getCallbackType() );
+            return true;
+        }
+        return false;
+    }
+
+    private void turnAway( AsyncHttpRequestBase asyncRequest, String reason ) {
+
+        Log.w( TAG, reason + " Dropping " + asyncRequest.getRequest().getRequestLine() );
+
+        Response response = new Response();
+        response.setFailedRequest( true );
+        response.setReason( reason );
+        invokeCallback( asyncRequest, response );
+        acknowledge( asyncRequest );
+    }
+
+    /**
+     * Tells a {@link PersistentRequestQueue} that a request it handed out is finished, so that it is not restored after a restart.
+     */
+    private void acknowledge( AsyncHttpRequestBase asyncRequest ) {
 
-        getQueue().add( asyncRequest );
+        if ( !( queue instanceof PersistentRequestQueue ) ) {
+            return;
+        }
 
-        Log.d( TAG, "Current queue size: " + getQueue().size() );
+        PersistentRequestQueue persistentQueue = (PersistentRequestQueue) queue;
+        if ( asyncRequest instanceof BatchRequest ) {
+            for (AsyncHttpRequestBase packedRequest : ( (BatchRequest) asyncRequest ).getPackedRequests()) {
+                persistentQueue.acknowledge( packedRequest );
+            }
+        }
+        else {
+            persistentQueue.acknowledge( asyncRequest );
+        }
     }
 
     public void start() {
@@ -122,6 +312,7 @@ public class QueuedHttpClient {
         Log.d( TAG, "Received request to start dispatches. " + getQueue().size() + " items queued for dispatch." );
         synchronized (queue) {
             performDispatches = true;
+            warnIfExecutorTooSmall();
             //start the task
             dispatchFuture = getExecutor().submit( dispatchRunnable );
             Log.d( TAG, "Successfully started dispatch task." );
@@ -142,49 +333,139 @@ public class QueuedHttpClient {
         }
     }
 
-    protected void dispatch( final HttpRequestBase request, final Class<? extends AsyncHttpResponseCallback> callbackType ) {
-
-        Log.d( TAG, "Attempting to dispatch request: " + request.getRequestLine() );
-
-        RetryStrategy retryStrategy = null;
+    /**
+     * Holds back further dispatches until {@link #resume()}. Unlike {@link #stop()}, requests already in flight are left to 
+     * complete, and the dispatch thread keeps running.
+     */
+    public void pause() {
 
-        if ( retryStrategyType != null ) {
-            try {
-                retryStrategy = retryStrategyType.newInstance();
+        synchronized (dispatchLock) {
+            if ( !paused ) {
+                Log.d( TAG, "Pausing dispatches." );
+                paused = true;
             }
-            catch (IllegalAccessException e) {
-                Log.w( TAG, "Error encountered instantiating RetryStrategy type: " + retryStrategyType, e );
-            }
-            catch (InstantiationException e) {
-                Log.w( TAG, "Error encountered instantiating RetryStrategy type: " + retryStrategyType, e );
+        }
+    }
+
+    /**
+     * Resumes dispatching after {@link #pause()}. Requests that built up in the meantime go out together, and open batches are
+     * sent straight away rather than left to linger, so that the radio wakes up once for all of them.
+     */
+    public void resume() {
+
+        synchronized (dispatchLock) {
+            if ( paused ) {
+                Log.d( TAG, "Resuming dispatches. " + getQueue().size() + " items queued for dispatch." );
+                paused = false;
+                for (OpenBatch batch : new ArrayList<OpenBatch>( openBatches )) {
+                    flushBatch( batch );
+                }
+                wakeDispatcher();
             }
         }
+    }
+
+    public boolean isPaused() {
+
+        synchronized (dispatchLock) {
+            return paused;
+        }
+    }
 
-        final Response response = dispatchWithRetries( request, retryStrategy );
+    public NetworkState getNetworkState() {
 
-        if ( response == null ) {
+        return networkState;
+    }
+
+    /**
+     * Tells the client which network is active, so that requests are only dispatched over networks their 
+     * {@link NetworkConstraint} allows. Until this is called, every constraint is considered satisfied.
+     */
+    public void setNetworkState( NetworkState networkState ) {
 
-            Log.d( TAG, "Abandoning attempts to dispatch request " + request.getRequestLine() );
+        synchronized (dispatchLock) {
+            this.networkState = networkState;
+            wakeDispatcher();
         }
-        else {
+    }
 
-            Log.d( TAG, "Completed request '" + request.getRequestLine() + "' with code: " + response.getStatusCode() );
+    /**
+     * Dispatches the request synchronously on the calling thread, sleeping between retries.
+     * 
+     * @deprecated the dispatch loop no longer calls this method, so overriding it does not change how queued requests are 
+     * sent. Queued requests are dispatched one attempt at a time, and delayed retries are scheduled rather than slept through.
+     */
+    @Deprecated
+    protected void dispatch( final HttpRequestBase request, final Class<? extends AsyncHttpResponseCallback> callbackType ) {
 
-            invokeCallback( callbackType, response );
+        PendingDispatch pending = new PendingDispatch( new AsyncHttpRequestBase( request, callbackType ) );
+        try {
+            long retryDelay;
+            while ((retryDelay = attempt( pending )) > 0) {
+                Thread.sleep( retryDelay );
+            }
+        }
+        catch (InterruptedException e) {
+            Log.d( TAG, "Interrupted while waiting to retry request " + request.getRequestLine() );
+            Thread.currentThread().interrupt();
         }
     }
 
-    private Response dispatchWithRetries( HttpRequestBase request, RetryStrategy retryStrategy ) {
+    /**
+     * Sends the request, repeating immediately for as long as the retry strategy asks for undelayed retries. 
+     * The callback is invoked once the request succeeds or the strategy gives up.
+     * 
+     * @return the delay before the next attempt in milliseconds, or 0 if the request is finished
+     */
+    private long attempt( PendingDispatch pending ) {
+
+        final HttpRequestBase request = pending.asyncRequest.getRequest();
+
+        while (true) {
+
+            if ( pending.asyncRequest.isExpired() ) {
+
+                Log.d( TAG, "Dropping request past its deadline: " + request.getRequestLine() );
+                return 0;
+            }
+
+            if ( !pending.asyncRequest.getNetworkConstraint().isSatisfiedBy( networkState ) ) {
+
+                //the network changed while the request waited to be retried
+                Log.d( TAG, "Holding request " + request.getRequestLine() + " until a " + pending.asyncRequest.getNetworkConstraint() + " network is available." );
+                return NETWORK_CONSTRAINT_RECHECK_MILLIS;
+            }
+
+            CircuitBreakerRegistry breakers = circuitBreakers;
+            CircuitBreaker breaker = ( breakers == null ) ? null : breakers.getBreaker( request );
+            if ( breaker != null && !breaker.allowRequest() ) {
 
-        boolean retry = true;
-        Response response = null;
-        while (retry) {
+                //park the request without spending a retry on it
+                long breakerDelay = breaker.getRetryDelayMillis();
+                Log.d( TAG, "Circuit open for " + breaker.getHost() + "; holding request " + request.getRequestLine() + " for " + breakerDelay + "ms." );
+                return breakerDelay;
+            }
+
+            if ( !pending.attempted ) {
+                pending.attempted = true;
+                reportDequeued( pending.asyncRequest );
+            }
+
+            Log.d( TAG, "Attempting to dispatch request: " + request.getRequestLine() );
 
+            Response response = null;
             Throwable throwable = null;
             try {
 
-                response = HttpClients.execute( getHttpClient(), request );
-                Log.d( TAG, "Received response " + response.getHttpResponse().getStatusLine() + " for request " + request.getRequestLine() );
+                if ( request instanceof HttpResumableUpload ) {
+                    response = ( (HttpResumableUpload) request ).execute( getHttpClient() );
+                }
+                else {
+                    response = HttpClients.execute( getHttpClient(), request );
+                }
+                if ( !response.isFailedRequest() ) {
+                    Log.d( TAG, "Received response " + response.getHttpResponse().getStatusLine() + " for request " + request.getRequestLine() );
+                }
             }
             catch (Throwable t) {
 
@@ -192,84 +473,1028 @@ public class QueuedHttpClient {
                 throwable = t;
             }
 
+            if ( breaker != null ) {
+                breaker.record( response, throwable );
+            }
+
             if ( response != null && response.isSuccessful() ) {
 
-                retry = false;
+                Log.d( TAG, "Completed request '" + request.getRequestLine() + "' with code: " + response.getStatusCode() );
+                complete( pending.asyncRequest, response );
+                discard( response );
+                return 0;
             }
-            else {
 
-                retry = ( null == retryStrategy ) ? false : retryStrategy.onRetry( response, throwable );
+            RetryStrategy retryStrategy = pending.getRetryStrategy();
+            if ( retryStrategy == null || !retryStrategy.onRetry( response, throwable ) ) {
+
+                if ( response == null ) {
+                    Log.d( TAG, "Abandoning attempts to dispatch request " + request.getRequestLine() );
+                }
+                else {
+                    complete( pending.asyncRequest, response );
+                    discard( response );
+                }
+                return 0;
+            }
+
+            discard( response );
+            reportRetried( request );
+
+            if ( retryStrategy instanceof DelayedRetryStrategy ) {
+
+                long retryDelay = ( (DelayedRetryStrategy) retryStrategy ).getRetryDelayMillis( response, throwable );
+                if ( retryDelay > 0 ) {
+                    Log.d( TAG, "Retrying request " + request.getRequestLine() + " in " + retryDelay + "ms." );
+                    return retryDelay;
+                }
             }
         }
-        return response;
     }
 
-    private void invokeCallback( Class<? extends AsyncHttpResponseCallback> callbackType, Response response ) {
+    /**
+     * Releases the connection held by a response once its callback has returned, or before the request is retried.
+     */
+    private void discard( Response response ) {
 
-        if ( callbackType != null ) {
+        if ( response == null || response.isFailedRequest() || response.getHttpResponse() == null ) {
+            return;
+        }
 
-            Log.d( TAG, "Invoking callback." );
+        HttpEntity entity = response.getHttpResponse().getEntity();
+        if ( entity != null ) {
+            try {
+                entity.consumeContent();
+            }
+            catch (IOException e) {
+                Log.w( TAG, "Unable to release the connection of a failed response.", e );
+            }
+        }
+    }
+
+    private RetryStrategy createRetryStrategy( AsyncHttpRequestBase asyncRequest ) {
+
+        try {
+            if ( asyncRequest.getRetryStrategyKey() != null ) {
+                return callbackRegistry.createRetryStrategy( asyncRequest.getRetryStrategyKey() );
+            }
+            if ( retryStrategyType != null ) {
+                return callbackRegistry.createRetryStrategy( retryStrategyType );
+            }
+        }
+        catch (IllegalArgumentException e) {
+            Log.w( TAG, "Error encountered creating RetryStrategy for " + asyncRequest.getRequest().getRequestLine(), e );
+        }
+
+        return null;
+    }
+
+    private void complete( AsyncHttpRequestBase asyncRequest, Response response ) {
+
+        if ( asyncRequest instanceof BatchRequest ) {
+            completeBatch( (BatchRequest) asyncRequest, response );
+        }
+        else {
+            invokeCallback( asyncRequest, response );
+        }
+    }
+
+    /**
+     * Hands each packed request its own response. If the batch failed or its response cannot be unpacked, each packed request
+     * receives a failed response instead.
+     */
+    private void completeBatch( BatchRequest batch, Response response ) {
+
+        List<AsyncHttpRequestBase> packedRequests = batch.getPackedRequests();
+        List<Response> responses = null;
+        String reason = response.isFailedRequest() ? response.getReason() : "Batch request failed with status " + response.getStatusCode() + ".";
+        if ( response.isSuccessful() ) {
             try {
+                responses = batch.getEndpoint().unpack( response, packedRequests );
+            }
+            catch (IOException e) {
+                Log.w( TAG, "Unable to unpack response to " + batch.getRequest().getRequestLine(), e );
+                reason = "Unable to unpack batch response.";
+            }
+        }
 
-                AsyncHttpResponseCallback callback = callbackType.newInstance();
-                callback.onResponseReceived( response );
+        for (int i = 0; i < packedRequests.size(); i++) {
+
+            Response packedResponse;
+            if ( responses == null ) {
+                packedResponse = new Response();
+                packedResponse.setFailedRequest( true );
+                packedResponse.setReason( reason );
+            }
+            else {
+                packedResponse = responses.get( i );
             }
-            catch (IllegalAccessException e) {
 
-                Log.e( TAG, "Error attempting to instantiate callback type.", e );
+            invokeCallback( packedRequests.get( i ), packedResponse );
+        }
+    }
+
+    private void reportDequeued( AsyncHttpRequestBase asyncRequest ) {
+
+        MetricsSink sink = metricsSink;
+        if ( sink != null ) {
+            long submittedAt = asyncRequest.getSubmittedAt();
+            try {
+                sink.onRequestDequeued( asyncRequest.getRequest(), ( submittedAt == 0 ) ? -1 : SystemClock.elapsedRealtime() - submittedAt, queue.size() );
             }
-            catch (InstantiationException e) {
+            catch (RuntimeException e) {
+                Log.w( TAG, "Metrics sink failed.", e );
+            }
+        }
+    }
+
+    private void reportRetried( HttpUriRequest request ) {
 
-                Log.e( TAG, "Error attempting to instantiate callback type.", e );
+        MetricsSink sink = metricsSink;
+        if ( sink != null ) {
+            try {
+                sink.onRequestRetried( request );
+            }
+            catch (RuntimeException e) {
+                Log.w( TAG, "Metrics sink failed.", e );
             }
         }
     }
 
-    private class DispatchRunnable implements Runnable {
+    /**
+     * Hands the response to the request's callback, if it has one. The body is read into memory first, so that the connection goes
+     * back to the pool before the callback runs, and the callback may keep the response or hand it to another thread.
+     */
+    private void invokeCallback( AsyncHttpRequestBase asyncRequest, Response response ) {
 
-        public void run() {
+        final AsyncHttpResponseCallback callback = resolveCallback( asyncRequest );
+        if ( callback == null ) {
+            return;
+        }
 
-            while (performDispatches) {
+        Executor executor = callbackExecutor;
+        if ( executor == null ) {
+            //streamed; the rest of the body is consumed once the callback returns
+            Log.d( TAG, "Invoking callback." );
+            callback.onResponseReceived( response );
+            return;
+        }
 
-                try {
+        //the connection is released before the callback runs, so the body has to be read into memory first
+        final Response buffered = buffer( response );
+        try {
+            executor.execute( new Runnable() {
 
-                    final AsyncHttpRequestBase asyncHttpUriRequest = getQueue().take();
-                    final HttpRequestBase request = asyncHttpUriRequest.getRequest();
-                    final Class<? extends AsyncHttpResponseCallback> callbackType = asyncHttpUriRequest.getCallbackType();
+                @Override
+                public void run() {
 
-                    //prevent interruption while dispatching
-                    synchronized (queue) {
-                        dispatch( request, callbackType );
-                    }
+                    Log.d( TAG, "Invoking callback." );
+                    callback.onResponseReceived( buffered );
                 }
-                catch (InterruptedException e) {
-                    /*
-                     * This is not an error. We intend to interrupt this task via the stop() method
-                     * whenever network connectivity is lost, so let's not throw up errors about it.
-                     */
-                    Log.d( TAG, "Interrupted while waiting for new dispatchable http request on queue." );
+            } );
+        }
+        catch (RejectedExecutionException e) {
+            Log.e( TAG, "Callback executor rejected the response to " + asyncRequest.getRequest().getRequestLine(), e );
+        }
+    }
+
+    private AsyncHttpResponseCallback resolveCallback( AsyncHttpRequestBase asyncRequest ) {
+
+        try {
+            if ( asyncRequest.getCallbackKey() != null ) {
+                return callbackRegistry.getCallback( asyncRequest.getCallbackKey() );
+            }
+            if ( asyncRequest.getCallbackType() != null ) {
+                return callbackRegistry.getCallback( asyncRequest.getCallbackType() );
+            }
+        }
+        catch (IllegalArgumentException e) {
+            Log.e( TAG, "Unable to create the callback for " + asyncRequest.getRequest().getRequestLine(), e );
+        }
+        return null;
+    }
+
+    /**
+     * @return the response with its body read into memory, or a failed response if the body could not be read
+     */
+    private Response buffer( Response response ) {
+
+        HttpResponse httpResponse = response.isFailedRequest() ? null : response.getHttpResponse();
+        if ( httpResponse == null || httpResponse.getEntity() == null ) {
+            return response;
+        }
+
+        try {
+            httpResponse.setEntity( new BufferedHttpEntity( httpResponse.getEntity() ) );
+            return response;
+        }
+        catch (IOException e) {
+            Log.w( TAG, "Unable to read the response body for the callback.", e );
+            Response failed = new Response();
+            failed.setFailedRequest( true );
+            failed.setReason( "Unable to read the response body." );
+            return failed;
+        }
+    }
+
+    private boolean isConcurrent() {
+
+        synchronized (dispatchLock) {
+            return maxConcurrentRequests > 1;
+        }
+    }
+
+    private void warnIfExecutorTooSmall() {
+
+        if ( isConcurrent() && getExecutor() instanceof ThreadPoolExecutor ) {
+
+            int maximumPoolSize = ( (ThreadPoolExecutor) getExecutor() ).getMaximumPoolSize();
+            if ( maximumPoolSize <= getMaxConcurrentRequests() ) {
+                Log.w( TAG, "Executor allows " + maximumPoolSize + " threads, but " + ( getMaxConcurrentRequests() + 1 ) + " are needed to dispatch " + getMaxConcurrentRequests() + " requests concurrently." );
+            }
+        }
+    }
+
+    /**
+     * Dispatches the next request on the calling thread. A due retry goes first, then the oldest parked request 
+     * whose ordering key is free, then the head of the queue. While waiting on the queue, wakes up in time for 
+     * the next scheduled retry or open batch.
+     */
+    private void dispatchSerially() throws InterruptedException {
+
+        synchronized (dispatchLock) {
+            if ( paused ) {
+                //woken by resume()
+                dispatchLock.wait();
+                return;
+            }
+        }
+
+        PendingDispatch pending = nextSerialDispatch();
+        if ( pending == null ) {
+            return;
+        }
+
+        long retryDelay = 0;
+        try {
+            //prevent interruption while dispatching
+            synchronized (queue) {
+                retryDelay = attempt( pending );
+            }
+        }
+        finally {
+            synchronized (dispatchLock) {
+                if ( retryDelay > 0 ) {
+                    scheduleRetry( pending, retryDelay );
                 }
-                catch (Exception e) {
-                    Log.e( TAG, "Failed to dispatch request.", e );
+                else {
+                    releaseOrderingKey( pending );
                 }
+            }
 
+            if ( retryDelay <= 0 ) {
+                acknowledge( pending.asyncRequest );
             }
         }
     }
 
-    public ExecutorService getExecutor() {
+    private PendingDispatch nextSerialDispatch() throws InterruptedException {
 
-        return executor;
+        PendingDispatch retry = scheduledRetries.poll();
+        if ( retry != null ) {
+            return retry;
+        }
+
+        boolean parkingFull;
+        long millisUntilWakeUp;
+        synchronized (dispatchLock) {
+            flushDueBatches();
+            PendingDispatch parked = removeFirstEligibleParkedRequest( false );
+            if ( parked != null ) {
+                return parked;
+            }
+            parkingFull = isParkingFull();
+            millisUntilWakeUp = getMillisUntilWakeUp();
+            awaitingQueue = true;
+        }
+
+        AsyncHttpRequestBase asyncRequest;
+        try {
+            if ( parkingFull ) {
+                //only a retry can unblock the parked requests
+                return scheduledRetries.poll( millisUntilWakeUp == 0 ? PARKING_FULL_POLL_MILLIS : millisUntilWakeUp, TimeUnit.MILLISECONDS );
+            }
+
+            asyncRequest = ( millisUntilWakeUp == 0 ) ? getQueue().take() : getQueue().poll( millisUntilWakeUp, TimeUnit.MILLISECONDS );
+        }
+        finally {
+            synchronized (dispatchLock) {
+                awaitingQueue = false;
+                //a wake-up that raced with the queue returning must not interrupt the dispatch that follows
+                Thread.interrupted();
+            }
+        }
+
+        if ( asyncRequest == null ) {
+            return null;
+        }
+
+        synchronized (dispatchLock) {
+            park( asyncRequest );
+            return paused ? null : removeFirstEligibleParkedRequest( false );
+        }
     }
 
-    public HttpClient getHttpClient() {
+    /**
+     * Launches whatever is allowed to run, then waits for a free dispatch slot or takes the next request off the queue.
+     */
+    private void dispatchConcurrently() throws InterruptedException {
+
+        long millisUntilWakeUp;
+        synchronized (dispatchLock) {
+            if ( paused ) {
+                //woken by resume()
+                dispatchLock.wait();
+                return;
+            }
 
-        return httpClient;
+            launchEligibleRequests();
+            if ( inFlightRequests >= maxConcurrentRequests || isParkingFull() ) {
+                //woken when a request completes or a retry is scheduled
+                dispatchLock.wait( getMillisUntilWakeUp() );
+                return;
+            }
+            awaitingQueue = true;
+            millisUntilWakeUp = getMillisUntilWakeUp();
+        }
+
+        AsyncHttpRequestBase asyncRequest;
+        try {
+            asyncRequest = ( millisUntilWakeUp == 0 ) ? getQueue().take() : getQueue().poll( millisUntilWakeUp, TimeUnit.MILLISECONDS );
+        }
+        finally {
+            synchronized (dispatchLock) {
+                awaitingQueue = false;
+                Thread.interrupted();
+            }
+        }
+
+        if ( asyncRequest != null ) {
+            synchronized (dispatchLock) {
+                park( asyncRequest );
+                launchEligibleRequests();
+            }
+        }
     }
 
-    public BlockingQueue<AsyncHttpRequestBase> getQueue() {
+    /**
+     * Launches due retries, then walks the parked requests in FIFO order and launches each one whose host and ordering key 
+     * allow it. Must be called while holding {@link #dispatchLock}.
+     */
+    private void launchEligibleRequests() {
 
-        return queue;
+        if ( paused ) {
+            return;
+        }
+
+        flushDueBatches();
+        relaunchAt = 0;
+
+        PendingDispatch due;
+        while ((due = scheduledRetries.poll()) != null) {
+            dueRetries.add( due );
+        }
+
+        Iterator<PendingDispatch> retries = dueRetries.iterator();
+        while (retries.hasNext() && inFlightRequests < maxConcurrentRequests) {
+
+            PendingDispatch retry = retries.next();
+            if ( hasCapacityForHost( retry.host ) ) {
+                if ( !launch( retry ) ) {
+                    return;
+                }
+                retries.remove();
+            }
+        }
+
+        PendingDispatch pending;
+        while (inFlightRequests < maxConcurrentRequests && ( pending = removeFirstEligibleParkedRequest( true ) ) != null) {
+            if ( !launch( pending ) ) {
+                releaseOrderingKey( pending );
+                parkedRequests.add( pending.parkedIndex, pending.asyncRequest );
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return whether {@link #setMaxParkedRequests(int)} requests are parked, not counting those waiting for a network their 
+     * {@link NetworkConstraint} allows, which would otherwise keep every other request in the queue until the network changes. 
+     * Must be called while holding {@link #dispatchLock}.
+     */
+    private boolean isParkingFull() {
+
+        int count = 0;
+        for (AsyncHttpRequestBase asyncRequest : parkedRequests) {
+            if ( asyncRequest.getNetworkConstraint().isSatisfiedBy( networkState ) && ++count >= maxParkedRequests ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the first parked request that may run now, and claims its ordering key. A request may run if its ordering key is
+     * free and the current network satisfies its {@link NetworkConstraint}. Once a request with a given ordering key has to stay 
+     * parked, every later request with that key stays parked too. Must be called while holding {@link #dispatchLock}.
+     * 
+     * @param limitHosts whether to honour {@link #setMaxRequestsPerHost(int)}
+     * @return the request, or null if none may run
+     */
+    private PendingDispatch removeFirstEligibleParkedRequest( boolean limitHosts ) {
+
+        Set<String> blockedOrderingKeys = new HashSet<String>();
+        Iterator<AsyncHttpRequestBase> iterator = parkedRequests.iterator();
+        for (int index = 0; iterator.hasNext(); index++) {
+
+            AsyncHttpRequestBase asyncRequest = iterator.next();
+            String orderingKey = asyncRequest.getOrderingKey();
+
+            boolean orderingKeyFree = orderingKey == null || ( !blockedOrderingKeys.contains( orderingKey ) && !inFlightOrderingKeys.contains( orderingKey ) );
+            boolean networkAllowed = asyncRequest.getNetworkConstraint().isSatisfiedBy( networkState );
+            if ( orderingKeyFree && networkAllowed && ( !limitHosts || hasCapacityForHost( getHost( asyncRequest ) ) ) ) {
+
+                iterator.remove();
+                if ( orderingKey != null ) {
+                    inFlightOrderingKeys.add( orderingKey );
+                }
+                PendingDispatch pending = new PendingDispatch( asyncRequest );
+                pending.parkedIndex = index;
+                return pending;
+            }
+            else if ( orderingKey != null ) {
+                blockedOrderingKeys.add( orderingKey );
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Claims a dispatch slot and runs the request on the executor. If the executor rejects it, the dispatch loop wakes up to try
+     * again after {@link #REJECTED_LAUNCH_RECHECK_MILLIS} even if nothing else happens. Must be called while holding 
+     * {@link #dispatchLock}.
+     * 
+     * @return false if the executor rejected the request
+     */
+    private boolean launch( PendingDispatch pending ) {
+
+        acquireSlot( pending.host );
+        try {
+            getExecutor().execute( new DispatchTask( pending ) );
+            return true;
+        }
+        catch (RejectedExecutionException e) {
+            Log.w( TAG, "Executor rejected dispatch of " + pending.asyncRequest.getRequest().getRequestLine() + "; leaving it parked.", e );
+            releaseSlot( pending.host );
+            relaunchAt = SystemClock.elapsedRealtime() + REJECTED_LAUNCH_RECHECK_MILLIS;
+            return false;
+        }
+    }
+
+    /**
+     * Schedules a retry. The request keeps its ordering key while it waits, so later requests sharing the key cannot 
+     * overtake it. Must be called while holding {@link #dispatchLock}.
+     */
+    private void scheduleRetry( PendingDispatch pending, long retryDelay ) {
+
+        pending.dueAt = SystemClock.elapsedRealtime() + retryDelay;
+        scheduledRetries.add( pending );
+
+        wakeDispatcher();
+    }
+
+    /**
+     * Wakes the dispatch thread so that it reconsiders what to dispatch. Must be called while holding {@link #dispatchLock}.
+     */
+    private void wakeDispatcher() {
+
+        dispatchLock.notifyAll();
+        if ( awaitingQueue && dispatchThread != null ) {
+            //the dispatch thread is blocked on the queue, not dispatching, so interrupting it is safe
+            dispatchThread.interrupt();
+        }
+    }
+
+    /**
+     * Parks a request taken off the queue, unless a batch endpoint accepts it, in which case it joins that endpoint's open batch 
+     * for its network constraint, or its deadline has passed, in which case it is dropped. Requests with an ordering key are never 
+     * batched, since a batch could be overtaken by a later request with the same key. Must be called while holding 
+     * {@link #dispatchLock}.
+     */
+    private void park( AsyncHttpRequestBase asyncRequest ) {
+
+        if ( asyncRequest.isExpired() ) {
+            dropExpired( asyncRequest );
+            return;
+        }
+
+        for (BatchEndpoint endpoint : batchEndpoints) {
+            if ( asyncRequest.getOrderingKey() == null && endpoint.accepts( asyncRequest ) ) {
+
+                OpenBatch batch = getOpenBatch( endpoint, asyncRequest.getNetworkConstraint() );
+                if ( batch == null ) {
+                    batch = new OpenBatch( endpoint, asyncRequest.getNetworkConstraint() );
+                    openBatches.add( batch );
+                }
+
+                batch.requests.add( asyncRequest );
+                if ( batch.requests.size() >= endpoint.getMaxBatchSize() ) {
+                    flushBatch( batch );
+                }
+                return;
+            }
+        }
+
+        parkedRequests.add( asyncRequest );
+    }
+
+    /**
+     * @return the batch collecting requests with the constraint for the endpoint, or null if none is open. Must be called while 
+     * holding {@link #dispatchLock}.
+     */
+    private OpenBatch getOpenBatch( BatchEndpoint endpoint, NetworkConstraint constraint ) {
+
+        for (OpenBatch batch : openBatches) {
+            if ( batch.endpoint == endpoint && batch.constraint == constraint ) {
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops a request whose deadline passed before it was sent, without a callback.
+     */
+    private void dropExpired( AsyncHttpRequestBase asyncRequest ) {
+
+        Log.d( TAG, "Dropping request past its deadline: " + asyncRequest.getRequest().getRequestLine() );
+        acknowledge( asyncRequest );
+    }
+
+    /**
+     * Parks every open batch whose linger time has passed. Must be called while holding {@link #dispatchLock}.
+     */
+    private void flushDueBatches() {
+
+        long now = SystemClock.elapsedRealtime();
+        for (OpenBatch batch : new ArrayList<OpenBatch>( openBatches )) {
+            if ( now >= batch.flushAt ) {
+                flushBatch( batch );
+            }
+        }
+    }
+
+    /**
+     * Packs an open batch into a single parked request. If the requests cannot be packed, they are parked individually instead. 
+     * Must be called while holding {@link #dispatchLock}.
+     */
+    private void flushBatch( OpenBatch batch ) {
+
+        openBatches.remove( batch );
+
+        List<AsyncHttpRequestBase> packedRequests = new ArrayList<AsyncHttpRequestBase>( batch.requests.size() );
+        for (AsyncHttpRequestBase asyncRequest : batch.requests) {
+            if ( asyncRequest.isExpired() ) {
+                dropExpired( asyncRequest );
+            }
+            else {
+                packedRequests.add( asyncRequest );
+            }
+        }
+
+        if ( packedRequests.isEmpty() ) {
+            return;
+        }
+
+        try {
+            BatchRequest batchRequest = new BatchRequest( batch.endpoint, batch.endpoint.pack( packedRequests ), packedRequests );
+            //every packed request shares the constraint, and the batch is as urgent as its most urgent request
+            batchRequest.setNetworkConstraint( batch.constraint );
+            for (AsyncHttpRequestBase packedRequest : packedRequests) {
+                if ( packedRequest.getPriority().compareTo( batchRequest.getPriority() ) < 0 ) {
+                    batchRequest.setPriority( packedRequest.getPriority() );
+                }
+            }
+            parkedRequests.add( batchRequest );
+            Log.d( TAG, "Packed " + packedRequests.size() + " requests into one batch." );
+        }
+        catch (IOException e) {
+            Log.w( TAG, "Unable to pack " + packedRequests.size() + " requests; dispatching them individually.", e );
+            parkedRequests.addAll( packedRequests );
+        }
+    }
+
+    /**
+     * @return the milliseconds until the next scheduled retry is due, the next open batch must be sent or a rejected launch is 
+     * to be tried again, at least 1, or 0 if none is pending. Must be called while holding {@link #dispatchLock}.
+     */
+    private long getMillisUntilWakeUp() {
+
+        long millis = Long.MAX_VALUE;
+
+        PendingDispatch next = scheduledRetries.peek();
+        if ( next != null ) {
+            millis = next.getDelay( TimeUnit.MILLISECONDS );
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        for (OpenBatch batch : openBatches) {
+            millis = Math.min( millis, batch.flushAt - now );
+        }
+
+        if ( relaunchAt > 0 ) {
+            millis = Math.min( millis, relaunchAt - now );
+        }
+
+        return ( millis == Long.MAX_VALUE ) ? 0 : Math.max( 1, millis );
+    }
+
+    private boolean hasCapacityForHost( String host ) {
+
+        if ( maxRequestsPerHost == UNLIMITED ) {
+            return true;
+        }
+
+        Integer count = inFlightRequestsByHost.get( host );
+        return count == null || count.intValue() < maxRequestsPerHost;
+    }
+
+    private void acquireSlot( String host ) {
+
+        inFlightRequests++;
+
+        Integer count = inFlightRequestsByHost.get( host );
+        inFlightRequestsByHost.put( host, Integer.valueOf( count == null ? 1 : count.intValue() + 1 ) );
+    }
+
+    private void releaseSlot( String host ) {
+
+        inFlightRequests--;
+
+        Integer count = inFlightRequestsByHost.get( host );
+        if ( count == null || count.intValue() <= 1 ) {
+            inFlightRequestsByHost.remove( host );
+        }
+        else {
+            inFlightRequestsByHost.put( host, Integer.valueOf( count.intValue() - 1 ) );
+        }
+    }
+
+    private void releaseOrderingKey( PendingDispatch pending ) {
+
+        String orderingKey = pending.asyncRequest.getOrderingKey();
+        if ( orderingKey != null ) {
+            inFlightOrderingKeys.remove( orderingKey );
+        }
+    }
+
+    private static String getHost( AsyncHttpRequestBase asyncRequest ) {
+
+        URI uri = asyncRequest.getRequest().getURI();
+        String host = ( uri == null ) ? null : uri.getHost();
+        return ( host == null ) ? "" : host;
+    }
+
+    private class DispatchRunnable implements Runnable {
+
+        public void run() {
+
+            dispatchThread = Thread.currentThread();
+
+            while (performDispatches) {
+
+                try {
+
+                    if ( isConcurrent() ) {
+                        dispatchConcurrently();
+                    }
+                    else {
+                        dispatchSerially();
+                    }
+                }
+                catch (InterruptedException e) {
+                    /*
+                     * This is not an error. We intend to interrupt this task via the stop() method
+                     * whenever network connectivity is lost, so let's not throw up errors about it.
+                     */
+                    Log.d( TAG, "Interrupted while waiting for new dispatchable http request on queue." );
+                }
+                catch (Exception e) {
+                    Log.e( TAG, "Failed to dispatch request.", e );
+                }
+
+            }
+        }
+    }
+
+    /**
+     * Makes one attempt at a request in concurrent mode, then frees its slot for the waiting requests.
+     */
+    private class DispatchTask implements Runnable {
+
+        private final PendingDispatch pending;
+
+        public DispatchTask(PendingDispatch pending) {
+
+            this.pending = pending;
+        }
+
+        public void run() {
+
+            long retryDelay = 0;
+            try {
+                retryDelay = attempt( pending );
+            }
+            catch (Exception e) {
+                Log.e( TAG, "Failed to dispatch request.", e );
+            }
+            finally {
+                synchronized (dispatchLock) {
+                    releaseSlot( pending.host );
+                    if ( retryDelay > 0 ) {
+                        scheduleRetry( pending, retryDelay );
+                    }
+                    else {
+                        releaseOrderingKey( pending );
+                    }
+
+                    if ( performDispatches ) {
+                        launchEligibleRequests();
+                    }
+                    dispatchLock.notifyAll();
+                }
+
+                if ( retryDelay <= 0 ) {
+                    acknowledge( pending.asyncRequest );
+                }
+            }
+        }
+    }
+
+    /**
+     * Requests collected for a batch endpoint that have not been packed yet.
+     */
+    private static class OpenBatch {
+
+        private final BatchEndpoint endpoint;
+        private final NetworkConstraint constraint;
+        private final List<AsyncHttpRequestBase> requests = new ArrayList<AsyncHttpRequestBase>();
+        private final long flushAt;
+
+        public OpenBatch(BatchEndpoint endpoint, NetworkConstraint constraint) {
+
+            this.endpoint = endpoint;
+            this.constraint = constraint;
+            this.flushAt = SystemClock.elapsedRealtime() + endpoint.getLingerMillis();
+        }
+    }
+
+    /**
+     * A request between its first attempt and completion, along with its retry state.
+     */
+    private class PendingDispatch implements Delayed {
+
+        private final AsyncHttpRequestBase asyncRequest;
+        private final String host;
+        private RetryStrategy retryStrategy;
+        private boolean retryStrategyCreated;
+        private boolean attempted;
+        private long dueAt;
+        //where the request sat among the parked requests, so that a rejected launch puts it back in place
+        private int parkedIndex;
+
+        public PendingDispatch(AsyncHttpRequestBase asyncRequest) {
+
+            this.asyncRequest = asyncRequest;
+            this.host = getHost( asyncRequest );
+        }
+
+        /**
+         * @return the strategy for this request, created on first use and kept until the request completes. May be null.
+         */
+        public RetryStrategy getRetryStrategy() {
+
+            if ( !retryStrategyCreated ) {
+                retryStrategy = createRetryStrategy( asyncRequest );
+                retryStrategyCreated = true;
+            }
+            return retryStrategy;
+        }
+
+        @Override
+        public long getDelay( TimeUnit unit ) {
+
+            return unit.convert( dueAt - SystemClock.elapsedRealtime(), TimeUnit.MILLISECONDS );
+        }
+
+        @Override
+        public int compareTo( Delayed other ) {
+
+            long difference = getDelay( TimeUnit.MILLISECONDS ) - other.getDelay( TimeUnit.MILLISECONDS );
+            return ( difference < 0 ) ? -1 : ( ( difference > 0 ) ? 1 : 0 );
+        }
+    }
+
+    public ExecutorService getExecutor() {
+
+        return executor;
+    }
+
+    public HttpClient getHttpClient() {
+
+        return httpClient;
+    }
+
+    public BlockingQueue<AsyncHttpRequestBase> getQueue() {
+
+        return queue;
+    }
+
+    public CircuitBreakerRegistry getCircuitBreakers() {
+
+        return circuitBreakers;
+    }
+
+    /**
+     * Enables per-host circuit breaking. While a host's breaker is open, its requests are held back as if waiting for a 
+     * delayed retry, without spending any of their retries, and are sent once the breaker admits trial requests again.
+     * 
+     * @param circuitBreakers the registry holding the per-host breakers, or null to disable circuit breaking
+     */
+    public void setCircuitBreakers( CircuitBreakerRegistry circuitBreakers ) {
+
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    /**
+     * Starts collecting the requests the endpoint accepts into batches. Endpoints are consulted in the order they were added.
+     */
+    public void addBatchEndpoint( BatchEndpoint endpoint ) {
+
+        Assertions.notNull( "endpoint", endpoint );
+        batchEndpoints.add( endpoint );
+    }
+
+    /**
+     * Stops batching for the endpoint. Requests already collected are still sent as a batch.
+     */
+    public void removeBatchEndpoint( BatchEndpoint endpoint ) {
+
+        batchEndpoints.remove( endpoint );
+    }
+
+    public int getMaxConcurrentRequests() {
+
+        synchronized (dispatchLock) {
+            return maxConcurrentRequests;
+        }
+    }
+
+    /**
+     * Sets how many requests may be in flight at once. The default of 1 dispatches serially on the 
+     * dispatch thread; any larger value enables concurrent dispatch.
+     * 
+     * @param maxConcurrentRequests the maximum number of in-flight requests. Must be at least 1.
+     */
+    public void setMaxConcurrentRequests( int maxConcurrentRequests ) {
+
+        if ( maxConcurrentRequests < 1 ) {
+            throw new IllegalArgumentException( "maxConcurrentRequests must be at least 1, was " + maxConcurrentRequests );
+        }
+
+        synchronized (dispatchLock) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            dispatchLock.notifyAll();
+        }
+    }
+
+    public int getMaxRequestsPerHost() {
+
+        synchronized (dispatchLock) {
+            return maxRequestsPerHost;
+        }
+    }
+
+    /**
+     * Sets how many concurrently dispatched requests may target the same host.
+     * 
+     * @param maxRequestsPerHost the per-host limit, or {@link #UNLIMITED}
+     */
+    public void setMaxRequestsPerHost( int maxRequestsPerHost ) {
+
+        if ( maxRequestsPerHost < 0 ) {
+            throw new IllegalArgumentException( "maxRequestsPerHost may not be negative, was " + maxRequestsPerHost );
+        }
+
+        synchronized (dispatchLock) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+        }
+    }
+
+    /**
+     * Sets how many requests may be taken off the queue and parked while waiting for their host or ordering
+     * key to free up. Once this many are parked, the queue is not read until one of them is dispatched. Requests parked 
+     * because the current network does not satisfy their {@link NetworkConstraint} do not count.
+     * 
+     * @param maxParkedRequests the maximum number of parked requests. Must be at least 1.
+     */
+    public void setMaxParkedRequests( int maxParkedRequests ) {
+
+        if ( maxParkedRequests < 1 ) {
+            throw new IllegalArgumentException( "maxParkedRequests must be at least 1, was " + maxParkedRequests );
+        }
+
+        synchronized (dispatchLock) {
+            this.maxParkedRequests = maxParkedRequests;
+            dispatchLock.notifyAll();
+        }
+    }
+
+    /**
+     * @return the number of requests taken off the queue that are waiting for their host or ordering key to free up
+     */
+    public int getParkedRequestCount() {
+
+        synchronized (dispatchLock) {
+            return parkedRequests.size();
+        }
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+
+        return overflowPolicy;
+    }
+
+    /**
+     * Sets what {@link #submit(AsyncHttpRequestBase)} does when the queue is full. Only bounded queues, such as a
+     * {@link BoundedRequestQueue}, ever fill up; the default queue never does.
+     * 
+     * @param overflowPolicy the policy. May not be null.
+     */
+    public void setOverflowPolicy( OverflowPolicy overflowPolicy ) {
+
+        Assertions.notNull( "overflowPolicy", overflowPolicy );
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public MetricsSink getMetricsSink() {
+
+        return metricsSink;
+    }
+
+    /**
+     * Sets where queue wait times, queue depths and retries are reported. To also measure each exchange, construct this client with
+     * a {@link MetricsHttpClient} reporting to the same sink.
+     * 
+     * @param metricsSink the sink, or null for none, the default
+     */
+    public void setMetricsSink( MetricsSink metricsSink ) {
+
+        this.metricsSink = metricsSink;
+    }
+
+    public CallbackRegistry getCallbackRegistry() {
+
+        return callbackRegistry;
+    }
+
+    /**
+     * Sets where callbacks and retry strategies are looked up. Defaults to {@link CallbackRegistry#getDefault()}.
+     * 
+     * @param callbackRegistry the registry. May not be null.
+     */
+    public void setCallbackRegistry( CallbackRegistry callbackRegistry ) {
+
+        Assertions.notNull( "callbackRegistry", callbackRegistry );
+        this.callbackRegistry = callbackRegistry;
+    }
+
+    public Executor getCallbackExecutor() {
+
+        return callbackExecutor;
+    }
+
+    /**
+     * Sets where callbacks run, for example {@link com.metova.android.util.concurrent.GlobalThreadPool#getUiThreadExecutor()}. 
+     * Callbacks are then given the response with its body read into memory, and the dispatcher moves on without waiting for them. A 
+     * single-threaded executor preserves the order in which responses arrive.
+     * 
+     * @param callbackExecutor the executor, or null to run callbacks on the dispatching thread, the default
+     */
+    public void setCallbackExecutor( Executor callbackExecutor ) {
+
+        this.callbackExecutor = callbackExecutor;
     }
 
 }
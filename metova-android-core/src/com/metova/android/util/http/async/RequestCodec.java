@@ -0,0 +1,336 @@
+package com.metova.android.util.http.async;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpOptions;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpTrace;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+
+import android.util.Log;
+
+import com.metova.android.util.http.entity.FileChannelEntity;
+import com.metova.android.util.http.entity.FileReferenceEntity;
+import com.metova.android.util.http.request.HttpResumableUpload;
+
+/**
+ * Converts {@link AsyncHttpRequestBase}s to and from the byte form stored by {@link PersistentRequestQueue}.
+ */
+final class RequestCodec {
+
+    private static final String TAG = RequestCodec.class.getSimpleName();
+
+    private static final int VERSION = 1;
+
+    private static final byte ENTITY_NONE = 0;
+    private static final byte ENTITY_BYTES = 1;
+    private static final byte ENTITY_FILE = 2;
+    private static final byte ENTITY_FILE_RANGE = 3;
+
+    private RequestCodec() {
+
+    }
+
+    /**
+     * Serializes the request. A non-repeatable entity is consumed by this call, so it is replaced on 
+     * the request by a copy of its bytes.
+     */
+    public static byte[] encode( AsyncHttpRequestBase asyncRequest ) throws IOException {
+
+        HttpRequestBase request = asyncRequest.getRequest();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream( bytes );
+
+        output.writeByte( VERSION );
+        output.writeUTF( request.getMethod() );
+        writeNullableString( output, request.getURI() == null ? null : request.getURI().toString() );
+
+        Header[] headers = request.getAllHeaders();
+        output.writeInt( headers.length );
+        for (Header header : headers) {
+            output.writeUTF( header.getName() );
+            output.writeUTF( header.getValue() );
+        }
+
+        writeEntity( output, request );
+        writeUpload( output, request );
+
+        Class<? extends AsyncHttpResponseCallback> callbackType = asyncRequest.getCallbackType();
+        writeNullableString( output, callbackType == null ? null : callbackType.getName() );
+        writeNullableString( output, asyncRequest.getOrderingKey() );
+        output.writeUTF( asyncRequest.getPriority().name() );
+        output.writeLong( asyncRequest.getDeadline() );
+        output.writeUTF( asyncRequest.getNetworkConstraint().name() );
+        writeNullableString( output, asyncRequest.getCallbackKey() );
+        writeNullableString( output, asyncRequest.getRetryStrategyKey() );
+
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    public static AsyncHttpRequestBase decode( byte[] data ) throws IOException {
+
+        DataInputStream input = new DataInputStream( new ByteArrayInputStream( data ) );
+
+        int version = input.readUnsignedByte();
+        if ( version != VERSION ) {
+            throw new IOException( "Unsupported request format version " + version );
+        }
+
+        HttpRequestBase request = createRequest( input.readUTF() );
+        String uri = readNullableString( input );
+        if ( uri != null ) {
+            try {
+                request.setURI( new URI( uri ) );
+            }
+            catch (URISyntaxException e) {
+                throw new IOException( "Invalid stored URI: " + uri );
+            }
+        }
+
+        int headerCount = input.readInt();
+        for (int i = 0; i < headerCount; i++) {
+            request.addHeader( input.readUTF(), input.readUTF() );
+        }
+
+        readEntity( input, request );
+        request = readUpload( input, request );
+
+        Class<? extends AsyncHttpResponseCallback> callbackType = readCallbackType( readNullableString( input ) );
+        String orderingKey = readNullableString( input );
+
+        AsyncHttpRequestBase asyncRequest = new AsyncHttpRequestBase( request, callbackType, orderingKey );
+        asyncRequest.setPriority( readPriority( input.readUTF() ) );
+        asyncRequest.setDeadline( input.readLong() );
+        asyncRequest.setNetworkConstraint( readNetworkConstraint( input.readUTF() ) );
+        asyncRequest.setCallbackKey( readNullableString( input ) );
+        asyncRequest.setRetryStrategyKey( readNullableString( input ) );
+
+        return asyncRequest;
+    }
+
+    private static void writeEntity( DataOutputStream output, HttpRequestBase request ) throws IOException {
+
+        HttpEntity entity = ( request instanceof HttpEntityEnclosingRequestBase ) ? ( (HttpEntityEnclosingRequestBase) request ).getEntity() : null;
+
+        if ( entity == null ) {
+            output.writeByte( ENTITY_NONE );
+            return;
+        }
+
+        String contentType = entity.getContentType() == null ? null : entity.getContentType().getValue();
+        String contentEncoding = entity.getContentEncoding() == null ? null : entity.getContentEncoding().getValue();
+
+        if ( entity instanceof FileReferenceEntity ) {
+            output.writeByte( ENTITY_FILE );
+            writeNullableString( output, contentType );
+            output.writeUTF( ( (FileReferenceEntity) entity ).getFile().getAbsolutePath() );
+            return;
+        }
+
+        if ( entity instanceof FileChannelEntity ) {
+            FileChannelEntity fileEntity = (FileChannelEntity) entity;
+            output.writeByte( ENTITY_FILE_RANGE );
+            writeNullableString( output, contentType );
+            output.writeUTF( fileEntity.getFile().getAbsolutePath() );
+            output.writeLong( fileEntity.getOffset() );
+            output.writeLong( fileEntity.getContentLength() );
+            return;
+        }
+
+        byte[] content = EntityUtils.toByteArray( entity );
+        if ( !entity.isRepeatable() ) {
+            ByteArrayEntity copy = new ByteArrayEntity( content );
+            copy.setContentType( contentType );
+            copy.setContentEncoding( contentEncoding );
+            ( (HttpEntityEnclosingRequestBase) request ).setEntity( copy );
+        }
+
+        output.writeByte( ENTITY_BYTES );
+        writeNullableString( output, contentType );
+        writeNullableString( output, contentEncoding );
+        output.writeInt( content.length );
+        output.write( content );
+    }
+
+    private static void readEntity( DataInputStream input, HttpRequestBase request ) throws IOException {
+
+        byte type = input.readByte();
+        if ( type == ENTITY_NONE ) {
+            return;
+        }
+
+        HttpEntity entity;
+        if ( type == ENTITY_FILE ) {
+
+            String contentType = readNullableString( input );
+            entity = new FileReferenceEntity( new File( input.readUTF() ), contentType );
+        }
+        else if ( type == ENTITY_FILE_RANGE ) {
+
+            String contentType = readNullableString( input );
+            File file = new File( input.readUTF() );
+            long offset = input.readLong();
+            entity = new FileChannelEntity( file, offset, input.readLong(), contentType );
+        }
+        else if ( type == ENTITY_BYTES ) {
+
+            String contentType = readNullableString( input );
+            String contentEncoding = readNullableString( input );
+            byte[] content = new byte[input.readInt()];
+            input.readFully( content );
+
+            ByteArrayEntity byteArrayEntity = new ByteArrayEntity( content );
+            byteArrayEntity.setContentType( contentType );
+            byteArrayEntity.setContentEncoding( contentEncoding );
+            entity = byteArrayEntity;
+        }
+        else {
+            throw new IOException( "Unknown stored entity type " + type );
+        }
+
+        if ( request instanceof HttpEntityEnclosingRequestBase ) {
+            ( (HttpEntityEnclosingRequestBase) request ).setEntity( entity );
+        }
+        else {
+            Log.w( TAG, "Dropping stored entity for " + request.getMethod() + " request." );
+        }
+    }
+
+    private static void writeUpload( DataOutputStream output, HttpRequestBase request ) throws IOException {
+
+        output.writeBoolean( request instanceof HttpResumableUpload );
+        if ( request instanceof HttpResumableUpload ) {
+            HttpResumableUpload upload = (HttpResumableUpload) request;
+            output.writeUTF( upload.getFile().getAbsolutePath() );
+            writeNullableString( output, upload.getContentType() );
+            output.writeUTF( upload.getStateFile().getAbsolutePath() );
+            output.writeInt( upload.getChunkSize() );
+        }
+    }
+
+    /**
+     * @return the request rebuilt as an {@link HttpResumableUpload} if one was stored, or the given request otherwise
+     */
+    private static HttpRequestBase readUpload( DataInputStream input, HttpRequestBase request ) throws IOException {
+
+        if ( !input.readBoolean() ) {
+            return request;
+        }
+
+        File file = new File( input.readUTF() );
+        String contentType = readNullableString( input );
+        HttpResumableUpload upload = new HttpResumableUpload( request.getURI().toString(), file, contentType, new File( input.readUTF() ) );
+        upload.setChunkSize( input.readInt() );
+        upload.setHeaders( request.getAllHeaders() );
+        if ( request instanceof HttpEntityEnclosingRequestBase ) {
+            upload.setEntity( ( (HttpEntityEnclosingRequestBase) request ).getEntity() );
+        }
+        return upload;
+    }
+
+    private static HttpRequestBase createRequest( final String method ) {
+
+        if ( HttpGet.METHOD_NAME.equals( method ) ) {
+            return new HttpGet();
+        }
+        else if ( HttpPost.METHOD_NAME.equals( method ) ) {
+            return new HttpPost();
+        }
+        else if ( HttpPut.METHOD_NAME.equals( method ) ) {
+            return new HttpPut();
+        }
+        else if ( HttpDelete.METHOD_NAME.equals( method ) ) {
+            return new HttpDelete();
+        }
+        else if ( HttpHead.METHOD_NAME.equals( method ) ) {
+            return new HttpHead();
+        }
+        else if ( HttpOptions.METHOD_NAME.equals( method ) ) {
+            return new HttpOptions();
+        }
+        else if ( HttpTrace.METHOD_NAME.equals( method ) ) {
+            return new HttpTrace();
+        }
+
+        return new HttpEntityEnclosingRequestBase() {
+
+            @Override
+            public String getMethod() {
+
+                return method;
+            }
+        };
+    }
+
+    private static Class<? extends AsyncHttpResponseCallback> readCallbackType( String className ) {
+
+        if ( className == null ) {
+            return null;
+        }
+
+        try {
+            return Class.forName( className ).asSubclass( AsyncHttpResponseCallback.class );
+        }
+        catch (ClassNotFoundException e) {
+            Log.w( TAG, "Stored callback type " + className + " no longer exists; dispatching without callback.", e );
+        }
+        catch (ClassCastException e) {
+            Log.w( TAG, "Stored callback type " + className + " is no longer an AsyncHttpResponseCallback; dispatching without callback.", e );
+        }
+
+        return null;
+    }
+
+    private static Priority readPriority( String name ) {
+
+        try {
+            return Priority.valueOf( name );
+        }
+        catch (IllegalArgumentException e) {
+            Log.w( TAG, "Unknown stored priority " + name + "; using " + Priority.NORMAL, e );
+            return Priority.NORMAL;
+        }
+    }
+
+    private static NetworkConstraint readNetworkConstraint( String name ) {
+
+        try {
+            return NetworkConstraint.valueOf( name );
+        }
+        catch (IllegalArgumentException e) {
+            Log.w( TAG, "Unknown stored network constraint " + name + "; using " + NetworkConstraint.ANY, e );
+            return NetworkConstraint.ANY;
+        }
+    }
+
+    private static void writeNullableString( DataOutputStream output, String value ) throws IOException {
+
+        output.writeBoolean( value != null );
+        if ( value != null ) {
+            output.writeUTF( value );
+        }
+    }
+
+    private static String readNullableString( DataInputStream input ) throws IOException {
+
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+}
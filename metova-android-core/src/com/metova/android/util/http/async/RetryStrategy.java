@@ -13,8 +13,10 @@ import com.metova.android.util.http.response.Response;
  * An object of this type will be instantiated when a request is first sent, and the same object
  * will be used to make the choice to retry until it returns false.
  * <p/>
- * Since implementors of this type will be instantiated via reflection, they must have an explicit
- * null constructor.
+ * Implementors are created by the factory registered for them in a {@link CallbackRegistry}. Those without one are
+ * instantiated via reflection, and so must have an explicit null constructor.
+ * <p/>
+ * Retries happen immediately unless the strategy also implements {@link DelayedRetryStrategy}.
  */
 public interface RetryStrategy {
 
@@ -0,0 +1,165 @@
+package com.metova.android.util.http.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+
+/**
+ * A stored response: status, headers and body, along with when it was received and until when it is fresh.
+ */
+final class CacheEntry {
+
+    private static final int VERSION = 1;
+
+    private final String key;
+    private final int statusCode;
+    private final String reasonPhrase;
+    private final Header[] headers;
+    private final byte[] body;
+    private final long responseTime;
+    private final long freshUntil;
+
+    CacheEntry(String key, int statusCode, String reasonPhrase, Header[] headers, byte[] body, long responseTime, long freshUntil) {
+
+        this.key = key;
+        this.statusCode = statusCode;
+        this.reasonPhrase = reasonPhrase;
+        this.headers = headers;
+        this.body = body;
+        this.responseTime = responseTime;
+        this.freshUntil = freshUntil;
+    }
+
+    /**
+     * @return a new response carrying this entry's status, headers and body, plus an {@code Age} header
+     */
+    public HttpResponse toHttpResponse( long now ) {
+
+        BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, statusCode, reasonPhrase );
+        for (Header header : headers) {
+            if ( !CachePolicy.AGE.equalsIgnoreCase( header.getName() ) ) {
+                response.addHeader( header );
+            }
+        }
+        response.addHeader( CachePolicy.AGE, Long.toString( Math.max( 0, now - responseTime ) / 1000 ) );
+
+        ByteArrayEntity entity = new ByteArrayEntity( body );
+        entity.setContentType( response.getFirstHeader( "Content-Type" ) );
+        entity.setContentEncoding( response.getFirstHeader( "Content-Encoding" ) );
+        response.setEntity( entity );
+
+        return response;
+    }
+
+    public boolean isFresh( long now ) {
+
+        return now < freshUntil;
+    }
+
+    public String getFirstHeaderValue( String name ) {
+
+        for (Header header : headers) {
+            if ( header.getName().equalsIgnoreCase( name ) ) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the approximate number of bytes this entry occupies
+     */
+    public int getSize() {
+
+        int size = body.length + key.length() * 2;
+        for (Header header : headers) {
+            size += ( header.getName().length() + header.getValue().length() ) * 2;
+        }
+        return size;
+    }
+
+    public String getKey() {
+
+        return key;
+    }
+
+    public int getStatusCode() {
+
+        return statusCode;
+    }
+
+    public String getReasonPhrase() {
+
+        return reasonPhrase;
+    }
+
+    public Header[] getHeaders() {
+
+        return headers;
+    }
+
+    public byte[] getBody() {
+
+        return body;
+    }
+
+    public long getResponseTime() {
+
+        return responseTime;
+    }
+
+    public long getFreshUntil() {
+
+        return freshUntil;
+    }
+
+    public void writeTo( DataOutputStream output ) throws IOException {
+
+        output.writeByte( VERSION );
+        output.writeUTF( key );
+        output.writeInt( statusCode );
+        output.writeUTF( reasonPhrase == null ? "" : reasonPhrase );
+        output.writeLong( responseTime );
+        output.writeLong( freshUntil );
+
+        output.writeInt( headers.length );
+        for (Header header : headers) {
+            output.writeUTF( header.getName() );
+            output.writeUTF( header.getValue() );
+        }
+
+        output.writeInt( body.length );
+        output.write( body );
+    }
+
+    public static CacheEntry readFrom( DataInputStream input ) throws IOException {
+
+        int version = input.readUnsignedByte();
+        if ( version != VERSION ) {
+            throw new IOException( "Unsupported cache entry version " + version );
+        }
+
+        String key = input.readUTF();
+        int statusCode = input.readInt();
+        String reasonPhrase = input.readUTF();
+        long responseTime = input.readLong();
+        long freshUntil = input.readLong();
+
+        Header[] headers = new Header[input.readInt()];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = new BasicHeader( input.readUTF(), input.readUTF() );
+        }
+
+        byte[] body = new byte[input.readInt()];
+        input.readFully( body );
+
+        return new CacheEntry( key, statusCode, reasonPhrase, headers, body, responseTime, freshUntil );
+    }
+}
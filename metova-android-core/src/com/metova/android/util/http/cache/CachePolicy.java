@@ -0,0 +1,250 @@
+package com.metova.android.util.http.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpMessage;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+
+/**
+ * Decides what may be cached and for how long, following the {@code Cache-Control}, {@code Pragma}, {@code Expires}, 
+ * {@code Age} and {@code Vary} rules that apply to a private cache.
+ */
+final class CachePolicy {
+
+    static final String AGE = "Age";
+    static final String ETAG = "ETag";
+    static final String LAST_MODIFIED = "Last-Modified";
+    static final String IF_NONE_MATCH = "If-None-Match";
+    static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private static final String CACHE_CONTROL = "Cache-Control";
+    private static final String PRAGMA = "Pragma";
+    private static final String EXPIRES = "Expires";
+    private static final String DATE = "Date";
+    private static final String VARY = "Vary";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String RANGE = "Range";
+
+    private static final String NO_STORE = "no-store";
+    private static final String NO_CACHE = "no-cache";
+    private static final String MAX_AGE = "max-age";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+    private static final String[] HOP_BY_HOP_HEADERS = { "Connection", "Keep-Alive", "Proxy-Authenticate", "Proxy-Authorization", "TE",
+            "Trailer", "Transfer-Encoding", "Upgrade" };
+
+    private static final long MAX_HEURISTIC_LIFETIME_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private CachePolicy() {
+
+    }
+
+    /**
+     * @return whether the request may be answered from, and stored in, the cache. Requests that carry their own conditional or 
+     * range headers expect the server's literal answer, so they bypass the cache.
+     */
+    public static boolean isCacheable( HttpUriRequest request ) {
+
+        return HttpGet.METHOD_NAME.equals( request.getMethod() ) && !hasDirective( request, CACHE_CONTROL, NO_STORE )
+                && !request.containsHeader( IF_NONE_MATCH ) && !request.containsHeader( IF_MODIFIED_SINCE ) && !request.containsHeader( RANGE );
+    }
+
+    /**
+     * @return whether the request is unsafe, so that any cached response for its URI is now outdated
+     */
+    public static boolean invalidates( HttpUriRequest request ) {
+
+        String method = request.getMethod();
+        return !HttpGet.METHOD_NAME.equals( method ) && !"HEAD".equals( method ) && !"OPTIONS".equals( method ) && !"TRACE".equals( method );
+    }
+
+    /**
+     * @return whether the request insists on checking with the server even if a fresh response is cached
+     */
+    public static boolean requiresRevalidation( HttpUriRequest request ) {
+
+        return hasDirective( request, CACHE_CONTROL, NO_CACHE ) || hasDirective( request, PRAGMA, NO_CACHE ) || getMaxAgeSeconds( request ) == 0;
+    }
+
+    /**
+     * Computes until when a response is fresh.
+     * 
+     * @param response the response received at {@code now}
+     * @return the time until which the response is fresh, which may be {@code now} for a response that must always be revalidated, 
+     * or -1 if the response may not be stored at all
+     */
+    public static long getFreshUntil( HttpResponse response, long now ) {
+
+        int statusCode = response.getStatusLine().getStatusCode();
+        if ( statusCode != HttpStatus.SC_OK && statusCode != HttpStatus.SC_NON_AUTHORITATIVE_INFORMATION ) {
+            return -1;
+        }
+
+        if ( hasDirective( response, CACHE_CONTROL, NO_STORE ) || !isVaryCacheable( response ) ) {
+            return -1;
+        }
+
+        long lifetime = getFreshnessLifetime( response, now );
+        boolean hasValidators = response.getFirstHeader( ETAG ) != null || response.getFirstHeader( LAST_MODIFIED ) != null;
+        if ( lifetime <= 0 && !hasValidators ) {
+            return -1;
+        }
+
+        return now + Math.max( 0, lifetime );
+    }
+
+    /**
+     * @return the response's end-to-end headers, which are the ones worth storing
+     */
+    public static Header[] getStorableHeaders( HttpResponse response ) {
+
+        List<Header> storable = new ArrayList<Header>();
+        for (Header header : response.getAllHeaders()) {
+            if ( !isHopByHop( header ) ) {
+                storable.add( header );
+            }
+        }
+        return storable.toArray( new Header[storable.size()] );
+    }
+
+    /**
+     * Applies the headers of a 304 response to a cached entry's headers: headers present in the 304 replace those with the same name.
+     */
+    public static Header[] mergeHeaders( Header[] cachedHeaders, HttpResponse notModified ) {
+
+        List<Header> merged = new ArrayList<Header>();
+        for (Header header : cachedHeaders) {
+            if ( CONTENT_LENGTH.equalsIgnoreCase( header.getName() ) || notModified.getFirstHeader( header.getName() ) == null ) {
+                merged.add( header );
+            }
+        }
+        for (Header header : notModified.getAllHeaders()) {
+            if ( !CONTENT_LENGTH.equalsIgnoreCase( header.getName() ) && !isHopByHop( header ) ) {
+                merged.add( header );
+            }
+        }
+        return merged.toArray( new Header[merged.size()] );
+    }
+
+    private static boolean isHopByHop( Header header ) {
+
+        for (String name : HOP_BY_HOP_HEADERS) {
+            if ( name.equalsIgnoreCase( header.getName() ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getFreshnessLifetime( HttpResponse response, long now ) {
+
+        if ( hasDirective( response, CACHE_CONTROL, NO_CACHE ) ) {
+            return 0;
+        }
+
+        long age = parseLong( response.getFirstHeader( AGE ), 0 ) * 1000;
+
+        long maxAge = getMaxAgeSeconds( response );
+        if ( maxAge >= 0 ) {
+            return maxAge * 1000 - age;
+        }
+
+        Date date = parseDate( response.getFirstHeader( DATE ) );
+        long dateMillis = ( date == null ) ? now : date.getTime();
+
+        Header expires = response.getFirstHeader( EXPIRES );
+        if ( expires != null ) {
+            //an invalid Expires value, such as "0", means already expired
+            Date expiresDate = parseDate( expires );
+            return ( expiresDate == null ) ? 0 : expiresDate.getTime() - dateMillis - age;
+        }
+
+        Date lastModified = parseDate( response.getFirstHeader( LAST_MODIFIED ) );
+        if ( lastModified != null ) {
+            return Math.min( MAX_HEURISTIC_LIFETIME_MILLIS, ( dateMillis - lastModified.getTime() ) / 10 ) - age;
+        }
+
+        return 0;
+    }
+
+    /**
+     * A response that varies on anything but {@code Accept-Encoding} is not cached, since this cache keys on the URI alone.
+     */
+    private static boolean isVaryCacheable( HttpResponse response ) {
+
+        for (Header header : response.getHeaders( VARY )) {
+            for (HeaderElement element : header.getElements()) {
+                if ( !ACCEPT_ENCODING.equalsIgnoreCase( element.getName() ) ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static long getMaxAgeSeconds( HttpMessage message ) {
+
+        for (Header header : message.getHeaders( CACHE_CONTROL )) {
+            for (HeaderElement element : header.getElements()) {
+                if ( MAX_AGE.equalsIgnoreCase( element.getName() ) && element.getValue() != null ) {
+                    try {
+                        return Math.max( 0, Long.parseLong( element.getValue() ) );
+                    }
+                    catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasDirective( HttpMessage message, String headerName, String directive ) {
+
+        for (Header header : message.getHeaders( headerName )) {
+            for (HeaderElement element : header.getElements()) {
+                if ( directive.equalsIgnoreCase( element.getName() ) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long parseLong( Header header, long defaultValue ) {
+
+        if ( header == null ) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong( header.getValue().trim() );
+        }
+        catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static Date parseDate( Header header ) {
+
+        if ( header == null ) {
+            return null;
+        }
+
+        try {
+            return DateUtils.parseDate( header.getValue() );
+        }
+        catch (DateParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.metova.android.util.http.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.StatusLine;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+
+import android.util.Log;
+
+import com.metova.android.util.Assertions;
+import com.metova.android.util.http.DelegatingHttpClient;
+
+/**
+ * {@link HttpClient} that answers {@code GET} requests from an {@link HttpResponseCache} when it can, and otherwise revalidates
+ * stored responses with {@code If-None-Match} and {@code If-Modified-Since}, so an unchanged resource costs a 304 instead of a 
+ * full download. Cached responses are ordinary {@link HttpResponse}s, so the client can be handed to 
+ * {@link com.metova.android.util.http.HttpClients#execute(HttpClient, HttpUriRequest)} or to a 
+ * {@link com.metova.android.util.http.async.QueuedHttpClient} like any other.
+ * <p/>
+ * Any other method invalidates the entry stored for its URI. Responses larger than {@link #setMaxEntryBytes(int)} are passed 
+ * through without being stored.
+ */
+public class CachingHttpClient extends DelegatingHttpClient {
+
+    private static final String TAG = CachingHttpClient.class.getSimpleName();
+
+    private static final int DEFAULT_MAX_ENTRY_BYTES = 512 * 1024;
+    private static final int BUFFER_SIZE = 4096;
+
+    private final HttpResponseCache cache;
+    private volatile int maxEntryBytes = DEFAULT_MAX_ENTRY_BYTES;
+
+    private final AtomicInteger hitCount = new AtomicInteger();
+    private final AtomicInteger validatedCount = new AtomicInteger();
+    private final AtomicInteger missCount = new AtomicInteger();
+
+    public CachingHttpClient(final HttpClient delegate, final HttpResponseCache cache) {
+
+        super( delegate );
+
+        Assertions.notNull( "cache", cache );
+        this.cache = cache;
+    }
+
+    @Override
+    public HttpResponse execute( HttpUriRequest request, HttpContext context ) throws IOException, ClientProtocolException {
+
+        String key = request.getURI().toString();
+        if ( !CachePolicy.isCacheable( request ) ) {
+            if ( CachePolicy.invalidates( request ) ) {
+                cache.remove( key );
+            }
+            return super.execute( request, context );
+        }
+
+        CacheEntry entry = cache.get( key );
+        long now = System.currentTimeMillis();
+        if ( entry != null && entry.isFresh( now ) && !CachePolicy.requiresRevalidation( request ) ) {
+            hitCount.incrementAndGet();
+            return entry.toHttpResponse( now );
+        }
+
+        HttpResponse response = ( entry == null ) ? super.execute( request, context ) : executeConditionally( request, context, entry );
+        now = System.currentTimeMillis();
+
+        if ( entry != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED ) {
+            validatedCount.incrementAndGet();
+            return refresh( entry, response, now );
+        }
+
+        missCount.incrementAndGet();
+        long freshUntil = CachePolicy.getFreshUntil( response, now );
+        if ( freshUntil < 0 ) {
+            if ( entry != null ) {
+                cache.remove( key );
+            }
+            return response;
+        }
+
+        return store( key, response, now, freshUntil );
+    }
+
+    /**
+     * Executes the request with validators for the stored entry. The validator headers are removed again afterwards, so the
+     * caller's request is left as it was.
+     */
+    private HttpResponse executeConditionally( HttpUriRequest request, HttpContext context, CacheEntry entry ) throws IOException {
+
+        Header ifNoneMatch = null;
+        String etag = entry.getFirstHeaderValue( CachePolicy.ETAG );
+        if ( etag != null ) {
+            ifNoneMatch = new BasicHeader( CachePolicy.IF_NONE_MATCH, etag );
+            request.addHeader( ifNoneMatch );
+        }
+
+        Header ifModifiedSince = null;
+        String lastModified = entry.getFirstHeaderValue( CachePolicy.LAST_MODIFIED );
+        if ( lastModified != null ) {
+            ifModifiedSince = new BasicHeader( CachePolicy.IF_MODIFIED_SINCE, lastModified );
+            request.addHeader( ifModifiedSince );
+        }
+
+        try {
+            return super.execute( request, context );
+        }
+        finally {
+            if ( ifNoneMatch != null ) {
+                request.removeHeader( ifNoneMatch );
+            }
+            if ( ifModifiedSince != null ) {
+                request.removeHeader( ifModifiedSince );
+            }
+        }
+    }
+
+    /**
+     * Merges a 304's headers into the stored entry, stores the result with its new freshness, and answers with the stored body.
+     */
+    private HttpResponse refresh( CacheEntry entry, HttpResponse notModified, long now ) throws IOException {
+
+        HttpEntity entity = notModified.getEntity();
+        if ( entity != null ) {
+            entity.consumeContent();
+        }
+
+        Header[] headers = CachePolicy.mergeHeaders( entry.getHeaders(), notModified );
+        BasicHttpResponse merged = new BasicHttpResponse( HttpVersion.HTTP_1_1, entry.getStatusCode(), entry.getReasonPhrase() );
+        merged.setHeaders( headers );
+
+        long freshUntil = CachePolicy.getFreshUntil( merged, now );
+        CacheEntry refreshed = new CacheEntry( entry.getKey(), entry.getStatusCode(), entry.getReasonPhrase(), headers, entry.getBody(), now, Math.max( now, freshUntil ) );
+        if ( freshUntil < 0 ) {
+            cache.remove( entry.getKey() );
+        }
+        else {
+            cache.put( refreshed );
+        }
+
+        return refreshed.toHttpResponse( now );
+    }
+
+    /**
+     * Buffers the body of a storable response and stores it. If the body turns out to exceed {@link #getMaxEntryBytes()}, the 
+     * part read so far is stitched back in front of the rest of the stream and nothing is stored.
+     */
+    private HttpResponse store( String key, HttpResponse response, long now, long freshUntil ) throws IOException {
+
+        int maxEntryBytes = this.maxEntryBytes;
+        HttpEntity entity = response.getEntity();
+        if ( entity != null && entity.getContentLength() > maxEntryBytes ) {
+            return response;
+        }
+
+        byte[] body = new byte[0];
+        if ( entity != null ) {
+
+            InputStream content = entity.getContent();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] chunk = new byte[BUFFER_SIZE];
+            int read;
+            while (buffer.size() <= maxEntryBytes && ( read = content.read( chunk ) ) != -1) {
+                buffer.write( chunk, 0, read );
+            }
+
+            if ( buffer.size() > maxEntryBytes ) {
+                Log.d( TAG, "Not caching " + key + "; body exceeds " + maxEntryBytes + " bytes." );
+                InputStream stitched = new SequenceInputStream( new ByteArrayInputStream( buffer.toByteArray() ), content );
+                response.setEntity( copyContentHeaders( entity, new InputStreamEntity( stitched, -1 ) ) );
+                return response;
+            }
+
+            entity.consumeContent();
+            body = buffer.toByteArray();
+            response.setEntity( copyContentHeaders( entity, new ByteArrayEntity( body ) ) );
+        }
+
+        StatusLine status = response.getStatusLine();
+        cache.put( new CacheEntry( key, status.getStatusCode(), status.getReasonPhrase(), CachePolicy.getStorableHeaders( response ), body, now, freshUntil ) );
+        return response;
+    }
+
+    private static AbstractHttpEntity copyContentHeaders( HttpEntity source, AbstractHttpEntity target ) {
+
+        target.setContentType( source.getContentType() );
+        target.setContentEncoding( source.getContentEncoding() );
+        return target;
+    }
+
+    public HttpResponseCache getCache() {
+
+        return cache;
+    }
+
+    public int getMaxEntryBytes() {
+
+        return maxEntryBytes;
+    }
+
+    /**
+     * Sets the largest response body that will be stored. Larger responses still reach the caller, just uncached.
+     */
+    public void setMaxEntryBytes( int maxEntryBytes ) {
+
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    /**
+     * @return how many requests were answered from the cache without contacting the server
+     */
+    public int getHitCount() {
+
+        return hitCount.get();
+    }
+
+    /**
+     * @return how many requests were answered from the cache after the server confirmed it with a 304
+     */
+    public int getValidatedCount() {
+
+        return validatedCount.get();
+    }
+
+    /**
+     * @return how many cacheable requests had to be downloaded in full
+     */
+    public int getMissCount() {
+
+        return missCount.get();
+    }
+}
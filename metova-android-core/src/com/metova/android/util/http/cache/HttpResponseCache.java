@@ -0,0 +1,317 @@
+package com.metova.android.util.http.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.util.Log;
+
+import com.metova.android.util.Streams;
+import com.metova.android.util.text.CharacterEncodings;
+import com.metova.android.util.text.Strings;
+
+/**
+ * Two-level store for {@link CachingHttpClient}: a small in-memory LRU in front of a size-bounded LRU directory on disk. 
+ * Entries are keyed by request URI.
+ * <p/>
+ * Each disk entry is its own file, named after a hash of its key. Files are written under a temporary name and renamed into 
+ * place, so a crash never leaves a half-written entry behind, and a file's modification time records when it was last used, 
+ * so the LRU order survives restarts.
+ */
+public class HttpResponseCache {
+
+    private static final String TAG = HttpResponseCache.class.getSimpleName();
+
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 1024 * 1024;
+    public static final long DEFAULT_MAX_DISK_BYTES = 10 * 1024 * 1024;
+
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+
+    private final LinkedHashMap<String, CacheEntry> memoryEntries = new LinkedHashMap<String, CacheEntry>( 16, 0.75f, true );
+    private final LinkedHashMap<String, Long> diskEntries = new LinkedHashMap<String, Long>( 16, 0.75f, true );
+
+    private long memoryBytes;
+    private long diskBytes;
+    private int hitCount;
+    private int missCount;
+
+    /**
+     * Creates a memory-only cache.
+     */
+    public HttpResponseCache(long maxMemoryBytes) {
+
+        this( null, maxMemoryBytes, 0 );
+    }
+
+    /**
+     * @param directory the directory holding the disk entries, created if needed; typically under {@code Context.getCacheDir()}.
+     * May be null for a memory-only cache.
+     * @param maxMemoryBytes the memory budget
+     * @param maxDiskBytes the disk budget
+     */
+    public HttpResponseCache(File directory, long maxMemoryBytes, long maxDiskBytes) {
+
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+
+        if ( directory != null ) {
+            loadIndex();
+        }
+    }
+
+    /**
+     * Rebuilds the disk index from the directory listing, least recently used first, and removes any temporary files left by an 
+     * interrupted write.
+     */
+    private void loadIndex() {
+
+        if ( !directory.isDirectory() && !directory.mkdirs() ) {
+            Log.w( TAG, "Unable to create cache directory " + directory );
+            return;
+        }
+
+        File[] files = directory.listFiles();
+        if ( files == null ) {
+            return;
+        }
+
+        Arrays.sort( files, new Comparator<File>() {
+
+            @Override
+            public int compare( File lhs, File rhs ) {
+
+                long difference = lhs.lastModified() - rhs.lastModified();
+                return ( difference < 0 ) ? -1 : ( difference > 0 ) ? 1 : 0;
+            }
+        } );
+
+        for (File file : files) {
+            String name = file.getName();
+            if ( name.endsWith( ENTRY_SUFFIX ) ) {
+                diskEntries.put( name, file.length() );
+                diskBytes += file.length();
+            }
+            else if ( name.endsWith( TEMP_SUFFIX ) ) {
+                file.delete();
+            }
+        }
+
+        trimDisk();
+    }
+
+    synchronized CacheEntry get( String key ) {
+
+        CacheEntry entry = memoryEntries.get( key );
+        if ( entry == null && directory != null ) {
+            entry = readFromDisk( key );
+            if ( entry != null ) {
+                putInMemory( entry );
+            }
+        }
+
+        if ( entry == null ) {
+            missCount++;
+        }
+        else {
+            hitCount++;
+        }
+        return entry;
+    }
+
+    synchronized void put( CacheEntry entry ) {
+
+        putInMemory( entry );
+        if ( directory != null ) {
+            writeToDisk( entry );
+        }
+    }
+
+    /**
+     * Removes the entry stored for the given URI, if any.
+     */
+    public synchronized void remove( String key ) {
+
+        CacheEntry removed = memoryEntries.remove( key );
+        if ( removed != null ) {
+            memoryBytes -= removed.getSize();
+        }
+
+        if ( directory != null ) {
+            removeFromDisk( getFileName( key ) );
+        }
+    }
+
+    /**
+     * Removes every entry, in memory and on disk.
+     */
+    public synchronized void clear() {
+
+        memoryEntries.clear();
+        memoryBytes = 0;
+
+        if ( directory != null ) {
+            for (String fileName : diskEntries.keySet()) {
+                new File( directory, fileName ).delete();
+            }
+            diskEntries.clear();
+            diskBytes = 0;
+        }
+    }
+
+    private void putInMemory( CacheEntry entry ) {
+
+        CacheEntry previous = memoryEntries.remove( entry.getKey() );
+        if ( previous != null ) {
+            memoryBytes -= previous.getSize();
+        }
+
+        if ( entry.getSize() > maxMemoryBytes ) {
+            return;
+        }
+
+        memoryEntries.put( entry.getKey(), entry );
+        memoryBytes += entry.getSize();
+
+        Iterator<CacheEntry> eldest = memoryEntries.values().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().getSize();
+            eldest.remove();
+        }
+    }
+
+    private CacheEntry readFromDisk( String key ) {
+
+        String fileName = getFileName( key );
+        if ( !diskEntries.containsKey( fileName ) ) {
+            return null;
+        }
+
+        File file = new File( directory, fileName );
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+            CacheEntry entry = CacheEntry.readFrom( input );
+            if ( !key.equals( entry.getKey() ) ) {
+                return null;
+            }
+
+            //reading through the access-ordered index marks the entry as recently used
+            diskEntries.get( fileName );
+            file.setLastModified( System.currentTimeMillis() );
+            return entry;
+        }
+        catch (IOException e) {
+            Log.w( TAG, "Discarding unreadable cache entry " + file, e );
+            Streams.close( input );
+            input = null;
+            removeFromDisk( fileName );
+            return null;
+        }
+        finally {
+            Streams.close( input );
+        }
+    }
+
+    private void writeToDisk( CacheEntry entry ) {
+
+        String fileName = getFileName( entry.getKey() );
+        File temp = new File( directory, fileName + TEMP_SUFFIX );
+        File file = new File( directory, fileName );
+
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) );
+            entry.writeTo( output );
+            output.close();
+            output = null;
+
+            removeFromDisk( fileName );
+            if ( !temp.renameTo( file ) ) {
+                throw new IOException( "Unable to rename " + temp + " to " + file );
+            }
+
+            diskEntries.put( fileName, file.length() );
+            diskBytes += file.length();
+            trimDisk();
+        }
+        catch (IOException e) {
+            Log.w( TAG, "Failed to write cache entry for " + entry.getKey(), e );
+            temp.delete();
+        }
+        finally {
+            Streams.close( output );
+        }
+    }
+
+    private void removeFromDisk( String fileName ) {
+
+        Long size = diskEntries.remove( fileName );
+        if ( size != null ) {
+            diskBytes -= size;
+        }
+        new File( directory, fileName ).delete();
+    }
+
+    private void trimDisk() {
+
+        Iterator<Map.Entry<String, Long>> eldest = diskEntries.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            new File( directory, entry.getKey() ).delete();
+            diskBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    private static String getFileName( String key ) {
+
+        try {
+            byte[] digest = MessageDigest.getInstance( "MD5" ).digest( key.getBytes( CharacterEncodings.UTF_8 ) );
+            return Strings.bytesToHexString( digest ) + ENTRY_SUFFIX;
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException( e );
+        }
+        catch (IOException e) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    public synchronized int getHitCount() {
+
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+
+        return missCount;
+    }
+
+    public synchronized long getMemorySize() {
+
+        return memoryBytes;
+    }
+
+    public synchronized long getDiskSize() {
+
+        return diskBytes;
+    }
+}
@@ -0,0 +1,228 @@
+package com.metova.android.util.http.circuit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.metova.android.util.http.response.Response;
+
+/**
+ * Tracks the outcome of recent requests to one host, and stops sending requests to it while it is failing.
+ * <p/>
+ * The breaker starts {@link State#CLOSED}. Once at least the minimum number of outcomes is recorded and the failure rate over the
+ * sliding window reaches the threshold, it opens and rejects every request. After the open duration it turns
+ * {@link State#HALF_OPEN} and admits a limited number of trial requests: a failed trial opens it again, while enough successful
+ * trials close it. Connection failures, exceptions and 5xx responses count as failures.
+ * <p/>
+ * Breakers are normally obtained from a {@link CircuitBreakerRegistry}, which also holds their configuration.
+ */
+public class CircuitBreaker {
+
+    private static final String TAG = CircuitBreaker.class.getSimpleName();
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN;
+    }
+
+    private final String host;
+    private final boolean[] outcomes;
+    private final int minimumRequests;
+    private final float failureRateThreshold;
+    private final long openDurationMillis;
+    private final int halfOpenTrials;
+
+    private State state = State.CLOSED;
+    private int outcomeCount;
+    private int nextOutcome;
+    private int failureCount;
+    private long openedAt;
+    private int trialsInFlight;
+    private int trialSuccesses;
+
+    private long openedCount;
+    private long halfOpenedCount;
+    private long closedCount;
+    private long rejectedCount;
+
+    CircuitBreaker(String host, int windowSize, int minimumRequests, float failureRateThreshold, long openDurationMillis, int halfOpenTrials) {
+
+        this.host = host;
+        this.outcomes = new boolean[windowSize];
+        this.minimumRequests = Math.min( minimumRequests, windowSize );
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.halfOpenTrials = halfOpenTrials;
+    }
+
+    /**
+     * Asks permission to send a request. Every permitted request must be followed by a call to 
+     * {@link #record(Response, Throwable)}.
+     * 
+     * @return whether the request may be sent
+     */
+    public synchronized boolean allowRequest() {
+
+        if ( state == State.OPEN && SystemClock.elapsedRealtime() - openedAt >= openDurationMillis ) {
+            transitionTo( State.HALF_OPEN );
+        }
+
+        if ( state == State.CLOSED ) {
+            return true;
+        }
+
+        if ( state == State.HALF_OPEN && trialsInFlight < halfOpenTrials ) {
+            trialsInFlight++;
+            return true;
+        }
+
+        rejectedCount++;
+        return false;
+    }
+
+    /**
+     * Records the outcome of a permitted request.
+     * 
+     * @param response the response, if any
+     * @param throwable the exception that prevented a response, if any
+     */
+    public synchronized void record( Response response, Throwable throwable ) {
+
+        boolean failure = isFailure( response, throwable );
+
+        if ( state == State.HALF_OPEN ) {
+
+            trialsInFlight = Math.max( 0, trialsInFlight - 1 );
+            if ( failure ) {
+                transitionTo( State.OPEN );
+            }
+            else if ( ++trialSuccesses >= halfOpenTrials ) {
+                transitionTo( State.CLOSED );
+            }
+            return;
+        }
+
+        if ( state == State.CLOSED ) {
+
+            if ( outcomeCount == outcomes.length ) {
+                if ( outcomes[nextOutcome] ) {
+                    failureCount--;
+                }
+            }
+            else {
+                outcomeCount++;
+            }
+
+            outcomes[nextOutcome] = failure;
+            nextOutcome = ( nextOutcome + 1 ) % outcomes.length;
+            if ( failure ) {
+                failureCount++;
+            }
+
+            if ( outcomeCount >= minimumRequests && failureCount >= failureRateThreshold * outcomeCount ) {
+                transitionTo( State.OPEN );
+            }
+        }
+    }
+
+    /**
+     * @return how long a rejected request should wait before asking again, in milliseconds
+     */
+    public synchronized long getRetryDelayMillis() {
+
+        if ( state == State.OPEN ) {
+            return Math.max( 1, openDurationMillis - ( SystemClock.elapsedRealtime() - openedAt ) );
+        }
+
+        //half open with every trial slot taken, so check back once a trial has had time to finish
+        return Math.max( 1, openDurationMillis / 10 );
+    }
+
+    private void transitionTo( State newState ) {
+
+        state = newState;
+
+        switch (newState) {
+            case OPEN:
+                openedAt = SystemClock.elapsedRealtime();
+                openedCount++;
+                Log.w( TAG, "Circuit for " + host + " opened; rejecting requests for " + openDurationMillis + "ms." );
+                break;
+            case HALF_OPEN:
+                trialsInFlight = 0;
+                trialSuccesses = 0;
+                halfOpenedCount++;
+                Log.d( TAG, "Circuit for " + host + " half open; admitting " + halfOpenTrials + " trial requests." );
+                break;
+            case CLOSED:
+                outcomeCount = 0;
+                nextOutcome = 0;
+                failureCount = 0;
+                closedCount++;
+                Log.d( TAG, "Circuit for " + host + " closed." );
+                break;
+        }
+    }
+
+    private static boolean isFailure( Response response, Throwable throwable ) {
+
+        if ( throwable != null || response == null || response.isFailedRequest() ) {
+            return true;
+        }
+
+        HttpResponse httpResponse = response.getHttpResponse();
+        StatusLine statusLine = ( httpResponse == null ) ? null : httpResponse.getStatusLine();
+        return statusLine == null || statusLine.getStatusCode() >= 500;
+    }
+
+    public String getHost() {
+
+        return host;
+    }
+
+    /**
+     * @return the current state. An open breaker whose open duration has elapsed reports {@link State#OPEN} until the next request is allowed.
+     */
+    public synchronized State getState() {
+
+        return state;
+    }
+
+    /**
+     * @return the failure rate over the sliding window, between 0 and 1
+     */
+    public synchronized float getFailureRate() {
+
+        return ( outcomeCount == 0 ) ? 0 : (float) failureCount / outcomeCount;
+    }
+
+    public synchronized long getOpenedCount() {
+
+        return openedCount;
+    }
+
+    public synchronized long getHalfOpenedCount() {
+
+        return halfOpenedCount;
+    }
+
+    public synchronized long getClosedCount() {
+
+        return closedCount;
+    }
+
+    /**
+     * @return how many requests were refused while the breaker was open or out of trial slots
+     */
+    public synchronized long getRejectedCount() {
+
+        return rejectedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return "CircuitBreaker[" + host + ": " + state + ", failureRate=" + getFailureRate() + ", opened=" + openedCount + ", rejected=" + rejectedCount + "]";
+    }
+}
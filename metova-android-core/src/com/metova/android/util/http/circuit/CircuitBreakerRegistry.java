@@ -0,0 +1,113 @@
+package com.metova.android.util.http.circuit;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Creates and holds one {@link CircuitBreaker} per host, all sharing this registry's configuration. 
+ * Configuration changes only apply to breakers created afterwards.
+ */
+public class CircuitBreakerRegistry {
+
+    private static final int DEFAULT_WINDOW_SIZE = 20;
+    private static final int DEFAULT_MINIMUM_REQUESTS = 5;
+    private static final float DEFAULT_FAILURE_RATE_THRESHOLD = 0.5f;
+    private static final long DEFAULT_OPEN_DURATION_MILLIS = 30000;
+    private static final int DEFAULT_HALF_OPEN_TRIALS = 1;
+
+    private final Map<String, CircuitBreaker> breakers = new HashMap<String, CircuitBreaker>();
+
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    private int minimumRequests = DEFAULT_MINIMUM_REQUESTS;
+    private float failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    private long openDurationMillis = DEFAULT_OPEN_DURATION_MILLIS;
+    private int halfOpenTrials = DEFAULT_HALF_OPEN_TRIALS;
+
+    /**
+     * @return the breaker for the request's host, or null if the request has no host
+     */
+    public CircuitBreaker getBreaker( HttpUriRequest request ) {
+
+        URI uri = request.getURI();
+        String host = ( uri == null ) ? null : uri.getHost();
+        return ( host == null ) ? null : getBreaker( host );
+    }
+
+    public synchronized CircuitBreaker getBreaker( String host ) {
+
+        CircuitBreaker breaker = breakers.get( host );
+        if ( breaker == null ) {
+            breaker = new CircuitBreaker( host, windowSize, minimumRequests, failureRateThreshold, openDurationMillis, halfOpenTrials );
+            breakers.put( host, breaker );
+        }
+        return breaker;
+    }
+
+    /**
+     * @return a snapshot of every breaker created so far, keyed by host
+     */
+    public synchronized Map<String, CircuitBreaker> getBreakers() {
+
+        return new HashMap<String, CircuitBreaker>( breakers );
+    }
+
+    /**
+     * Discards every breaker, so each host starts closed again.
+     */
+    public synchronized void reset() {
+
+        breakers.clear();
+    }
+
+    /**
+     * @param windowSize how many recent outcomes the failure rate is computed over
+     */
+    public synchronized void setWindowSize( int windowSize ) {
+
+        if ( windowSize < 1 ) {
+            throw new IllegalArgumentException( "windowSize must be at least 1, was " + windowSize );
+        }
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * @param minimumRequests how many outcomes must be recorded before the breaker may open
+     */
+    public synchronized void setMinimumRequests( int minimumRequests ) {
+
+        this.minimumRequests = minimumRequests;
+    }
+
+    /**
+     * @param failureRateThreshold the failure rate, between 0 and 1, at which the breaker opens
+     */
+    public synchronized void setFailureRateThreshold( float failureRateThreshold ) {
+
+        if ( failureRateThreshold <= 0 || failureRateThreshold > 1 ) {
+            throw new IllegalArgumentException( "failureRateThreshold must be in (0, 1], was " + failureRateThreshold );
+        }
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    /**
+     * @param openDurationMillis how long an open breaker rejects requests before admitting trials
+     */
+    public synchronized void setOpenDurationMillis( long openDurationMillis ) {
+
+        this.openDurationMillis = openDurationMillis;
+    }
+
+    /**
+     * @param halfOpenTrials how many trial requests a half-open breaker admits, all of which must succeed for it to close
+     */
+    public synchronized void setHalfOpenTrials( int halfOpenTrials ) {
+
+        if ( halfOpenTrials < 1 ) {
+            throw new IllegalArgumentException( "halfOpenTrials must be at least 1, was " + halfOpenTrials );
+        }
+        this.halfOpenTrials = halfOpenTrials;
+    }
+}
@@ -0,0 +1,575 @@
+package com.metova.android.util.http.download;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+
+import android.util.Log;
+
+import com.metova.android.util.Assertions;
+import com.metova.android.util.concurrent.ThreadPool;
+import com.metova.android.util.http.HttpClients;
+import com.metova.android.util.http.download.DownloadState.Segment;
+import com.metova.android.util.http.entity.ProgressListener;
+import com.metova.android.util.http.response.Response;
+import com.metova.android.util.text.Strings;
+
+/**
+ * Downloads files with {@code Range} requests, so that a dropped connection or a process restart costs only the bytes in flight.
+ * <p/>
+ * A {@code HEAD} request first learns the file's length, whether the server accepts ranges, and its {@code ETag} or
+ * {@code Last-Modified} validator. A large file from a server that accepts ranges is split into segments that are downloaded in
+ * parallel, each writing straight into its part of the destination with positional {@link FileChannel} writes. Every megabyte or
+ * so, and whenever the download stops, how far each segment has got is saved in the download's state file; the next
+ * {@link #download(FileDownload)} of the same file continues from there, using {@code If-Range} so that a file changed on the
+ * server is downloaded afresh instead of spliced. Once complete, the file is checked against the server's length and the
+ * {@link FileDownload}'s expected length and checksum.
+ * <p/>
+ * {@link #download(FileDownload)} blocks, so it must not be called from the UI thread.
+ */
+public class DownloadManager {
+
+    private static final String TAG = DownloadManager.class.getSimpleName();
+
+    public static final int DEFAULT_MAX_SEGMENTS = 4;
+    public static final long DEFAULT_MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    //byte ranges and Content-Length refer to the encoded body, so a gzipped response would not line up with the file
+    private static final String IDENTITY = "identity";
+    private static final long CHECKPOINT_BYTES = 1024 * 1024;
+
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private volatile int maxSegments = DEFAULT_MAX_SEGMENTS;
+    private volatile long minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+
+    /**
+     * Creates a manager that downloads with the {@link HttpClients#getSharedClient() shared client}, on a pool of
+     * {@link #DEFAULT_MAX_SEGMENTS} threads.
+     */
+    public DownloadManager() {
+
+        this( HttpClients.getSharedClient(), new ThreadPool( DEFAULT_MAX_SEGMENTS ) );
+    }
+
+    /**
+     * @param httpClient the client that sends the requests. Its connection pool should allow {@link #getMaxSegments()} connections
+     *            per host.
+     * @param executor runs the segment downloads. It must not be the executor {@link #download(FileDownload)} is called from.
+     */
+    public DownloadManager(HttpClient httpClient, ExecutorService executor) {
+
+        Assertions.notNull( "httpClient", httpClient );
+        Assertions.notNull( "executor", executor );
+        this.httpClient = httpClient;
+        this.executor = executor;
+    }
+
+    public int getMaxSegments() {
+
+        return maxSegments;
+    }
+
+    /**
+     * @param maxSegments the most parallel requests used for one file
+     */
+    public void setMaxSegments( int maxSegments ) {
+
+        if ( maxSegments <= 0 ) {
+            throw new IllegalArgumentException( "maxSegments must be positive, was " + maxSegments );
+        }
+        this.maxSegments = maxSegments;
+    }
+
+    public long getMinSegmentSize() {
+
+        return minSegmentSize;
+    }
+
+    /**
+     * @param minSegmentSize the smallest segment worth its own request. Files smaller than twice this are downloaded whole.
+     */
+    public void setMinSegmentSize( long minSegmentSize ) {
+
+        if ( minSegmentSize <= 0 ) {
+            throw new IllegalArgumentException( "minSegmentSize must be positive, was " + minSegmentSize );
+        }
+        this.minSegmentSize = minSegmentSize;
+    }
+
+    /**
+     * Shuts down the executor running the segment downloads.
+     */
+    public void shutdown() {
+
+        executor.shutdown();
+    }
+
+    /**
+     * Downloads the file, continuing an earlier download of it if one was interrupted.
+     *
+     * @return the downloaded file
+     * @throws DownloadVerificationException the file did not have the expected length or checksum, and was deleted
+     * @throws IOException the download failed or was interrupted. Whatever was downloaded is kept, and downloading again resumes
+     *             from there if the server accepts ranges.
+     */
+    public File download( FileDownload download ) throws IOException {
+
+        DownloadState state = resume( download );
+        boolean fresh = ( state == null );
+        if ( fresh ) {
+            state = plan( download );
+        }
+
+        try {
+            transfer( download, state, fresh );
+        }
+        catch (StaleDownloadException e) {
+            Log.d( TAG, download.getUrl() + " changed on the server; starting over." );
+            DownloadState.delete( download.getStateFile() );
+            transfer( download, plan( download ), true );
+        }
+
+        verify( download );
+        DownloadState.delete( download.getStateFile() );
+        return download.getDestination();
+    }
+
+    /**
+     * @return the saved state of an earlier download to the same destination, or null if there is none that still applies
+     */
+    private DownloadState resume( FileDownload download ) {
+
+        File stateFile = download.getStateFile();
+        DownloadState state = DownloadState.load( stateFile );
+        if ( state == null ) {
+            return null;
+        }
+
+        if ( !state.url.equals( download.getUrl() ) || download.getDestination().length() != state.length ) {
+            Log.d( TAG, "Discarding download state " + stateFile + ", which is for another download." );
+            DownloadState.delete( stateFile );
+            return null;
+        }
+
+        Log.d( TAG, "Resuming download of " + download.getUrl() + " with " + state.getBytesDownloaded() + " of " + state.length + " bytes." );
+        return state;
+    }
+
+    /**
+     * Probes the file with a {@code HEAD} request and splits it into segments. If the server does not report the length or accept
+     * ranges, the file is downloaded whole with a single request.
+     */
+    private DownloadState plan( FileDownload download ) throws IOException {
+
+        HttpHead request = new HttpHead( download.getUrl() );
+        request.setHeader( ACCEPT_ENCODING, IDENTITY );
+        Response response = HttpClients.execute( httpClient, request );
+        if ( response.isFailedRequest() ) {
+            throw new IOException( response.getReason() );
+        }
+
+        long length = -1;
+        boolean ranges = false;
+        String validator = null;
+        try {
+            if ( response.isSuccessful() ) {
+                HttpResponse httpResponse = response.getHttpResponse();
+                length = parseLength( httpResponse.getFirstHeader( "Content-Length" ) );
+                Header acceptRanges = httpResponse.getFirstHeader( "Accept-Ranges" );
+                ranges = ( acceptRanges != null && "bytes".equalsIgnoreCase( acceptRanges.getValue().trim() ) );
+                validator = getValidator( httpResponse );
+            }
+            else {
+                Log.d( TAG, "HEAD " + download.getUrl() + " returned " + response.getStatusCode() + "; downloading with a single request." );
+            }
+        }
+        finally {
+            response.release();
+        }
+
+        if ( !ranges || length <= 0 ) {
+            Segment[] segments = { new Segment( 0, length ) };
+            return new DownloadState( download.getUrl(), length, null, segments, false );
+        }
+
+        int count = (int) Math.max( 1, Math.min( maxSegments, length / minSegmentSize ) );
+        long size = length / count;
+        Segment[] segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            long start = i * size;
+            segments[i] = new Segment( start, ( i == count - 1 ) ? length : start + size );
+        }
+        return new DownloadState( download.getUrl(), length, validator, segments, true );
+    }
+
+    private void transfer( FileDownload download, DownloadState state, boolean fresh ) throws IOException {
+
+        RandomAccessFile file = new RandomAccessFile( download.getDestination(), "rw" );
+        try {
+            if ( fresh ) {
+                //discard anything left by an earlier download, and reserve the space up front when the length is known
+                file.setLength( 0 );
+                if ( state.length > 0 ) {
+                    file.setLength( state.length );
+                }
+            }
+
+            new Transfer( download, state, file.getChannel() ).run();
+
+            if ( state.length < 0 ) {
+                file.setLength( state.segments[0].position );
+            }
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    private void verify( FileDownload download ) throws IOException {
+
+        File destination = download.getDestination();
+        long expectedLength = download.getExpectedLength();
+        if ( expectedLength >= 0 && destination.length() != expectedLength ) {
+            fail( download, "Expected " + expectedLength + " bytes but downloaded " + destination.length() + " from " + download.getUrl() );
+        }
+
+        String checksum = download.getChecksum();
+        if ( checksum != null ) {
+            String actual = digest( destination, download.getChecksumAlgorithm() );
+            if ( !actual.equalsIgnoreCase( checksum ) ) {
+                fail( download, "Expected " + download.getChecksumAlgorithm() + " " + checksum + " but downloaded " + actual + " from " + download.getUrl() );
+            }
+        }
+    }
+
+    private static void fail( FileDownload download, String message ) throws DownloadVerificationException {
+
+        Log.w( TAG, message );
+        if ( !download.getDestination().delete() ) {
+            Log.w( TAG, "Unable to delete " + download.getDestination() );
+        }
+        DownloadState.delete( download.getStateFile() );
+        throw new DownloadVerificationException( message );
+    }
+
+    private static String digest( File file, String algorithm ) throws IOException {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance( algorithm );
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException( "Unsupported checksum algorithm: " + algorithm );
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE );
+        FileInputStream input = new FileInputStream( file );
+        try {
+            FileChannel channel = input.getChannel();
+            while (channel.read( buffer ) != -1) {
+                buffer.flip();
+                digest.update( buffer.array(), 0, buffer.limit() );
+                buffer.clear();
+            }
+        }
+        finally {
+            input.close();
+        }
+        return Strings.bytesToHexString( digest.digest() );
+    }
+
+    private static long parseLength( Header header ) {
+
+        if ( header == null ) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong( header.getValue().trim() );
+        }
+        catch (NumberFormatException e) {
+            Log.w( TAG, "Ignoring malformed Content-Length: " + header.getValue() );
+            return -1;
+        }
+    }
+
+    /**
+     * @return a strong {@code ETag}, or failing that the {@code Last-Modified} date, for use in {@code If-Range}; null if the
+     *         response has neither
+     */
+    private static String getValidator( HttpResponse response ) {
+
+        Header etag = response.getFirstHeader( "ETag" );
+        if ( etag != null && !etag.getValue().startsWith( "W/" ) ) {
+            return etag.getValue();
+        }
+
+        Header lastModified = response.getFirstHeader( "Last-Modified" );
+        return ( lastModified == null ) ? null : lastModified.getValue();
+    }
+
+    /**
+     * Thrown by a segment when the server answers a range request with the whole file, meaning the file has changed since the
+     * download began.
+     */
+    private static class StaleDownloadException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public StaleDownloadException(String message) {
+
+            super( message );
+        }
+    }
+
+    /**
+     * One run of a download: the segment requests in flight and the channel they write to.
+     */
+    private class Transfer {
+
+        private final FileDownload download;
+        private final DownloadState state;
+        private final FileChannel channel;
+        private final AtomicLong downloaded;
+        private final List<HttpGet> requests = new ArrayList<HttpGet>();
+        private volatile boolean cancelled;
+
+        public Transfer(FileDownload download, DownloadState state, FileChannel channel) {
+
+            this.download = download;
+            this.state = state;
+            this.channel = channel;
+            this.downloaded = new AtomicLong( state.getBytesDownloaded() );
+        }
+
+        /**
+         * Downloads the incomplete segments in parallel. The first to fail cancels the rest, and the progress made is saved before
+         * its failure is thrown.
+         */
+        public void run() throws IOException {
+
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (Segment segment : state.segments) {
+                if ( !segment.isComplete() ) {
+                    futures.add( executor.submit( new SegmentDownload( segment ) ) );
+                }
+            }
+
+            IOException failure = null;
+            try {
+                for (Future<Void> future : futures) {
+                    try {
+                        future.get();
+                    }
+                    catch (ExecutionException e) {
+                        if ( failure == null ) {
+                            failure = toIOException( e.getCause() );
+                            cancel();
+                        }
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                failure = new InterruptedIOException( "Download of " + download.getUrl() + " was interrupted." );
+            }
+
+            if ( failure != null ) {
+                try {
+                    checkpoint();
+                }
+                catch (IOException e) {
+                    Log.w( TAG, "Unable to save download state " + download.getStateFile(), e );
+                }
+                throw failure;
+            }
+        }
+
+        private void cancel() {
+
+            cancelled = true;
+            synchronized (requests) {
+                for (HttpGet request : requests) {
+                    request.abort();
+                }
+            }
+        }
+
+        /**
+         * Flushes the written bytes to disk before recording them, so the state never claims more than the file holds.
+         */
+        private synchronized void checkpoint() throws IOException {
+
+            if ( state.resumable ) {
+                channel.force( false );
+                state.save( download.getStateFile() );
+            }
+        }
+
+        private IOException toIOException( Throwable cause ) {
+
+            if ( cause instanceof IOException ) {
+                return (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+
+            IOException exception = new IOException( "Download of " + download.getUrl() + " failed." );
+            exception.initCause( cause );
+            return exception;
+        }
+
+        private class SegmentDownload implements Callable<Void> {
+
+            private final Segment segment;
+
+            public SegmentDownload(Segment segment) {
+
+                this.segment = segment;
+            }
+
+            @Override
+            public Void call() throws IOException {
+
+                HttpGet request = new HttpGet( download.getUrl() );
+                request.setHeader( ACCEPT_ENCODING, IDENTITY );
+                if ( state.resumable ) {
+                    request.setHeader( "Range", "bytes=" + segment.position + "-" + ( segment.end - 1 ) );
+                    if ( state.validator != null ) {
+                        request.setHeader( "If-Range", state.validator );
+                    }
+                }
+
+                synchronized (requests) {
+                    if ( cancelled ) {
+                        throw new InterruptedIOException( "Download of " + download.getUrl() + " was cancelled." );
+                    }
+                    requests.add( request );
+                }
+
+                boolean complete = false;
+                try {
+                    Response response = HttpClients.execute( httpClient, request );
+                    if ( response.isFailedRequest() ) {
+                        throw new IOException( response.getReason() );
+                    }
+
+                    checkStatus( response );
+                    copy( response );
+                    complete = true;
+                }
+                finally {
+                    if ( !complete ) {
+                        //don't read the rest of a body that is no longer wanted just to reuse the connection
+                        request.abort();
+                    }
+                    synchronized (requests) {
+                        requests.remove( request );
+                    }
+                }
+                return null;
+            }
+
+            private void checkStatus( Response response ) throws IOException {
+
+                int statusCode = response.getStatusCode();
+                if ( statusCode == HttpStatus.SC_PARTIAL_CONTENT && state.resumable ) {
+
+                    Header contentRange = response.getHttpResponse().getFirstHeader( "Content-Range" );
+                    if ( contentRange != null && !contentRange.getValue().startsWith( "bytes " + segment.position + "-" ) ) {
+                        throw new IOException( "Asked for bytes from " + segment.position + " but got " + contentRange.getValue() );
+                    }
+                }
+                else if ( statusCode == HttpStatus.SC_OK ) {
+
+                    //the whole file; only usable by a download that asked for the whole file
+                    boolean whole = ( segment.start == 0 && segment.position == 0 && state.segments.length == 1 );
+                    if ( state.resumable && !whole ) {
+                        throw new StaleDownloadException( download.getUrl() + " answered a range request with the whole file." );
+                    }
+                }
+                else {
+                    throw new IOException( "Unexpected status " + statusCode + " downloading " + download.getUrl() );
+                }
+            }
+
+            private void copy( Response response ) throws IOException {
+
+                InputStream input = response.getContent();
+                if ( input == null ) {
+                    throw new IOException( download.getUrl() + " returned no body." );
+                }
+
+                byte[] bytes = new byte[BUFFER_SIZE];
+                ByteBuffer buffer = ByteBuffer.wrap( bytes );
+                ProgressListener listener = download.getProgressListener();
+                long sinceCheckpoint = 0;
+                int read;
+                while (( read = input.read( bytes ) ) != -1) {
+
+                    if ( cancelled ) {
+                        throw new InterruptedIOException( "Download of " + download.getUrl() + " was cancelled." );
+                    }
+                    if ( segment.end >= 0 && segment.position + read > segment.end ) {
+                        throw new IOException( download.getUrl() + " sent more than the " + ( segment.end - segment.start ) + " bytes of its segment." );
+                    }
+
+                    buffer.clear();
+                    buffer.limit( read );
+                    long position = segment.position;
+                    while (buffer.hasRemaining()) {
+                        position += channel.write( buffer, position );
+                    }
+                    segment.position = position;
+
+                    long total = downloaded.addAndGet( read );
+                    if ( listener != null ) {
+                        listener.onProgress( total, state.length );
+                    }
+
+                    sinceCheckpoint += read;
+                    if ( sinceCheckpoint >= CHECKPOINT_BYTES ) {
+                        checkpoint();
+                        sinceCheckpoint = 0;
+                    }
+                }
+
+                //on failure the stream is left open, so that aborting the request drops the connection instead of draining it
+                input.close();
+
+                if ( segment.end >= 0 && segment.position < segment.end ) {
+                    throw new IOException( "Connection to " + download.getUrl() + " closed at byte " + segment.position + " of a segment ending at " + segment.end );
+                }
+            }
+        }
+    }
+}
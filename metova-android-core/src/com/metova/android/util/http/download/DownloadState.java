@@ -0,0 +1,158 @@
+package com.metova.android.util.http.download;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import android.util.Log;
+
+import com.metova.android.util.Streams;
+
+/**
+ * The persisted progress of a download: the file's length and validator, and how far each of its segments has got.
+ */
+class DownloadState {
+
+    private static final String TAG = DownloadState.class.getSimpleName();
+
+    private static final int VERSION = 1;
+
+    final String url;
+    final long length;
+    final String validator;
+    final Segment[] segments;
+    final boolean resumable;
+
+    /**
+     * @param resumable whether the server honors {@code Range} requests, so that the state is worth saving
+     */
+    DownloadState(String url, long length, String validator, Segment[] segments, boolean resumable) {
+
+        this.url = url;
+        this.length = length;
+        this.validator = validator;
+        this.segments = segments;
+        this.resumable = resumable;
+    }
+
+    long getBytesDownloaded() {
+
+        long downloaded = 0;
+        for (Segment segment : segments) {
+            downloaded += segment.position - segment.start;
+        }
+        return downloaded;
+    }
+
+    boolean isComplete() {
+
+        for (Segment segment : segments) {
+            if ( !segment.isComplete() ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the stored state, or null if there is none or it cannot be read
+     */
+    static DownloadState load( File stateFile ) {
+
+        if ( !stateFile.exists() ) {
+            return null;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream( new BufferedInputStream( new FileInputStream( stateFile ) ) );
+            if ( input.readUnsignedByte() != VERSION ) {
+                return null;
+            }
+
+            String url = input.readUTF();
+            long length = input.readLong();
+            String validator = input.readBoolean() ? input.readUTF() : null;
+            Segment[] segments = new Segment[input.readInt()];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = new Segment( input.readLong(), input.readLong() );
+                segments[i].position = input.readLong();
+            }
+            return new DownloadState( url, length, validator, segments, true );
+        }
+        catch (IOException e) {
+            Log.w( TAG, "Unable to read download state " + stateFile, e );
+            return null;
+        }
+        finally {
+            Streams.close( input );
+        }
+    }
+
+    /**
+     * Writes the state to a temporary file and renames it into place, so a crash mid-write leaves the previous state intact.
+     */
+    synchronized void save( File stateFile ) throws IOException {
+
+        File temp = new File( stateFile.getPath() + ".tmp" );
+        DataOutputStream output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) );
+        try {
+            output.writeByte( VERSION );
+            output.writeUTF( url );
+            output.writeLong( length );
+            output.writeBoolean( validator != null );
+            if ( validator != null ) {
+                output.writeUTF( validator );
+            }
+            output.writeInt( segments.length );
+            for (Segment segment : segments) {
+                output.writeLong( segment.start );
+                output.writeLong( segment.end );
+                output.writeLong( segment.position );
+            }
+        }
+        finally {
+            output.close();
+        }
+
+        if ( !temp.renameTo( stateFile ) ) {
+            temp.delete();
+            throw new IOException( "Unable to rename " + temp + " to " + stateFile );
+        }
+    }
+
+    static void delete( File stateFile ) {
+
+        if ( stateFile.exists() && !stateFile.delete() ) {
+            Log.w( TAG, "Unable to delete download state " + stateFile );
+        }
+    }
+
+    /**
+     * A byte range of the file, {@code start} inclusive and {@code end} exclusive, downloaded by one request at a time. An
+     * {@code end} of -1 means the length is unknown and the segment runs to the end of the response.
+     */
+    static class Segment {
+
+        final long start;
+        final long end;
+        volatile long position;
+
+        Segment(long start, long end) {
+
+            this.start = start;
+            this.end = end;
+            this.position = start;
+        }
+
+        boolean isComplete() {
+
+            return end >= 0 && position >= end;
+        }
+    }
+}
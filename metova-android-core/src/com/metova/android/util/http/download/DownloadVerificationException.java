@@ -0,0 +1,17 @@
+package com.metova.android.util.http.download;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a downloaded file does not have the expected length or checksum. The file and its download state have been deleted,
+ * so downloading again starts over.
+ */
+public class DownloadVerificationException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DownloadVerificationException(String message) {
+
+        super( message );
+    }
+}
@@ -0,0 +1,94 @@
+package com.metova.android.util.http.download;
+
+import java.io.File;
+
+import com.metova.android.util.Assertions;
+import com.metova.android.util.http.entity.ProgressListener;
+
+/**
+ * Describes a file for a {@link DownloadManager} to download: where from, where to, and how to check the result.
+ * <p/>
+ * While the download is incomplete its progress is kept next to the destination in a {@code .download} state file, which lets a
+ * later download of the same URL to the same destination continue where this one stopped.
+ */
+public class FileDownload {
+
+    private static final String STATE_SUFFIX = ".download";
+
+    private final String url;
+    private final File destination;
+    private long expectedLength = -1;
+    private String checksumAlgorithm;
+    private String checksum;
+    private ProgressListener progressListener;
+
+    public FileDownload(String url, File destination) {
+
+        Assertions.notNull( "url", url );
+        Assertions.notNull( "destination", destination );
+        this.url = url;
+        this.destination = destination;
+    }
+
+    public String getUrl() {
+
+        return url;
+    }
+
+    public File getDestination() {
+
+        return destination;
+    }
+
+    public File getStateFile() {
+
+        return new File( destination.getPath() + STATE_SUFFIX );
+    }
+
+    public long getExpectedLength() {
+
+        return expectedLength;
+    }
+
+    /**
+     * @param expectedLength the length the downloaded file must have, or -1 to accept the length the server reports
+     */
+    public void setExpectedLength( long expectedLength ) {
+
+        this.expectedLength = expectedLength;
+    }
+
+    public String getChecksumAlgorithm() {
+
+        return checksumAlgorithm;
+    }
+
+    public String getChecksum() {
+
+        return checksum;
+    }
+
+    /**
+     * @param algorithm a {@link java.security.MessageDigest} algorithm, such as {@code MD5} or {@code SHA-256}
+     * @param checksum the expected digest of the whole file, in hexadecimal
+     */
+    public void setChecksum( String algorithm, String checksum ) {
+
+        this.checksumAlgorithm = algorithm;
+        this.checksum = checksum;
+    }
+
+    public ProgressListener getProgressListener() {
+
+        return progressListener;
+    }
+
+    /**
+     * @param progressListener told the number of bytes on disk as the download proceeds, and the file length, or -1 if the server did not
+     *            report one. Called from the download threads.
+     */
+    public void setProgressListener( ProgressListener progressListener ) {
+
+        this.progressListener = progressListener;
+    }
+}
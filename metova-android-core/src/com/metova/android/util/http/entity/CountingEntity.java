@@ -0,0 +1,193 @@
+package com.metova.android.util.http.entity;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * Wraps an entity to count the bytes read from or written by it. An optional {@link Listener} is told once, when the content has
+ * been read to the end, closed, consumed or written out, whichever comes first.
+ */
+public class CountingEntity extends HttpEntityWrapper {
+
+    private final Listener listener;
+    private volatile long byteCount;
+    private boolean finished;
+    private InputStream content;
+
+    public CountingEntity(final HttpEntity entity) {
+
+        this( entity, null );
+    }
+
+    /**
+     * @param entity the entity to count
+     * @param listener told when the content is finished with. May be null.
+     */
+    public CountingEntity(final HttpEntity entity, final Listener listener) {
+
+        super( entity );
+        this.listener = listener;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+
+        if ( wrappedEntity.isStreaming() ) {
+            if ( content == null ) {
+                content = new CountingInputStream( wrappedEntity.getContent() );
+            }
+            return content;
+        }
+
+        return new CountingInputStream( wrappedEntity.getContent() );
+    }
+
+    @Override
+    public void writeTo( OutputStream outputStream ) throws IOException {
+
+        try {
+            writeCounted( outputStream );
+        }
+        finally {
+            finish();
+        }
+    }
+
+    private void writeCounted( OutputStream outputStream ) throws IOException {
+
+        wrappedEntity.writeTo( new FilterOutputStream( outputStream ) {
+
+            @Override
+            public void write( int b ) throws IOException {
+
+                out.write( b );
+                byteCount++;
+                onContent( b );
+            }
+
+            @Override
+            public void write( byte[] buffer, int offset, int length ) throws IOException {
+
+                out.write( buffer, offset, length );
+                byteCount += length;
+                onContent( buffer, offset, length );
+            }
+        } );
+    }
+
+    @Override
+    public void consumeContent() throws IOException {
+
+        try {
+            super.consumeContent();
+        }
+        finally {
+            finish();
+        }
+    }
+
+    /**
+     * @return the number of bytes read or written so far
+     */
+    public long getByteCount() {
+
+        return byteCount;
+    }
+
+    /**
+     * Called with each byte as it is read or written. Does nothing by default.
+     */
+    protected void onContent( int b ) {
+
+    }
+
+    /**
+     * Called with each run of bytes as it is read or written. Does nothing by default.
+     */
+    protected void onContent( byte[] buffer, int offset, int length ) {
+
+    }
+
+    private void finish() {
+
+        synchronized (this) {
+            if ( finished ) {
+                return;
+            }
+            finished = true;
+        }
+
+        if ( listener != null ) {
+            listener.onContentFinished( this );
+        }
+    }
+
+    /**
+     * Told when a {@link CountingEntity}'s content is finished with.
+     */
+    public interface Listener {
+
+        public void onContentFinished( CountingEntity entity );
+    }
+
+    private class CountingInputStream extends FilterInputStream {
+
+        public CountingInputStream(InputStream in) {
+
+            super( in );
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            int b = in.read();
+            if ( b == -1 ) {
+                finish();
+            }
+            else {
+                byteCount++;
+                onContent( b );
+            }
+            return b;
+        }
+
+        @Override
+        public int read( byte[] buffer, int offset, int length ) throws IOException {
+
+            int read = in.read( buffer, offset, length );
+            if ( read == -1 ) {
+                finish();
+            }
+            else {
+                byteCount += read;
+                onContent( buffer, offset, read );
+            }
+            return read;
+        }
+
+        @Override
+        public long skip( long n ) throws IOException {
+
+            long skipped = in.skip( n );
+            byteCount += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            try {
+                in.close();
+            }
+            finally {
+                finish();
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.metova.android.util.http.entity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * Wraps a {@code gzip} or {@code deflate} encoded response entity so that its content is decompressed as it is read. Nothing
+ * is buffered beyond the inflater's window, so large bodies stream in bounded memory.
+ */
+public class DecompressingEntity extends HttpEntityWrapper {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final boolean gzip;
+    private InputStream content;
+
+    /**
+     * @param entity the encoded entity
+     * @param gzip true for {@code gzip}, false for {@code deflate}
+     */
+    public DecompressingEntity(final HttpEntity entity, final boolean gzip) {
+
+        super( entity );
+        this.gzip = gzip;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+
+        if ( wrappedEntity.isStreaming() ) {
+            if ( content == null ) {
+                content = decompress( wrappedEntity.getContent() );
+            }
+            return content;
+        }
+
+        return decompress( wrappedEntity.getContent() );
+    }
+
+    private InputStream decompress( InputStream encoded ) throws IOException {
+
+        if ( gzip ) {
+            return new GZIPInputStream( encoded, BUFFER_SIZE );
+        }
+
+        //"deflate" should be zlib-wrapped, but some servers send a raw deflate stream, so look at the header to tell them apart
+        PushbackInputStream pushback = new PushbackInputStream( encoded, 2 );
+        int first = pushback.read();
+        int second = pushback.read();
+        if ( second != -1 ) {
+            pushback.unread( second );
+        }
+        if ( first != -1 ) {
+            pushback.unread( first );
+        }
+
+        boolean zlib = first != -1 && second != -1 && ( first & 0x0f ) == 8 && ( ( first << 8 ) | second ) % 31 == 0;
+        return new DeflateInputStream( pushback, new Inflater( !zlib ) );
+    }
+
+    @Override
+    public Header getContentEncoding() {
+
+        return null;
+    }
+
+    @Override
+    public long getContentLength() {
+
+        return -1;
+    }
+
+    @Override
+    public void writeTo( OutputStream outputStream ) throws IOException {
+
+        InputStream inputStream = getContent();
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while (( read = inputStream.read( buffer ) ) != -1) {
+                outputStream.write( buffer, 0, read );
+            }
+        }
+        finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Frees the inflater's native memory on close, which {@link InflaterInputStream} leaves to finalization for an inflater it 
+     * was given.
+     */
+    private static class DeflateInputStream extends InflaterInputStream {
+
+        public DeflateInputStream(InputStream input, Inflater inflater) {
+
+            super( input, inflater, BUFFER_SIZE );
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            try {
+                super.close();
+            }
+            finally {
+                inf.end();
+            }
+        }
+    }
+}
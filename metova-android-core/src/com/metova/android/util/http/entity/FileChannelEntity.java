@@ -0,0 +1,210 @@
+package com.metova.android.util.http.entity;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * Repeatable entity that streams a file, or a byte range of one, through a {@link FileChannel}. Each writing thread reuses a 
+ * single buffer, so no allocation happens per request or per block, and only the range being sent is ever read. Progress is 
+ * reported to an optional {@link ProgressListener} after each block.
+ * <p/>
+ * {@link com.metova.android.util.http.async.PersistentRequestQueue} stores the path and range of such an entity rather than 
+ * copying the file's contents.
+ */
+public class FileChannelEntity extends AbstractHttpEntity {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //a heap buffer, since OutputStream can only take arrays; a direct buffer would cost an extra copy per block
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>() {
+
+        @Override
+        protected ByteBuffer initialValue() {
+
+            return ByteBuffer.allocate( BUFFER_SIZE );
+        }
+    };
+
+    private final File file;
+    private final long offset;
+    private final long length;
+    private volatile ProgressListener progressListener;
+
+    /**
+     * Streams the whole file.
+     */
+    public FileChannelEntity(final File file, final String contentType) {
+
+        this( file, 0, file.length(), contentType );
+    }
+
+    /**
+     * Streams {@code length} bytes of the file starting at {@code offset}.
+     */
+    public FileChannelEntity(final File file, final long offset, final long length, final String contentType) {
+
+        if ( offset < 0 || length < 0 ) {
+            throw new IllegalArgumentException( "Invalid range: offset " + offset + ", length " + length );
+        }
+
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        setContentType( contentType );
+    }
+
+    public File getFile() {
+
+        return file;
+    }
+
+    public long getOffset() {
+
+        return offset;
+    }
+
+    @Override
+    public long getContentLength() {
+
+        return length;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+
+        return true;
+    }
+
+    @Override
+    public boolean isStreaming() {
+
+        return false;
+    }
+
+    public ProgressListener getProgressListener() {
+
+        return progressListener;
+    }
+
+    public void setProgressListener( ProgressListener progressListener ) {
+
+        this.progressListener = progressListener;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+
+        FileChannel channel = new FileInputStream( file ).getChannel();
+        channel.position( offset );
+        return new BoundedInputStream( Channels.newInputStream( channel ), length );
+    }
+
+    @Override
+    public void writeTo( OutputStream outputStream ) throws IOException {
+
+        if ( outputStream == null ) {
+            throw new IllegalArgumentException( "Output stream may not be null" );
+        }
+
+        ByteBuffer buffer = BUFFERS.get();
+        ProgressListener listener = progressListener;
+        long fileLength = file.length();
+
+        FileInputStream input = new FileInputStream( file );
+        try {
+            FileChannel channel = input.getChannel();
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+
+                buffer.clear();
+                buffer.limit( (int) Math.min( buffer.capacity(), end - position ) );
+                int read = channel.read( buffer, position );
+                if ( read < 0 ) {
+                    throw new IOException( file + " ended at " + position + ", before the " + end + " bytes expected" );
+                }
+
+                outputStream.write( buffer.array(), 0, read );
+                position += read;
+
+                if ( listener != null ) {
+                    listener.onProgress( position, fileLength );
+                }
+            }
+            outputStream.flush();
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Does nothing, since the file is opened afresh by each read.
+     */
+    @Override
+    public void consumeContent() throws IOException {
+
+    }
+
+    private static class BoundedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        public BoundedInputStream(InputStream in, long remaining) {
+
+            super( in );
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            if ( remaining <= 0 ) {
+                return -1;
+            }
+
+            int b = in.read();
+            if ( b >= 0 ) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read( byte[] buffer, int offset, int length ) throws IOException {
+
+            if ( remaining <= 0 ) {
+                return -1;
+            }
+
+            int read = in.read( buffer, offset, (int) Math.min( length, remaining ) );
+            if ( read > 0 ) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip( long n ) throws IOException {
+
+            long skipped = in.skip( Math.min( n, remaining ) );
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+
+            return (int) Math.min( in.available(), remaining );
+        }
+    }
+}
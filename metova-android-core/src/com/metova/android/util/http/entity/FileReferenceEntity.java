@@ -0,0 +1,22 @@
+package com.metova.android.util.http.entity;
+
+import java.io.File;
+
+import org.apache.http.entity.FileEntity;
+
+/**
+ * {@link FileEntity} that exposes the file it streams. A {@link com.metova.android.util.http.async.PersistentRequestQueue} 
+ * stores only the path of such an entity rather than copying the file's contents.
+ */
+public class FileReferenceEntity extends FileEntity {
+
+    public FileReferenceEntity(final File file, final String contentType) {
+
+        super( file, contentType );
+    }
+
+    public File getFile() {
+
+        return file;
+    }
+}
@@ -0,0 +1,57 @@
+package com.metova.android.util.http.entity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+
+/**
+ * Wraps a request entity so that it is gzipped as it is written to the connection. The compressed length is not known in 
+ * advance, so the body is sent chunked.
+ */
+public class GzipCompressingEntity extends HttpEntityWrapper {
+
+    private static final Header CONTENT_ENCODING = new BasicHeader( "Content-Encoding", "gzip" );
+
+    public GzipCompressingEntity(final HttpEntity entity) {
+
+        super( entity );
+    }
+
+    @Override
+    public Header getContentEncoding() {
+
+        return CONTENT_ENCODING;
+    }
+
+    @Override
+    public long getContentLength() {
+
+        return -1;
+    }
+
+    @Override
+    public boolean isChunked() {
+
+        return true;
+    }
+
+    @Override
+    public InputStream getContent() {
+
+        throw new UnsupportedOperationException( "A compressing entity can only be written." );
+    }
+
+    @Override
+    public void writeTo( OutputStream outputStream ) throws IOException {
+
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream( outputStream );
+        wrappedEntity.writeTo( gzipOutputStream );
+        gzipOutputStream.finish();
+    }
+}
@@ -0,0 +1,15 @@
+package com.metova.android.util.http.entity;
+
+/**
+ * Told as an entity's content is written, for example to drive an upload progress bar.
+ */
+public interface ProgressListener {
+
+    /**
+     * Called on the thread writing the entity, after each block, so it must return quickly.
+     * 
+     * @param bytesWritten the bytes written so far, counted from the start of the file rather than of the entity
+     * @param totalBytes the size of the whole file
+     */
+    public void onProgress( long bytesWritten, long totalBytes );
+}
@@ -0,0 +1,60 @@
+package com.metova.android.util.http.entity;
+
+import org.apache.http.HttpEntity;
+
+/**
+ * {@link CountingEntity} that keeps a copy of the first bytes read from or written by the wrapped entity, up to a fixed limit, 
+ * while the rest streams through untouched. Memory use is bounded by the limit whatever the size of the body.
+ */
+public class TeeEntity extends CountingEntity {
+
+    private final byte[] prefix;
+    private int prefixLength;
+
+    /**
+     * @param entity the entity to copy from
+     * @param maxPrefixBytes how many leading bytes to keep
+     * @param listener told when the content is finished with. May be null.
+     */
+    public TeeEntity(final HttpEntity entity, final int maxPrefixBytes, final Listener listener) {
+
+        super( entity, listener );
+        this.prefix = new byte[maxPrefixBytes];
+    }
+
+    @Override
+    protected void onContent( int b ) {
+
+        if ( prefixLength < prefix.length ) {
+            prefix[prefixLength++] = (byte) b;
+        }
+    }
+
+    @Override
+    protected void onContent( byte[] buffer, int offset, int length ) {
+
+        int copied = Math.min( length, prefix.length - prefixLength );
+        if ( copied > 0 ) {
+            System.arraycopy( buffer, offset, prefix, prefixLength, copied );
+            prefixLength += copied;
+        }
+    }
+
+    /**
+     * @return a copy of the leading bytes kept so far
+     */
+    public byte[] getPrefix() {
+
+        byte[] copy = new byte[prefixLength];
+        System.arraycopy( prefix, 0, copy, 0, prefixLength );
+        return copy;
+    }
+
+    /**
+     * @return whether more bytes passed through than were kept
+     */
+    public boolean isTruncated() {
+
+        return getByteCount() > prefixLength;
+    }
+}
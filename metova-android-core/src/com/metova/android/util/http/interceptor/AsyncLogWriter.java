@@ -0,0 +1,82 @@
+package com.metova.android.util.http.interceptor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.util.Log;
+
+/**
+ * Formats and writes log entries on a background daemon thread, so that the threads doing network I/O only pay for handing an 
+ * entry over. The hand-over queue is bounded: once it is full, entries are dropped and counted rather than held.
+ */
+class AsyncLogWriter {
+
+    private final String tag;
+    private final BlockingQueue<Entry> entries;
+    private final AtomicLong dropped = new AtomicLong();
+    private Thread thread;
+
+    public AsyncLogWriter(String tag, int capacity) {
+
+        this.tag = tag;
+        this.entries = new ArrayBlockingQueue<Entry>( capacity );
+    }
+
+    /**
+     * @return false if the entry was dropped because the writer is backed up
+     */
+    public boolean post( Entry entry ) {
+
+        ensureStarted();
+        if ( entries.offer( entry ) ) {
+            return true;
+        }
+
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    public long getDroppedCount() {
+
+        return dropped.get();
+    }
+
+    private synchronized void ensureStarted() {
+
+        if ( thread == null ) {
+            thread = new Thread( tag + "-writer" ) {
+
+                @Override
+                public void run() {
+
+                    try {
+                        while (true) {
+                            Entry entry = entries.take();
+                            try {
+                                Log.i( tag, entry.format() );
+                            }
+                            catch (RuntimeException e) {
+                                Log.w( tag, "Unable to format log entry.", e );
+                            }
+                        }
+                    }
+                    catch (InterruptedException e) {
+                        Log.d( tag, "Log writer interrupted." );
+                    }
+                }
+            };
+            thread.setDaemon( true );
+            thread.setPriority( Thread.MIN_PRIORITY );
+            thread.start();
+        }
+    }
+
+    /**
+     * Data captured on the I/O thread, turned into a message only on the writer thread.
+     */
+    interface Entry {
+
+        public String format();
+    }
+}
@@ -0,0 +1,68 @@
+package com.metova.android.util.http.interceptor;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which request bodies {@link CompressionRequestInterceptor} gzips. A body is compressed when its length reaches the 
+ * threshold set for the request's host, or the default threshold for hosts without one. Since a server must be able to accept
+ * {@code Content-Encoding: gzip} request bodies, compression is {@link #DISABLED} by default and should only be enabled for 
+ * hosts known to support it.
+ */
+public class CompressionPolicy {
+
+    public static final long DISABLED = -1;
+
+    private final Map<String, Long> thresholds = new ConcurrentHashMap<String, Long>();
+    private volatile long defaultThreshold = DISABLED;
+
+    public long getDefaultThreshold() {
+
+        return defaultThreshold;
+    }
+
+    /**
+     * @param defaultThreshold the body size, in bytes, from which requests to hosts without their own threshold are compressed, 
+     * or {@link #DISABLED}
+     */
+    public void setDefaultThreshold( long defaultThreshold ) {
+
+        this.defaultThreshold = defaultThreshold;
+    }
+
+    /**
+     * @param host the host name, as in the request URI
+     * @param threshold the body size, in bytes, from which requests to the host are compressed, or {@link #DISABLED}
+     */
+    public void setThreshold( String host, long threshold ) {
+
+        thresholds.put( host.toLowerCase( Locale.US ), threshold );
+    }
+
+    public void removeThreshold( String host ) {
+
+        thresholds.remove( host.toLowerCase( Locale.US ) );
+    }
+
+    public long getThreshold( String host ) {
+
+        Long threshold = ( host == null ) ? null : thresholds.get( host.toLowerCase( Locale.US ) );
+        return ( threshold == null ) ? defaultThreshold : threshold;
+    }
+
+    /**
+     * @param host the request's host
+     * @param contentLength the body's length, or a negative value if unknown
+     * @return whether the body should be compressed. A body of unknown length is only compressed when the threshold is 0.
+     */
+    public boolean shouldCompress( String host, long contentLength ) {
+
+        long threshold = getThreshold( host );
+        if ( threshold == DISABLED ) {
+            return false;
+        }
+
+        return ( contentLength < 0 ) ? threshold == 0 : contentLength >= threshold;
+    }
+}
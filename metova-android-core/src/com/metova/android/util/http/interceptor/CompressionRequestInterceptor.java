@@ -0,0 +1,81 @@
+package com.metova.android.util.http.interceptor;
+
+import java.io.IOException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+
+import com.metova.android.util.Assertions;
+import com.metova.android.util.http.entity.GzipCompressingEntity;
+
+/**
+ * Advertises {@code Accept-Encoding: gzip, deflate} on every request, and gzips request bodies that the {@link CompressionPolicy} 
+ * selects. Pair with {@link CompressionResponseInterceptor}, which decodes the compressed responses this invites.
+ */
+public class CompressionRequestInterceptor implements HttpRequestInterceptor {
+
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String SUPPORTED_ENCODINGS = "gzip, deflate";
+
+    private final CompressionPolicy policy;
+
+    public CompressionRequestInterceptor() {
+
+        this( new CompressionPolicy() );
+    }
+
+    public CompressionRequestInterceptor(final CompressionPolicy policy) {
+
+        Assertions.notNull( "policy", policy );
+        this.policy = policy;
+    }
+
+    public void process( HttpRequest request, HttpContext context ) throws HttpException, IOException {
+
+        if ( !request.containsHeader( ACCEPT_ENCODING ) ) {
+            request.addHeader( ACCEPT_ENCODING, SUPPORTED_ENCODINGS );
+        }
+
+        if ( request instanceof HttpEntityEnclosingRequest ) {
+
+            HttpEntityEnclosingRequest enclosingRequest = (HttpEntityEnclosingRequest) request;
+            HttpEntity entity = enclosingRequest.getEntity();
+            if ( entity != null && entity.getContentEncoding() == null && isCompressible( entity )
+                    && policy.shouldCompress( getHost( context ), entity.getContentLength() ) ) {
+                enclosingRequest.setEntity( new GzipCompressingEntity( entity ) );
+            }
+        }
+    }
+
+    /**
+     * Images, audio and video are already compressed, so gzipping them only costs CPU.
+     */
+    private boolean isCompressible( HttpEntity entity ) {
+
+        Header contentType = entity.getContentType();
+        if ( contentType == null ) {
+            return true;
+        }
+
+        String type = contentType.getValue();
+        return !type.startsWith( "image/" ) && !type.startsWith( "audio/" ) && !type.startsWith( "video/" );
+    }
+
+    private String getHost( HttpContext context ) {
+
+        HttpHost target = ( context == null ) ? null : (HttpHost) context.getAttribute( ExecutionContext.HTTP_TARGET_HOST );
+        return ( target == null ) ? null : target.getHostName();
+    }
+
+    public CompressionPolicy getPolicy() {
+
+        return policy;
+    }
+}
@@ -0,0 +1,61 @@
+package com.metova.android.util.http.interceptor;
+
+import java.io.IOException;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.protocol.HttpContext;
+
+import android.util.Log;
+
+import com.metova.android.util.http.entity.DecompressingEntity;
+
+/**
+ * Transparently decodes {@code gzip} and {@code deflate} response bodies. The entity is replaced by one that decompresses as it 
+ * is read, and the {@code Content-Encoding}, {@code Content-Length} and {@code Content-MD5} headers, which describe the encoded 
+ * body, are removed.
+ */
+public class CompressionResponseInterceptor implements HttpResponseInterceptor {
+
+    private static final String TAG = CompressionResponseInterceptor.class.getSimpleName();
+
+    public void process( HttpResponse response, HttpContext context ) throws HttpException, IOException {
+
+        HttpEntity entity = response.getEntity();
+        if ( entity == null || entity.getContentEncoding() == null ) {
+            return;
+        }
+
+        for (HeaderElement element : entity.getContentEncoding().getElements()) {
+
+            String encoding = element.getName();
+            if ( "gzip".equalsIgnoreCase( encoding ) || "x-gzip".equalsIgnoreCase( encoding ) ) {
+                decode( response, new DecompressingEntity( entity, true ) );
+                return;
+            }
+            else if ( "deflate".equalsIgnoreCase( encoding ) ) {
+                decode( response, new DecompressingEntity( entity, false ) );
+                return;
+            }
+            else if ( !"identity".equalsIgnoreCase( encoding ) ) {
+                Log.w( TAG, "Unsupported content encoding " + encoding + "; leaving the response encoded." );
+                return;
+            }
+        }
+    }
+
+    private void decode( HttpResponse response, HttpEntity decompressingEntity ) {
+
+        response.setEntity( decompressingEntity );
+        for (Header header : response.getAllHeaders()) {
+            String name = header.getName();
+            if ( "Content-Encoding".equalsIgnoreCase( name ) || "Content-Length".equalsIgnoreCase( name ) || "Content-MD5".equalsIgnoreCase( name ) ) {
+                response.removeHeader( header );
+            }
+        }
+    }
+}
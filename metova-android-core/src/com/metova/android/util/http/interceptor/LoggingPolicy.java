@@ -0,0 +1,153 @@
+package com.metova.android.util.http.interceptor;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decides what {@link WireLoggingInterceptor} logs: which exchanges are sampled, how much of each body is kept, and what is
+ * redacted. By default every exchange is logged, up to {@value #DEFAULT_MAX_BODY_BYTES} bytes of each textual body are kept,
+ * credentials are masked in the {@code Authorization}, {@code Proxy-Authorization}, {@code Cookie} and {@code Set-Cookie} headers,
+ * and password, token and secret fields are masked in JSON and form bodies.
+ */
+public class LoggingPolicy {
+
+    public static final int DEFAULT_MAX_BODY_BYTES = 2048;
+    public static final String REDACTED = "***";
+
+    private static final String SECRET_FIELD = "(?:password|passwd|token|access_token|refresh_token|secret|client_secret)";
+
+    private final Set<String> redactedHeaders = new CopyOnWriteArraySet<String>();
+    private final List<Redaction> bodyRedactions = new CopyOnWriteArrayList<Redaction>();
+    private final Random random = new Random();
+
+    private volatile double sampleRate = 1;
+    private volatile int maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+
+    public LoggingPolicy() {
+
+        addRedactedHeader( "Authorization" );
+        addRedactedHeader( "Proxy-Authorization" );
+        addRedactedHeader( "Cookie" );
+        addRedactedHeader( "Set-Cookie" );
+
+        //a value cut off by the body prefix limit is masked too
+        addBodyRedaction( Pattern.compile( "(\"" + SECRET_FIELD + "\"\\s*:\\s*)\"(?:[^\"\\\\]|\\\\.)*(?:\"|$)", Pattern.CASE_INSENSITIVE ), "$1\"" + REDACTED + "\"" );
+        addBodyRedaction( Pattern.compile( "((?:^|&)" + SECRET_FIELD + "=)[^&]*", Pattern.CASE_INSENSITIVE ), "$1" + REDACTED );
+    }
+
+    public double getSampleRate() {
+
+        return sampleRate;
+    }
+
+    /**
+     * @param sampleRate the fraction of exchanges to log, from 0 for none to 1 for all
+     */
+    public void setSampleRate( double sampleRate ) {
+
+        if ( sampleRate < 0 || sampleRate > 1 ) {
+            throw new IllegalArgumentException( "sampleRate must be in [0, 1], was " + sampleRate );
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    public int getMaxBodyBytes() {
+
+        return maxBodyBytes;
+    }
+
+    /**
+     * @param maxBodyBytes how many leading bytes of each body to log, or 0 to log no bodies
+     */
+    public void setMaxBodyBytes( int maxBodyBytes ) {
+
+        if ( maxBodyBytes < 0 ) {
+            throw new IllegalArgumentException( "maxBodyBytes may not be negative, was " + maxBodyBytes );
+        }
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * @param name a header whose value is replaced by {@link #REDACTED}, matched case-insensitively
+     */
+    public void addRedactedHeader( String name ) {
+
+        redactedHeaders.add( name.toLowerCase( Locale.US ) );
+    }
+
+    public void removeRedactedHeader( String name ) {
+
+        redactedHeaders.remove( name.toLowerCase( Locale.US ) );
+    }
+
+    /**
+     * Adds a rule applied to logged bodies, as if by {@link Matcher#replaceAll(String)}.
+     */
+    public void addBodyRedaction( Pattern pattern, String replacement ) {
+
+        bodyRedactions.add( new Redaction( pattern, replacement ) );
+    }
+
+    /**
+     * Removes every body redaction rule, including the defaults.
+     */
+    public void clearBodyRedactions() {
+
+        bodyRedactions.clear();
+    }
+
+    /**
+     * @return whether the next exchange should be logged
+     */
+    public boolean sample() {
+
+        double rate = sampleRate;
+        return rate >= 1 || ( rate > 0 && random.nextDouble() < rate );
+    }
+
+    public String redactHeader( String name, String value ) {
+
+        return redactedHeaders.contains( name.toLowerCase( Locale.US ) ) ? REDACTED : value;
+    }
+
+    public String redactBody( String body ) {
+
+        String redacted = body;
+        for (Redaction redaction : bodyRedactions) {
+            redacted = redaction.pattern.matcher( redacted ).replaceAll( redaction.replacement );
+        }
+        return redacted;
+    }
+
+    /**
+     * @param contentType the body's {@code Content-Type}, or null if unknown
+     * @return whether the body is text worth logging rather than binary data
+     */
+    public boolean isTextual( String contentType ) {
+
+        if ( contentType == null ) {
+            return false;
+        }
+
+        String type = contentType.toLowerCase( Locale.US );
+        return type.startsWith( "text/" ) || type.contains( "json" ) || type.contains( "xml" ) || type.startsWith( "application/x-www-form-urlencoded" );
+    }
+
+    private static final class Redaction {
+
+        private final Pattern pattern;
+        private final String replacement;
+
+        public Redaction(Pattern pattern, String replacement) {
+
+            this.pattern = pattern;
+            this.replacement = replacement;
+        }
+    }
+}
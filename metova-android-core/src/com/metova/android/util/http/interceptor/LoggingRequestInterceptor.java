@@ -17,7 +17,11 @@ import android.util.Log;
 /**
  * Logs the entire request payload, including request line, heads, and full body.  Note that 
  * this method is horribly inefficient and should not be used in production applications.
+ * 
+ * @deprecated buffers the whole body in memory. Use {@link WireLoggingInterceptor}, which samples exchanges, logs a bounded 
+ * prefix of each body as it streams, and redacts credentials.
  */
+@Deprecated
 public class LoggingRequestInterceptor implements HttpRequestInterceptor {
 
     private static final String TAG = "HTTP >> ";
@@ -0,0 +1,185 @@
+package com.metova.android.util.http.interceptor;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import com.metova.android.util.http.entity.CountingEntity;
+import com.metova.android.util.http.entity.TeeEntity;
+
+/**
+ * Logs sampled requests and responses, headers and the start of each body, safely enough to leave enabled in production. 
+ * Replaces {@link LoggingRequestInterceptor} and {@link LoggingResponseInterceptor}.
+ * <p/>
+ * Bodies are never buffered. The entity is wrapped so that the first {@link LoggingPolicy#getMaxBodyBytes()} bytes are copied as 
+ * they stream past, and the entry is logged once the body has been fully sent or read. A response whose body is never read or 
+ * consumed is therefore never logged. Formatting, redaction and the {@link android.util.Log} call itself happen on a background 
+ * thread; if that thread falls behind, entries are dropped and counted by {@link #getDroppedCount()}.
+ * <p/>
+ * Add the same instance as both a request and a response interceptor, so that each exchange is sampled as a whole. Place it 
+ * before the {@link CompressionRequestInterceptor} and after the {@link CompressionResponseInterceptor} to log bodies uncompressed.
+ */
+public class WireLoggingInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor {
+
+    private static final String TAG = WireLoggingInterceptor.class.getSimpleName();
+
+    private static final String SAMPLED = "com.metova.android.util.http.interceptor.logging.sampled";
+    private static final String EXCHANGE_ID = "com.metova.android.util.http.interceptor.logging.id";
+    private static final int DEFAULT_BACKLOG = 256;
+
+    private final LoggingPolicy policy;
+    private final AsyncLogWriter writer;
+    private final AtomicLong exchangeIds = new AtomicLong();
+
+    public WireLoggingInterceptor() {
+
+        this( new LoggingPolicy() );
+    }
+
+    public WireLoggingInterceptor(final LoggingPolicy policy) {
+
+        this( policy, DEFAULT_BACKLOG );
+    }
+
+    /**
+     * @param policy what to log
+     * @param backlog how many entries may wait to be written before further ones are dropped
+     */
+    public WireLoggingInterceptor(final LoggingPolicy policy, final int backlog) {
+
+        this.policy = policy;
+        this.writer = new AsyncLogWriter( TAG, backlog );
+    }
+
+    public LoggingPolicy getPolicy() {
+
+        return policy;
+    }
+
+    /**
+     * @return the number of entries dropped because the background writer had fallen behind
+     */
+    public long getDroppedCount() {
+
+        return writer.getDroppedCount();
+    }
+
+    public void process( HttpRequest request, HttpContext context ) throws HttpException, IOException {
+
+        if ( !policy.sample() ) {
+            context.setAttribute( SAMPLED, Boolean.FALSE );
+            return;
+        }
+
+        long id = exchangeIds.incrementAndGet();
+        context.setAttribute( SAMPLED, Boolean.TRUE );
+        context.setAttribute( EXCHANGE_ID, Long.valueOf( id ) );
+
+        String startLine = id + " >> " + request.getRequestLine();
+        HttpEntity entity = ( request instanceof HttpEntityEnclosingRequest ) ? ( (HttpEntityEnclosingRequest) request ).getEntity() : null;
+        if ( entity == null || policy.getMaxBodyBytes() == 0 ) {
+            writer.post( new MessageEntry( startLine, request.getAllHeaders(), null ) );
+        }
+        else {
+            ( (HttpEntityEnclosingRequest) request ).setEntity( tee( entity, startLine, request.getAllHeaders() ) );
+        }
+    }
+
+    public void process( HttpResponse response, HttpContext context ) throws HttpException, IOException {
+
+        Boolean sampled = (Boolean) context.getAttribute( SAMPLED );
+        if ( sampled == null ? !policy.sample() : !sampled ) {
+            return;
+        }
+
+        Long id = (Long) context.getAttribute( EXCHANGE_ID );
+        String startLine = ( id == null ? exchangeIds.incrementAndGet() : id ) + " << " + response.getStatusLine();
+        HttpEntity entity = response.getEntity();
+        if ( entity == null || policy.getMaxBodyBytes() == 0 ) {
+            writer.post( new MessageEntry( startLine, response.getAllHeaders(), null ) );
+        }
+        else {
+            response.setEntity( tee( entity, startLine, response.getAllHeaders() ) );
+        }
+    }
+
+    private HttpEntity tee( HttpEntity entity, final String startLine, final Header[] headers ) {
+
+        return new TeeEntity( entity, policy.getMaxBodyBytes(), new CountingEntity.Listener() {
+
+            @Override
+            public void onContentFinished( CountingEntity finished ) {
+
+                writer.post( new MessageEntry( startLine, headers, (TeeEntity) finished ) );
+            }
+        } );
+    }
+
+    private class MessageEntry implements AsyncLogWriter.Entry {
+
+        private final String startLine;
+        private final Header[] headers;
+        private final TeeEntity body;
+
+        public MessageEntry(String startLine, Header[] headers, TeeEntity body) {
+
+            this.startLine = startLine;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        @Override
+        public String format() {
+
+            StringBuilder message = new StringBuilder( startLine );
+            for (Header header : headers) {
+                message.append( '\n' ).append( header.getName() ).append( ": " ).append( policy.redactHeader( header.getName(), header.getValue() ) );
+            }
+
+            if ( body != null ) {
+                message.append( "\n\n" );
+                appendBody( message );
+            }
+            return message.toString();
+        }
+
+        private void appendBody( StringBuilder message ) {
+
+            Header contentType = body.getContentType();
+            Header contentEncoding = body.getContentEncoding();
+            boolean encoded = contentEncoding != null && !"identity".equalsIgnoreCase( contentEncoding.getValue() );
+
+            if ( encoded || !policy.isTextual( ( contentType == null ) ? null : contentType.getValue() ) ) {
+                message.append( "[" ).append( body.getByteCount() ).append( " byte " ).append( encoded ? contentEncoding.getValue() + "-encoded" : "binary" ).append( " body]" );
+                return;
+            }
+
+            String charset = EntityUtils.getContentCharSet( body );
+            byte[] prefix = body.getPrefix();
+            String text;
+            try {
+                text = new String( prefix, ( charset == null ) ? HTTP.UTF_8 : charset );
+            }
+            catch (UnsupportedEncodingException e) {
+                text = new String( prefix );
+            }
+
+            message.append( policy.redactBody( text ) );
+            if ( body.isTruncated() ) {
+                message.append( "... [" ).append( body.getByteCount() - prefix.length ).append( " more bytes]" );
+            }
+        }
+    }
+}
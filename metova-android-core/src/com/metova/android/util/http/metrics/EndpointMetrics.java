@@ -0,0 +1,123 @@
+package com.metova.android.util.http.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms for the exchanges with one host or endpoint, kept by {@link HttpMetrics}.
+ */
+public class EndpointMetrics {
+
+    private final String name;
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+    private final LatencyHistogram timeToFirstByteLatency = new LatencyHistogram();
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+    private final AtomicLong exchanges = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLongArray statusClasses = new AtomicLongArray( 6 );
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    public EndpointMetrics(String name) {
+
+        this.name = name;
+    }
+
+    void record( ExchangeMetrics metrics ) {
+
+        exchanges.incrementAndGet();
+        if ( metrics.isFailed() ) {
+            failures.incrementAndGet();
+        }
+        else {
+            int statusClass = metrics.getStatusCode() / 100;
+            statusClasses.incrementAndGet( ( statusClass > 0 && statusClass < 6 ) ? statusClass : 0 );
+        }
+
+        if ( metrics.getRequestBytes() > 0 ) {
+            bytesSent.addAndGet( metrics.getRequestBytes() );
+        }
+        if ( metrics.getResponseBytes() > 0 ) {
+            bytesReceived.addAndGet( metrics.getResponseBytes() );
+        }
+
+        connectLatency.record( metrics.getConnectMillis() );
+        timeToFirstByteLatency.record( metrics.getTimeToFirstByteMillis() );
+        totalLatency.record( metrics.getTotalMillis() );
+    }
+
+    void recordRetry() {
+
+        retries.incrementAndGet();
+    }
+
+    /**
+     * @return the host, or the endpoint key built by {@link HttpMetrics#getEndpointKey(String, String, String)}
+     */
+    public String getName() {
+
+        return name;
+    }
+
+    public LatencyHistogram getConnectLatency() {
+
+        return connectLatency;
+    }
+
+    public LatencyHistogram getTimeToFirstByteLatency() {
+
+        return timeToFirstByteLatency;
+    }
+
+    public LatencyHistogram getTotalLatency() {
+
+        return totalLatency;
+    }
+
+    public long getExchangeCount() {
+
+        return exchanges.get();
+    }
+
+    /**
+     * @return the number of exchanges that ended without a response
+     */
+    public long getFailureCount() {
+
+        return failures.get();
+    }
+
+    /**
+     * @param statusClass the first digit of the status codes to count, from 1 to 5
+     * @return the number of responses with a status code in that class
+     */
+    public long getStatusCount( int statusClass ) {
+
+        if ( statusClass < 1 || statusClass > 5 ) {
+            throw new IllegalArgumentException( "statusClass must be between 1 and 5, was " + statusClass );
+        }
+        return statusClasses.get( statusClass );
+    }
+
+    public long getBytesSent() {
+
+        return bytesSent.get();
+    }
+
+    public long getBytesReceived() {
+
+        return bytesReceived.get();
+    }
+
+    public long getRetryCount() {
+
+        return retries.get();
+    }
+
+    @Override
+    public String toString() {
+
+        return name + ": " + getExchangeCount() + " exchanges, " + getFailureCount() + " failed, p50 " + totalLatency.getPercentile( 50 ) + "ms, p99 " + totalLatency.getPercentile( 99 ) + "ms";
+    }
+}
@@ -0,0 +1,107 @@
+package com.metova.android.util.http.metrics;
+
+/**
+ * Measurements of a single HTTP exchange, reported to a {@link MetricsSink}. Measurements the client could not take are -1.
+ */
+public class ExchangeMetrics {
+
+    private final String method;
+    private final String host;
+    private final String path;
+    private final int statusCode;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final long connectMillis;
+    private final long timeToFirstByteMillis;
+    private final long totalMillis;
+
+    public ExchangeMetrics(String method, String host, String path, int statusCode, long requestBytes, long responseBytes, long connectMillis, long timeToFirstByteMillis, long totalMillis) {
+
+        this.method = method;
+        this.host = host;
+        this.path = path;
+        this.statusCode = statusCode;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.connectMillis = connectMillis;
+        this.timeToFirstByteMillis = timeToFirstByteMillis;
+        this.totalMillis = totalMillis;
+    }
+
+    public String getMethod() {
+
+        return method;
+    }
+
+    /**
+     * @return the request's host, or null if its URI had none
+     */
+    public String getHost() {
+
+        return host;
+    }
+
+    public String getPath() {
+
+        return path;
+    }
+
+    /**
+     * @return the response status code, or -1 if no response was received
+     */
+    public int getStatusCode() {
+
+        return statusCode;
+    }
+
+    public boolean isFailed() {
+
+        return statusCode < 0;
+    }
+
+    /**
+     * @return the size of the request body as sent, after any compression
+     */
+    public long getRequestBytes() {
+
+        return requestBytes;
+    }
+
+    /**
+     * @return the number of response body bytes read, before any decompression when the client measured it on the wire
+     */
+    public long getResponseBytes() {
+
+        return responseBytes;
+    }
+
+    /**
+     * @return the time taken to obtain a connection, including the DNS lookup, TCP connect and TLS handshake when it was new
+     */
+    public long getConnectMillis() {
+
+        return connectMillis;
+    }
+
+    /**
+     * @return the time from the start of the exchange until the response headers arrived
+     */
+    public long getTimeToFirstByteMillis() {
+
+        return timeToFirstByteMillis;
+    }
+
+    /**
+     * @return the time from the start of the exchange until the response body was finished with, or until it failed
+     */
+    public long getTotalMillis() {
+
+        return totalMillis;
+    }
+
+    @Override
+    public String toString() {
+
+        return method + " " + host + path + " -> " + statusCode + " in " + totalMillis + "ms";
+    }
+}
@@ -0,0 +1,19 @@
+package com.metova.android.util.http.metrics;
+
+import android.os.SystemClock;
+
+import com.metova.android.util.http.entity.CountingEntity;
+
+/**
+ * Timestamps and counts gathered during one exchange, shared through the {@link org.apache.http.protocol.HttpContext} between a
+ * {@link MetricsHttpClient} and the {@link MetricsInterceptor} inside the client it wraps.
+ */
+class ExchangeTimings {
+
+    static final String ATTRIBUTE = "com.metova.android.util.http.metrics.timings";
+
+    final long startedAt = SystemClock.elapsedRealtime();
+    volatile long connectedAt = -1;
+    volatile long requestBytes = -1;
+    volatile CountingEntity wireEntity;
+}
@@ -0,0 +1,210 @@
+package com.metova.android.util.http.metrics;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * {@link MetricsSink} that aggregates measurements in memory: an {@link EndpointMetrics} per host and per endpoint, and the queue
+ * wait time and depth of a {@link com.metova.android.util.http.async.QueuedHttpClient}. Everything is updated with atomic
+ * operations, so recording never blocks, and the getters can be read at any time, for example to export periodically.
+ * <p/>
+ * An endpoint is a method, host and path, with path segments that look like identifiers collapsed so that {@code /users/42} and
+ * {@code /users/43} count as one endpoint. Once {@link #setMaxEndpoints(int) too many} endpoints have been seen, further ones
+ * are counted together under {@link #OTHER_ENDPOINT}.
+ */
+public class HttpMetrics implements MetricsSink {
+
+    public static final String OTHER_ENDPOINT = "other";
+
+    private static final int DEFAULT_MAX_ENDPOINTS = 200;
+    private static final String ID_SEGMENT = "{id}";
+
+    private final ConcurrentMap<String, EndpointMetrics> hosts = new ConcurrentHashMap<String, EndpointMetrics>();
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<String, EndpointMetrics>();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong retries = new AtomicLong();
+
+    private volatile int maxEndpoints = DEFAULT_MAX_ENDPOINTS;
+
+    @Override
+    public void onExchangeCompleted( ExchangeMetrics metrics ) {
+
+        String host = ( metrics.getHost() == null ) ? "" : metrics.getHost();
+        getOrCreate( hosts, host, false ).record( metrics );
+        getOrCreate( endpoints, getEndpointKey( metrics.getMethod(), host, metrics.getPath() ), true ).record( metrics );
+    }
+
+    @Override
+    public void onRequestDequeued( HttpUriRequest request, long queueWaitMillis, int queueDepth ) {
+
+        queueWait.record( queueWaitMillis );
+        this.queueDepth.set( queueDepth );
+
+        int max;
+        while (queueDepth > ( max = maxQueueDepth.get() ) && !maxQueueDepth.compareAndSet( max, queueDepth )) {
+            //lost a race with another update; try again against the new maximum
+        }
+    }
+
+    @Override
+    public void onRequestRetried( HttpUriRequest request ) {
+
+        retries.incrementAndGet();
+
+        URI uri = request.getURI();
+        String host = ( uri == null || uri.getHost() == null ) ? "" : uri.getHost();
+        getOrCreate( hosts, host, false ).recordRetry();
+        getOrCreate( endpoints, getEndpointKey( request.getMethod(), host, ( uri == null ) ? null : uri.getPath() ), true ).recordRetry();
+    }
+
+    /**
+     * Builds the key exchanges are grouped under. Subclasses may override to group differently, but should keep the number of 
+     * distinct keys small.
+     */
+    protected String getEndpointKey( String method, String host, String path ) {
+
+        StringBuilder key = new StringBuilder( method ).append( ' ' ).append( host );
+        if ( path == null || path.length() == 0 ) {
+            return key.append( '/' ).toString();
+        }
+
+        int start = ( path.charAt( 0 ) == '/' ) ? 1 : 0;
+        while (start <= path.length()) {
+
+            int end = path.indexOf( '/', start );
+            if ( end < 0 ) {
+                end = path.length();
+            }
+
+            key.append( '/' );
+            if ( isIdentifier( path, start, end ) ) {
+                key.append( ID_SEGMENT );
+            }
+            else {
+                key.append( path, start, end );
+            }
+            start = end + 1;
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return whether the segment is all digits, or a long run of hex digits and dashes such as a UUID or hash
+     */
+    private static boolean isIdentifier( String path, int start, int end ) {
+
+        if ( start == end ) {
+            return false;
+        }
+
+        boolean digitsOnly = true;
+        for (int i = start; i < end; i++) {
+
+            char c = path.charAt( i );
+            if ( c < '0' || c > '9' ) {
+                digitsOnly = false;
+                if ( Character.digit( c, 16 ) < 0 && c != '-' ) {
+                    return false;
+                }
+            }
+        }
+        return digitsOnly || end - start >= 16;
+    }
+
+    private EndpointMetrics getOrCreate( ConcurrentMap<String, EndpointMetrics> metrics, String key, boolean bounded ) {
+
+        EndpointMetrics existing = metrics.get( key );
+        if ( existing != null ) {
+            return existing;
+        }
+
+        if ( bounded && metrics.size() >= maxEndpoints ) {
+            key = OTHER_ENDPOINT;
+            existing = metrics.get( key );
+            if ( existing != null ) {
+                return existing;
+            }
+        }
+
+        EndpointMetrics created = new EndpointMetrics( key );
+        existing = metrics.putIfAbsent( key, created );
+        return ( existing == null ) ? created : existing;
+    }
+
+    /**
+     * @return a snapshot of the metrics for every host seen so far, keyed by host
+     */
+    public Map<String, EndpointMetrics> getHostMetrics() {
+
+        return new HashMap<String, EndpointMetrics>( hosts );
+    }
+
+    /**
+     * @return a snapshot of the metrics for every endpoint seen so far, keyed by {@link #getEndpointKey(String, String, String)}
+     */
+    public Map<String, EndpointMetrics> getEndpointMetrics() {
+
+        return new HashMap<String, EndpointMetrics>( endpoints );
+    }
+
+    /**
+     * @return how long queued requests waited between submission and their first attempt
+     */
+    public LatencyHistogram getQueueWait() {
+
+        return queueWait;
+    }
+
+    /**
+     * @return the number of requests left in the queue when one was last taken off it
+     */
+    public int getQueueDepth() {
+
+        return queueDepth.get();
+    }
+
+    public int getMaxQueueDepth() {
+
+        return maxQueueDepth.get();
+    }
+
+    public long getRetryCount() {
+
+        return retries.get();
+    }
+
+    public int getMaxEndpoints() {
+
+        return maxEndpoints;
+    }
+
+    /**
+     * @param maxEndpoints how many distinct endpoints to track before counting new ones under {@link #OTHER_ENDPOINT}
+     */
+    public void setMaxEndpoints( int maxEndpoints ) {
+
+        this.maxEndpoints = maxEndpoints;
+    }
+
+    /**
+     * Discards everything recorded so far.
+     */
+    public void reset() {
+
+        hosts.clear();
+        endpoints.clear();
+        queueWait.reset();
+        queueDepth.set( 0 );
+        maxQueueDepth.set( 0 );
+        retries.set( 0 );
+    }
+}
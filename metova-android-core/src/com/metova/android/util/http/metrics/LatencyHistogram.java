@@ -0,0 +1,128 @@
+package com.metova.android.util.http.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size histogram of durations in milliseconds. Recording is a handful of atomic increments, with no locking or allocation,
+ * so it is cheap enough to call for every request.
+ * <p/>
+ * Buckets grow logarithmically, with four per power of two, so any value is reported to within about 19%. Values beyond about
+ * 24 days share the last bucket.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 30;
+    private static final int BUCKET_COUNT = ( MAX_EXPONENT - SUB_BUCKET_BITS + 2 ) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray( BUCKET_COUNT );
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param millis the duration to record. Negative values, which mark an unavailable measurement, are ignored.
+     */
+    public void record( long millis ) {
+
+        if ( millis < 0 ) {
+            return;
+        }
+
+        buckets.incrementAndGet( bucketOf( millis ) );
+        count.incrementAndGet();
+        sum.addAndGet( millis );
+
+        long currentMax;
+        while (millis > ( currentMax = max.get() ) && !max.compareAndSet( currentMax, millis )) {
+            //lost a race with another recording; try again against the new maximum
+        }
+    }
+
+    public long getCount() {
+
+        return count.get();
+    }
+
+    public long getMax() {
+
+        return max.get();
+    }
+
+    public double getMean() {
+
+        long n = count.get();
+        return ( n == 0 ) ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * @param percentile between 0 and 100, for example 99 for the 99th percentile
+     * @return the upper bound of the bucket holding the given percentile, never more than the largest value recorded, or 0 if 
+     *         nothing has been recorded
+     */
+    public long getPercentile( double percentile ) {
+
+        if ( percentile < 0 || percentile > 100 ) {
+            throw new IllegalArgumentException( "percentile must be in [0, 100], was " + percentile );
+        }
+
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get( i );
+            total += snapshot[i];
+        }
+        if ( total == 0 ) {
+            return 0;
+        }
+
+        long rank = Math.max( 1, (long) Math.ceil( total * percentile / 100 ) );
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if ( seen >= rank ) {
+                return Math.min( upperBoundOf( i ), max.get() );
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set( i, 0 );
+        }
+        count.set( 0 );
+        sum.set( 0 );
+        max.set( 0 );
+    }
+
+    static int bucketOf( long millis ) {
+
+        if ( millis < SUB_BUCKETS ) {
+            return (int) millis;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros( millis );
+        if ( exponent > MAX_EXPONENT ) {
+            return BUCKET_COUNT - 1;
+        }
+
+        int subBucket = (int) ( millis >>> ( exponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 );
+        return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf( int bucket ) {
+
+        if ( bucket < SUB_BUCKETS ) {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << ( exponent - SUB_BUCKET_BITS );
+        return ( 1L << exponent ) + ( subBucket + 1 ) * width - 1;
+    }
+}
@@ -0,0 +1,123 @@
+package com.metova.android.util.http.metrics;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.metova.android.util.Assertions;
+import com.metova.android.util.http.DelegatingHttpClient;
+import com.metova.android.util.http.entity.CountingEntity;
+
+/**
+ * {@link HttpClient} decorator that reports an {@link ExchangeMetrics} to a {@link MetricsSink} for every request. The exchange
+ * is reported once its response body has been read to the end, closed or consumed, so the total time includes the download.
+ * <p/>
+ * Time to first byte, total time and byte counts are always measured. The connect time, and the exact request and response sizes 
+ * on the wire, are only available when the wrapped client runs a {@link MetricsInterceptor}, as {@link com.metova.android.util.http.PooledHttpClient} 
+ * does.
+ */
+public class MetricsHttpClient extends DelegatingHttpClient {
+
+    private static final String TAG = MetricsHttpClient.class.getSimpleName();
+
+    private final MetricsSink sink;
+
+    public MetricsHttpClient(final HttpClient delegate, final MetricsSink sink) {
+
+        super( delegate );
+        Assertions.notNull( "sink", sink );
+        this.sink = sink;
+    }
+
+    public MetricsSink getSink() {
+
+        return sink;
+    }
+
+    @Override
+    public HttpResponse execute( HttpUriRequest request, HttpContext context ) throws IOException, ClientProtocolException {
+
+        final ExchangeTimings timings = new ExchangeTimings();
+        HttpContext exchangeContext = ( context == null ) ? new BasicHttpContext() : context;
+        exchangeContext.setAttribute( ExchangeTimings.ATTRIBUTE, timings );
+
+        final HttpResponse response;
+        try {
+            response = getDelegate().execute( request, exchangeContext );
+        }
+        catch (IOException e) {
+            report( request, timings, -1, -1, -1 );
+            throw e;
+        }
+        catch (RuntimeException e) {
+            report( request, timings, -1, -1, -1 );
+            throw e;
+        }
+        finally {
+            exchangeContext.removeAttribute( ExchangeTimings.ATTRIBUTE );
+        }
+
+        final HttpUriRequest exchangeRequest = request;
+        final int statusCode = response.getStatusLine().getStatusCode();
+        final long headersAt = SystemClock.elapsedRealtime();
+
+        HttpEntity entity = response.getEntity();
+        if ( entity == null ) {
+            report( request, timings, statusCode, headersAt, 0 );
+        }
+        else {
+            response.setEntity( new CountingEntity( entity, new CountingEntity.Listener() {
+
+                @Override
+                public void onContentFinished( CountingEntity countingEntity ) {
+
+                    CountingEntity wireEntity = timings.wireEntity;
+                    report( exchangeRequest, timings, statusCode, headersAt, ( wireEntity == null ) ? countingEntity.getByteCount() : wireEntity.getByteCount() );
+                }
+            } ) );
+        }
+
+        return response;
+    }
+
+    private void report( HttpUriRequest request, ExchangeTimings timings, int statusCode, long headersAt, long responseBytes ) {
+
+        long now = SystemClock.elapsedRealtime();
+        long connectMillis = ( timings.connectedAt < 0 ) ? -1 : timings.connectedAt - timings.startedAt;
+        long timeToFirstByteMillis = ( headersAt < 0 ) ? -1 : headersAt - timings.startedAt;
+
+        long requestBytes = timings.requestBytes;
+        if ( requestBytes < 0 && timings.connectedAt < 0 ) {
+            requestBytes = getContentLength( request );
+        }
+
+        URI uri = request.getURI();
+        ExchangeMetrics metrics = new ExchangeMetrics( request.getMethod(), ( uri == null ) ? null : uri.getHost(), ( uri == null ) ? null : uri.getPath(), statusCode, requestBytes, responseBytes, connectMillis, timeToFirstByteMillis, now - timings.startedAt );
+        try {
+            sink.onExchangeCompleted( metrics );
+        }
+        catch (RuntimeException e) {
+            Log.w( TAG, "Metrics sink failed.", e );
+        }
+    }
+
+    private static long getContentLength( HttpUriRequest request ) {
+
+        if ( request instanceof HttpEntityEnclosingRequest ) {
+            HttpEntity entity = ( (HttpEntityEnclosingRequest) request ).getEntity();
+            return ( entity == null ) ? 0 : entity.getContentLength();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,56 @@
+package com.metova.android.util.http.metrics;
+
+import java.io.IOException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.protocol.HttpContext;
+
+import android.os.SystemClock;
+
+import com.metova.android.util.http.entity.CountingEntity;
+
+/**
+ * Takes the measurements a {@link MetricsHttpClient} cannot see from outside the client it wraps. Request interceptors run once
+ * the connection is established, which gives the connect time, and the response entity is counted before any decompression.
+ * Does nothing for requests not made through a {@link MetricsHttpClient}.
+ * <p/>
+ * Should be added as the last request interceptor, after any that replace the request body, and as the first response
+ * interceptor, before any that replace the response body.
+ */
+public class MetricsInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor {
+
+    public void process( HttpRequest request, HttpContext context ) throws HttpException, IOException {
+
+        ExchangeTimings timings = (ExchangeTimings) context.getAttribute( ExchangeTimings.ATTRIBUTE );
+        if ( timings == null ) {
+            return;
+        }
+
+        timings.connectedAt = SystemClock.elapsedRealtime();
+        if ( request instanceof HttpEntityEnclosingRequest ) {
+            HttpEntity entity = ( (HttpEntityEnclosingRequest) request ).getEntity();
+            timings.requestBytes = ( entity == null ) ? 0 : entity.getContentLength();
+        }
+        else {
+            timings.requestBytes = 0;
+        }
+    }
+
+    public void process( HttpResponse response, HttpContext context ) throws HttpException, IOException {
+
+        ExchangeTimings timings = (ExchangeTimings) context.getAttribute( ExchangeTimings.ATTRIBUTE );
+        if ( timings == null || response.getEntity() == null ) {
+            return;
+        }
+
+        CountingEntity wireEntity = new CountingEntity( response.getEntity() );
+        response.setEntity( wireEntity );
+        timings.wireEntity = wireEntity;
+    }
+}
@@ -0,0 +1,31 @@
+package com.metova.android.util.http.metrics;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Receives measurements from a {@link MetricsHttpClient} and a {@link com.metova.android.util.http.async.QueuedHttpClient}.
+ * {@link HttpMetrics} aggregates them in memory; other implementations may forward them elsewhere.
+ * <p/>
+ * Methods are called on the thread that made the request, often while it holds a pooled connection, so they must return quickly
+ * and must not block. Any exception they throw is logged and ignored.
+ */
+public interface MetricsSink {
+
+    /**
+     * Called once for every HTTP exchange, when its response body has been read, closed or consumed, or when it failed.
+     */
+    public void onExchangeCompleted( ExchangeMetrics metrics );
+
+    /**
+     * Called when a queued request is about to be attempted for the first time.
+     * 
+     * @param queueWaitMillis how long the request waited since it was submitted, or -1 if unknown
+     * @param queueDepth how many requests were still waiting in the queue
+     */
+    public void onRequestDequeued( HttpUriRequest request, long queueWaitMillis, int queueDepth );
+
+    /**
+     * Called each time a queued request is to be attempted again after a failure.
+     */
+    public void onRequestRetried( HttpUriRequest request );
+}
@@ -0,0 +1,316 @@
+package com.metova.android.util.http.request;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+
+import android.util.Log;
+
+import com.metova.android.util.Assertions;
+import com.metova.android.util.Streams;
+import com.metova.android.util.http.HttpClients;
+import com.metova.android.util.http.entity.FileChannelEntity;
+import com.metova.android.util.http.entity.ProgressListener;
+import com.metova.android.util.http.response.Response;
+
+/**
+ * Uploads a file in chunks with the resumable upload protocol, so that an interrupted upload continues from the last byte the
+ * server acknowledged instead of starting over.
+ * <p/>
+ * This request is the {@code POST} that opens an upload session. It is sent with {@code X-Upload-Content-Type} and
+ * {@code X-Upload-Content-Length} headers, along with any headers and metadata entity set on it, and the server answers with the
+ * session URI in {@code Location}. Each chunk is then {@code PUT} to the session URI with a {@code Content-Range} header. The server
+ * answers {@code 308} with a {@code Range} header naming the bytes it has so far, until the last chunk, which it answers with
+ * {@code 200} or {@code 201}. To resume, an empty {@code PUT} with {@code Content-Range: bytes *}{@code /total} asks where to
+ * continue from.
+ * <p/>
+ * The session URI is kept in a small state file, so an upload resumes across process restarts as long as the file being uploaded
+ * is unchanged. Call {@link #execute(HttpClient)} to run the upload; a {@link com.metova.android.util.http.async.QueuedHttpClient}
+ * does so itself, and a {@link com.metova.android.util.http.async.PersistentRequestQueue} stores the upload rather than its bytes.
+ */
+public class HttpResumableUpload extends HttpPost {
+
+    private static final String TAG = HttpResumableUpload.class.getSimpleName();
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private static final int RESUME_INCOMPLETE = 308;
+    private static final int STATE_VERSION = 1;
+
+    private final File file;
+    private final String contentType;
+    private final File stateFile;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private volatile ProgressListener progressListener;
+
+    /**
+     * @param url the URI that opens upload sessions
+     * @param file the file to upload
+     * @param contentType the file's content type
+     * @param stateFile where the session is remembered between attempts. Must be unique to this upload.
+     */
+    public HttpResumableUpload(String url, File file, String contentType, File stateFile) {
+
+        super( url );
+
+        Assertions.notNull( "file", file );
+        Assertions.notNull( "stateFile", stateFile );
+        this.file = file;
+        this.contentType = contentType;
+        this.stateFile = stateFile;
+    }
+
+    public File getFile() {
+
+        return file;
+    }
+
+    public String getContentType() {
+
+        return contentType;
+    }
+
+    public File getStateFile() {
+
+        return stateFile;
+    }
+
+    public int getChunkSize() {
+
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize the most bytes sent per {@code PUT}. Servers commonly require a multiple of 256 KiB.
+     */
+    public void setChunkSize( int chunkSize ) {
+
+        if ( chunkSize <= 0 ) {
+            throw new IllegalArgumentException( "chunkSize must be positive, was " + chunkSize );
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public ProgressListener getProgressListener() {
+
+        return progressListener;
+    }
+
+    /**
+     * @param progressListener told the position in the file as each chunk is written. Not persisted with the request.
+     */
+    public void setProgressListener( ProgressListener progressListener ) {
+
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Opens or resumes the upload session and sends the remaining chunks.
+     *
+     * @return the server's final response once the whole file is acknowledged, or the response that interrupted the upload, which
+     *         is marked as a failed request if the network failed. After an interruption the session is kept, so calling again
+     *         resumes it.
+     */
+    public Response execute( HttpClient client ) {
+
+        long total = file.length();
+
+        URI session = loadSession();
+        long offset = 0;
+        if ( session != null ) {
+
+            HttpPut query = new HttpPut( session );
+            query.setHeader( "Content-Range", "bytes */" + total );
+            Response status = HttpClients.execute( client, query );
+            if ( status.isFailedRequest() ) {
+                return status;
+            }
+
+            int statusCode = status.getStatusCode();
+            if ( statusCode == RESUME_INCOMPLETE ) {
+                offset = getNextOffset( status );
+                status.release();
+                Log.d( TAG, "Resuming upload of " + file + " at byte " + offset );
+            }
+            else if ( statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED ) {
+                deleteSession();
+                return status;
+            }
+            else if ( statusCode == HttpStatus.SC_NOT_FOUND || statusCode == HttpStatus.SC_GONE ) {
+                Log.d( TAG, "Upload session for " + file + " expired; starting over." );
+                status.release();
+                deleteSession();
+                session = null;
+            }
+            else {
+                return status;
+            }
+        }
+
+        if ( session == null ) {
+
+            setHeader( "X-Upload-Content-Length", String.valueOf( total ) );
+            if ( contentType != null ) {
+                setHeader( "X-Upload-Content-Type", contentType );
+            }
+
+            Response opened = HttpClients.execute( client, this );
+            if ( !opened.isSuccessful() ) {
+                return opened;
+            }
+
+            Header location = opened.getHttpResponse().getFirstHeader( "Location" );
+            opened.release();
+            if ( location == null ) {
+                return failed( "Upload session response had no Location header." );
+            }
+
+            session = getURI().resolve( location.getValue() );
+            saveSession( session );
+        }
+
+        while (true) {
+
+            long length = Math.min( chunkSize, total - offset );
+            HttpPut put = new HttpPut( session );
+            FileChannelEntity chunk = new FileChannelEntity( file, offset, length, contentType );
+            chunk.setProgressListener( progressListener );
+            put.setEntity( chunk );
+            put.setHeader( "Content-Range", ( length == 0 ) ? "bytes */" + total : "bytes " + offset + "-" + ( offset + length - 1 ) + "/" + total );
+
+            Response response = HttpClients.execute( client, put );
+            if ( response.isFailedRequest() ) {
+                return response;
+            }
+
+            int statusCode = response.getStatusCode();
+            if ( statusCode == RESUME_INCOMPLETE ) {
+                long nextOffset = getNextOffset( response );
+                if ( nextOffset <= offset ) {
+                    //the server kept none of the chunk, or wants more of an empty one; leave it to the caller's retry policy rather than spin
+                    return response;
+                }
+                offset = nextOffset;
+                response.release();
+            }
+            else {
+                if ( statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED || statusCode == HttpStatus.SC_NOT_FOUND || statusCode == HttpStatus.SC_GONE ) {
+                    //finished, or the session is gone and the next attempt must open a new one
+                    deleteSession();
+                }
+                return response;
+            }
+        }
+    }
+
+    /**
+     * @return the byte after the last one acknowledged by a {@code 308} response's {@code Range: bytes=0-N} header, or 0 if it has none
+     */
+    private static long getNextOffset( Response response ) {
+
+        Header range = response.getHttpResponse().getFirstHeader( "Range" );
+        if ( range == null ) {
+            return 0;
+        }
+
+        String value = range.getValue();
+        int dash = value.lastIndexOf( '-' );
+        try {
+            return Long.parseLong( value.substring( dash + 1 ).trim() ) + 1;
+        }
+        catch (NumberFormatException e) {
+            Log.w( TAG, "Ignoring malformed Range header: " + value );
+            return 0;
+        }
+    }
+
+    private static Response failed( String reason ) {
+
+        Response response = new Response();
+        response.setFailedRequest( true );
+        response.setReason( reason );
+        return response;
+    }
+
+    /**
+     * @return the stored session URI, or null if there is none or it was opened for a different version of the file
+     */
+    private URI loadSession() {
+
+        if ( !stateFile.exists() ) {
+            return null;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream( new BufferedInputStream( new FileInputStream( stateFile ) ) );
+            if ( input.readUnsignedByte() != STATE_VERSION ) {
+                return null;
+            }
+
+            URI session = new URI( input.readUTF() );
+            boolean sameFile = input.readUTF().equals( file.getAbsolutePath() ) && input.readLong() == file.length() && input.readLong() == file.lastModified();
+            return sameFile ? session : null;
+        }
+        catch (IOException e) {
+            Log.w( TAG, "Unable to read upload state " + stateFile, e );
+            return null;
+        }
+        catch (URISyntaxException e) {
+            Log.w( TAG, "Discarding upload state with an invalid session URI.", e );
+            return null;
+        }
+        finally {
+            Streams.close( input );
+        }
+    }
+
+    private void saveSession( URI session ) {
+
+        File temp = new File( stateFile.getPath() + ".tmp" );
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) );
+            output.writeByte( STATE_VERSION );
+            output.writeUTF( session.toString() );
+            output.writeUTF( file.getAbsolutePath() );
+            output.writeLong( file.length() );
+            output.writeLong( file.lastModified() );
+            output.close();
+            output = null;
+
+            if ( !temp.renameTo( stateFile ) ) {
+                throw new IOException( "Unable to rename " + temp + " to " + stateFile );
+            }
+        }
+        catch (IOException e) {
+            //the upload still works, but cannot be resumed after this attempt
+            Log.w( TAG, "Unable to save upload state " + stateFile, e );
+            temp.delete();
+        }
+        finally {
+            Streams.close( output );
+        }
+    }
+
+    private void deleteSession() {
+
+        if ( stateFile.exists() && !stateFile.delete() ) {
+            Log.w( TAG, "Unable to delete upload state " + stateFile );
+        }
+    }
+}
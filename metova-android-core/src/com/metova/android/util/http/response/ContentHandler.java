@@ -0,0 +1,19 @@
+package com.metova.android.util.http.response;
+
+import java.io.IOException;
+
+/**
+ * Receives a response body incrementally, as {@link Response#read(ContentHandler)} reads it.
+ */
+public interface ContentHandler {
+
+    /**
+     * Called for each chunk of the body, in order. The buffer is reused for the next chunk, so the bytes must be consumed or
+     * copied before returning.
+     * 
+     * @param buffer the bytes read
+     * @param length the number of valid bytes at the start of the buffer
+     * @throws IOException to abort reading
+     */
+    public void onContent( byte[] buffer, int length ) throws IOException;
+}
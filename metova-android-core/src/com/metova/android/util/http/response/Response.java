@@ -1,14 +1,37 @@
 package com.metova.android.util.http.response;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import android.util.Log;
+
+import com.metova.android.util.Streams;
+import com.metova.android.util.text.CharacterEncodings;
 
 /**
  * A wrapper for {@link HttpResponse} objects which simplifies error handling 
  * for failed requests.
+ * <p/>
+ * The streaming accessors ({@link #getContent()}, {@link #writeTo(OutputStream)}, {@link #read(ContentHandler)} and friends)
+ * read the body in fixed-size chunks rather than buffering it whole, so large payloads are handled in bounded memory. Each
+ * releases the underlying connection once the body has been read or reading fails.
  */
 public final class Response {
 
+    private static final String TAG = Response.class.getSimpleName();
+
+    private static final int BUFFER_SIZE = 8192;
+
     private boolean failedRequest;
     private HttpResponse httpResponse;
     private String reason;
@@ -47,7 +70,7 @@ public final class Response {
         return getHttpResponse().getEntity();
     }
 
-    private boolean isFailedRequest() {
+    public boolean isFailedRequest() {
 
         return failedRequest;
     }
@@ -88,4 +111,185 @@ public final class Response {
 
         this.reason = reason;
     }
+
+    /**
+     * Returns the body as a stream. Closing the stream releases the underlying connection, so callers must close it, 
+     * typically in a {@code finally} block.
+     * 
+     * @return the body, or null if the response has no entity
+     * @throws IOException the body could not be opened
+     */
+    public InputStream getContent() throws IOException {
+
+        final HttpEntity entity = getEntity();
+        if ( entity == null ) {
+            return null;
+        }
+
+        return new FilterInputStream( entity.getContent() ) {
+
+            @Override
+            public void close() throws IOException {
+
+                try {
+                    super.close();
+                }
+                finally {
+                    entity.consumeContent();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the body as a stream of characters, decoded with the charset named by the {@code Content-Type} header, or UTF-8 
+     * if there is none. Closing the reader releases the underlying connection.
+     * 
+     * @return the body, or null if the response has no entity
+     * @throws IOException the body could not be opened
+     */
+    public Reader getReader() throws IOException {
+
+        InputStream content = getContent();
+        if ( content == null ) {
+            return null;
+        }
+
+        return new InputStreamReader( content, getCharset() );
+    }
+
+    /**
+     * Copies the body to the given stream, then releases the underlying connection. The output stream is left open.
+     * 
+     * @return the number of bytes written
+     */
+    public long writeTo( OutputStream outputStream ) throws IOException {
+
+        return writeTo( outputStream, new byte[BUFFER_SIZE] );
+    }
+
+    /**
+     * Copies the body to the given stream through the given buffer, then releases the underlying connection. Passing the same 
+     * buffer to successive calls avoids allocating one per response.
+     * 
+     * @return the number of bytes written
+     */
+    public long writeTo( final OutputStream outputStream, byte[] buffer ) throws IOException {
+
+        return read( new ContentHandler() {
+
+            @Override
+            public void onContent( byte[] chunk, int length ) throws IOException {
+
+                outputStream.write( chunk, 0, length );
+            }
+        }, buffer );
+    }
+
+    /**
+     * Saves the body to the given file, then releases the underlying connection. A partially written file is deleted if reading
+     * fails.
+     * 
+     * @return the number of bytes written
+     */
+    public long writeTo( File file ) throws IOException {
+
+        OutputStream outputStream = new FileOutputStream( file );
+        boolean complete = false;
+        try {
+            long written = writeTo( outputStream );
+            outputStream.close();
+            complete = true;
+            return written;
+        }
+        finally {
+            Streams.close( outputStream );
+            if ( !complete ) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads the body chunk by chunk, passing each to the handler, then releases the underlying connection.
+     * 
+     * @return the number of bytes read
+     */
+    public long read( ContentHandler handler ) throws IOException {
+
+        return read( handler, new byte[BUFFER_SIZE] );
+    }
+
+    private long read( ContentHandler handler, byte[] buffer ) throws IOException {
+
+        InputStream content = getContent();
+        if ( content == null ) {
+            return 0;
+        }
+
+        try {
+            long total = 0;
+            int read;
+            while (( read = content.read( buffer ) ) != -1) {
+                handler.onContent( buffer, read );
+                total += read;
+            }
+            return total;
+        }
+        finally {
+            Streams.close( content );
+        }
+    }
+
+    /**
+     * Decodes the body chunk by chunk, as {@link #getReader()} does, passing each chunk of text to the handler, then releases 
+     * the underlying connection.
+     * 
+     * @return the number of characters read
+     */
+    public long readText( TextContentHandler handler ) throws IOException {
+
+        Reader reader = getReader();
+        if ( reader == null ) {
+            return 0;
+        }
+
+        try {
+            char[] buffer = new char[BUFFER_SIZE];
+            long total = 0;
+            int read;
+            while (( read = reader.read( buffer ) ) != -1) {
+                handler.onText( buffer, read );
+                total += read;
+            }
+            return total;
+        }
+        finally {
+            Streams.close( reader );
+        }
+    }
+
+    /**
+     * Releases the underlying connection for reuse when the rest of the body is not needed. HttpClient first reads and discards
+     * whatever is left of the body, which takes as long as downloading it; to drop a large body, abort the request instead.
+     */
+    public void release() {
+
+        if ( isFailedRequest() || httpResponse == null || httpResponse.getEntity() == null ) {
+            return;
+        }
+
+        try {
+            httpResponse.getEntity().consumeContent();
+        }
+        catch (IOException e) {
+            Log.w( TAG, "Could not release response entity.", e );
+        }
+    }
+
+    private String getCharset() {
+
+        String charset = EntityUtils.getContentCharSet( getEntity() );
+        return ( charset == null ) ? CharacterEncodings.UTF_8 : charset;
+    }
 }
@@ -0,0 +1,19 @@
+package com.metova.android.util.http.response;
+
+import java.io.IOException;
+
+/**
+ * Receives a response body incrementally as decoded text, as {@link Response#readText(TextContentHandler)} reads it.
+ */
+public interface TextContentHandler {
+
+    /**
+     * Called for each chunk of decoded text, in order. The buffer is reused for the next chunk, so the characters must be 
+     * consumed or copied before returning.
+     * 
+     * @param buffer the characters decoded
+     * @param length the number of valid characters at the start of the buffer
+     * @throws IOException to abort reading
+     */
+    public void onText( char[] buffer, int length ) throws IOException;
+}
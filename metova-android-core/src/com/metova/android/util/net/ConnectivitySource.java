@@ -0,0 +1,22 @@
+package com.metova.android.util.net;
+
+/**
+ * Reports the active network and notifies listeners when it changes. On a device this is a {@link NetworksConnectivitySource};
+ * tests can supply their own.
+ */
+public interface ConnectivitySource {
+
+    public NetworkState getNetworkState();
+
+    public void addListener( Listener listener );
+
+    public void removeListener( Listener listener );
+
+    public interface Listener {
+
+        /**
+         * Called when the active network changes. May be called on any thread.
+         */
+        public void onNetworkStateChanged( NetworkState networkState );
+    }
+}
@@ -0,0 +1,68 @@
+package com.metova.android.util.net;
+
+/**
+ * Snapshot of the device's active network, as reported by a {@link ConnectivitySource}.
+ */
+public final class NetworkState {
+
+    public static final NetworkState DISCONNECTED = new NetworkState( false, null, false );
+
+    private final boolean connected;
+    private final String typeName;
+    private final boolean metered;
+
+    /**
+     * @param connected whether a network is connected
+     * @param typeName the network type, such as {@link Networks#NETWORK_WIFI} or {@link Networks#NETWORK_MOBILE}. May be null.
+     * @param metered whether traffic on the network may cost the user money
+     */
+    public NetworkState(boolean connected, String typeName, boolean metered) {
+
+        this.connected = connected;
+        this.typeName = typeName;
+        this.metered = metered;
+    }
+
+    public boolean isConnected() {
+
+        return connected;
+    }
+
+    public String getTypeName() {
+
+        return typeName;
+    }
+
+    public boolean isWifi() {
+
+        return connected && Networks.NETWORK_WIFI.equalsIgnoreCase( typeName );
+    }
+
+    public boolean isMetered() {
+
+        return metered;
+    }
+
+    @Override
+    public boolean equals( Object object ) {
+
+        if ( !( object instanceof NetworkState ) ) {
+            return false;
+        }
+
+        NetworkState other = (NetworkState) object;
+        return connected == other.connected && metered == other.metered && ( typeName == null ? other.typeName == null : typeName.equals( other.typeName ) );
+    }
+
+    @Override
+    public int hashCode() {
+
+        return ( connected ? 1 : 0 ) + ( metered ? 2 : 0 ) + ( typeName == null ? 0 : typeName.hashCode() * 31 );
+    }
+
+    @Override
+    public String toString() {
+
+        return connected ? typeName + ( metered ? " (metered)" : "" ) : "disconnected";
+    }
+}
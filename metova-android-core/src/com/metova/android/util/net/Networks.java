@@ -1,8 +1,10 @@
 package com.metova.android.util.net;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.Build;
 import android.telephony.TelephonyManager;
 
 public class Networks {
@@ -46,6 +48,37 @@ public class Networks {
         return null;
     }
 
+    /**
+     * Describes the active network. Whether it is metered is asked of the system where it knows, from Jelly Bean on, since a Wi-Fi 
+     * network may be a metered hotspot. On older devices Wi-Fi and Ethernet are treated as unmetered, every other network type as 
+     * metered.
+     */
+    public static NetworkState getNetworkState( Context context ) {
+
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService( Context.CONNECTIVITY_SERVICE );
+        NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
+
+        if ( activeNetworkInfo == null || !activeNetworkInfo.isConnected() ) {
+            return NetworkState.DISCONNECTED;
+        }
+
+        boolean metered;
+        if ( Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ) {
+            metered = isActiveNetworkMetered( connectivityManager );
+        }
+        else {
+            int type = activeNetworkInfo.getType();
+            metered = type != ConnectivityManager.TYPE_WIFI && type != ConnectivityManager.TYPE_ETHERNET;
+        }
+        return new NetworkState( true, activeNetworkInfo.getTypeName(), metered );
+    }
+
+    @TargetApi( Build.VERSION_CODES.JELLY_BEAN )
+    private static boolean isActiveNetworkMetered( ConnectivityManager connectivityManager ) {
+
+        return connectivityManager.isActiveNetworkMetered();
+    }
+
     public static String getNetworkName( Context context ) {
 
         TelephonyManager telephonyManager = (TelephonyManager) context.getSystemService( Context.TELEPHONY_SERVICE );
@@ -0,0 +1,77 @@
+package com.metova.android.util.net;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+
+/**
+ * {@link ConnectivitySource} that reads the active network through {@link Networks} and listens for connectivity broadcasts.
+ * Broadcasts are only received between {@link #register()} and {@link #unregister()}.
+ */
+public class NetworksConnectivitySource extends BroadcastReceiver implements ConnectivitySource {
+
+    private final Context context;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private volatile NetworkState networkState;
+
+    public NetworksConnectivitySource(final Context context) {
+
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Starts listening for connectivity changes.
+     */
+    public void register() {
+
+        networkState = Networks.getNetworkState( context );
+        context.registerReceiver( this, new IntentFilter( ConnectivityManager.CONNECTIVITY_ACTION ) );
+    }
+
+    /**
+     * Stops listening for connectivity changes.
+     */
+    public void unregister() {
+
+        context.unregisterReceiver( this );
+    }
+
+    @Override
+    public void onReceive( Context context, Intent intent ) {
+
+        NetworkState current = Networks.getNetworkState( this.context );
+        if ( current.equals( networkState ) ) {
+            return;
+        }
+
+        networkState = current;
+        for (Listener listener : listeners) {
+            listener.onNetworkStateChanged( current );
+        }
+    }
+
+    @Override
+    public NetworkState getNetworkState() {
+
+        NetworkState current = networkState;
+        return ( current == null ) ? Networks.getNetworkState( context ) : current;
+    }
+
+    @Override
+    public void addListener( Listener listener ) {
+
+        listeners.add( listener );
+    }
+
+    @Override
+    public void removeListener( Listener listener ) {
+
+        listeners.remove( listener );
+    }
+}